@@ -11,6 +11,7 @@ repositories {
 dependencies {
     // Use JUnit Jupiter for testing.
     testImplementation("org.junit.jupiter:junit-jupiter:5.9.1")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-xml:2.13.0")
     implementation("javax.websocket:javax.websocket-client-api:1.1")
     implementation("org.glassfish.tyrus.bundles:tyrus-standalone-client:1.9")
@@ -21,6 +22,12 @@ application {
     mainClass.set("gt.trading.openbook.App")
 }
 
+tasks.register<JavaExec>("parserBenchmark") {
+    // Compare the streaming tick parsers with tree based parsing.
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("gt.trading.openbook.benchmarks.ParserBenchmark")
+}
+
 tasks.named<Test>("test") {
     // Use JUnit Platform for unit tests.
     useJUnitPlatform()
@@ -1,11 +1,14 @@
 package gt.trading.openbook;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.concurrent.CountDownLatch;
 import java.util.logging.Logger;
 
+import gt.trading.openbook.core.StateCheckpointer;
 import gt.trading.openbook.featuregraph.GraphRunner;
-import gt.trading.openbook.listeners.MarketListener;
+import gt.trading.openbook.listeners.ConnectionManager;
+import gt.trading.openbook.models.Precision;
 
 /**
  * The main class for the order book application.
@@ -15,7 +18,15 @@ import gt.trading.openbook.listeners.MarketListener;
  */
 public final class App {
   private static final Logger LOGGER = Logger.getLogger(App.class.getName());
-  private static MarketListener marketListener = new MarketListener();
+  private static final String SYMBOL = "btcusdt";
+  private static final Precision PRECISION = Precision.builder().priceScale(2)
+      .amountScale(6).build();
+  private static final int CHANNELS_PER_CONNECTION = 50;
+  private static final String CHECKPOINT_PROPERTY = "openbook.checkpoint";
+  private static final long CHECKPOINT_INTERVAL_MILLIS = 10000L;
+  private static final long CHECKPOINT_MAX_AGE_MILLIS = 60000L;
+  private static ConnectionManager connections = new ConnectionManager(
+      CHANNELS_PER_CONNECTION);
 
   private App() {
     return;
@@ -28,13 +39,29 @@ public final class App {
    * order book maintains a list of buy and sell orders for the BTC/USDT
    * instrument and matches them according to their prices and timestamps. It
    * also keeps track of the current bid and ask prices for the instrument.
+   * If the openbook.checkpoint system property names a file, the order book
+   * and feature state are checkpointed to it and restored from it on the
+   * next start; otherwise nothing is written.
    *
    * @param args an array of command line arguments (not used)
    */
   public static void main(final String[] args) {
     try {
+      String checkpointFile = System.getProperty(CHECKPOINT_PROPERTY);
+      StateCheckpointer checkpointer = null;
+
+      if (checkpointFile != null) {
+        checkpointer = new StateCheckpointer(Path.of(checkpointFile),
+            CHECKPOINT_INTERVAL_MILLIS, CHECKPOINT_MAX_AGE_MILLIS);
+      }
+
       new GraphRunner("app/src/resources/featuregraph/config/example.json",
-          marketListener);
+          connections, SYMBOL, PRECISION, checkpointer);
+
+      if (checkpointer != null) {
+        checkpointer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(checkpointer::close));
+      }
       CountDownLatch latch = new CountDownLatch(1);
       latch.await();
     } catch (IOException | InterruptedException error) {
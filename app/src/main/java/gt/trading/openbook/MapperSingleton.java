@@ -1,5 +1,6 @@
 package gt.trading.openbook;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public final class MapperSingleton {
@@ -13,7 +14,8 @@ public final class MapperSingleton {
    * Returns a copy of a ObjectMapper singleton. Checks if an instance is
    * already created. If not, it performs double-checked locking by
    * synchronizing on the class and checking again before creating a new
-   * instance.
+   * instance. Floating point numbers in JSON trees are kept as exact decimals
+   * so that they can be converted to fixed point values without rounding.
    *
    * @return ObjectMapper an instance of the Jackson ObjectMapper
    */
@@ -21,7 +23,8 @@ public final class MapperSingleton {
     if (objectMapper == null) {
       synchronized (MapperSingleton.class) {
         if (objectMapper == null) {
-          objectMapper = new ObjectMapper();
+          objectMapper = new ObjectMapper()
+              .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
         }
       }
     }
@@ -0,0 +1,293 @@
+package gt.trading.openbook.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import gt.trading.openbook.MapperSingleton;
+import gt.trading.openbook.models.DepthData;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.models.TickParser;
+import gt.trading.openbook.models.TradeData;
+
+/**
+ * The ParserBenchmark class compares the streaming TickParser with the tree
+ * based path it replaced, which read each message into a JsonNode and then
+ * bound the tick with an ObjectReader. Synthetic market by price, best bid and
+ * offer, and trade detail messages are parsed both ways, the results are
+ * checked against each other, and the average time per message is printed.
+ * The streaming path decodes into reused flyweights, as the listeners do.
+ *
+ * Run it with the parserBenchmark Gradle task. The numbers are a rough guide;
+ * the JIT is warmed up but no other harness is used.
+ */
+public final class ParserBenchmark {
+  private static final Logger LOGGER = Logger
+      .getLogger(ParserBenchmark.class.getName());
+  private static final Precision PRECISION = Precision.builder().priceScale(2)
+      .amountScale(6).build();
+  private static final int MBP_LEVELS = 400;
+  private static final int WARMUP_ROUNDS = 20000;
+  private static final int MEASURED_ROUNDS = 50000;
+  private static final double NANOS_PER_MICRO = 1000.0;
+  private static final ObjectMapper MAPPER = MapperSingleton.getInstance();
+  private static final JsonFactory FACTORY = MAPPER.getFactory();
+  private static long sink = 0L;
+
+  private ParserBenchmark() {
+    return;
+  }
+
+  /**
+   * Functional interface for a parse path under measurement.
+   */
+  @FunctionalInterface
+  private interface ParsePath {
+    /**
+     * Parses one message.
+     *
+     * @param message the UTF-8 bytes of the message
+     * @return a value derived from the result, so it is not optimized away
+     * @throws IOException if the message cannot be parsed
+     */
+    long parse(byte[] message) throws IOException;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args an array of command line arguments (not used)
+   * @throws IOException if a message cannot be parsed
+   */
+  public static void main(final String[] args) throws IOException {
+    Random random = new Random(1);
+    byte[] mbp = mbpMessage(random);
+    byte[] bbo = bboMessage();
+    byte[] trade = tradeMessage(random);
+
+    ObjectReader mbpReader = MAPPER.readerFor(OrderBookData.class)
+        .withAttribute(Precision.class, PRECISION);
+    ObjectReader bboReader = MAPPER.readerFor(DepthData.class)
+        .withAttribute(Precision.class, PRECISION);
+    ObjectReader tradeReader = MAPPER.readerFor(TradeData[].class)
+        .withAttribute(Precision.class, PRECISION);
+
+    ParsePath treeMbp = message -> {
+      OrderBookData data = mbpReader.readValue(MAPPER.readTree(message)
+          .get("tick"));
+      return data.getBidPrice(0) + data.getAskCount();
+    };
+    OrderBookData mbpData = new OrderBookData();
+    ParsePath streamMbp = message -> {
+      try (JsonParser parser = openTick(message)) {
+        TickParser.parseMbp(parser, PRECISION, OrderBookData.Action.INCREMENT,
+            mbpData);
+        return mbpData.getBidPrice(0) + mbpData.getAskCount();
+      }
+    };
+    ParsePath treeBbo = message -> {
+      DepthData data = bboReader.readValue(MAPPER.readTree(message)
+          .get("tick"));
+      return data.getBid() + data.getAskSize();
+    };
+    DepthData bboData = new DepthData();
+    ParsePath streamBbo = message -> {
+      try (JsonParser parser = openTick(message)) {
+        TickParser.parseBbo(parser, PRECISION, bboData);
+        return bboData.getBid() + bboData.getAskSize();
+      }
+    };
+    ParsePath treeTrade = message -> {
+      JsonNode tick = MAPPER.readTree(message).get("tick");
+      TradeData[] data = tradeReader.readValue(tick.get("data"));
+      return data[data.length - 1].getPrice() + data.length;
+    };
+    TradeData tradeData = new TradeData();
+    ParsePath streamTrade = message -> {
+      long[] last = new long[2];
+
+      try (JsonParser parser = openTick(message)) {
+        TickParser.parseTrades(parser, PRECISION, tradeData, data -> {
+          last[0] = data.getPrice();
+          last[1]++;
+        });
+      }
+
+      return last[0] + last[1];
+    };
+
+    compare("mbp.400", mbp, treeMbp, streamMbp);
+    compare("bbo", bbo, treeBbo, streamBbo);
+    compare("trade.detail", trade, treeTrade, streamTrade);
+    LOGGER.fine("Sink " + sink);
+  }
+
+  /**
+   * Checks that both paths agree on a message and prints their timings.
+   *
+   * @param name    the name of the message type
+   * @param message the UTF-8 bytes of the message
+   * @param tree    the tree based path
+   * @param stream  the streaming path
+   * @throws IOException if the message cannot be parsed
+   */
+  private static void compare(final String name, final byte[] message,
+      final ParsePath tree, final ParsePath stream) throws IOException {
+    if (tree.parse(message) != stream.parse(message)) {
+      throw new IllegalStateException(name + " results differ");
+    }
+
+    double treeNanos = measure(message, tree);
+    double streamNanos = measure(message, stream);
+
+    System.out.printf(Locale.ROOT,
+        "%-13s tree %9.2f us  stream %9.2f us  speedup %5.2fx%n", name,
+        treeNanos / NANOS_PER_MICRO, streamNanos / NANOS_PER_MICRO,
+        treeNanos / streamNanos);
+  }
+
+  /**
+   * Returns the average time in nanoseconds one path takes per message.
+   *
+   * @param message the UTF-8 bytes of the message
+   * @param path    the path to measure
+   * @return the average nanoseconds per message
+   * @throws IOException if the message cannot be parsed
+   */
+  private static double measure(final byte[] message, final ParsePath path)
+      throws IOException {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      sink += path.parse(message);
+    }
+
+    long start = System.nanoTime();
+
+    for (int i = 0; i < MEASURED_ROUNDS; i++) {
+      sink += path.parse(message);
+    }
+
+    return (double) (System.nanoTime() - start) / MEASURED_ROUNDS;
+  }
+
+  /**
+   * Opens a parser over a message and moves it to the start of the tick, the
+   * same way Listener streams the envelope.
+   *
+   * @param message the UTF-8 bytes of the message
+   * @return the parser positioned on the tick
+   * @throws IOException if the message has no tick
+   */
+  private static JsonParser openTick(final byte[] message) throws IOException {
+    JsonParser parser = FACTORY.createParser(message);
+    parser.nextToken();
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      if ("tick".equals(field)) {
+        return parser;
+      }
+
+      parser.skipChildren();
+    }
+
+    parser.close();
+    throw new IOException("Message has no tick");
+  }
+
+  /**
+   * Builds a market by price snapshot style message with full depth.
+   *
+   * @param random the source of prices and amounts
+   * @return the UTF-8 bytes of the message
+   */
+  private static byte[] mbpMessage(final Random random) {
+    StringBuilder builder = new StringBuilder(
+        "{\"ch\":\"market.btcusdt.mbp.400\",\"ts\":1630000000000,"
+            + "\"tick\":{\"seqNum\":100000123,\"prevSeqNum\":100000122,");
+    appendLevels(builder, "bids", 30000.00, -0.01, random);
+    builder.append(',');
+    appendLevels(builder, "asks", 30000.01, 0.01, random);
+    builder.append("}}");
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Appends an array of price levels to a message.
+   *
+   * @param builder the message being built
+   * @param name    the field name of the array
+   * @param start   the best price
+   * @param step    the price step between levels
+   * @param random  the source of amounts
+   */
+  private static void appendLevels(final StringBuilder builder,
+      final String name, final double start, final double step,
+      final Random random) {
+    builder.append('"').append(name).append("\":[");
+
+    for (int i = 0; i < MBP_LEVELS; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+
+      builder.append(String.format(Locale.ROOT, "[%.2f,%.6f]",
+          start + step * i, random.nextInt(5_000_000) / 1e6));
+    }
+
+    builder.append(']');
+  }
+
+  /**
+   * Builds a best bid and offer message.
+   *
+   * @return the UTF-8 bytes of the message
+   */
+  private static byte[] bboMessage() {
+    return ("{\"ch\":\"market.btcusdt.bbo\",\"ts\":1630000000000,"
+        + "\"tick\":{\"seqId\":103273695595,\"ask\":30000.01,"
+        + "\"askSize\":0.512834,\"bid\":30000.0,\"bidSize\":1.934221,"
+        + "\"quoteTime\":1630000000000,\"symbol\":\"btcusdt\"}}")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Builds a trade detail message holding several trades.
+   *
+   * @param random the source of amounts
+   * @return the UTF-8 bytes of the message
+   */
+  private static byte[] tradeMessage(final Random random) {
+    StringBuilder builder = new StringBuilder(
+        "{\"ch\":\"market.btcusdt.trade.detail\",\"ts\":1630000000000,"
+            + "\"tick\":{\"id\":137005445109,\"ts\":1630000000000,"
+            + "\"data\":[");
+    final int trades = 8;
+
+    for (int i = 0; i < trades; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+
+      builder.append(String.format(Locale.ROOT,
+          "{\"id\":1370054451098%d,\"ts\":1630000000000,"
+              + "\"tradeId\":1000%d,\"amount\":%.6f,\"price\":%.2f,"
+              + "\"direction\":\"buy\"}",
+          i, i, random.nextInt(1_000_000) / 1e6, 30000.01 + i * 0.01));
+    }
+
+    builder.append("]}}");
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,11 @@
+/**
+ * This package contains standalone benchmarks for hot paths of the
+ * application, run from Gradle tasks rather than as part of the application.
+ *
+ * The ParserBenchmark class is responsible for comparing the streaming tick
+ * parsers with the tree based parsing they replaced.
+ *
+ * @author Georiga Tech Trading Club Team #2
+ * @since 1.0
+ */
+package gt.trading.openbook.benchmarks;
@@ -0,0 +1,182 @@
+package gt.trading.openbook.core;
+
+import java.util.Arrays;
+
+/**
+ * The BookChange class describes what changed in an order book after an
+ * update was applied: each changed level with its old and new amounts, the new
+ * best prices, and the sequence number the book reached. Prices and amounts
+ * are fixed point values scaled by the precision of the order book.
+ *
+ * An order book reuses a single BookChange for every event, so an instance is
+ * only valid for the duration of the callback it is passed to. Callbacks which
+ * need to keep it should copy the values they need. When isReset returns true
+ * the book was rebuilt from a snapshot, and levels which are not listed were
+ * removed.
+ */
+public final class BookChange {
+  private static final int INITIAL_CAPACITY = 64;
+  private final String symbol;
+  private boolean[] bidSides = new boolean[INITIAL_CAPACITY];
+  private long[] prices = new long[INITIAL_CAPACITY];
+  private long[] oldAmounts = new long[INITIAL_CAPACITY];
+  private long[] newAmounts = new long[INITIAL_CAPACITY];
+  private int count = 0;
+  private boolean reset = false;
+  private long seqNum = -1L;
+  private long bestBid = PriceLadder.NO_PRICE;
+  private long bestAsk = PriceLadder.NO_PRICE;
+
+  /**
+   * Constructs an empty BookChange for a symbol.
+   *
+   * @param newSymbol the symbol of the order book
+   */
+  public BookChange(final String newSymbol) {
+    symbol = newSymbol;
+  }
+
+  /**
+   * Returns the symbol of the order book.
+   *
+   * @return the symbol
+   */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * Returns the sequence number the order book reached.
+   *
+   * @return the sequence number
+   */
+  public long getSeqNum() {
+    return seqNum;
+  }
+
+  /**
+   * Returns whether the order book was rebuilt from a snapshot.
+   *
+   * @return true if every level not listed was removed
+   */
+  public boolean isReset() {
+    return reset;
+  }
+
+  /**
+   * Returns the best bid price after the change.
+   *
+   * @return the best bid, or PriceLadder.NO_PRICE if there are no bids
+   */
+  public long getBestBid() {
+    return bestBid;
+  }
+
+  /**
+   * Returns the best ask price after the change.
+   *
+   * @return the best ask, or PriceLadder.NO_PRICE if there are no asks
+   */
+  public long getBestAsk() {
+    return bestAsk;
+  }
+
+  /**
+   * Returns the number of changed levels.
+   *
+   * @return the number of changed levels
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Returns whether a changed level is on the bid side.
+   *
+   * @param index the changed level index
+   * @return true for a bid, false for an ask
+   */
+  public boolean isBid(final int index) {
+    return bidSides[index];
+  }
+
+  /**
+   * Returns the scaled price of a changed level.
+   *
+   * @param index the changed level index
+   * @return the price
+   */
+  public long getPrice(final int index) {
+    return prices[index];
+  }
+
+  /**
+   * Returns the scaled amount of a changed level before the change.
+   *
+   * @param index the changed level index
+   * @return the old amount, or 0 if the level was added
+   */
+  public long getOldAmount(final int index) {
+    return oldAmounts[index];
+  }
+
+  /**
+   * Returns the scaled amount of a changed level after the change.
+   *
+   * @param index the changed level index
+   * @return the new amount, or 0 if the level was removed
+   */
+  public long getNewAmount(final int index) {
+    return newAmounts[index];
+  }
+
+  /**
+   * Removes every changed level so the instance can describe the next update.
+   *
+   * @param isReset true if the next update rebuilds the book from a snapshot
+   */
+  void reset(final boolean isReset) {
+    count = 0;
+    reset = isReset;
+  }
+
+  /**
+   * Records a changed level. The arrays grow when full, which only allocates
+   * until they reach the largest update seen.
+   *
+   * @param isBid     true for a bid, false for an ask
+   * @param price     the scaled price
+   * @param oldAmount the scaled amount before the change
+   * @param newAmount the scaled amount after the change
+   */
+  void record(final boolean isBid, final long price, final long oldAmount,
+      final long newAmount) {
+    if (count == prices.length) {
+      int capacity = count * 2;
+      bidSides = Arrays.copyOf(bidSides, capacity);
+      prices = Arrays.copyOf(prices, capacity);
+      oldAmounts = Arrays.copyOf(oldAmounts, capacity);
+      newAmounts = Arrays.copyOf(newAmounts, capacity);
+    }
+
+    bidSides[count] = isBid;
+    prices[count] = price;
+    oldAmounts[count] = oldAmount;
+    newAmounts[count] = newAmount;
+    count++;
+  }
+
+  /**
+   * Sets the sequence number and best prices once the update is applied.
+   *
+   * @param newSeqNum  the sequence number the order book reached
+   * @param newBestBid the best bid price
+   * @param newBestAsk the best ask price
+   */
+  void finish(final long newSeqNum, final long newBestBid,
+      final long newBestAsk) {
+    seqNum = newSeqNum;
+    bestBid = newBestBid;
+    bestAsk = newBestAsk;
+  }
+}
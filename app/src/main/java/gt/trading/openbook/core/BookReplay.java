@@ -0,0 +1,145 @@
+package gt.trading.openbook.core;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import gt.trading.openbook.journal.BookCheckpoint;
+import gt.trading.openbook.journal.CheckpointStore;
+import gt.trading.openbook.listeners.FeedReplay;
+import gt.trading.openbook.listeners.OrderBookListener;
+
+/**
+ * The BookReplay class moves the order books fed by a FeedReplay to any point
+ * of a recorded journal without replaying it from the start. The journal is
+ * replayed once to write periodic checkpoints of every book to a
+ * CheckpointStore. Seeking to a time then restores each book from its latest
+ * checkpoint before that time, continues the replay from the earliest
+ * checkpoint position, and applies only the deltas recorded since.
+ *
+ * Deltas which a restored book already holds are ignored by their sequence
+ * numbers, so books checkpointed at different positions can be brought up to
+ * date by the same replay.
+ */
+public final class BookReplay {
+  private static final Logger LOGGER = Logger
+      .getLogger(BookReplay.class.getName());
+  private final FeedReplay replay;
+  private final CheckpointStore checkpoints;
+  private final Map<String, OrderBook> books = new LinkedHashMap<>();
+
+  /**
+   * Constructs a BookReplay.
+   *
+   * @param newReplay      the replay feeding the order books
+   * @param newCheckpoints the checkpoints of the replayed journal
+   */
+  public BookReplay(final FeedReplay newReplay,
+      final CheckpointStore newCheckpoints) {
+    replay = newReplay;
+    checkpoints = newCheckpoints;
+  }
+
+  /**
+   * Adds an order book to checkpoint and restore, and sets its clock to the
+   * replay's. The book must be subscribed, at its depth, to a listener added
+   * to the replay.
+   *
+   * @param book the order book
+   */
+  public void addBook(final OrderBook book) {
+    books.put(OrderBookListener.getMbpChannel(book.getSymbol(),
+        book.getDepth()), book);
+    book.setClock(replay::getCurrentNanos);
+  }
+
+  /**
+   * Replays the rest of the journal and checkpoints every synchronized book
+   * at each multiple of an interval. A book is skipped at a checkpoint while
+   * it waits for a snapshot or holds early updates, since those could not be
+   * restored.
+   *
+   * @param intervalNanos the time between checkpoints in nanoseconds
+   * @return the number of checkpoints written
+   * @throws IllegalArgumentException if the interval is not positive
+   * @throws IOException              if the journal cannot be read or a
+   *                                  checkpoint cannot be written
+   */
+  public int writeCheckpoints(final long intervalNanos)
+      throws IllegalArgumentException, IOException {
+    if (intervalNanos <= 0) {
+      throw new IllegalArgumentException(
+          "Checkpoint interval must be positive");
+    }
+
+    int written = 0;
+
+    while (replay.hasNext()) {
+      long boundary = (Math.floorDiv(replay.getNextNanos(), intervalNanos)
+          + 1) * intervalNanos;
+      replay.runUntil(boundary);
+
+      if (!replay.hasNext()) {
+        break;
+      }
+
+      for (Map.Entry<String, OrderBook> entry : books.entrySet()) {
+        OrderBook book = entry.getValue();
+
+        if (book.getLastSeqNum() >= 0
+            && book.getReorderWindow().size() == 0) {
+          checkpoints.append(entry.getKey(), boundary,
+              replay.getNextPosition(), book.exportDepth());
+          written++;
+        }
+      }
+    }
+
+    LOGGER.info("Wrote " + written + " checkpoints of " + books.size()
+        + " order books");
+    return written;
+  }
+
+  /**
+   * Brings every order book to its state just before a time. Each book is
+   * restored from its latest checkpoint before the time, and the journal is
+   * replayed from the earliest of their positions. If a book has no such
+   * checkpoint, the journal is replayed from its start instead, which
+   * requires books that have not been fed yet.
+   *
+   * @param epochNanos the receive time to seek to in epoch nanoseconds
+   * @return the number of frames replayed to reach the time
+   * @throws IOException if the journal or a checkpoint cannot be read
+   */
+  public long seek(final long epochNanos) throws IOException {
+    BookCheckpoint[] found = new BookCheckpoint[books.size()];
+    long position = Long.MAX_VALUE;
+    int i = 0;
+
+    for (String channel : books.keySet()) {
+      found[i] = checkpoints.findLatest(channel, epochNanos);
+
+      if (found[i] == null) {
+        position = -1L;
+        break;
+      }
+
+      position = Math.min(position, found[i++].getPosition());
+    }
+
+    if (position < 0 || books.isEmpty()) {
+      replay.rewind();
+    } else {
+      i = 0;
+
+      for (OrderBook book : books.values()) {
+        book.restore(found[i++].getBook());
+      }
+
+      replay.seek(position);
+    }
+
+    return replay.runUntil(epochNanos);
+  }
+}
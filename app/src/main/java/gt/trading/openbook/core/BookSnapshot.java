@@ -0,0 +1,86 @@
+package gt.trading.openbook.core;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The BookSnapshot class publishes the best levels of an order book from its
+ * writer thread to any number of reader threads using a sequence lock. The
+ * writer never blocks: it marks the snapshot as being written by making the
+ * version odd, copies the levels in place, and makes the version even again.
+ * Readers copy the levels into their own TopOfBook and retry if the version
+ * changed while they were copying, so they always see a consistent view
+ * without taking a lock.
+ */
+public final class BookSnapshot {
+  private final AtomicLong version = new AtomicLong();
+  private final TopOfBook shared;
+
+  /**
+   * Constructs a BookSnapshot holding up to depth levels per side.
+   *
+   * @param depth the maximum number of levels per side
+   */
+  public BookSnapshot(final int depth) {
+    shared = new TopOfBook(depth);
+  }
+
+  /**
+   * Returns the maximum number of levels per side.
+   *
+   * @return the depth
+   */
+  public int getDepth() {
+    return shared.getDepth();
+  }
+
+  /**
+   * Returns the number of times a snapshot has been published.
+   *
+   * @return the number of publications
+   */
+  public long getPublishCount() {
+    return version.getAcquire() >>> 1;
+  }
+
+  /**
+   * Copies the latest consistent snapshot into the given TopOfBook. This may be
+   * called from any thread and never blocks the writer.
+   *
+   * @param target the reader owned TopOfBook to fill
+   * @return the sequence number of the snapshot that was read
+   */
+  public long read(final TopOfBook target) {
+    while (true) {
+      long before = version.getAcquire();
+
+      if ((before & 1L) == 0L) {
+        target.copyFrom(shared);
+        VarHandle.loadLoadFence();
+
+        if (version.getOpaque() == before) {
+          return target.getSeqNum();
+        }
+      }
+
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Publishes the best levels of both depth views. Must only be called from
+   * the thread that writes to the order book.
+   *
+   * @param bids   the bid depth view
+   * @param asks   the ask depth view
+   * @param seqNum the sequence number of the applied update
+   */
+  void publish(final DepthView bids, final DepthView asks,
+      final long seqNum) {
+    long current = version.getOpaque();
+    version.setOpaque(current + 1);
+    VarHandle.storeStoreFence();
+    shared.copyFrom(bids, asks, seqNum);
+    version.setRelease(current + 2);
+  }
+}
@@ -0,0 +1,27 @@
+package gt.trading.openbook.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Interface for state which a StateCheckpointer saves periodically and
+ * restores after a restart, such as the rolling state of a feature graph.
+ */
+public interface Checkpointable {
+  /**
+   * Writes the state needed to resume after a restart.
+   *
+   * @param out the output to write the state to
+   * @throws IOException if the state cannot be written
+   */
+  void saveState(DataOutput out) throws IOException;
+
+  /**
+   * Reads back state written by saveState, replacing the current state.
+   *
+   * @param in the input to read the state from
+   * @throws IOException if the state cannot be read
+   */
+  void restoreState(DataInput in) throws IOException;
+}
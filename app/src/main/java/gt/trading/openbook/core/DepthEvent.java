@@ -2,6 +2,7 @@ package gt.trading.openbook.core;
 
 import gt.trading.openbook.listeners.MarketListener;
 import gt.trading.openbook.models.DepthData;
+import gt.trading.openbook.models.Precision;
 
 /**
  * The DepthEvent class represents a depth event handler for the best bid and
@@ -9,18 +10,21 @@ import gt.trading.openbook.models.DepthData;
  * updates its internal best bid and ask prices accordingly.
  */
 public final class DepthEvent {
-  private double bestBid = 0.0;
-  private double bestAsk = 0.0;
+  private long bestBid = 0L;
+  private long bestAsk = 0L;
 
   /**
-   * Constructs a DepthEvent instance and subscribes to the depth events from
-   * the given MarketListener. The listener's callback processes the received
-   * data and updates the best bid and ask prices.
+   * Constructs a DepthEvent instance and subscribes to the depth events of a
+   * symbol from the given MarketListener. The listener's callback processes the
+   * received data and updates the best bid and ask prices.
    *
-   * @param listener the MarketListener instance to subscribe to depth events
+   * @param listener  the MarketListener instance to subscribe to depth events
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
    */
-  public DepthEvent(final MarketListener listener) {
-    listener.subscribeDepth(data -> {
+  public DepthEvent(final MarketListener listener, final String symbol,
+      final Precision precision) {
+    listener.subscribeDepth(symbol, precision, data -> {
       updateBestBidAndAsk(data);
     });
   }
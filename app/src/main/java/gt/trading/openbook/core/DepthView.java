@@ -0,0 +1,189 @@
+package gt.trading.openbook.core;
+
+/**
+ * The DepthView class holds the best levels of one side of an order book in
+ * sorted primitive arrays. It is updated incrementally by its PriceLadder as
+ * levels change, so the best N levels can be read in O(N) without walking the
+ * ladder or allocating.
+ *
+ * Like the ladder that owns it, the view should only be read from the thread
+ * that writes to the order book.
+ */
+public final class DepthView {
+  private final PriceLadder.Side side;
+  private final long[] prices;
+  private final long[] amounts;
+  private int count = 0;
+
+  /**
+   * Constructs an empty DepthView which holds up to depth levels.
+   *
+   * @param viewSide the side of the book the view represents
+   * @param depth    the maximum number of levels held
+   * @throws IllegalArgumentException if the depth is not positive
+   */
+  DepthView(final PriceLadder.Side viewSide, final int depth)
+      throws IllegalArgumentException {
+    if (depth <= 0) {
+      throw new IllegalArgumentException("Depth must be greater than 0");
+    }
+
+    side = viewSide;
+    prices = new long[depth];
+    amounts = new long[depth];
+  }
+
+  /**
+   * Returns the maximum number of levels held.
+   *
+   * @return the depth of the view
+   */
+  public int getDepth() {
+    return prices.length;
+  }
+
+  /**
+   * Returns the number of levels currently held.
+   *
+   * @return the number of levels
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Returns the scaled price of a level, where 0 is the best price.
+   *
+   * @param level the level index
+   * @return the price of the level
+   */
+  public long getPrice(final int level) {
+    return prices[level];
+  }
+
+  /**
+   * Returns the scaled amount of a level, where 0 is the best price.
+   *
+   * @param level the level index
+   * @return the amount of the level
+   */
+  public long getAmount(final int level) {
+    return amounts[level];
+  }
+
+  /**
+   * Copies up to maxLevels levels into the given arrays.
+   *
+   * @param targetPrices  the array receiving prices
+   * @param targetAmounts the array receiving amounts
+   * @param maxLevels     the maximum number of levels to copy
+   * @return the number of levels copied
+   */
+  public int copyTo(final long[] targetPrices, final long[] targetAmounts,
+      final int maxLevels) {
+    int copied = Math.min(count, maxLevels);
+    System.arraycopy(prices, 0, targetPrices, 0, copied);
+    System.arraycopy(amounts, 0, targetAmounts, 0, copied);
+    return copied;
+  }
+
+  /**
+   * Applies a level that was added or changed in the ladder. Levels worse than
+   * the worst level of a full view are ignored.
+   *
+   * @param price  the scaled price of the level
+   * @param amount the new scaled amount of the level
+   */
+  void put(final long price, final long amount) {
+    int position = 0;
+
+    while (position < count && isBetter(prices[position], price)) {
+      position++;
+    }
+
+    if (position < count && prices[position] == price) {
+      amounts[position] = amount;
+      return;
+    }
+
+    if (position == prices.length) {
+      return;
+    }
+
+    int moved = Math.min(count, prices.length - 1) - position;
+    System.arraycopy(prices, position, prices, position + 1, moved);
+    System.arraycopy(amounts, position, amounts, position + 1, moved);
+    prices[position] = price;
+    amounts[position] = amount;
+    count = Math.min(count + 1, prices.length);
+  }
+
+  /**
+   * Removes a level that was removed from the ladder and refills the view with
+   * the next level of the ladder if there is one.
+   *
+   * @param price  the scaled price of the removed level
+   * @param ladder the ladder owning this view
+   */
+  void remove(final long price, final PriceLadder ladder) {
+    int position = 0;
+
+    while (position < count && prices[position] != price) {
+      position++;
+    }
+
+    if (position == count) {
+      return;
+    }
+
+    int moved = count - position - 1;
+    System.arraycopy(prices, position + 1, prices, position, moved);
+    System.arraycopy(amounts, position + 1, amounts, position, moved);
+    count--;
+
+    if (ladder.size() > count) {
+      int index = count == 0 ? ladder.first()
+          : ladder.next(ladder.indexOf(prices[count - 1]));
+
+      if (index >= 0) {
+        prices[count] = ladder.priceAt(index);
+        amounts[count] = ladder.amountAt(index);
+        count++;
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the view from the ladder after the ladder moved its window.
+   *
+   * @param ladder the ladder owning this view
+   */
+  void rebuild(final PriceLadder ladder) {
+    count = 0;
+
+    for (int i = ladder.first(); i >= 0 && count < prices.length;
+        i = ladder.next(i)) {
+      prices[count] = ladder.priceAt(i);
+      amounts[count] = ladder.amountAt(i);
+      count++;
+    }
+  }
+
+  /**
+   * Removes every level from the view.
+   */
+  void clear() {
+    count = 0;
+  }
+
+  /**
+   * Returns whether the first price is better than the second for this side.
+   *
+   * @param price the price to compare
+   * @param other the price to compare against
+   * @return true if price is the better price
+   */
+  private boolean isBetter(final long price, final long other) {
+    return side == PriceLadder.Side.BID ? price > other : price < other;
+  }
+}
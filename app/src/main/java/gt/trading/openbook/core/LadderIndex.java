@@ -0,0 +1,263 @@
+package gt.trading.openbook.core;
+
+import java.util.Arrays;
+
+import gt.trading.openbook.models.FixedPoint;
+
+/**
+ * The LadderIndex class keeps Fenwick trees of the amounts and notional values
+ * of a PriceLadder over its positions, so cumulative depth questions take
+ * O(log n) time instead of a walk over every level. It answers how much size
+ * rests at or better than a price, at which price the cumulative size reaches
+ * a quantity, and the average price of filling a quantity.
+ *
+ * Notional values are kept relative to the base tick of the ladder, as the
+ * sum of position times amount, which keeps them exact and small enough for
+ * longs. The index is updated by the ladder that owns it and rebuilt when the
+ * ladder's window moves. It should only be read from the thread that writes
+ * to the order book.
+ */
+public final class LadderIndex {
+  private final PriceLadder ladder;
+  private final int capacity;
+  private final long[] sizes;
+  private final long[] notionals;
+  private final int topBit;
+  private long totalSize = 0L;
+  private long totalNotional = 0L;
+
+  /**
+   * Constructs an empty LadderIndex for a ladder.
+   *
+   * @param owner       the ladder being indexed
+   * @param newCapacity the number of positions in the ladder's window
+   */
+  LadderIndex(final PriceLadder owner, final int newCapacity) {
+    ladder = owner;
+    capacity = newCapacity;
+    sizes = new long[newCapacity + 1];
+    notionals = new long[newCapacity + 1];
+    topBit = Integer.highestOneBit(newCapacity);
+  }
+
+  /**
+   * Returns the total scaled amount on this side of the book.
+   *
+   * @return the total size
+   */
+  public long getTotalSize() {
+    return totalSize;
+  }
+
+  /**
+   * Returns the cumulative scaled amount resting at prices at least as good as
+   * the given price, meaning at or above it for bids and at or below it for
+   * asks.
+   *
+   * @param price the scaled limit price
+   * @return the cumulative size through the price
+   */
+  public long sizeThrough(final long price) {
+    boolean ask = ladder.getSide() == PriceLadder.Side.ASK;
+    long offset = ladder.tickOffset(price, !ask);
+
+    if (offset < 0 || offset >= capacity) {
+      boolean beyondWindow = offset >= capacity;
+      return beyondWindow == ask ? totalSize : 0L;
+    }
+
+    return betterSize((int) offset);
+  }
+
+  /**
+   * Returns the price of the level at which the cumulative amount from the
+   * best price reaches the given quantity, which is the worst price a market
+   * order of that size would trade at.
+   *
+   * @param quantity the scaled quantity to fill
+   * @return the scaled impact price, or PriceLadder.NO_PRICE if the side does
+   *         not hold enough size
+   */
+  public long impactPrice(final long quantity) {
+    if (quantity <= 0) {
+      return ladder.getBestPrice();
+    }
+
+    int index = fillIndex(quantity);
+    return index < 0 ? PriceLadder.NO_PRICE : ladder.priceAt(index);
+  }
+
+  /**
+   * Returns the volume weighted average price of filling the given quantity
+   * from the best price outwards.
+   *
+   * @param quantity the scaled quantity to fill
+   * @return the average fill price as a decimal, or NaN if the quantity is not
+   *         positive or the side does not hold enough size
+   */
+  public double vwapToFill(final long quantity) {
+    if (quantity <= 0) {
+      return Double.NaN;
+    }
+
+    int index = fillIndex(quantity);
+
+    if (index < 0) {
+      return Double.NaN;
+    }
+
+    long levelAmount = ladder.amountAt(index);
+    long filledSize = betterSize(index) - levelAmount;
+    long filledNotional = betterNotional(index) - levelAmount * index;
+    long relativeNotional = filledNotional
+        + (quantity - filledSize) * index;
+
+    double scaledPrice = ladder.priceAt(0)
+        + (double) relativeNotional / quantity * ladder.getTickSize();
+    return scaledPrice
+        / FixedPoint.pow10(ladder.getPrecision().getPriceScale());
+  }
+
+  /**
+   * Adds a change in amount at a ladder position.
+   *
+   * @param index the ladder position
+   * @param delta the change in scaled amount
+   */
+  void add(final int index, final long delta) {
+    long notionalDelta = delta * index;
+    totalSize += delta;
+    totalNotional += notionalDelta;
+
+    for (int node = index + 1; node <= capacity; node += node & -node) {
+      sizes[node] += delta;
+      notionals[node] += notionalDelta;
+    }
+  }
+
+  /**
+   * Rebuilds the trees from the ladder's amounts in linear time.
+   *
+   * @param amounts the amounts of the ladder indexed by position
+   */
+  void rebuild(final long[] amounts) {
+    clear();
+
+    for (int node = 1; node <= capacity; node++) {
+      long amount = amounts[node - 1];
+      sizes[node] += amount;
+      notionals[node] += amount * (node - 1);
+      totalSize += amount;
+      totalNotional += amount * (node - 1);
+
+      int parent = node + (node & -node);
+
+      if (parent <= capacity) {
+        sizes[parent] += sizes[node];
+        notionals[parent] += notionals[node];
+      }
+    }
+  }
+
+  /**
+   * Removes every amount from the index.
+   */
+  void clear() {
+    if (totalSize != 0L) {
+      Arrays.fill(sizes, 0L);
+      Arrays.fill(notionals, 0L);
+    }
+
+    totalSize = 0L;
+    totalNotional = 0L;
+  }
+
+  /**
+   * Returns the cumulative amount at positions at least as good as the given
+   * one.
+   *
+   * @param index the ladder position
+   * @return the cumulative size
+   */
+  private long betterSize(final int index) {
+    if (ladder.getSide() == PriceLadder.Side.ASK) {
+      return prefix(sizes, index);
+    }
+
+    return totalSize - prefix(sizes, index - 1);
+  }
+
+  /**
+   * Returns the cumulative relative notional at positions at least as good as
+   * the given one.
+   *
+   * @param index the ladder position
+   * @return the cumulative relative notional
+   */
+  private long betterNotional(final int index) {
+    if (ladder.getSide() == PriceLadder.Side.ASK) {
+      return prefix(notionals, index);
+    }
+
+    return totalNotional - prefix(notionals, index - 1);
+  }
+
+  /**
+   * Returns the position of the level at which the cumulative amount from the
+   * best price reaches the quantity.
+   *
+   * @param quantity the positive scaled quantity
+   * @return the position, or -1 if the side does not hold enough size
+   */
+  private int fillIndex(final long quantity) {
+    if (quantity > totalSize) {
+      return -1;
+    }
+
+    if (ladder.getSide() == PriceLadder.Side.ASK) {
+      return lowerBound(quantity);
+    }
+
+    return lowerBound(totalSize - quantity + 1);
+  }
+
+  /**
+   * Returns the sum of a tree over positions 0 through index.
+   *
+   * @param tree  the Fenwick tree
+   * @param index the last position to include, or -1 for none
+   * @return the prefix sum
+   */
+  private long prefix(final long[] tree, final int index) {
+    long sum = 0L;
+
+    for (int node = index + 1; node > 0; node -= node & -node) {
+      sum += tree[node];
+    }
+
+    return sum;
+  }
+
+  /**
+   * Returns the first position whose prefix amount reaches the target by
+   * descending the size tree.
+   *
+   * @param target the positive prefix amount to reach, at most the total
+   * @return the position
+   */
+  private int lowerBound(final long target) {
+    int node = 0;
+    long remaining = target;
+
+    for (int step = topBit; step > 0; step >>= 1) {
+      int candidate = node + step;
+
+      if (candidate <= capacity && sizes[candidate] < remaining) {
+        node = candidate;
+        remaining -= sizes[candidate];
+      }
+    }
+
+    return node;
+  }
+}
@@ -1,143 +1,586 @@
 package gt.trading.openbook.core;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 
+import gt.trading.openbook.listeners.Callback;
 import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.FixedPoint;
 import gt.trading.openbook.models.OrderBookData;
 import gt.trading.openbook.models.PriceLevel;
+import gt.trading.openbook.models.Precision;
 
 /**
  * The OrderBook class represents an order book for the Huobi exchange,
  * providing functionality to manage and process real-time market data. It
- * maintains an accurate representation of the order book for the BTC/USDT
- * instrument by handling events, data models, and listeners to process market
- * data from various Huobi APIs, such as WebSocket events.
+ * maintains an accurate representation of the order book for a single symbol
+ * by handling events, data models, and listeners to process market data from
+ * various Huobi APIs, such as WebSocket events.
  *
- * The order book keeps track of bids and asks using TreeMap structures. An
- * OrderBookListener is used to connect to the WebSocket API, subscribe to
- * market data updates, and handle incoming messages.
+ * The order book keeps track of bids and asks using PriceLadder structures,
+ * which are exposed read-only through getBids and getAsks. Updates are fed to
+ * onUpdate, usually by an OrderBookManager, and must always come from the same
+ * thread. A shared OrderBookListener is used to request snapshots.
+ *
+ * Each ladder keeps an incrementally updated DepthView of its best levels.
+ * After each applied update those levels are published to a BookSnapshot,
+ * which other threads can read from without locks. Materializing the whole
+ * book is only done by exportDepth. Every applied update is also described by
+ * a BookChange passed to the change callback, so consumers can react to the
+ * changed levels instead of reading the whole book.
+ *
+ * Updates which arrive before the update they follow are held in a
+ * ReorderWindow until the gap fills, and only a gap which outlasts its budget
+ * forces a resynchronization. Snapshot requests go through a RefreshThrottle,
+ * so at most one is outstanding and repeated failures back off. Levels which
+ * a ladder evicts from its window are recorded in the BookChange as removals,
+ * and an update with a level the ladder had to drop also forces a
+ * resynchronization, since the exchange never resends an unchanged level.
+ *
+ * When the listener reconnects, the book is invalidated: on the next update
+ * its buffered and held updates are dropped and a fresh snapshot is
+ * requested, and the time until that snapshot is applied is recorded.
+ *
+ * A book can be exported for a checkpoint with requestCheckpoint and later
+ * rebuilt from one with restore, after which it continues from the
+ * checkpoint's sequence number instead of waiting for a snapshot. The
+ * restored levels are only published once an update follows them directly,
+ * so a stale checkpoint is never presented as the live book.
  */
 public final class OrderBook {
-  private volatile LinkedBlockingQueue<OrderBookData> updateQueue;
-  private volatile Map<Double, Double> bids = new TreeMap<>(
-      Comparator.reverseOrder());
-  private volatile Map<Double, Double> asks = new TreeMap<>();
+  private static final int DEFAULT_VIEW_DEPTH = 20;
+  private static final int LADDER_CAPACITY = 1 << 16;
+  private static final int BUFFERED_MESSAGES = 1024;
+  private static final int BUFFERED_LEVELS = 16384;
+  private static final long BPS = 10000L;
+  private static final int REORDER_MESSAGES = 32;
+  private static final long REORDER_WAIT_MILLIS = 200L;
+  private static final long REFRESH_BACKOFF_MILLIS = 250L;
+  private static final long REFRESH_MAX_BACKOFF_MILLIS = 8000L;
+  private static final long REFRESH_TIMEOUT_MILLIS = 5000L;
+  private static final double NANOS_PER_MILLI = 1e6;
+  private final UpdateBuffer pendingUpdates;
+  private final RefreshThrottle refreshThrottle;
+  private final String symbol;
+  private final Precision precision;
+  private final PriceLadder bids;
+  private final PriceLadder asks;
+  private final BookSnapshot snapshot;
+  private final BookChange change;
+  private final int depth;
+  private Callback<BookChange> changeCallback;
+  private ReorderWindow reorderWindow;
   private long lastSeqNum = -1L;
   private boolean firstStart = true;
+  private boolean levelDropped = false;
+  private boolean restored = false;
+  private volatile boolean resyncRequested = false;
+  private long resyncStartedAt = -1L;
+  private long lastResyncNanos = -1L;
+  private long resyncCount = 0L;
+  private int maxDisplayDepth = 0;
+  private LongSupplier clock = System::nanoTime;
+  private volatile Callback<OrderBookData> checkpointCallback;
   private OrderBookListener listener;
   private static final Logger LOGGER = Logger
       .getLogger(OrderBookListener.class.getName());
 
   /**
-   * Constructs a new OrderBook instance, sets up an OrderBookListener, and
-   * subscribes to incremental order book data updates.
+   * Constructs a new OrderBook instance for a symbol which keeps the default
+   * number of levels in its depth views and snapshot.
+   *
+   * @param newSymbol      the symbol of the order book, e.g., "btcusdt"
+   * @param newPrecision   the precision of the symbol's prices and amounts
+   * @param sharedListener a reference to an OrderBookListener.
+   */
+  public OrderBook(final String newSymbol, final Precision newPrecision,
+      final OrderBookListener sharedListener) {
+    this(newSymbol, newPrecision, sharedListener, DEFAULT_VIEW_DEPTH,
+        OrderBookListener.DEFAULT_DEPTH);
+  }
+
+  /**
+   * Constructs a new OrderBook instance for a symbol. The order book does not
+   * subscribe by itself; incremental updates of the feed at maxDepth must be
+   * passed to onUpdate.
    *
+   * @param newSymbol      the symbol of the order book, e.g., "btcusdt"
+   * @param newPrecision   the precision of the symbol's prices and amounts
    * @param sharedListener a reference to an OrderBookListener.
+   * @param viewDepth      the number of levels per side in the depth views and
+   *                       snapshot
+   * @param maxDepth       the subscribed depth, which caps the levels kept per
+   *                       side; one of 5, 20, 150 or 400
+   * @throws IllegalArgumentException if the depth is not offered by Huobi
    */
-  public OrderBook(final OrderBookListener sharedListener) {
-    updateQueue = new LinkedBlockingQueue<>();
+  public OrderBook(final String newSymbol, final Precision newPrecision,
+      final OrderBookListener sharedListener, final int viewDepth,
+      final int maxDepth) throws IllegalArgumentException {
+    if (!OrderBookListener.isSupportedDepth(maxDepth)) {
+      throw new IllegalArgumentException(
+          "Market by price depth must be 5, 20, 150 or 400");
+    }
+
+    pendingUpdates = new UpdateBuffer(BUFFERED_MESSAGES, BUFFERED_LEVELS);
+    reorderWindow = new ReorderWindow(REORDER_MESSAGES, REORDER_WAIT_MILLIS);
+    refreshThrottle = new RefreshThrottle(REFRESH_BACKOFF_MILLIS,
+        REFRESH_MAX_BACKOFF_MILLIS, REFRESH_TIMEOUT_MILLIS);
+    symbol = newSymbol;
+    precision = newPrecision;
     listener = sharedListener;
-    listener.connect("wss://api-aws.huobi.pro/feed");
-    final int maxDisplayDepth = 10;
+    bids = new PriceLadder(PriceLadder.Side.BID, precision, LADDER_CAPACITY,
+        viewDepth);
+    asks = new PriceLadder(PriceLadder.Side.ASK, precision, LADDER_CAPACITY,
+        viewDepth);
+    snapshot = new BookSnapshot(viewDepth);
+    change = new BookChange(newSymbol);
+    depth = maxDepth;
+
+    bids.setMaxDepth(maxDepth);
+    asks.setMaxDepth(maxDepth);
+    bids.setRemovalListener(
+        (price, amount) -> change.record(true, price, amount, 0L));
+    asks.setRemovalListener(
+        (price, amount) -> change.record(false, price, amount, 0L));
+    bids.setDropListener((price, amount) -> levelDropped = true);
+    asks.setDropListener((price, amount) -> levelDropped = true);
+    listener.addReconnectListener(this::invalidate);
+  }
 
-    listener.subscribeMbp(data -> {
-      if (firstStart) {
-        listener.refresh();
-        firstStart = false;
+  /**
+   * Applies an incremental update or snapshot to the order book. A snapshot is
+   * requested when the first update arrives, and a deferred snapshot request
+   * is sent once its backoff has passed.
+   *
+   * @param data An OrderBookData object containing updated bids and asks.
+   */
+  public void onUpdate(final OrderBookData data) {
+    long now = clock.getAsLong();
+
+    if (resyncRequested) {
+      resyncRequested = false;
+      resync(now);
+    } else if (firstStart) {
+      requestRefresh(now);
+      firstStart = false;
+    } else if (refreshThrottle.poll(now)) {
+      listener.refresh(symbol, depth);
+    }
+
+    long previousSeqNum = lastSeqNum;
+    boolean isRefresh = OrderBookData.Action.REFRESH == data.getAction();
+    change.reset(isRefresh);
+    levelDropped = false;
+    processIncrementalUpdate(data, now);
+
+    if (levelDropped) {
+      onLevelDropped(data, now);
+    }
+
+    if (restored && lastSeqNum != previousSeqNum) {
+      restored = false;
+
+      if (lastSeqNum >= 0 && !isRefresh) {
+        recordRestoredLevels();
       }
+    }
 
-      processIncrementalUpdate(data);
+    if (lastSeqNum >= 0 && lastSeqNum != previousSeqNum) {
+      publish();
+    }
+
+    if (maxDisplayDepth > 0) {
       display(maxDisplayDepth);
-    });
+    }
+
+    Callback<OrderBookData> checkpoint = checkpointCallback;
+
+    if (checkpoint != null && lastSeqNum >= 0 && !restored
+        && reorderWindow.size() == 0) {
+      checkpointCallback = null;
+      checkpoint.onResponse(exportDepth());
+    }
+  }
+
+  /**
+   * Requests an export of the order book for a checkpoint. The export is made
+   * on the thread that writes to the order book, after the next update which
+   * leaves the book synchronized with no updates held, and is passed to the
+   * callback there. This may be called from any thread.
+   *
+   * @param callback the callback to receive the export, which it may keep
+   */
+  public void requestCheckpoint(final Callback<OrderBookData> callback) {
+    checkpointCallback = callback;
+  }
+
+  /**
+   * Replaces the contents of the order book with a checkpoint made by
+   * exportDepth, and continues from the checkpoint's sequence number. Updates
+   * which follow the checkpoint then apply directly and older ones are
+   * ignored, so replaying a journal from where the checkpoint was made brings
+   * the book up to date without a snapshot. Nothing is published until the
+   * first update which follows the checkpoint, whose change rebuilds the book
+   * from every restored level; if the feed has moved past the checkpoint the
+   * book resynchronizes from a snapshot as after any other gap. Must be
+   * called from the thread that writes to the order book.
+   *
+   * @param checkpoint the levels and sequence number to restore
+   * @throws IllegalArgumentException if the checkpoint has no sequence number
+   */
+  public void restore(final OrderBookData checkpoint)
+      throws IllegalArgumentException {
+    if (checkpoint.getSeqNum() < 0) {
+      throw new IllegalArgumentException(
+          "Checkpoint must have a sequence number");
+    }
+
+    resyncRequested = false;
+    firstStart = false;
+    resyncStartedAt = -1L;
+    pendingUpdates.clear();
+    reorderWindow.clear();
+    refreshThrottle.reset();
+
+    bids.clear();
+    asks.clear();
+    updateBids(checkpoint);
+    updateAsks(checkpoint);
+    lastSeqNum = checkpoint.getSeqNum();
+    restored = true;
+  }
+
+  /**
+   * Returns whether the order book holds restored levels which no update has
+   * confirmed yet, during which nothing is published.
+   *
+   * @return true until the first update following the checkpoint is applied
+   */
+  public boolean isRestored() {
+    return restored;
+  }
+
+  /**
+   * Returns the sequence number of the last applied update.
+   *
+   * @return the sequence number, or -1 while waiting for a snapshot
+   */
+  public long getLastSeqNum() {
+    return lastSeqNum;
+  }
+
+  /**
+   * Marks the order book as out of sync, such as after its listener
+   * reconnected and updates may have been lost. The resynchronization itself
+   * happens on the next call to onUpdate, so this may be called from any
+   * thread.
+   */
+  public void invalidate() {
+    resyncRequested = true;
+  }
+
+  /**
+   * Returns how long the last resynchronization took, from the next update
+   * after invalidate until a snapshot was applied.
+   *
+   * @return the time in milliseconds, or -1 if none has completed
+   */
+  public double getLastResyncMillis() {
+    return lastResyncNanos < 0 ? -1.0 : lastResyncNanos / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Returns how many resynchronizations have completed.
+   *
+   * @return the number of completed resynchronizations
+   */
+  public long getResyncCount() {
+    return resyncCount;
+  }
+
+  /**
+   * Sets how many levels are printed after each update, up to the depth of
+   * the depth views. Printing is disabled when the depth is 0, which is the
+   * default.
+   *
+   * @param newMaxDisplayDepth the number of levels to print per side
+   */
+  public void setDisplayDepth(final int newMaxDisplayDepth) {
+    maxDisplayDepth = Math.min(newMaxDisplayDepth,
+        bids.getView().getDepth());
+  }
+
+  /**
+   * Sets the callback which receives a BookChange after each applied update.
+   * The callback runs on the thread that writes to the order book, and the
+   * BookChange it receives is reused for the next update.
+   *
+   * @param callback the callback to handle book changes, or null to stop
+   */
+  public void setChangeCallback(final Callback<BookChange> callback) {
+    changeCallback = callback;
+  }
+
+  /**
+   * Enables a LadderIndex on both sides of the book, which is kept up to date
+   * as levels change and answers depth, impact price and fill price queries in
+   * O(log n). Must be called from the thread that writes to the order book.
+   */
+  public void enableDepthIndex() {
+    bids.enableIndex();
+    asks.enableIndex();
+  }
+
+  /**
+   * Returns the cumulative scaled amount on one side of the book resting
+   * within the given distance from the mid price. The depth index must be
+   * enabled.
+   *
+   * @param side the side of the book to measure
+   * @param bps  the distance from the mid price in basis points
+   * @return the cumulative size, or 0 if either side is empty
+   * @throws IllegalStateException if the depth index is not enabled
+   */
+  public long getDepthWithinBps(final PriceLadder.Side side, final long bps)
+      throws IllegalStateException {
+    PriceLadder ladder = side == PriceLadder.Side.BID ? bids : asks;
+
+    if (ladder.getIndex() == null) {
+      throw new IllegalStateException("Depth index is not enabled");
+    }
+
+    if (bids.isEmpty() || asks.isEmpty()) {
+      return 0L;
+    }
+
+    long doubleMid = bids.getBestPrice() + asks.getBestPrice();
+
+    if (side == PriceLadder.Side.BID) {
+      long limit = -Math.floorDiv(-doubleMid * (BPS - bps), 2 * BPS);
+      return ladder.getIndex().sizeThrough(limit);
+    }
+
+    long limit = Math.floorDiv(doubleMid * (BPS + bps), 2 * BPS);
+    return ladder.getIndex().sizeThrough(limit);
+  }
+
+  /**
+   * Replaces the clock the order book times gaps, snapshot requests and
+   * resynchronizations with. A replay sets its recorded receive times here,
+   * so that waits expire exactly as they did live however fast it runs. Must
+   * be called before the first update.
+   *
+   * @param newClock returns the current time in nanoseconds, System.nanoTime
+   *                 by default
+   */
+  public void setClock(final LongSupplier newClock) {
+    clock = newClock;
+  }
+
+  /**
+   * Replaces the reorder window with one using the given budgets. A gap is
+   * waited on until maxHeld updates are held or maxWaitMillis has passed,
+   * and a maxHeld of 0 requests a snapshot on every gap. Must be called from
+   * the thread that writes to the order book.
+   *
+   * @param maxHeld       the maximum number of early updates to hold
+   * @param maxWaitMillis the longest time to wait for a gap to fill
+   */
+  public void setReorderBudget(final int maxHeld, final long maxWaitMillis) {
+    reorderWindow = new ReorderWindow(maxHeld, maxWaitMillis);
+  }
+
+  /**
+   * Returns the subscribed depth, which is the most levels kept per side.
+   *
+   * @return the depth of the order book
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns the symbol of the order book.
+   *
+   * @return the symbol
+   */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * Returns the precision of the order book's prices and amounts.
+   *
+   * @return the precision
+   */
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Returns the snapshot of the best levels, which may be read from any
+   * thread.
+   *
+   * @return the published snapshot
+   */
+  public BookSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Returns the buffer of updates received while waiting for a snapshot, whose
+   * getters report the buffered depth and coalescing ratio. Values read from
+   * other threads are approximate.
+   *
+   * @return the pending update buffer
+   */
+  public UpdateBuffer getPendingUpdates() {
+    return pendingUpdates;
+  }
+
+  /**
+   * Returns the window of updates held while waiting for a gap to fill, whose
+   * getters report how many gaps were recovered or expired. Values read from
+   * other threads are approximate.
+   *
+   * @return the reorder window
+   */
+  public ReorderWindow getReorderWindow() {
+    return reorderWindow;
+  }
+
+  /**
+   * Returns the throttle deciding when snapshots are requested.
+   *
+   * @return the refresh throttle
+   */
+  public RefreshThrottle getRefreshThrottle() {
+    return refreshThrottle;
+  }
+
+  /**
+   * Returns the bid side of the order book. The ladder should only be read
+   * from the thread delivering order book updates.
+   *
+   * @return the bid price ladder
+   */
+  public PriceLadder getBids() {
+    return bids;
   }
 
   /**
-   * Stops the execution of the OrderBook instance by closing the
-   * OrderBookListener's WebSocket connection. This method ensures that the
-   * listener no longer processes incoming market data updates from the Huobi
-   * WebSocket API.
+   * Returns the ask side of the order book. The ladder should only be read
+   * from the thread delivering order book updates.
+   *
+   * @return the ask price ladder
    */
-  public void stop() {
-    listener.close();
+  public PriceLadder getAsks() {
+    return asks;
   }
 
   /**
    * Processes the incremental updates of the order book data. Handles the cases
    * when a refresh is needed, and ensures that all updates are processed in the
-   * correct order.
+   * correct order. Updates received before the snapshot are buffered and then
+   * applied as one coalesced set of level changes. A snapshot arriving while
+   * the book is synchronized, such as a late reply to a retried request, is
+   * ignored, since the buffer it would be checked against is empty.
    *
    * @param data An OrderBookData object containing updated bids and asks.
+   * @param now  The current time from the clock.
    */
-  private void processIncrementalUpdate(final OrderBookData data) {
+  private void processIncrementalUpdate(final OrderBookData data,
+      final long now) {
     OrderBookData.Action action = data.getAction();
     long snapshotSeqNum = data.getSeqNum();
 
     if (OrderBookData.Action.REFRESH == action) {
-      List<OrderBookData> preUpdate = new ArrayList<>(updateQueue.size());
-      updateQueue.drainTo(preUpdate);
-
-      boolean finished = false;
-      int index = 0;
-
-      for (OrderBookData preData : preUpdate) {
-        index++;
-        long preSeqNum = preData.getPrevSeqNum();
-        LOGGER.info("Data with previous sequence number " + preSeqNum
-            + ", sequence number " + preData.getSeqNum() + ", snapshot "
-            + snapshotSeqNum);
-
-        if (preSeqNum >= snapshotSeqNum) {
-          updatePriceLevels(data.getBids(), bids);
-          updatePriceLevels(data.getAsks(), asks);
-
-          finished = true;
-          lastSeqNum = snapshotSeqNum;
-          incrementUpdate(preData);
-          LOGGER.info("Finished comparing");
-
-          break;
-        }
+      if (lastSeqNum >= 0) {
+        LOGGER.fine("Ignored snapshot " + snapshotSeqNum + " of synchronized "
+            + symbol + " at sequence number " + lastSeqNum);
+        return;
       }
 
-      if (!finished) {
-        listener.refresh();
+      if (!pendingUpdates.reaches(snapshotSeqNum)) {
+        pendingUpdates.clear();
+        refreshThrottle.onSnapshot(false);
+        requestRefresh(now);
         return;
       }
 
-      // Process remaining updates in the queue
-      for (int i = index; i < preUpdate.size(); i++) {
-        incrementUpdate(preUpdate.get(i));
+      reorderWindow.clear();
+      bids.clear();
+      asks.clear();
+      updateBids(data);
+      updateAsks(data);
+
+      lastSeqNum = pendingUpdates.coalesce(snapshotSeqNum);
+
+      for (int i = 0; i < pendingUpdates.getMergedCount(); i++) {
+        PriceLadder ladder = pendingUpdates.isMergedBid(i) ? bids : asks;
+        updatePriceLevel(ladder, pendingUpdates.getMergedPrice(i),
+            pendingUpdates.getMergedAmount(i));
+      }
+
+      LOGGER.info("Replayed " + pendingUpdates.size()
+          + " buffered updates onto snapshot " + snapshotSeqNum
+          + ", sequence number " + lastSeqNum + ", coalescing ratio "
+          + pendingUpdates.getCoalescingRatio());
+      pendingUpdates.clear();
+      refreshThrottle.onSnapshot(!pendingUpdates.hasGap());
+
+      if (!pendingUpdates.hasGap() && resyncStartedAt >= 0) {
+        lastResyncNanos = now - resyncStartedAt;
+        resyncStartedAt = -1L;
+        resyncCount++;
+        LOGGER.info(symbol + " resynchronized in " + getLastResyncMillis()
+            + " ms");
+      }
+
+      if (pendingUpdates.hasGap()) {
+        LOGGER.warning("Missed buffered message after sequence number "
+            + lastSeqNum + ", snapshot " + snapshotSeqNum);
+        requestRefresh(now);
+        lastSeqNum = -1L;
       }
     } else if (lastSeqNum < 0) {
-      updateQueue.add(data);
+      if (!pendingUpdates.add(data)) {
+        LOGGER.warning("Pending update buffer overflowed after "
+            + pendingUpdates.size() + " updates, requesting a new snapshot");
+        pendingUpdates.clear();
+        pendingUpdates.add(data);
+        requestRefresh(now);
+      }
     } else {
-      incrementUpdate(data);
+      incrementUpdate(data, now);
     }
   }
 
   /**
    * Processes an individual incremental update for the order book data. Updates
-   * the bids and asks maps based on the data provided.
+   * the bids and asks ladders based on the data provided. An update which
+   * arrives early is held until the gap before it fills, after which the held
+   * updates are applied in order.
    *
    * @param data An OrderBookData object containing updated bids and asks.
+   * @param now  The current time from the clock.
    */
-  private void incrementUpdate(final OrderBookData data) {
-    double prevSeqNum = data.getPrevSeqNum();
+  private void incrementUpdate(final OrderBookData data, final long now) {
+    long prevSeqNum = data.getPrevSeqNum();
 
     if (prevSeqNum > lastSeqNum) {
-      listener.refresh();
+      if (reorderWindow.hold(data, now)) {
+        return;
+      }
+
       LOGGER.warning("Missed message with previous sequence number "
           + prevSeqNum + ", snapshot " + lastSeqNum);
+      requestRefresh(now);
 
       lastSeqNum = -1L;
+      pendingUpdates.add(data);
       return;
     }
 
@@ -145,96 +588,221 @@ public final class OrderBook {
       return;
     }
 
+    applyIncrement(data);
+    OrderBookData held = reorderWindow.take(lastSeqNum);
+
+    while (held != null) {
+      applyIncrement(held);
+      held = reorderWindow.take(lastSeqNum);
+    }
+  }
+
+  /**
+   * Applies an incremental update which directly follows the last one.
+   *
+   * @param data An OrderBookData object containing updated bids and asks.
+   */
+  private void applyIncrement(final OrderBookData data) {
     lastSeqNum = data.getSeqNum();
 
-    updatePriceLevels(data.getAsks(), asks);
-    updatePriceLevels(data.getBids(), bids);
+    updateAsks(data);
+    updateBids(data);
   }
 
   /**
-   * Updates the specified price levels map with the new price levels data.
+   * Drops the state which may be stale after a reconnection and requests a
+   * fresh snapshot. The ladders keep their levels until it is applied.
    *
-   * @param priceLevels A list of PriceLevel objects to update the map with.
-   * @param targetMap   The map to be updated with new price levels.
+   * @param now The current time from the clock.
    */
-  private void updatePriceLevels(final List<PriceLevel> priceLevels,
-      final Map<Double, Double> targetMap) {
-    if (priceLevels != null && !priceLevels.isEmpty()) {
-      for (PriceLevel priceLevel : priceLevels) {
-        double price = priceLevel.getPrice();
-        double amount = priceLevel.getAmount();
+  private void resync(final long now) {
+    LOGGER.warning("Resynchronizing " + symbol + " after reconnecting");
+    lastSeqNum = -1L;
+    firstStart = false;
+    pendingUpdates.clear();
+    reorderWindow.clear();
+    refreshThrottle.reset();
+    resyncStartedAt = now;
+    requestRefresh(now);
+  }
 
-        if (amount <= 0) {
-          targetMap.remove(price);
-        } else {
-          targetMap.put(price, amount);
-        }
-      }
+  /**
+   * Handles an update which had a level dropped by a ladder because it did
+   * not fit inside the window. An incremental update leaves the book
+   * diverged from the exchange, which does not resend unchanged levels, so a
+   * fresh snapshot is requested. Levels dropped from a snapshot would only
+   * be dropped again, so they are logged.
+   *
+   * @param data The update which was applied.
+   * @param now  The current time from the clock.
+   */
+  private void onLevelDropped(final OrderBookData data, final long now) {
+    if (OrderBookData.Action.REFRESH == data.getAction() || lastSeqNum < 0) {
+      LOGGER.warning(symbol + " snapshot has levels outside the ladder"
+          + " window, dropped " + bids.getDroppedCount() + " bids and "
+          + asks.getDroppedCount() + " asks so far");
+      return;
     }
+
+    LOGGER.warning(symbol + " dropped a level outside the ladder window at"
+        + " sequence number " + lastSeqNum + ", requesting a new snapshot");
+    lastSeqNum = -1L;
+    pendingUpdates.clear();
+    reorderWindow.clear();
+    requestRefresh(now);
   }
 
   /**
-   * Retrieves the current depth of the order book by converting the bids and
-   * asks maps into lists of PriceLevel objects.
+   * Turns the change of the first update applied after a restore into a
+   * reset listing every level, so consumers which never saw the restored
+   * levels rebuild the whole book from it.
+   */
+  private void recordRestoredLevels() {
+    change.reset(true);
+    bids.forEachLevel(bids.size(),
+        (price, amount) -> change.record(true, price, 0L, amount));
+    asks.forEachLevel(asks.size(),
+        (price, amount) -> change.record(false, price, 0L, amount));
+  }
+
+  /**
+   * Marks a snapshot as needed and sends the request if the refresh throttle
+   * allows it. Otherwise it is sent by a later call to onUpdate.
+   *
+   * @param now The current time from the clock.
+   */
+  private void requestRefresh(final long now) {
+    if (refreshThrottle.request(now)) {
+      listener.refresh(symbol, depth);
+    }
+  }
+
+  /**
+   * Updates the bids ladder with the bid levels of an update.
+   *
+   * @param data An OrderBookData object containing updated bids.
+   */
+  private void updateBids(final OrderBookData data) {
+    for (int i = 0; i < data.getBidCount(); i++) {
+      updatePriceLevel(bids, data.getBidPrice(i), data.getBidAmount(i));
+    }
+  }
+
+  /**
+   * Updates the asks ladder with the ask levels of an update.
+   *
+   * @param data An OrderBookData object containing updated asks.
+   */
+  private void updateAsks(final OrderBookData data) {
+    for (int i = 0; i < data.getAskCount(); i++) {
+      updatePriceLevel(asks, data.getAskPrice(i), data.getAskAmount(i));
+    }
+  }
+
+  /**
+   * Updates a single level of a price ladder and records it in the BookChange
+   * if its amount changed.
+   *
+   * @param targetLadder The ladder to be updated.
+   * @param price        The scaled price of the level.
+   * @param amount       The new scaled amount of the level.
+   */
+  private void updatePriceLevel(final PriceLadder targetLadder,
+      final long price, final long amount) {
+    long oldAmount = targetLadder.getAmount(price);
+    targetLadder.update(price, amount);
+    long newAmount = targetLadder.getAmount(price);
+
+    if (oldAmount != newAmount) {
+      change.record(targetLadder == bids, price, oldAmount, newAmount);
+    }
+  }
+
+  /**
+   * Exports the full depth of the order book by converting the bids and asks
+   * ladders into lists of PriceLevel objects. This allocates a new object per
+   * level and should only be called rarely, such as for dumps or debugging;
+   * the depth views should be used on every update instead. Must be called
+   * from the thread that writes to the order book.
    *
    * @return An OrderBookData instance containing the current depth of the order
-   *         book.
+   *         book and the sequence number of the last applied update.
    */
-  private OrderBookData getDepth() {
+  public OrderBookData exportDepth() {
     List<PriceLevel> askLevelList = mapToPriceLevelList(asks);
     List<PriceLevel> bidLevelList = mapToPriceLevelList(bids);
 
     return OrderBookData.builder().asks(askLevelList).bids(bidLevelList)
-        .build();
+        .seqNum(lastSeqNum).precision(precision).build();
   }
 
   /**
-   * Converts a map of price and amount into a list of PriceLevel objects.
-   *
-   * @param priceMap A map containing price and amount values.
-   * @return A list of PriceLevel objects created from the input map.
+   * Publishes the best levels to the snapshot and passes the BookChange of
+   * the applied update to the change callback.
    */
-  private List<PriceLevel> mapToPriceLevelList(
-      final Map<Double, Double> priceMap) {
-    List<PriceLevel> priceLevelList = new ArrayList<>();
+  private void publish() {
+    snapshot.publish(bids.getView(), asks.getView(), lastSeqNum);
 
-    for (Entry<Double, Double> entry : priceMap.entrySet()) {
-      double price = entry.getKey();
-      double amount = entry.getValue();
-      priceLevelList
-          .add(PriceLevel.builder().amount(amount).price(price).build());
+    if (changeCallback != null) {
+      change.finish(lastSeqNum, bids.getBestPrice(), asks.getBestPrice());
+      changeCallback.onResponse(change);
     }
+  }
+
+  /**
+   * Converts a price ladder into a list of PriceLevel objects ordered from the
+   * best price.
+   *
+   * @param ladder A ladder containing price and amount values.
+   * @return A list of PriceLevel objects created from the input ladder.
+   */
+  private List<PriceLevel> mapToPriceLevelList(final PriceLadder ladder) {
+    List<PriceLevel> priceLevelList = new ArrayList<>(ladder.size());
+
+    ladder.forEachLevel(ladder.size(), (price, amount) -> priceLevelList
+        .add(PriceLevel.builder().amount(amount).price(price).build()));
 
     return priceLevelList;
   }
 
   /**
    * Displays the top levels of the order book, limited by the provided
-   * maxDisplayDepth. The method prints the top bid and ask levels in a tabular
+   * displayDepth. The method prints the top bid and ask levels in a tabular
    * format.
    *
-   * @param maxDisplayDepth The maximum number of bid and ask levels to display.
+   * @param displayDepth The maximum number of bid and ask levels to display.
    */
-  private void display(final int maxDisplayDepth) {
-    OrderBookData depthData = getDepth();
+  private void display(final int displayDepth) {
+    DepthView askView = asks.getView();
+    DepthView bidView = bids.getView();
 
-    List<PriceLevel> dataAsks = depthData.getAsks();
-    List<PriceLevel> dataBids = depthData.getBids();
-
-    if (dataAsks.size() < maxDisplayDepth
-        || dataBids.size() < maxDisplayDepth) {
+    if (askView.size() < displayDepth || bidView.size() < displayDepth) {
       return;
     }
 
-    List<PriceLevel> askLevels = dataAsks.subList(0, maxDisplayDepth);
-    List<PriceLevel> bidLevels = dataBids.subList(0, maxDisplayDepth);
-    Collections.reverse(askLevels);
     System.out.printf("%-10.10s  %-10.10s  %-10.10s%n", "SIDE", "PRICE",
         "AMOUNT");
 
-    askLevels.forEach(ask -> System.out.printf("%-10.10s  %-10.10s  %-10.10s%n",
-        "ASK", ask.getPrice(), ask.getAmount()));
-    bidLevels.forEach(bid -> System.out.printf("%-10.10s  %-10.10s  %-10.10s%n",
-        "BID", bid.getPrice(), bid.getAmount()));
+    for (int i = displayDepth - 1; i >= 0; i--) {
+      printLevel("ASK", askView.getPrice(i), askView.getAmount(i));
+    }
+
+    for (int i = 0; i < displayDepth; i++) {
+      printLevel("BID", bidView.getPrice(i), bidView.getAmount(i));
+    }
+  }
+
+  /**
+   * Prints a single level of the order book as a table row.
+   *
+   * @param side   The side label of the level.
+   * @param price  The scaled price of the level.
+   * @param amount The scaled amount of the level.
+   */
+  private void printLevel(final String side, final long price,
+      final long amount) {
+    System.out.printf("%-10.10s  %-10.10s  %-10.10s%n", side,
+        FixedPoint.toString(price, precision.getPriceScale()),
+        FixedPoint.toString(amount, precision.getAmountScale()));
   }
 }
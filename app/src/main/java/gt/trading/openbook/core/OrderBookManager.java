@@ -0,0 +1,233 @@
+package gt.trading.openbook.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import gt.trading.openbook.listeners.ArbitratedFeed;
+import gt.trading.openbook.listeners.Callback;
+import gt.trading.openbook.listeners.ConnectionManager;
+import gt.trading.openbook.listeners.ConnectionPool;
+import gt.trading.openbook.listeners.FeedArbiter;
+import gt.trading.openbook.listeners.MarketListener;
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+
+/**
+ * The OrderBookManager class owns the order books of many symbols whose market
+ * by price feeds share a pool of OrderBookListener connections, filled up to
+ * the channel limit of a ConnectionManager. Each symbol is pinned to one of a
+ * fixed number of worker shards, and every update of a book is applied on its
+ * shard's thread, so a book only ever has one writer and needs no locks.
+ * Updates reach a shard through its ShardRing, whose preallocated slots they
+ * are copied into, so handing them over allocates nothing.
+ *
+ * The feed may be received over redundant legs, one pool of connections per
+ * endpoint, in which case each book's updates are merged by an ArbitratedFeed
+ * and applied once, from whichever leg delivered them first. A book requests
+ * snapshots on, and resynchronizes after reconnections of, its first leg,
+ * while losing any other leg costs nothing but the redundancy.
+ *
+ * Adding a symbol only takes a call to subscribe.
+ */
+public final class OrderBookManager {
+  private static final String FEED_URI = "wss://api-aws.huobi.pro/feed";
+  private static final int DEFAULT_VIEW_DEPTH = 20;
+  private static final int SHARD_SLOTS = 1024;
+  private final List<ConnectionPool<OrderBookListener>> pools =
+      new ArrayList<>();
+  private final ShardRing[] shards;
+  private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+  private final Map<String, FeedArbiter<OrderBookData>> arbiters =
+      new ConcurrentHashMap<>();
+  private static final Logger LOGGER = Logger
+      .getLogger(OrderBookManager.class.getName());
+
+  /**
+   * Constructs a new OrderBookManager with a pool of connections to the market
+   * by price feed, and starts the worker shards. Connections are opened as
+   * symbols are subscribed.
+   *
+   * @param connections the manager owning the shared WebSocket container
+   * @param shardCount  the number of worker threads applying updates
+   * @throws IllegalArgumentException if the shard count is not positive
+   */
+  public OrderBookManager(final ConnectionManager connections,
+      final int shardCount) throws IllegalArgumentException {
+    this(connections, shardCount, FEED_URI);
+  }
+
+  /**
+   * Constructs a new OrderBookManager with a pool of connections to a market
+   * by price endpoint other than Huobi's, such as a local FeedServer, and
+   * starts the worker shards.
+   *
+   * @param connections the manager owning the shared WebSocket container
+   * @param shardCount  the number of worker threads applying updates
+   * @param feedUri     the URI of the market by price endpoint
+   * @throws IllegalArgumentException if the shard count is not positive
+   */
+  public OrderBookManager(final ConnectionManager connections,
+      final int shardCount, final String feedUri)
+      throws IllegalArgumentException {
+    this(connections, shardCount, List.of(feedUri));
+  }
+
+  /**
+   * Constructs a new OrderBookManager which receives the market by price feed
+   * over a redundant leg per endpoint, and starts the worker shards. With a
+   * single endpoint no arbitration takes place.
+   *
+   * @param connections the manager owning the shared WebSocket container
+   * @param shardCount  the number of worker threads applying updates
+   * @param feedUris    the URIs of the legs, the first of which carries
+   *                    snapshot requests
+   * @throws IllegalArgumentException if the shard count is not positive or
+   *                                  no endpoint is given
+   */
+  public OrderBookManager(final ConnectionManager connections,
+      final int shardCount, final List<String> feedUris)
+      throws IllegalArgumentException {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException(
+          "Shard count must be greater than 0");
+    }
+
+    if (feedUris.isEmpty()) {
+      throw new IllegalArgumentException("At least one feed URI is needed");
+    }
+
+    for (String feedUri : feedUris) {
+      pools.add(connections.newPool(feedUri, OrderBookListener::new));
+    }
+
+    shards = new ShardRing[shardCount];
+
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new ShardRing("orderbook-shard-" + i, SHARD_SLOTS);
+      shards[i].start();
+    }
+  }
+
+  /**
+   * Creates an order book for a symbol and subscribes to its market by price
+   * feed at the default depth of 400 levels.
+   *
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
+   * @return the order book of the symbol
+   */
+  public OrderBook subscribe(final String symbol, final Precision precision) {
+    return subscribe(symbol, OrderBookListener.DEFAULT_DEPTH, precision);
+  }
+
+  /**
+   * Creates an order book for a symbol and subscribes to its market by price
+   * feed at the given depth. The book keeps at most that many levels per side.
+   * Updates are applied on the shard the symbol is pinned to, so each one is
+   * copied into a slot of the shard's ring, since the listener reuses its
+   * OrderBookData once the callback returns. With redundant legs, the symbol
+   * is placed on a connection of every leg and its updates are arbitrated by
+   * sequence number before they reach the shard. If the symbol is already
+   * subscribed, its existing order book is returned.
+   *
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param depth     the number of levels per side, one of 5, 20, 150 or 400
+   * @param precision the precision of the symbol's prices and amounts
+   * @return the order book of the symbol
+   * @throws IllegalArgumentException if the depth is not offered by Huobi
+   */
+  public synchronized OrderBook subscribe(final String symbol,
+      final int depth, final Precision precision)
+      throws IllegalArgumentException {
+    OrderBook existing = books.get(symbol);
+
+    if (existing != null) {
+      return existing;
+    }
+
+    ShardRing shard = shards[getShard(symbol)];
+    OrderBookListener[] legs = new OrderBookListener[pools.size()];
+
+    for (int i = 0; i < legs.length; i++) {
+      legs[i] = pools.get(i).place(listener -> listener);
+    }
+
+    OrderBook book = new OrderBook(symbol, precision, legs[0],
+        Math.min(DEFAULT_VIEW_DEPTH, depth), depth);
+    Callback<OrderBookData> toShard = data -> shard.offer(book, data);
+
+    if (legs.length == 1) {
+      legs[0].subscribeMbp(symbol, depth, precision, toShard);
+    } else {
+      arbiters.put(symbol, new ArbitratedFeed(legs, new MarketListener[0])
+          .subscribeMbp(symbol, depth, precision, toShard));
+    }
+
+    books.put(symbol, book);
+    LOGGER.info("Subscribed " + symbol + " on shard " + getShard(symbol));
+
+    return book;
+  }
+
+  /**
+   * Returns the order book of a symbol. The ladders of the book should only be
+   * read from the thread of its shard, while its snapshot may be read from any
+   * thread.
+   *
+   * @param symbol the symbol of the order book
+   * @return the order book, or null if the symbol is not subscribed
+   */
+  public OrderBook getBook(final String symbol) {
+    return books.get(symbol);
+  }
+
+  /**
+   * Returns the arbiter merging the legs of a symbol's feed, which counts the
+   * updates each leg delivered first.
+   *
+   * @param symbol the symbol of the order book
+   * @return the arbiter, or null if the symbol is not subscribed or the feed
+   *         has a single leg
+   */
+  public FeedArbiter<OrderBookData> getArbiter(final String symbol) {
+    return arbiters.get(symbol);
+  }
+
+  /**
+   * Returns the order books of every subscribed symbol.
+   *
+   * @return an unmodifiable view of the order books
+   */
+  public Collection<OrderBook> getBooks() {
+    return Collections.unmodifiableCollection(books.values());
+  }
+
+  /**
+   * Returns the shard a symbol is pinned to.
+   *
+   * @param symbol the symbol to look up
+   * @return the index of the shard
+   */
+  public int getShard(final String symbol) {
+    return Math.floorMod(symbol.hashCode(), shards.length);
+  }
+
+  /**
+   * Stops the manager by closing its pools of WebSocket connections and
+   * shutting down the worker shards. The ConnectionManager is left open for
+   * its other pools.
+   */
+  public void stop() {
+    pools.forEach(ConnectionPool::close);
+
+    for (ShardRing shard : shards) {
+      shard.close();
+    }
+  }
+}
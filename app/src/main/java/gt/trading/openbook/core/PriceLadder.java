@@ -0,0 +1,749 @@
+package gt.trading.openbook.core;
+
+import java.util.Arrays;
+
+import gt.trading.openbook.models.Precision;
+
+/**
+ * The PriceLadder class represents one side of an order book as a primitive
+ * array of amounts indexed by integer price ticks. Prices and amounts are fixed
+ * point values scaled by the precision of the instrument, and a tick is the
+ * instrument's price tick, so the window covers the same number of real ticks
+ * however fine the price scale is. The ladder keeps a window of ticks around
+ * the best price which is recentered when the market moves outside of it.
+ *
+ * Recentering evicts the levels which fall out of the far end of the window,
+ * and a new level too far from the best price to fit, or off the tick grid,
+ * is dropped. Both are counted and reported to listeners, so that the owning
+ * order book can record evictions as removals and resynchronize after a drop
+ * rather than silently diverge from the exchange.
+ *
+ * Level updates are O(1), the best level is tracked incrementally, and levels
+ * can be walked from the best price outwards without allocating. A bitset of
+ * occupied positions lets the walk and the search for a new best level skip
+ * 64 empty ticks at a time, so a thin book costs little to scan. The best N
+ * levels are also kept in a DepthView which is updated as levels change, and
+ * an optional LadderIndex answers cumulative depth queries in O(log n). The
+ * ladder is only mutated by the OrderBook that owns it; other classes should
+ * use the read methods.
+ *
+ * A ladder may be capped to a maximum depth. Feeds of limited depth never send
+ * a removal for levels pushed out of the top levels, so when a new level makes
+ * the ladder deeper than the cap, the worst level is pruned.
+ */
+public final class PriceLadder {
+  /**
+   * The price returned when a ladder has no levels.
+   */
+  public static final long NO_PRICE = Long.MIN_VALUE;
+  private static final int DEFAULT_CAPACITY = 1 << 16;
+  private static final int DEFAULT_VIEW_DEPTH = 20;
+  private final Side side;
+  private final Precision precision;
+  private final long tickSize;
+  private final int capacity;
+  private final long[] amounts;
+  private final long[] occupied;
+  private final DepthView view;
+  private LadderIndex depthIndex;
+  private LevelConsumer removalListener;
+  private LevelConsumer dropListener;
+  private long baseTick = 0L;
+  private int bestIndex = -1;
+  private int worstIndex = -1;
+  private int levelCount = 0;
+  private int maxDepth = 0;
+  private long prunedCount = 0L;
+  private long evictedCount = 0L;
+  private long droppedCount = 0L;
+
+  /**
+   * The Side enum represents which side of the book a ladder holds. Bids are
+   * ordered from the highest price and asks from the lowest price.
+   */
+  public enum Side {
+    BID, ASK
+  }
+
+  /**
+   * Functional interface for visiting the levels of a ladder without
+   * allocating intermediate objects.
+   */
+  @FunctionalInterface
+  public interface LevelConsumer {
+    /**
+     * Called for each level visited, starting from the best price.
+     *
+     * @param price  the scaled price of the level
+     * @param amount the scaled amount resting at the level
+     */
+    void accept(long price, long amount);
+  }
+
+  /**
+   * Constructs a PriceLadder with the default window capacity and view depth.
+   *
+   * @param ladderSide   the side of the book this ladder represents
+   * @param newPrecision the precision of the instrument
+   */
+  public PriceLadder(final Side ladderSide, final Precision newPrecision) {
+    this(ladderSide, newPrecision, DEFAULT_CAPACITY, DEFAULT_VIEW_DEPTH);
+  }
+
+  /**
+   * Constructs a PriceLadder with the given window capacity and view depth.
+   *
+   * @param ladderSide   the side of the book this ladder represents
+   * @param newPrecision the precision of the instrument
+   * @param newCapacity  the number of price ticks held in the window
+   * @param viewDepth    the number of best levels kept in the depth view
+   * @throws IllegalArgumentException if the capacity or depth is not positive
+   */
+  public PriceLadder(final Side ladderSide, final Precision newPrecision,
+      final int newCapacity, final int viewDepth)
+      throws IllegalArgumentException {
+    if (newCapacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than 0");
+    }
+
+    side = ladderSide;
+    precision = newPrecision;
+    tickSize = newPrecision.getPriceTick();
+    capacity = newCapacity;
+    amounts = new long[newCapacity];
+    occupied = new long[(newCapacity + Long.SIZE - 1) / Long.SIZE];
+    view = new DepthView(ladderSide, viewDepth);
+  }
+
+  /**
+   * Returns the side of the book this ladder represents.
+   *
+   * @return the side enum
+   */
+  public Side getSide() {
+    return side;
+  }
+
+  /**
+   * Returns the precision used to scale prices and amounts.
+   *
+   * @return the precision of the instrument
+   */
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Returns the incrementally maintained view of the best levels.
+   *
+   * @return the depth view
+   */
+  public DepthView getView() {
+    return view;
+  }
+
+  /**
+   * Returns the cumulative depth index of the ladder, if it was enabled.
+   *
+   * @return the ladder index, or null if it is not enabled
+   */
+  public LadderIndex getIndex() {
+    return depthIndex;
+  }
+
+  /**
+   * Returns the maximum number of levels kept.
+   *
+   * @return the depth cap, or 0 if the ladder is not capped
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Returns how many levels were pruned for exceeding the depth cap.
+   *
+   * @return the number of pruned levels
+   */
+  public long getPrunedCount() {
+    return prunedCount;
+  }
+
+  /**
+   * Returns how many levels were evicted because recentering moved the window
+   * away from them.
+   *
+   * @return the number of evicted levels
+   */
+  public long getEvictedCount() {
+    return evictedCount;
+  }
+
+  /**
+   * Returns how many new levels were dropped because they did not fit inside
+   * the window or were off the tick grid.
+   *
+   * @return the number of dropped levels
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Returns the number of price levels with a positive amount.
+   *
+   * @return the number of levels
+   */
+  public int size() {
+    return levelCount;
+  }
+
+  /**
+   * Returns whether the ladder holds no levels.
+   *
+   * @return true if the ladder is empty
+   */
+  public boolean isEmpty() {
+    return levelCount == 0;
+  }
+
+  /**
+   * Returns the scaled best price on this side of the book.
+   *
+   * @return the best price, or NO_PRICE if the ladder is empty
+   */
+  public long getBestPrice() {
+    return bestIndex < 0 ? NO_PRICE : priceAt(bestIndex);
+  }
+
+  /**
+   * Returns the scaled amount resting at the best price.
+   *
+   * @return the best amount, or 0 if the ladder is empty
+   */
+  public long getBestAmount() {
+    return bestIndex < 0 ? 0L : amounts[bestIndex];
+  }
+
+  /**
+   * Returns the scaled amount resting at the given scaled price.
+   *
+   * @param price the price to look up
+   * @return the amount at the price, or 0 if there is no level
+   */
+  public long getAmount(final long price) {
+    int index = indexOf(price);
+    return index < 0 ? 0L : amounts[index];
+  }
+
+  /**
+   * Returns the ladder position of the best level. Together with next, this
+   * allows walking the levels from the best price outwards without allocating.
+   *
+   * @return the position of the best level, or -1 if the ladder is empty
+   */
+  public int first() {
+    return bestIndex;
+  }
+
+  /**
+   * Returns the ladder position of the next worse level after the given one.
+   *
+   * @param index a position previously returned by first or next
+   * @return the position of the next level, or -1 if there are no more levels
+   */
+  public int next(final int index) {
+    return side == Side.BID ? occupiedAtOrBelow(index - 1)
+        : occupiedAtOrAbove(index + 1);
+  }
+
+  /**
+   * Returns the scaled price of the level at the given ladder position.
+   *
+   * @param index a position returned by first or next
+   * @return the price at the position
+   */
+  public long priceAt(final int index) {
+    return (baseTick + index) * tickSize;
+  }
+
+  /**
+   * Returns the price tick the ladder is indexed by.
+   *
+   * @return the price tick in scaled units
+   */
+  public long getTickSize() {
+    return tickSize;
+  }
+
+  /**
+   * Returns the scaled amount of the level at the given ladder position.
+   *
+   * @param index a position returned by first or next
+   * @return the amount at the position
+   */
+  public long amountAt(final int index) {
+    return amounts[index];
+  }
+
+  /**
+   * Visits up to maxLevels levels starting from the best price.
+   *
+   * @param maxLevels the maximum number of levels to visit
+   * @param consumer  the consumer receiving each price and amount
+   * @return the number of levels visited
+   */
+  public int forEachLevel(final int maxLevels, final LevelConsumer consumer) {
+    int visited = 0;
+
+    for (int i = first(); i >= 0 && visited < maxLevels; i = next(i)) {
+      consumer.accept(priceAt(i), amounts[i]);
+      visited++;
+    }
+
+    return visited;
+  }
+
+  /**
+   * Sets the amount at the given price, removing the level if the amount is not
+   * positive. Levels which fall outside of the window after recentering around
+   * the best price are evicted, a new level which cannot fit is dropped, and
+   * the worst level is pruned if a new level exceeds the depth cap.
+   *
+   * @param price  the scaled price of the level
+   * @param amount the new scaled amount of the level
+   */
+  void update(final long price, final long amount) {
+    if (price % tickSize != 0) {
+      if (amount > 0) {
+        drop(price, amount);
+      }
+
+      return;
+    }
+
+    long tick = Math.floorDiv(price, tickSize);
+    long offset = tick - baseTick;
+
+    if (offset < 0 || offset >= capacity || levelCount == 0) {
+      if (amount <= 0) {
+        return;
+      }
+
+      if (!recenter(tick)) {
+        drop(price, amount);
+        return;
+      }
+
+      offset = tick - baseTick;
+    }
+
+    int position = (int) offset;
+    long previous = amounts[position];
+    boolean existed = previous > 0;
+
+    if (amount <= 0) {
+      if (existed) {
+        removeAt(position);
+      }
+
+      return;
+    }
+
+    amounts[position] = amount;
+
+    if (depthIndex != null) {
+      depthIndex.add(position, amount - previous);
+    }
+
+    if (!existed) {
+      occupied[position >>> 6] |= 1L << position;
+      levelCount++;
+
+      if (bestIndex < 0 || isBetter(position, bestIndex)) {
+        bestIndex = position;
+      }
+
+      if (worstIndex < 0 || isBetter(worstIndex, position)) {
+        worstIndex = position;
+      }
+    }
+
+    view.put(price, amount);
+
+    if (!existed) {
+      prune();
+    }
+  }
+
+  /**
+   * Caps the ladder to a maximum number of levels, pruning the worst levels
+   * right away if it is already deeper.
+   *
+   * @param newMaxDepth the maximum number of levels, or 0 for no cap
+   * @throws IllegalArgumentException if the depth is negative
+   */
+  void setMaxDepth(final int newMaxDepth) throws IllegalArgumentException {
+    if (newMaxDepth < 0) {
+      throw new IllegalArgumentException("Depth cannot be less than 0");
+    }
+
+    maxDepth = newMaxDepth;
+    prune();
+  }
+
+  /**
+   * Sets the consumer told about each level the ladder removes by itself,
+   * pruned by the depth cap or evicted by recentering, with the amount the
+   * level had.
+   *
+   * @param listener the consumer of removed levels, or null for none
+   */
+  void setRemovalListener(final LevelConsumer listener) {
+    removalListener = listener;
+  }
+
+  /**
+   * Sets the consumer told about each new level dropped because it could not
+   * be held, with the amount it would have had.
+   *
+   * @param listener the consumer of dropped levels, or null for none
+   */
+  void setDropListener(final LevelConsumer listener) {
+    dropListener = listener;
+  }
+
+  /**
+   * Returns the ladder position of a price inside the window.
+   *
+   * @param price the scaled price
+   * @return the position of the price, or -1 if it is outside the window or
+   *         off the tick grid
+   */
+  int indexOf(final long price) {
+    if (price % tickSize != 0) {
+      return -1;
+    }
+
+    long offset = price / tickSize - baseTick;
+    return offset < 0 || offset >= capacity ? -1 : (int) offset;
+  }
+
+  /**
+   * Returns the offset of a price from the start of the window in ticks, which
+   * may lie outside the window. A price off the tick grid is rounded to the
+   * tick above or below it.
+   *
+   * @param price   the scaled price
+   * @param roundUp true to round up to the next tick, false to round down
+   * @return the offset in ticks
+   */
+  long tickOffset(final long price, final boolean roundUp) {
+    long tick = roundUp ? -Math.floorDiv(-price, tickSize)
+        : Math.floorDiv(price, tickSize);
+    return tick - baseTick;
+  }
+
+  /**
+   * Removes every level from the ladder.
+   */
+  void clear() {
+    if (levelCount > 0) {
+      Arrays.fill(amounts, 0L);
+      Arrays.fill(occupied, 0L);
+    }
+
+    levelCount = 0;
+    bestIndex = -1;
+    worstIndex = -1;
+    view.clear();
+
+    if (depthIndex != null) {
+      depthIndex.clear();
+    }
+  }
+
+  /**
+   * Creates the cumulative depth index of the ladder from its current levels.
+   * Does nothing if the index is already enabled.
+   */
+  void enableIndex() {
+    if (depthIndex == null) {
+      depthIndex = new LadderIndex(this, capacity);
+      depthIndex.rebuild(amounts);
+    }
+  }
+
+  /**
+   * Removes the worst levels while the ladder is deeper than its cap.
+   */
+  private void prune() {
+    while (maxDepth > 0 && levelCount > maxDepth) {
+      int position = worstIndex;
+      long amount = amounts[position];
+      removeAt(position);
+      prunedCount++;
+
+      if (removalListener != null) {
+        removalListener.accept(priceAt(position), amount);
+      }
+    }
+  }
+
+  /**
+   * Removes the level at a position which holds a positive amount.
+   *
+   * @param position the ladder position of the level
+   */
+  private void removeAt(final int position) {
+    long previous = amounts[position];
+    amounts[position] = 0L;
+    occupied[position >>> 6] &= ~(1L << position);
+
+    if (depthIndex != null) {
+      depthIndex.add(position, -previous);
+    }
+
+    levelCount--;
+
+    if (levelCount == 0) {
+      bestIndex = -1;
+      worstIndex = -1;
+    } else if (position == bestIndex) {
+      bestIndex = next(position);
+    } else if (position == worstIndex) {
+      worstIndex = previous(position);
+    }
+
+    view.remove(priceAt(position), this);
+  }
+
+  /**
+   * Returns the ladder position of the next better level before the given one.
+   *
+   * @param index a position holding a level
+   * @return the position of the previous level, or -1 if it is the best
+   */
+  private int previous(final int index) {
+    return side == Side.BID ? occupiedAtOrAbove(index + 1)
+        : occupiedAtOrBelow(index - 1);
+  }
+
+  /**
+   * Returns the lowest occupied position at or above the given one.
+   *
+   * @param from the position to start from
+   * @return the occupied position, or -1 if there is none
+   */
+  private int occupiedAtOrAbove(final int from) {
+    if (from >= capacity) {
+      return -1;
+    }
+
+    int word = from >>> 6;
+    long bits = occupied[word] & -1L << from;
+
+    while (bits == 0) {
+      if (++word == occupied.length) {
+        return -1;
+      }
+
+      bits = occupied[word];
+    }
+
+    return (word << 6) + Long.numberOfTrailingZeros(bits);
+  }
+
+  /**
+   * Returns the highest occupied position at or below the given one.
+   *
+   * @param from the position to start from
+   * @return the occupied position, or -1 if there is none
+   */
+  private int occupiedAtOrBelow(final int from) {
+    if (from < 0) {
+      return -1;
+    }
+
+    int word = from >>> 6;
+    long bits = occupied[word] & -1L >>> ~from;
+
+    while (bits == 0) {
+      if (--word < 0) {
+        return -1;
+      }
+
+      bits = occupied[word];
+    }
+
+    return (word << 6) + Long.SIZE - 1 - Long.numberOfLeadingZeros(bits);
+  }
+
+  /**
+   * Moves the window so that it is centered on the best price, or on the given
+   * tick if it would become the new best price or the ladder is empty.
+   *
+   * @param tick the tick that needs to fit inside the window
+   * @return true if the tick fits inside the window after recentering
+   */
+  private boolean recenter(final long tick) {
+    long anchor = tick;
+
+    if (levelCount > 0) {
+      long bestTick = baseTick + bestIndex;
+      boolean tickIsBetter = side == Side.BID ? tick > bestTick
+          : tick < bestTick;
+      anchor = tickIsBetter ? tick : bestTick;
+    }
+
+    long newBaseTick = anchor - capacity / 2;
+
+    if (tick < newBaseTick || tick >= newBaseTick + capacity) {
+      return false;
+    }
+
+    long shift = newBaseTick - baseTick;
+
+    if (levelCount == 0) {
+      baseTick = newBaseTick;
+      return true;
+    }
+
+    if (Math.abs(shift) >= capacity) {
+      evict(0, capacity);
+      baseTick = newBaseTick;
+      clear();
+      return true;
+    }
+
+    int distance = (int) Math.abs(shift);
+
+    if (shift > 0) {
+      evict(0, distance);
+    } else {
+      evict(capacity - distance, capacity);
+    }
+
+    baseTick = newBaseTick;
+
+    if (shift > 0) {
+      System.arraycopy(amounts, distance, amounts, 0, capacity - distance);
+      Arrays.fill(amounts, capacity - distance, capacity, 0L);
+      shiftOccupiedDown(distance);
+    } else {
+      System.arraycopy(amounts, 0, amounts, distance, capacity - distance);
+      Arrays.fill(amounts, 0, distance, 0L);
+      shiftOccupiedUp(distance);
+    }
+
+    recount();
+    view.rebuild(this);
+
+    if (depthIndex != null) {
+      depthIndex.rebuild(amounts);
+    }
+
+    return true;
+  }
+
+  /**
+   * Counts and reports the levels in a range of positions which are about to
+   * leave the window. Must be called before the window moves.
+   *
+   * @param from the first position, inclusive
+   * @param to   the last position, exclusive
+   */
+  private void evict(final int from, final int to) {
+    for (int i = occupiedAtOrAbove(from); i >= 0 && i < to;
+        i = occupiedAtOrAbove(i + 1)) {
+      evictedCount++;
+
+      if (removalListener != null) {
+        removalListener.accept(priceAt(i), amounts[i]);
+      }
+    }
+  }
+
+  /**
+   * Moves the occupied bits towards lower positions, as the window moved up.
+   *
+   * @param distance the number of positions moved, less than the capacity
+   */
+  private void shiftOccupiedDown(final int distance) {
+    int words = distance >>> 6;
+    int bits = distance & 63;
+
+    for (int i = 0; i < occupied.length; i++) {
+      int source = i + words;
+      long low = source < occupied.length ? occupied[source] >>> bits : 0L;
+      long high = bits != 0 && source + 1 < occupied.length
+          ? occupied[source + 1] << -bits : 0L;
+      occupied[i] = low | high;
+    }
+  }
+
+  /**
+   * Moves the occupied bits towards higher positions, as the window moved
+   * down, and clears the bits pushed past the capacity.
+   *
+   * @param distance the number of positions moved, less than the capacity
+   */
+  private void shiftOccupiedUp(final int distance) {
+    int words = distance >>> 6;
+    int bits = distance & 63;
+
+    for (int i = occupied.length - 1; i >= 0; i--) {
+      int source = i - words;
+      long high = source >= 0 ? occupied[source] << bits : 0L;
+      long low = bits != 0 && source > 0 ? occupied[source - 1] >>> -bits
+          : 0L;
+      occupied[i] = high | low;
+    }
+
+    if (capacity % Long.SIZE != 0) {
+      occupied[occupied.length - 1] &= -1L >>> -capacity;
+    }
+  }
+
+  /**
+   * Counts and reports a new level which cannot be held.
+   *
+   * @param price  the scaled price of the level
+   * @param amount the scaled amount of the level
+   */
+  private void drop(final long price, final long amount) {
+    droppedCount++;
+
+    if (dropListener != null) {
+      dropListener.accept(price, amount);
+    }
+  }
+
+  /**
+   * Recomputes the level count and the best and worst positions after the
+   * window moved.
+   */
+  private void recount() {
+    levelCount = 0;
+
+    for (long word : occupied) {
+      levelCount += Long.bitCount(word);
+    }
+
+    int lowest = occupiedAtOrAbove(0);
+    int highest = occupiedAtOrBelow(capacity - 1);
+    bestIndex = side == Side.BID ? highest : lowest;
+    worstIndex = side == Side.BID ? lowest : highest;
+  }
+
+  /**
+   * Returns whether the first position has a better price than the second.
+   *
+   * @param index the position to compare
+   * @param other the position to compare against
+   * @return true if index is the better price for this side
+   */
+  private boolean isBetter(final int index, final int other) {
+    return side == Side.BID ? index > other : index < other;
+  }
+}
@@ -0,0 +1,120 @@
+package gt.trading.openbook.core;
+
+/**
+ * The RefreshThrottle class decides when an order book may send a snapshot
+ * request. Only one request is outstanding at a time, and consecutive requests
+ * that do not lead to a usable snapshot are spaced by an exponential backoff.
+ * A request that gets no answer within the timeout is considered lost and may
+ * be sent again.
+ */
+public final class RefreshThrottle {
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+  private final long initialBackoffNanos;
+  private final long maxBackoffNanos;
+  private final long timeoutNanos;
+  private long backoffNanos;
+  private long nextAllowedAt = 0L;
+  private boolean backingOff = false;
+  private long sentAt = 0L;
+  private boolean wanted = false;
+  private boolean inFlight = false;
+  private long sentCount = 0L;
+
+  /**
+   * Constructs a RefreshThrottle.
+   *
+   * @param initialBackoffMillis the wait after the first unsuccessful request
+   * @param maxBackoffMillis     the longest wait between requests
+   * @param timeoutMillis        how long to wait for a snapshot before
+   *                             considering a request lost
+   */
+  public RefreshThrottle(final long initialBackoffMillis,
+      final long maxBackoffMillis, final long timeoutMillis) {
+    initialBackoffNanos = initialBackoffMillis * NANOS_PER_MILLI;
+    maxBackoffNanos = maxBackoffMillis * NANOS_PER_MILLI;
+    timeoutNanos = timeoutMillis * NANOS_PER_MILLI;
+    backoffNanos = initialBackoffNanos;
+  }
+
+  /**
+   * Marks a snapshot as needed and checks whether it may be sent now.
+   *
+   * @param now the current time from System.nanoTime
+   * @return true if the caller should send the snapshot request
+   */
+  public boolean request(final long now) {
+    wanted = true;
+    return poll(now);
+  }
+
+  /**
+   * Checks whether a needed snapshot request may be sent now. This should be
+   * called regularly, such as on every update, so that deferred requests are
+   * sent once their backoff has passed.
+   *
+   * @param now the current time from System.nanoTime
+   * @return true if the caller should send the snapshot request
+   */
+  public boolean poll(final long now) {
+    if (inFlight && now - sentAt > timeoutNanos) {
+      inFlight = false;
+    }
+
+    if (!wanted || inFlight || backingOff && now - nextAllowedAt < 0) {
+      return false;
+    }
+
+    inFlight = true;
+    backingOff = true;
+    sentAt = now;
+    nextAllowedAt = now + backoffNanos;
+    backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+    sentCount++;
+    return true;
+  }
+
+  /**
+   * Records that a snapshot arrived.
+   *
+   * @param applied true if the snapshot was usable, which resets the backoff
+   */
+  public void onSnapshot(final boolean applied) {
+    inFlight = false;
+
+    if (applied) {
+      wanted = false;
+      backoffNanos = initialBackoffNanos;
+      backingOff = false;
+    }
+  }
+
+  /**
+   * Forgets any outstanding request and resets the backoff, such as after a
+   * reconnection, when a request sent on the old connection will never be
+   * answered.
+   */
+  public void reset() {
+    wanted = false;
+    inFlight = false;
+    backoffNanos = initialBackoffNanos;
+    backingOff = false;
+  }
+
+  /**
+   * Returns whether a snapshot request is waiting for its answer.
+   *
+   * @return true if a request is outstanding
+   */
+  public boolean isInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Returns how many snapshot requests have been allowed.
+   *
+   * @return the number of requests sent
+   */
+  public long getSentCount() {
+    return sentCount;
+  }
+}
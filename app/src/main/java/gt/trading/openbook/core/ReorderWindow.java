@@ -0,0 +1,156 @@
+package gt.trading.openbook.core;
+
+import gt.trading.openbook.models.OrderBookData;
+
+/**
+ * The ReorderWindow class holds incremental updates which arrived before the
+ * update they follow, keyed by their previous sequence number. When the missing
+ * update arrives, the held updates are taken back in sequence order, so a
+ * transient reordering does not force a snapshot refresh.
+ *
+ * The window has a count budget and a time budget. Once either is exceeded the
+ * gap is treated as a real loss and the order book should resynchronize.
+ *
+ * Updates are copied into OrderBookData slots allocated up front, since the
+ * listener reuses its own instance for the next message, so holding an update
+ * never allocates once the slots have grown to the largest update.
+ */
+public final class ReorderWindow {
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+  private final OrderBookData[] held;
+  private final long maxWaitNanos;
+  private int count = 0;
+  private long firstHeldAt = 0L;
+  private long recoveredCount = 0L;
+  private long expiredCount = 0L;
+
+  /**
+   * Constructs a ReorderWindow with a count and time budget.
+   *
+   * @param maxHeld       the maximum number of updates held at once
+   * @param maxWaitMillis the longest time a gap may stay open
+   * @throws IllegalArgumentException if a budget is negative
+   */
+  public ReorderWindow(final int maxHeld, final long maxWaitMillis)
+      throws IllegalArgumentException {
+    if (maxHeld < 0 || maxWaitMillis < 0) {
+      throw new IllegalArgumentException("Budgets cannot be less than 0");
+    }
+
+    held = new OrderBookData[maxHeld];
+
+    for (int i = 0; i < maxHeld; i++) {
+      held[i] = new OrderBookData();
+    }
+
+    maxWaitNanos = maxWaitMillis * NANOS_PER_MILLI;
+  }
+
+  /**
+   * Holds a copy of an update which arrived early. An update with the same
+   * previous sequence number as a held one replaces it.
+   *
+   * @param data the early update
+   * @param now  the current time from System.nanoTime
+   * @return true if the update is held and the gap is still within budget,
+   *         false if the gap should be treated as a loss
+   */
+  public boolean hold(final OrderBookData data, final long now) {
+    if (count == 0) {
+      firstHeldAt = now;
+    } else if (now - firstHeldAt > maxWaitNanos) {
+      expire();
+      return false;
+    }
+
+    for (int i = 0; i < count; i++) {
+      if (held[i].getPrevSeqNum() == data.getPrevSeqNum()) {
+        held[i].copyFrom(data);
+        return true;
+      }
+    }
+
+    if (count == held.length) {
+      expire();
+      return false;
+    }
+
+    held[count++].copyFrom(data);
+    return true;
+  }
+
+  /**
+   * Takes the held update which follows the given sequence number. Held
+   * updates which are already behind it are discarded. The returned update is
+   * owned by the window and is only valid until the next call to hold or take.
+   *
+   * @param lastSeqNum the sequence number of the last applied update
+   * @return the next update, or null if it has not arrived yet
+   */
+  public OrderBookData take(final long lastSeqNum) {
+    OrderBookData next = null;
+    int kept = 0;
+
+    for (int i = 0; i < count; i++) {
+      long prevSeqNum = held[i].getPrevSeqNum();
+
+      if (prevSeqNum == lastSeqNum) {
+        next = held[i];
+      } else if (prevSeqNum > lastSeqNum) {
+        OrderBookData slot = held[kept];
+        held[kept++] = held[i];
+        held[i] = slot;
+      }
+    }
+
+    count = kept;
+
+    if (next != null) {
+      recoveredCount++;
+    }
+
+    return next;
+  }
+
+  /**
+   * Removes every held update.
+   */
+  public void clear() {
+    count = 0;
+  }
+
+  /**
+   * Returns the number of updates currently held.
+   *
+   * @return the number of held updates
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Returns how many held updates were applied after their gap filled.
+   *
+   * @return the number of recovered updates
+   */
+  public long getRecoveredCount() {
+    return recoveredCount;
+  }
+
+  /**
+   * Returns how many gaps exceeded the budget and were treated as a loss.
+   *
+   * @return the number of expired gaps
+   */
+  public long getExpiredCount() {
+    return expiredCount;
+  }
+
+  /**
+   * Drops every held update after the budget was exceeded.
+   */
+  private void expire() {
+    expiredCount++;
+    clear();
+  }
+}
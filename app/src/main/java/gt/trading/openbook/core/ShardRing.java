@@ -0,0 +1,207 @@
+package gt.trading.openbook.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import gt.trading.openbook.models.OrderBookData;
+
+/**
+ * The ShardRing class hands order book updates from the listener threads to
+ * the thread of one OrderBookManager shard. It is a bounded ring of
+ * preallocated OrderBookData slots which producers copy updates into, so
+ * handing an update over allocates nothing once the slots have grown to the
+ * largest update they held.
+ *
+ * Any number of listener threads may offer updates, each claiming a slot with
+ * a compare and set on the head and publishing it through the slot's
+ * sequence. The shard's own thread applies the updates in slot order to the
+ * order book each was offered for. When the ring is full a producer yields
+ * until a slot frees up rather than dropping an update, since every market
+ * by price update is needed, and the wait is counted as a stall.
+ */
+final class ShardRing {
+  private static final Logger LOGGER = Logger
+      .getLogger(ShardRing.class.getName());
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private final OrderBookData[] slots;
+  private final OrderBook[] books;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong stallCount = new AtomicLong();
+  private final Thread thread;
+  private long tail = 0L;
+  private volatile boolean consumerWaiting = false;
+  private volatile boolean closed = false;
+
+  /**
+   * Constructs a ShardRing and the daemon thread which drains it. The thread
+   * is started by start.
+   *
+   * @param name     the name of the shard's thread
+   * @param capacity the number of updates the ring holds, a power of 2
+   * @throws IllegalArgumentException if the capacity is not a positive power
+   *                                  of 2
+   */
+  ShardRing(final String name, final int capacity)
+      throws IllegalArgumentException {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          "Capacity must be a positive power of 2");
+    }
+
+    slots = new OrderBookData[capacity];
+    books = new OrderBook[capacity];
+    sequences = new AtomicLongArray(capacity);
+
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new OrderBookData();
+      sequences.set(i, i);
+    }
+
+    mask = capacity - 1;
+    thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Starts the shard's thread.
+   */
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Copies an update into the next slot for a book, waiting for a slot to
+   * free up if the ring is full. May be called from any thread.
+   *
+   * @param book the order book the update is applied to
+   * @param data the update, which may be reused once this returns
+   * @return true if the update was queued, false if the ring is closed
+   */
+  boolean offer(final OrderBook book, final OrderBookData data) {
+    boolean stalled = false;
+
+    while (!closed) {
+      long sequence = head.get();
+      int index = (int) sequence & mask;
+      long lag = sequences.get(index) - sequence;
+
+      if (lag == 0) {
+        if (head.compareAndSet(sequence, sequence + 1)) {
+          slots[index].copyFrom(data);
+          books[index] = book;
+          sequences.set(index, sequence + 1);
+
+          if (consumerWaiting) {
+            LockSupport.unpark(thread);
+          }
+
+          return true;
+        }
+      } else if (lag < 0) {
+        if (!stalled) {
+          stalled = true;
+          stallCount.incrementAndGet();
+        }
+
+        Thread.yield();
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Closes the ring. Updates already queued are still applied before the
+   * shard's thread exits, and later offers are refused. An offer racing with
+   * the close may be queued after the thread has exited, so producers should
+   * be stopped first.
+   */
+  void close() {
+    closed = true;
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Returns the number of updates queued but not yet applied. Values read
+   * while producers are offering are approximate.
+   *
+   * @return the current occupancy
+   */
+  int size() {
+    return (int) Math.max(0L, head.get() - tail);
+  }
+
+  /**
+   * Returns how many offers found the ring full and had to wait.
+   *
+   * @return the number of stalls
+   */
+  long getStallCount() {
+    return stallCount.get();
+  }
+
+  /**
+   * Applies queued updates until the ring is closed and drained, on the
+   * shard's thread.
+   */
+  private void run() {
+    while (true) {
+      if (drain() > 0) {
+        continue;
+      }
+
+      if (closed && head.get() == tail) {
+        return;
+      }
+
+      consumerWaiting = true;
+
+      if (!isPublished(tail) && !closed) {
+        LockSupport.parkNanos(this, PARK_NANOS);
+      }
+
+      consumerWaiting = false;
+    }
+  }
+
+  /**
+   * Applies every published update in slot order and frees their slots.
+   *
+   * @return the number of updates applied
+   */
+  private int drain() {
+    int count = 0;
+
+    while (isPublished(tail)) {
+      int index = (int) tail & mask;
+
+      try {
+        books[index].onUpdate(slots[index]);
+      } catch (RuntimeException error) {
+        LOGGER.severe("Error applying update to "
+            + books[index].getSymbol() + ": " + error.getMessage());
+      }
+
+      sequences.set(index, tail + slots.length);
+      tail++;
+      count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns whether the update with a sequence has been published.
+   *
+   * @param sequence the sequence of the update
+   * @return true if its slot holds it
+   */
+  private boolean isPublished(final long sequence) {
+    return sequences.get((int) sequence & mask) == sequence + 1;
+  }
+}
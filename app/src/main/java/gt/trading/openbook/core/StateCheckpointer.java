@@ -0,0 +1,383 @@
+package gt.trading.openbook.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.PriceLevel;
+import gt.trading.openbook.models.Precision;
+
+/**
+ * The StateCheckpointer class periodically saves the order books and other
+ * state of a running application to a local file, and restores them from it
+ * after a restart, so that books and rolling features start warm instead of
+ * empty.
+ *
+ * Saving happens on a background thread. Each order book exports its levels
+ * on its own writer thread when its next update has been applied, and the
+ * latest export of every book is written with the state at the following
+ * interval. The file is replaced atomically, so a crash while writing leaves
+ * the previous checkpoint intact.
+ *
+ * Every checkpoint records when it was written and the precision of each
+ * book, since its prices and amounts are scaled longs. A checkpoint older
+ * than the maximum age is ignored as a whole, and a book saved under a
+ * different precision than it now has is not restored.
+ *
+ * A restored book holds the levels and sequence number of its checkpoint but
+ * publishes nothing until the first live update follows that sequence
+ * number. Otherwise the gap is handled like any other, by waiting in the
+ * reorder window and then requesting a snapshot.
+ */
+public final class StateCheckpointer implements AutoCloseable {
+  private static final Logger LOGGER = Logger
+      .getLogger(StateCheckpointer.class.getName());
+  private static final int MAGIC = 0x4F42434B;
+  private static final int VERSION = 2;
+  private final Path file;
+  private final long intervalMillis;
+  private final long maxAgeMillis;
+  private final Map<String, OrderBookData> savedBooks = new HashMap<>();
+  private final Map<String, byte[]> savedStates = new HashMap<>();
+  private final Map<String, OrderBook> books = new LinkedHashMap<>();
+  private final Map<String, Checkpointable> states = new LinkedHashMap<>();
+  private final Map<String, OrderBookData> exports =
+      new ConcurrentHashMap<>();
+  private ScheduledExecutorService writer = null;
+
+  /**
+   * Constructs a StateCheckpointer and reads the checkpoint left in its file
+   * by a previous run, if there is one and it is no older than the maximum
+   * age.
+   *
+   * @param newFile           the file checkpoints are written to
+   * @param newIntervalMillis the time between checkpoints in milliseconds
+   * @param newMaxAgeMillis   the age in milliseconds beyond which a
+   *                          checkpoint is not restored
+   * @throws IllegalArgumentException if the interval or maximum age is not
+   *                                  positive
+   * @throws IOException              if an existing checkpoint cannot be read
+   */
+  public StateCheckpointer(final Path newFile, final long newIntervalMillis,
+      final long newMaxAgeMillis) throws IllegalArgumentException,
+      IOException {
+    if (newIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Checkpoint interval must be positive");
+    }
+
+    if (newMaxAgeMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Checkpoint maximum age must be positive");
+    }
+
+    file = newFile;
+    intervalMillis = newIntervalMillis;
+    maxAgeMillis = newMaxAgeMillis;
+
+    if (Files.exists(file)) {
+      read();
+    }
+  }
+
+  /**
+   * Adds an order book to checkpoint, restoring it first if the previous run
+   * saved it with the same precision. Must be called before the book
+   * receives any update.
+   *
+   * @param book the order book
+   * @return true if the book was restored
+   */
+  public synchronized boolean addBook(final OrderBook book) {
+    String channel = OrderBookListener.getMbpChannel(book.getSymbol(),
+        book.getDepth());
+    books.put(channel, book);
+    OrderBookData saved = savedBooks.remove(channel);
+
+    if (saved == null) {
+      return false;
+    }
+
+    if (!saved.getPrecision().matches(book.getPrecision())) {
+      LOGGER.warning("Not restoring " + channel
+          + ", which was checkpointed with a different precision");
+      return false;
+    }
+
+    book.restore(saved);
+    exports.put(channel, saved);
+    LOGGER.info("Restored " + channel + " at sequence number "
+        + saved.getSeqNum());
+    return true;
+  }
+
+  /**
+   * Adds state to checkpoint under a name, restoring it first if the previous
+   * run saved state under that name. The state is saved while holding its
+   * monitor, so state guarded by its own lock is captured consistently.
+   *
+   * @param name  the name the state is saved under
+   * @param state the state
+   * @return true if the state was restored
+   * @throws IOException if the saved state cannot be read back
+   */
+  public synchronized boolean addState(final String name,
+      final Checkpointable state) throws IOException {
+    states.put(name, state);
+    byte[] saved = savedStates.remove(name);
+
+    if (saved == null) {
+      return false;
+    }
+
+    synchronized (state) {
+      state.restoreState(new DataInputStream(
+          new ByteArrayInputStream(saved)));
+    }
+
+    LOGGER.info("Restored state " + name);
+    return true;
+  }
+
+  /**
+   * Starts writing a checkpoint every interval on a daemon thread.
+   */
+  public synchronized void start() {
+    if (writer != null) {
+      return;
+    }
+
+    writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "openbook-checkpointer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    writer.scheduleWithFixedDelay(this::checkpoint, intervalMillis,
+        intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Asks every order book for a fresh export and writes the latest exports
+   * and state to the checkpoint file.
+   *
+   * @return true if the checkpoint was written
+   */
+  public synchronized boolean checkpoint() {
+    for (Map.Entry<String, OrderBook> entry : books.entrySet()) {
+      String channel = entry.getKey();
+      entry.getValue().requestCheckpoint(data -> exports.put(channel, data));
+    }
+
+    try {
+      write();
+      return true;
+    } catch (IOException error) {
+      LOGGER.warning("Error writing checkpoint: " + error.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Stops the background thread and writes a final checkpoint.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (writer != null) {
+        writer.shutdown();
+      }
+    }
+
+    checkpoint();
+  }
+
+  /**
+   * Writes the latest exports and state to a temporary file which then
+   * replaces the checkpoint file.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  private void write() throws IOException {
+    List<byte[]> savedState = new ArrayList<>(states.size());
+
+    for (Checkpointable state : states.values()) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+      synchronized (state) {
+        state.saveState(new DataOutputStream(bytes));
+      }
+
+      savedState.add(bytes.toByteArray());
+    }
+
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(System.currentTimeMillis());
+      out.writeInt(exports.size());
+
+      for (Map.Entry<String, OrderBookData> entry : exports.entrySet()) {
+        out.writeUTF(entry.getKey());
+        writeBook(out, entry.getValue());
+      }
+
+      out.writeInt(states.size());
+      int i = 0;
+
+      for (String name : states.keySet()) {
+        byte[] state = savedState.get(i++);
+        out.writeUTF(name);
+        out.writeInt(state.length);
+        out.write(state);
+      }
+    }
+
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads the checkpoint file into the saved books and state. A checkpoint of
+   * another version or older than the maximum age is logged and left unread,
+   * and is replaced by the next checkpoint.
+   *
+   * @throws IOException if the file cannot be read or is not a checkpoint
+   */
+  private void read() throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a checkpoint: " + file);
+      }
+
+      int version = in.readInt();
+
+      if (version != VERSION) {
+        LOGGER.warning("Ignoring checkpoint " + file + " of version "
+            + version);
+        return;
+      }
+
+      long ageMillis = System.currentTimeMillis() - in.readLong();
+
+      if (ageMillis > maxAgeMillis) {
+        LOGGER.warning("Ignoring checkpoint " + file + " written "
+            + ageMillis + " ms ago");
+        return;
+      }
+
+      int bookCount = in.readInt();
+
+      for (int i = 0; i < bookCount; i++) {
+        String channel = in.readUTF();
+        savedBooks.put(channel, readBook(in));
+      }
+
+      int stateCount = in.readInt();
+
+      for (int i = 0; i < stateCount; i++) {
+        String name = in.readUTF();
+        byte[] state = new byte[in.readInt()];
+        in.readFully(state);
+        savedStates.put(name, state);
+      }
+    }
+  }
+
+  /**
+   * Writes the precision, sequence number and levels of an order book.
+   *
+   * @param out  the output to write to
+   * @param book the exported order book
+   * @throws IOException if the book cannot be written
+   */
+  private static void writeBook(final DataOutputStream out,
+      final OrderBookData book) throws IOException {
+    Precision precision = book.getPrecision();
+    out.writeInt(precision.getPriceScale());
+    out.writeInt(precision.getAmountScale());
+    out.writeLong(precision.getPriceTick());
+    out.writeLong(book.getSeqNum());
+    out.writeInt(book.getBidCount());
+    out.writeInt(book.getAskCount());
+
+    for (int i = 0; i < book.getBidCount(); i++) {
+      out.writeLong(book.getBidPrice(i));
+      out.writeLong(book.getBidAmount(i));
+    }
+
+    for (int i = 0; i < book.getAskCount(); i++) {
+      out.writeLong(book.getAskPrice(i));
+      out.writeLong(book.getAskAmount(i));
+    }
+  }
+
+  /**
+   * Reads the precision, sequence number and levels of an order book.
+   *
+   * @param in the input to read from
+   * @return the book as a snapshot
+   * @throws IOException if the book cannot be read
+   */
+  private static OrderBookData readBook(final DataInputStream in)
+      throws IOException {
+    Precision precision;
+
+    try {
+      precision = Precision.builder().priceScale(in.readInt())
+          .amountScale(in.readInt()).priceTick(in.readLong()).build();
+    } catch (IllegalArgumentException error) {
+      throw new IOException("Invalid precision in checkpoint", error);
+    }
+
+    long seqNum = in.readLong();
+    int bidCount = in.readInt();
+    int askCount = in.readInt();
+    List<PriceLevel> bids = readLevels(in, bidCount);
+    List<PriceLevel> asks = readLevels(in, askCount);
+    return OrderBookData.builder().action(OrderBookData.Action.REFRESH)
+        .seqNum(seqNum).bids(bids).asks(asks).precision(precision).build();
+  }
+
+  /**
+   * Reads one side of an order book.
+   *
+   * @param in    the input to read from
+   * @param count the number of levels on the side
+   * @return the levels of the side, best first
+   * @throws IOException if the levels cannot be read
+   */
+  private static List<PriceLevel> readLevels(final DataInputStream in,
+      final int count) throws IOException {
+    List<PriceLevel> levels = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      levels.add(PriceLevel.builder().price(in.readLong())
+          .amount(in.readLong()).build());
+    }
+
+    return levels;
+  }
+}
@@ -0,0 +1,144 @@
+package gt.trading.openbook.core;
+
+/**
+ * The TopOfBook class holds the best levels of both sides of an order book
+ * together with the sequence number they were taken at. Prices and amounts
+ * are fixed point values scaled by the precision of the order book.
+ *
+ * Instances are mutable and not thread safe. Each reader should own its own
+ * TopOfBook and fill it from a BookSnapshot, which lets it be reused for every
+ * read without allocating.
+ */
+public final class TopOfBook {
+  private final int depth;
+  private final long[] bidPrices;
+  private final long[] bidAmounts;
+  private final long[] askPrices;
+  private final long[] askAmounts;
+  private int bidCount = 0;
+  private int askCount = 0;
+  private long seqNum = -1L;
+
+  /**
+   * Constructs an empty TopOfBook which can hold up to depth levels per side.
+   *
+   * @param newDepth the maximum number of levels per side
+   * @throws IllegalArgumentException if the depth is not positive
+   */
+  public TopOfBook(final int newDepth) throws IllegalArgumentException {
+    if (newDepth <= 0) {
+      throw new IllegalArgumentException("Depth must be greater than 0");
+    }
+
+    depth = newDepth;
+    bidPrices = new long[newDepth];
+    bidAmounts = new long[newDepth];
+    askPrices = new long[newDepth];
+    askAmounts = new long[newDepth];
+  }
+
+  /**
+   * Returns the maximum number of levels per side.
+   *
+   * @return the depth
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns the sequence number of the update the levels were taken at.
+   *
+   * @return the sequence number, or -1 if nothing has been published
+   */
+  public long getSeqNum() {
+    return seqNum;
+  }
+
+  /**
+   * Returns the number of bid levels held.
+   *
+   * @return the number of bid levels
+   */
+  public int getBidCount() {
+    return bidCount;
+  }
+
+  /**
+   * Returns the number of ask levels held.
+   *
+   * @return the number of ask levels
+   */
+  public int getAskCount() {
+    return askCount;
+  }
+
+  /**
+   * Returns the scaled price of a bid level, where 0 is the best bid.
+   *
+   * @param level the level index
+   * @return the bid price
+   */
+  public long getBidPrice(final int level) {
+    return bidPrices[level];
+  }
+
+  /**
+   * Returns the scaled amount of a bid level, where 0 is the best bid.
+   *
+   * @param level the level index
+   * @return the bid amount
+   */
+  public long getBidAmount(final int level) {
+    return bidAmounts[level];
+  }
+
+  /**
+   * Returns the scaled price of an ask level, where 0 is the best ask.
+   *
+   * @param level the level index
+   * @return the ask price
+   */
+  public long getAskPrice(final int level) {
+    return askPrices[level];
+  }
+
+  /**
+   * Returns the scaled amount of an ask level, where 0 is the best ask.
+   *
+   * @param level the level index
+   * @return the ask amount
+   */
+  public long getAskAmount(final int level) {
+    return askAmounts[level];
+  }
+
+  /**
+   * Copies the best levels of both depth views into this TopOfBook.
+   *
+   * @param bids      the bid depth view
+   * @param asks      the ask depth view
+   * @param newSeqNum the sequence number of the update
+   */
+  void copyFrom(final DepthView bids, final DepthView asks,
+      final long newSeqNum) {
+    bidCount = bids.copyTo(bidPrices, bidAmounts, depth);
+    askCount = asks.copyTo(askPrices, askAmounts, depth);
+    seqNum = newSeqNum;
+  }
+
+  /**
+   * Copies the levels of another TopOfBook into this one, up to this depth.
+   *
+   * @param other the TopOfBook to copy from
+   */
+  void copyFrom(final TopOfBook other) {
+    bidCount = Math.min(other.bidCount, depth);
+    askCount = Math.min(other.askCount, depth);
+    System.arraycopy(other.bidPrices, 0, bidPrices, 0, bidCount);
+    System.arraycopy(other.bidAmounts, 0, bidAmounts, 0, bidCount);
+    System.arraycopy(other.askPrices, 0, askPrices, 0, askCount);
+    System.arraycopy(other.askAmounts, 0, askAmounts, 0, askCount);
+    seqNum = other.seqNum;
+  }
+}
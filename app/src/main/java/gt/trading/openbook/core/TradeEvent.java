@@ -3,6 +3,7 @@ package gt.trading.openbook.core;
 import java.util.ArrayList;
 
 import gt.trading.openbook.listeners.MarketListener;
+import gt.trading.openbook.models.Precision;
 import gt.trading.openbook.models.TradeData;
 
 /**
@@ -16,17 +17,21 @@ public final class TradeEvent {
 
   /**
    * Constructs a TradeEvent instance and subscribes to the trade detail events
-   * from the given MarketListener. The listener's callback processes the
-   * received data and adds it to the trade data list.
+   * of a symbol from the given MarketListener. The listener's callback
+   * processes the received data and adds a copy of it to the trade data list,
+   * since the listener reuses the TradeData for the next trade.
    *
-   * @param listener the MarketListener instance to subscribe to trade detail
-   *                 events
+   * @param listener  the MarketListener instance to subscribe to trade detail
+   *                  events
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
    */
-  public TradeEvent(final MarketListener listener) {
+  public TradeEvent(final MarketListener listener, final String symbol,
+      final Precision precision) {
     tradeDataList = new ArrayList<>();
-    listener.subscribeTradeDetail(data -> {
+    listener.subscribeTradeDetail(symbol, precision, data -> {
       if (tradeDataList.size() < MAX_TRADE_DATA_SIZE) {
-        tradeDataList.add(data);
+        tradeDataList.add(data.copy());
       }
     });
   }
@@ -0,0 +1,312 @@
+package gt.trading.openbook.core;
+
+import java.util.Arrays;
+
+import gt.trading.openbook.models.OrderBookData;
+
+/**
+ * The UpdateBuffer class holds the incremental updates received while an order
+ * book waits for a snapshot. Updates are copied into preallocated primitive
+ * arrays, so buffering never allocates and never grows past its capacity; when
+ * it is full, add returns false and the order book should request a fresh
+ * snapshot instead.
+ *
+ * Once the snapshot arrives, coalesce merges the contiguous run of buffered
+ * updates following the snapshot into one set of level changes, keeping only
+ * the last amount of each price level, so the order book applies every level
+ * once instead of replaying each message.
+ */
+public final class UpdateBuffer {
+  private static final int BID = 0;
+  private static final int ASK = 1;
+  private static final int EMPTY = -1;
+  private final long[] seqNums;
+  private final long[] prevSeqNums;
+  private final int[] levelEnds;
+  private final long[] levelPrices;
+  private final long[] levelAmounts;
+  private final byte[] levelSides;
+  private final long[] mergedPrices;
+  private final long[] mergedAmounts;
+  private final byte[] mergedSides;
+  private final int[] mergedSlots;
+  private final long[] hashKeys;
+  private final int[] hashValues;
+  private final int hashMask;
+  private int messageCount = 0;
+  private int levelCount = 0;
+  private int mergedCount = 0;
+  private int highWaterMark = 0;
+  private long levelsReplayed = 0L;
+  private long levelsMerged = 0L;
+  private long overflowCount = 0L;
+  private boolean gap = false;
+
+  /**
+   * Constructs an UpdateBuffer with room for a fixed number of messages and
+   * price levels.
+   *
+   * @param messageCapacity the maximum number of buffered messages
+   * @param levelCapacity   the maximum number of buffered price levels
+   * @throws IllegalArgumentException if a capacity is not positive
+   */
+  public UpdateBuffer(final int messageCapacity, final int levelCapacity)
+      throws IllegalArgumentException {
+    if (messageCapacity <= 0 || levelCapacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than 0");
+    }
+
+    seqNums = new long[messageCapacity];
+    prevSeqNums = new long[messageCapacity];
+    levelEnds = new int[messageCapacity];
+    levelPrices = new long[levelCapacity];
+    levelAmounts = new long[levelCapacity];
+    levelSides = new byte[levelCapacity];
+    mergedPrices = new long[levelCapacity];
+    mergedAmounts = new long[levelCapacity];
+    mergedSides = new byte[levelCapacity];
+    mergedSlots = new int[levelCapacity];
+
+    int hashSize = Integer.highestOneBit(levelCapacity) << 2;
+    hashKeys = new long[hashSize];
+    hashValues = new int[hashSize];
+    hashMask = hashSize - 1;
+    Arrays.fill(hashValues, EMPTY);
+  }
+
+  /**
+   * Copies an incremental update into the buffer.
+   *
+   * @param data the incremental update
+   * @return true if the update was buffered, false if the buffer overflowed
+   */
+  public boolean add(final OrderBookData data) {
+    int bidSize = data.getBidCount();
+    int askSize = data.getAskCount();
+
+    if (messageCount == seqNums.length
+        || levelCount + bidSize + askSize > levelPrices.length) {
+      overflowCount++;
+      return false;
+    }
+
+    for (int i = 0; i < bidSize; i++) {
+      copyLevel(data.getBidPrice(i), data.getBidAmount(i), BID);
+    }
+
+    for (int i = 0; i < askSize; i++) {
+      copyLevel(data.getAskPrice(i), data.getAskAmount(i), ASK);
+    }
+
+    seqNums[messageCount] = data.getSeqNum();
+    prevSeqNums[messageCount] = data.getPrevSeqNum();
+    levelEnds[messageCount] = levelCount;
+    messageCount++;
+    highWaterMark = Math.max(highWaterMark, messageCount);
+    return true;
+  }
+
+  /**
+   * Merges the buffered updates which continue from a snapshot into one set of
+   * level changes, readable through the merged getters. Updates at or before
+   * the snapshot are skipped, and merging stops at the first gap in sequence
+   * numbers, which is reported by hasGap.
+   *
+   * @param snapshotSeqNum the sequence number of the snapshot
+   * @return the sequence number of the last merged update, or snapshotSeqNum if
+   *         no update continued from the snapshot
+   */
+  public long coalesce(final long snapshotSeqNum) {
+    long lastSeqNum = snapshotSeqNum;
+    mergedCount = 0;
+    gap = false;
+
+    for (int message = 0; message < messageCount; message++) {
+      if (prevSeqNums[message] < lastSeqNum) {
+        continue;
+      }
+
+      if (prevSeqNums[message] > lastSeqNum) {
+        gap = true;
+        break;
+      }
+
+      int start = message == 0 ? 0 : levelEnds[message - 1];
+      levelsReplayed += levelEnds[message] - start;
+
+      for (int level = start; level < levelEnds[message]; level++) {
+        merge(levelPrices[level], levelAmounts[level], levelSides[level]);
+      }
+
+      lastSeqNum = seqNums[message];
+    }
+
+    for (int i = 0; i < mergedCount; i++) {
+      hashValues[mergedSlots[i]] = EMPTY;
+    }
+
+    levelsMerged += mergedCount;
+    return lastSeqNum;
+  }
+
+  /**
+   * Returns whether the last coalesce stopped at a gap in sequence numbers.
+   *
+   * @return true if an update was missing after the merged run
+   */
+  public boolean hasGap() {
+    return gap;
+  }
+
+  /**
+   * Returns whether a buffered update continues from the given snapshot or
+   * from a later one.
+   *
+   * @param snapshotSeqNum the sequence number of the snapshot
+   * @return true if some buffered update has a previous sequence number at or
+   *         after the snapshot
+   */
+  public boolean reaches(final long snapshotSeqNum) {
+    return messageCount > 0
+        && prevSeqNums[messageCount - 1] >= snapshotSeqNum;
+  }
+
+  /**
+   * Returns the number of merged level changes from the last coalesce.
+   *
+   * @return the number of merged levels
+   */
+  public int getMergedCount() {
+    return mergedCount;
+  }
+
+  /**
+   * Returns whether a merged level change is on the bid side.
+   *
+   * @param index the merged level index
+   * @return true for a bid, false for an ask
+   */
+  public boolean isMergedBid(final int index) {
+    return mergedSides[index] == BID;
+  }
+
+  /**
+   * Returns the scaled price of a merged level change.
+   *
+   * @param index the merged level index
+   * @return the price
+   */
+  public long getMergedPrice(final int index) {
+    return mergedPrices[index];
+  }
+
+  /**
+   * Returns the scaled amount of a merged level change.
+   *
+   * @param index the merged level index
+   * @return the amount, where 0 removes the level
+   */
+  public long getMergedAmount(final int index) {
+    return mergedAmounts[index];
+  }
+
+  /**
+   * Removes every buffered update.
+   */
+  public void clear() {
+    messageCount = 0;
+    levelCount = 0;
+  }
+
+  /**
+   * Returns the number of buffered updates.
+   *
+   * @return the buffered depth
+   */
+  public int size() {
+    return messageCount;
+  }
+
+  /**
+   * Returns the largest number of updates buffered at once.
+   *
+   * @return the high water mark
+   */
+  public int getHighWaterMark() {
+    return highWaterMark;
+  }
+
+  /**
+   * Returns how many updates were rejected because the buffer was full.
+   *
+   * @return the number of overflows
+   */
+  public long getOverflowCount() {
+    return overflowCount;
+  }
+
+  /**
+   * Returns the ratio of replayed price levels to merged price levels. A ratio
+   * of 4 means four buffered level changes were applied as one on average.
+   *
+   * @return the coalescing ratio, or 1 if nothing has been merged
+   */
+  public double getCoalescingRatio() {
+    return levelsMerged == 0 ? 1.0 : (double) levelsReplayed / levelsMerged;
+  }
+
+  /**
+   * Copies a price level into the level arrays.
+   *
+   * @param price  the scaled price of the level
+   * @param amount the scaled amount of the level
+   * @param side   the side of the level
+   */
+  private void copyLevel(final long price, final long amount, final int side) {
+    levelPrices[levelCount] = price;
+    levelAmounts[levelCount] = amount;
+    levelSides[levelCount] = (byte) side;
+    levelCount++;
+  }
+
+  /**
+   * Adds a level change to the merged levels, overwriting the amount of an
+   * earlier change to the same price.
+   *
+   * @param price  the scaled price
+   * @param amount the scaled amount
+   * @param side   the side of the level
+   */
+  private void merge(final long price, final long amount, final byte side) {
+    long key = (price << 1) | side;
+    int slot = hash(key);
+
+    while (hashValues[slot] != EMPTY) {
+      if (hashKeys[slot] == key) {
+        mergedAmounts[hashValues[slot]] = amount;
+        return;
+      }
+
+      slot = (slot + 1) & hashMask;
+    }
+
+    hashKeys[slot] = key;
+    hashValues[slot] = mergedCount;
+    mergedPrices[mergedCount] = price;
+    mergedAmounts[mergedCount] = amount;
+    mergedSides[mergedCount] = side;
+    mergedSlots[mergedCount] = slot;
+    mergedCount++;
+  }
+
+  /**
+   * Returns the starting hash slot of a key.
+   *
+   * @param key the key to hash
+   * @return the slot index
+   */
+  private int hash(final long key) {
+    long mixed = key * 0x9E3779B97F4A7C15L;
+    return (int) (mixed ^ (mixed >>> 32)) & hashMask;
+  }
+}
@@ -10,7 +10,43 @@
  *
  * The OrderBook class is responsible for maintaining an order book given
  * incremental order book updates from Huobi. It stores bids and asks as
- * TreeMaps for efficient movement.
+ * PriceLadders for efficient movement.
+ *
+ * The OrderBookManager class is responsible for owning the order books of many
+ * symbols and applying each symbol's updates on a single worker shard, which
+ * the ShardRing class hands updates to through preallocated slots.
+ *
+ * The BookSnapshot class is responsible for publishing the best levels of an
+ * order book to reader threads through a sequence lock, and the TopOfBook
+ * class holds a reader's copy of those levels.
+ *
+ * The PriceLadder class is responsible for holding one side of the order book
+ * as a primitive array of amounts indexed by price ticks.
+ *
+ * The UpdateBuffer class is responsible for buffering the updates received
+ * while an order book waits for a snapshot in preallocated arrays, and for
+ * coalescing them into one set of level changes once the snapshot arrives.
+ *
+ * The DepthView class is responsible for holding the best levels of a ladder,
+ * updated incrementally as the ladder changes.
+ *
+ * The ReorderWindow class is responsible for holding updates which arrive
+ * early until the gap before them fills, and the RefreshThrottle class for
+ * keeping a single snapshot request outstanding with backoff.
+ *
+ * The LadderIndex class is responsible for answering cumulative depth, impact
+ * price and fill price queries on a ladder in logarithmic time.
+ *
+ * The BookChange class is responsible for describing the levels changed by an
+ * applied update, together with the new best prices and sequence number.
+ *
+ * The BookReplay class is responsible for checkpointing the order books fed
+ * by a journal replay, and for seeking the replay to a time by restoring them
+ * from their latest checkpoints.
+ *
+ * The StateCheckpointer class is responsible for periodically saving order
+ * books and other Checkpointable state to a local file in the background, and
+ * for restoring them from it after a restart.
  *
  * @author Georiga Tech Trading Club Team #2
  * @since 1.0
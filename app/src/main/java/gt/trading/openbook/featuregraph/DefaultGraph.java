@@ -1,6 +1,12 @@
 package gt.trading.openbook.featuregraph;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -11,18 +17,28 @@ import java.util.Map;
 import java.util.function.Function;
 import java.util.logging.Logger;
 
+import gt.trading.openbook.core.BookChange;
+import gt.trading.openbook.core.Checkpointable;
 import gt.trading.openbook.models.DepthData;
-import gt.trading.openbook.models.OrderBookData;
 import gt.trading.openbook.models.TradeData;
 
 /**
  * Basic implementation of the FeatureGraph interface and is the current feature
  * graph implementation used in the application.
+ *
+ * The state of its features can be checkpointed by a StateCheckpointer and
+ * restored after a restart, so rolling features do not have to warm up again.
  */
-public final class DefaultGraph implements FeatureGraph {
+public final class DefaultGraph implements FeatureGraph, Checkpointable {
+  /**
+   * The folder CSV files are saved to unless another is given.
+   */
+  public static final String DEFAULT_CSV_FOLDER =
+      "app/src/resources/featuregraph/reports";
+
   private List<Function<DepthData, Boolean>> depthCbs = new ArrayList<>();
   private List<Function<TradeData, Boolean>> tradeCbs = new ArrayList<>();
-  private List<Function<OrderBookData, Boolean>> obCbs = new ArrayList<>();
+  private List<Function<BookChange, Boolean>> obCbs = new ArrayList<>();
 
   private List<Feature> notProcessedFeatures = new ArrayList<>();
   private List<Feature> processedFeatures = new ArrayList<>();
@@ -36,7 +52,7 @@ public final class DefaultGraph implements FeatureGraph {
   private StringBuilder csvBuilder = new StringBuilder();
   private final int csvMaxRows = 100;
   private int csvRowCount = 0;
-  private final String csvFolderName = "app/src/resources/featuregraph/reports";
+  private final String csvFolderName;
   private static final Logger LOGGER = Logger
       .getLogger(DefaultGraph.class.getName());
 
@@ -140,6 +156,23 @@ public final class DefaultGraph implements FeatureGraph {
     }
   }
 
+  /**
+   * Constructs a DefaultGraph which saves its CSV files to the default
+   * reports folder.
+   */
+  public DefaultGraph() {
+    this(DEFAULT_CSV_FOLDER);
+  }
+
+  /**
+   * Constructs a DefaultGraph which saves its CSV files to a folder.
+   *
+   * @param newCsvFolderName the folder CSV files are saved to
+   */
+  public DefaultGraph(final String newCsvFolderName) {
+    csvFolderName = newCsvFolderName;
+  }
+
   /**
    * Add a parent feature node to a given feature node depending on what type of
    * feature (trade, depth, orderBookData) node it is.
@@ -225,7 +258,7 @@ public final class DefaultGraph implements FeatureGraph {
    * @param onOrderBookEvent callback that occurs on OrderBookEvents
    */
   public void registerOrderBookEventCallback(final Feature feature,
-      final Function<OrderBookData, Boolean> onOrderBookEvent) {
+      final Function<BookChange, Boolean> onOrderBookEvent) {
 
     FeatureNode featureNode = featureNodes.get(feature.toString());
     featureNode.addToOrderBookAffectedNodes();
@@ -233,6 +266,16 @@ public final class DefaultGraph implements FeatureGraph {
     obCbs.add(onOrderBookEvent);
   }
 
+  /**
+   * Returns whether any feature takes order book events, so that a runner
+   * only keeps an order book for graphs which use one.
+   *
+   * @return true if an order book callback is registered
+   */
+  public boolean hasOrderBookCallbacks() {
+    return !obCbs.isEmpty();
+  }
+
   /**
    * Updates the depthData and the corresponding node in the feature graph when
    * the listener receives new depthData.
@@ -274,15 +317,20 @@ public final class DefaultGraph implements FeatureGraph {
   }
 
   /**
-   * Updates the orderBookData and the corresponding node in the feature graph
-   * when the listener receives new orderBookData.
+   * Updates the bookChange and the corresponding node in the feature graph
+   * when an order book applies an update. No CSV row is written if no feature
+   * depends on order book events, since none of them changed.
    *
-   * @param orderBookData the orderBookData the listener just received
+   * @param bookChange the levels the order book just changed
    * @return true if successful
    */
-  public boolean onOrderBookEvent(final OrderBookData orderBookData) {
-    for (Function<OrderBookData, Boolean> callback : obCbs) {
-      callback.apply(orderBookData);
+  public boolean onOrderBookEvent(final BookChange bookChange) {
+    if (orderBookAffectedNodes.isEmpty()) {
+      return true;
+    }
+
+    for (Function<BookChange, Boolean> callback : obCbs) {
+      callback.apply(bookChange);
     }
 
     for (FeatureNode node : orderBookAffectedNodes) {
@@ -293,6 +341,54 @@ public final class DefaultGraph implements FeatureGraph {
     return true;
   }
 
+  /**
+   * Writes the state of every feature, each under its name and prefixed by
+   * its length, so that features missing from a later graph can be skipped.
+   *
+   * @param out the output to write the state to
+   * @throws IOException if the state cannot be written
+   */
+  @Override
+  public void saveState(final DataOutput out) throws IOException {
+    out.writeInt(notProcessedFeatures.size() + processedFeatures.size());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    for (List<Feature> features : List.of(notProcessedFeatures,
+        processedFeatures)) {
+      for (Feature feature : features) {
+        bytes.reset();
+        feature.saveState(new DataOutputStream(bytes));
+        out.writeUTF(feature.toString());
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+      }
+    }
+  }
+
+  /**
+   * Restores the state of the features saved by saveState. Saved features
+   * which are not registered in this graph are skipped.
+   *
+   * @param in the input to read the state from
+   * @throws IOException if the state cannot be read
+   */
+  @Override
+  public void restoreState(final DataInput in) throws IOException {
+    int count = in.readInt();
+
+    for (int i = 0; i < count; i++) {
+      String name = in.readUTF();
+      byte[] state = new byte[in.readInt()];
+      in.readFully(state);
+      FeatureNode node = featureNodes.get(name);
+
+      if (node != null) {
+        node.feature.restoreState(new DataInputStream(
+            new ByteArrayInputStream(state)));
+      }
+    }
+  }
+
   /**
    * Appends the non-processed and processed features to the csv file through a
    * string builder. Then it returns the builder as a string.
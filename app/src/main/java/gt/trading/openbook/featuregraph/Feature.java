@@ -1,7 +1,11 @@
 package gt.trading.openbook.featuregraph;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import gt.trading.openbook.core.BookChange;
 import gt.trading.openbook.models.DepthData;
-import gt.trading.openbook.models.OrderBookData;
 import gt.trading.openbook.models.TradeData;
 
 /**
@@ -50,12 +54,31 @@ public interface Feature {
   }
 
   /**
-   * Provides custom logic for features when a listener receives orderBookData.
+   * Provides custom logic for features when an order book applies an update.
    *
-   * @param orderBookData the orderBookData the listener just received
+   * @param bookChange the levels the order book just changed
    * @return false if successful
    */
-  default boolean onOrderBookEvent(OrderBookData orderBookData) {
+  default boolean onOrderBookEvent(BookChange bookChange) {
     return false;
   }
+
+  /**
+   * Writes the state the feature needs to resume after a restart, such as
+   * its rolling windows. Features without such state write nothing.
+   *
+   * @param out the output to write the state to
+   * @throws IOException if the state cannot be written
+   */
+  default void saveState(DataOutput out) throws IOException {
+  }
+
+  /**
+   * Reads back state written by saveState, replacing the current state.
+   *
+   * @param in the input to read the state from
+   * @throws IOException if the state cannot be read
+   */
+  default void restoreState(DataInput in) throws IOException {
+  }
 }
@@ -2,8 +2,8 @@ package gt.trading.openbook.featuregraph;
 
 import java.util.function.Function;
 
+import gt.trading.openbook.core.BookChange;
 import gt.trading.openbook.models.DepthData;
-import gt.trading.openbook.models.OrderBookData;
 import gt.trading.openbook.models.TradeData;
 
 /**
@@ -58,7 +58,7 @@ public interface FeatureGraph {
    * @param onOrderBookEvent callback that occurs on OrderBookEvents
    */
   void registerOrderBookEventCallback(Feature feature,
-      Function<OrderBookData, Boolean> onOrderBookEvent);
+      Function<BookChange, Boolean> onOrderBookEvent);
 
   /**
    * Provides custom logic for the feature graph when a listener receives
@@ -79,13 +79,13 @@ public interface FeatureGraph {
   boolean onTradeEvent(TradeData tradeData);
 
   /**
-   * Provides custom logic for the feature graph when a listener receives
-   * orderBookData.
+   * Provides custom logic for the feature graph when an order book applies an
+   * update.
    *
-   * @param orderBookData the orderBookData the listener just received
+   * @param bookChange the levels the order book just changed
    * @return true if successful
    */
-  boolean onOrderBookEvent(OrderBookData orderBookData);
+  boolean onOrderBookEvent(BookChange bookChange);
 
   @Override
   String toString();
@@ -3,32 +3,239 @@ package gt.trading.openbook.featuregraph;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
 import java.util.logging.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import gt.trading.openbook.MapperSingleton;
+import gt.trading.openbook.core.OrderBook;
+import gt.trading.openbook.core.StateCheckpointer;
 import gt.trading.openbook.featuregraph.config.Config;
+import gt.trading.openbook.journal.FeedJournal;
+import gt.trading.openbook.journal.JournalReader;
+import gt.trading.openbook.listeners.Callback;
+import gt.trading.openbook.listeners.ConnectionManager;
+import gt.trading.openbook.listeners.ConnectionPool;
+import gt.trading.openbook.listeners.FeedReplay;
 import gt.trading.openbook.listeners.MarketListener;
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.listeners.WaitStrategy;
+import gt.trading.openbook.models.DepthData;
+import gt.trading.openbook.models.Precision;
 
 /**
  * Runs a feature graph and adds the features to a CSV file which is then added
- * to a specified folder.
+ * to a specified folder. The graph is fed depth events from a MarketListener
+ * and, if any of its features takes order book events, book change events
+ * from an OrderBook kept for the same symbol, both placed on pooled
+ * connections of a shared ConnectionManager to the endpoints
+ * named by the graph configuration, which are Huobi's unless it names others
+ * such as a local FeedServer. The pooled listeners run a pipeline, so CSV
+ * writes happen on their consumer threads rather than the WebSocket I/O
+ * threads. Every depth event is evaluated unless the configuration turns on
+ * conflateDepth, in which case a slow graph only evaluates the latest quote
+ * of each batch of frames its pipeline hands over.
+ *
+ * A StateCheckpointer can be given to save the graph's feature state and the
+ * order book periodically, and to restore them on the next start.
+ *
+ * A FeedJournal can be given to record the frames the graph is fed. Both
+ * pools process their frames under the graph's lock, so the journal holds
+ * them in the order the graph saw them. The same graph can then be rebuilt
+ * offline from the journal with replay, as fast as the frames decode, and
+ * writes the same CSV rows as the live run unless depth events are
+ * conflated, since which quotes a live conflated graph skips depends on
+ * timing.
  */
 public final class GraphRunner {
+  private static final int PIPELINE_FRAMES = 1024;
+  private static final String STATE_PREFIX = "featuregraph.";
+
   /**
    * Runs a feature graph and adds the features to a CSV file/folder whose path
    * is specified in the constructor.
    *
-   * @param sharedListener reference to a MarketListener.
-   * @param fileName       the file to write CSV data to
+   * @param fileName    the file to write CSV data to
+   * @param connections the manager owning the shared WebSocket container
+   * @param symbol      the symbol whose events drive the graph
+   * @param precision   the precision of the symbol's prices and amounts
    * @throws IOException an exception thrown if the data cannot be written
    */
-  public GraphRunner(final String fileName, final MarketListener sharedListener)
+  public GraphRunner(final String fileName,
+      final ConnectionManager connections, final String symbol,
+      final Precision precision) throws IOException {
+    this(fileName, connections, symbol, precision, null);
+  }
+
+  /**
+   * Runs a feature graph and adds the features to a CSV file/folder whose path
+   * is specified in the constructor. The graph's feature state and the order
+   * book are restored from the checkpointer's last checkpoint, if it has
+   * them, before any event arrives, and are checkpointed from then on.
+   *
+   * @param fileName     the file to write CSV data to
+   * @param connections  the manager owning the shared WebSocket container
+   * @param symbol       the symbol whose events drive the graph
+   * @param precision    the precision of the symbol's prices and amounts
+   * @param checkpointer the checkpointer to restore from and save to, or null
+   * @throws IOException an exception thrown if the data cannot be written or
+   *                     the checkpointed state cannot be read
+   */
+  public GraphRunner(final String fileName,
+      final ConnectionManager connections, final String symbol,
+      final Precision precision, final StateCheckpointer checkpointer)
       throws IOException {
+    this(fileName, connections, symbol, precision, checkpointer, null);
+  }
+
+  /**
+   * Runs a feature graph and adds the features to a CSV file/folder whose path
+   * is specified in the constructor, recording the frames it is fed to a
+   * journal which replay can rebuild the same CSV rows from.
+   *
+   * @param fileName     the file to write CSV data to
+   * @param connections  the manager owning the shared WebSocket container
+   * @param symbol       the symbol whose events drive the graph
+   * @param precision    the precision of the symbol's prices and amounts
+   * @param checkpointer the checkpointer to restore from and save to, or null
+   * @param journal      the journal to record frames to, or null
+   * @throws IOException an exception thrown if the data cannot be written or
+   *                     the checkpointed state cannot be read
+   */
+  public GraphRunner(final String fileName,
+      final ConnectionManager connections, final String symbol,
+      final Precision precision, final StateCheckpointer checkpointer,
+      final FeedJournal journal) throws IOException {
+    Config config = loadConfig(fileName);
+    DefaultGraph graph = loadGraph(config);
+
+    if (graph == null) {
+      return;
+    }
+
+    if (checkpointer != null) {
+      checkpointer.addState(STATE_PREFIX + symbol, graph);
+    }
+
+    ConnectionPool<MarketListener> marketPool = connections.newPool(
+        config.getMarketUri(), MarketListener::new);
+    marketPool.setPipeline(PIPELINE_FRAMES, WaitStrategy.BLOCKING);
+    marketPool.setProcessLock(graph);
+    marketPool.setJournal(journal);
+    Callback<DepthData> depthCallback = data -> {
+      synchronized (graph) {
+        graph.onDepthEvent(data);
+      }
+    };
+
+    if (config.isConflateDepth()) {
+      marketPool.place(listener -> listener.subscribeDepthConflated(symbol,
+          precision, depthCallback));
+    } else {
+      marketPool.place(listener -> listener.subscribeDepth(symbol,
+          precision, depthCallback));
+    }
+
+    if (!graph.hasOrderBookCallbacks()) {
+      return;
+    }
+
+    ConnectionPool<OrderBookListener> bookPool = connections.newPool(
+        config.getMbpUri(), OrderBookListener::new);
+    bookPool.setPipeline(PIPELINE_FRAMES, WaitStrategy.BLOCKING);
+    bookPool.setProcessLock(graph);
+    bookPool.setJournal(journal);
+    bookPool.place(listener -> {
+      OrderBook book = new OrderBook(symbol, precision, listener);
+      book.setChangeCallback(change -> {
+        synchronized (graph) {
+          graph.onOrderBookEvent(change);
+        }
+      });
+
+      if (checkpointer != null) {
+        checkpointer.addBook(book);
+      }
+
+      return listener.subscribeMbp(symbol, precision, book::onUpdate);
+    });
+  }
+
+  /**
+   * Runs a feature graph over a recorded journal instead of the live feed.
+   * Depth events and any order book changes reach the graph through the same
+   * listeners and order book as live, on the calling thread, in the order
+   * the journal recorded them, and the order book keeps time by the
+   * recording. Depth events are delivered the way the configuration asks
+   * for, though a conflating subscription has nothing to conflate during a
+   * replay and evaluates every recorded quote.
+   *
+   * @param fileName  the graph configuration file
+   * @param journal   the directory of the recorded journal
+   * @param symbol    the symbol whose events drive the graph
+   * @param precision the precision of the symbol's prices and amounts
+   * @param speed     the multiple of real time to replay at, or
+   *                  FeedReplay.MAX_SPEED
+   * @return the number of frames replayed
+   * @throws IOException if the configuration or journal cannot be read
+   */
+  public static long replay(final String fileName, final Path journal,
+      final String symbol, final Precision precision, final double speed)
+      throws IOException {
+    Config config = loadConfig(fileName);
+    DefaultGraph graph = loadGraph(config);
+
+    if (graph == null) {
+      return 0L;
+    }
+
+    MarketListener marketListener = new MarketListener();
+
+    if (config.isConflateDepth()) {
+      marketListener.subscribeDepthConflated(symbol, precision,
+          graph::onDepthEvent);
+    } else {
+      marketListener.subscribeDepth(symbol, precision, graph::onDepthEvent);
+    }
+
+    try (JournalReader reader = new JournalReader(journal)) {
+      FeedReplay replay = new FeedReplay(reader, speed);
+      replay.addListener(marketListener);
+
+      if (graph.hasOrderBookCallbacks()) {
+        OrderBookListener bookListener = new OrderBookListener();
+        OrderBook book = new OrderBook(symbol, precision, bookListener);
+        book.setChangeCallback(graph::onOrderBookEvent);
+        book.setClock(replay::getCurrentNanos);
+        bookListener.subscribeMbp(symbol, precision, book::onUpdate);
+        replay.addListener(bookListener);
+      }
+
+      return replay.run();
+    }
+  }
+
+  /**
+   * Reads a graph configuration file.
+   *
+   * @param fileName the graph configuration file
+   * @return the configuration
+   * @throws IOException if the configuration cannot be read
+   */
+  private static Config loadConfig(final String fileName) throws IOException {
     ObjectMapper mapper = MapperSingleton.getInstance();
-    File jsonFile = new File(fileName);
-    Config config = mapper.readValue(jsonFile, Config.class);
+    return mapper.readValue(new File(fileName), Config.class);
+  }
+
+  /**
+   * Loads the graph builder named by a configuration and builds a graph with
+   * it.
+   *
+   * @param config the graph configuration
+   * @return the built graph, or null if the builder could not be loaded
+   */
+  private static DefaultGraph loadGraph(final Config config) {
     String path = config.getBuilderPath();
     final Logger logger = Logger.getLogger(GraphRunner.class.getName());
 
@@ -36,22 +243,20 @@ public final class GraphRunner {
       Class<?> customBuilderClass = Class.forName(path);
       logger.info("Class loaded: " + customBuilderClass.getName());
 
-      DefaultGraph graph = new DefaultGraph();
+      DefaultGraph graph = new DefaultGraph(config.getReportFolder());
       Object builderObject = customBuilderClass.getDeclaredConstructor()
           .newInstance();
       if (builderObject instanceof GraphBuilder) {
         GraphBuilder builder = (GraphBuilder) builderObject;
         builder.build(graph);
-
-        sharedListener.connect("wss://api.huobi.pro/ws");
-        sharedListener.subscribeDepth(data -> {
-          graph.onDepthEvent(data);
-        });
+        return graph;
       }
     } catch (ClassNotFoundException | NoSuchMethodException
         | IllegalAccessException | InvocationTargetException
         | InstantiationException error) {
       logger.severe("Error running graph: " + error.getMessage());
     }
+
+    return null;
   }
 }
@@ -1,7 +1,13 @@
 package gt.trading.openbook.featuregraph.config;
 
+import gt.trading.openbook.featuregraph.DefaultGraph;
+
 public class Config {
   private String builderPath;
+  private String marketUri = "wss://api.huobi.pro/ws";
+  private String mbpUri = "wss://api-aws.huobi.pro/feed";
+  private boolean conflateDepth = false;
+  private String reportFolder = DefaultGraph.DEFAULT_CSV_FOLDER;
 
   /**
    * Gets the builder path of the feature graph.
@@ -11,4 +17,45 @@ public class Config {
   public String getBuilderPath() {
     return builderPath;
   }
+
+  /**
+   * Gets the endpoint the graph's market data is received from, which is the
+   * Huobi market endpoint unless the configuration names another, such as a
+   * local FeedServer.
+   *
+   * @return the URI of the market endpoint
+   */
+  public String getMarketUri() {
+    return marketUri;
+  }
+
+  /**
+   * Gets the endpoint the graph's market by price feed is received from,
+   * which is the Huobi feed endpoint unless the configuration names another.
+   *
+   * @return the URI of the market by price endpoint
+   */
+  public String getMbpUri() {
+    return mbpUri;
+  }
+
+  /**
+   * Gets whether the graph only evaluates the latest depth event when it
+   * falls behind, instead of every one. Off unless the configuration turns
+   * it on.
+   *
+   * @return true if depth events are conflated
+   */
+  public boolean isConflateDepth() {
+    return conflateDepth;
+  }
+
+  /**
+   * Gets the folder the graph's CSV files are saved to.
+   *
+   * @return the path of the reports folder
+   */
+  public String getReportFolder() {
+    return reportFolder;
+  }
 }
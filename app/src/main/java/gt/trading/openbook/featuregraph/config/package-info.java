@@ -3,7 +3,8 @@
  * json file containing the builder path.
  *
  * The FeatureGraphConfig class is responsible for retrieving the builder path
- * stored within the json file.
+ * stored within the json file, and the endpoints the graph's listeners
+ * connect to, which default to Huobi's.
  *
  * The example.json file contains the path for the implementation of a feature
  * graph builder.
@@ -1,10 +1,16 @@
 package gt.trading.openbook.featuregraph.features;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import gt.trading.openbook.featuregraph.Feature;
 import gt.trading.openbook.featuregraph.FeatureGraph;
 import gt.trading.openbook.models.DepthData;
+import gt.trading.openbook.models.Precision;
 
 public final class BestAskFeature implements Feature {
+  private long ask = Long.MIN_VALUE;
   private Double value = Double.NaN;
   private final String name = "BestAskFeature";
 
@@ -21,21 +27,45 @@ public final class BestAskFeature implements Feature {
 
   /**
    * Callback function that is invoked when a depthEvent occurs. Compares the
-   * new ask value with the current value and updates the value if they are not
-   * equal.
+   * new fixed point ask with the current one and updates the value if they are
+   * not equal.
    *
    * @param depthData the depthData used to get the latest best ask
    */
   @Override
   public boolean onDepthEvent(final DepthData depthData) {
-    if (Double.compare(depthData.getAsk(), value) != 0) {
-      value = depthData.getAsk();
+    if (depthData.getAsk() != ask) {
+      Precision precision = depthData.getPrecision();
+      ask = depthData.getAsk();
+      value = precision.priceToDouble(ask);
       return true;
     }
 
     return false;
   }
 
+  /**
+   * Writes the fixed point best ask and the value of the feature.
+   *
+   * @param out the output to write the state to
+   */
+  @Override
+  public void saveState(final DataOutput out) throws IOException {
+    out.writeLong(ask);
+    out.writeDouble(value);
+  }
+
+  /**
+   * Reads back the fixed point best ask and the value of the feature.
+   *
+   * @param in the input to read the state from
+   */
+  @Override
+  public void restoreState(final DataInput in) throws IOException {
+    ask = in.readLong();
+    value = in.readDouble();
+  }
+
   /**
    * Returns the value of the feature.
    */
@@ -1,10 +1,16 @@
 package gt.trading.openbook.featuregraph.features;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import gt.trading.openbook.featuregraph.Feature;
 import gt.trading.openbook.featuregraph.FeatureGraph;
 import gt.trading.openbook.models.DepthData;
+import gt.trading.openbook.models.Precision;
 
 public final class BestBidFeature implements Feature {
+  private long bid = Long.MIN_VALUE;
   private Double value = Double.NaN;
   private final String name = "BestBidFeature";
 
@@ -21,21 +27,45 @@ public final class BestBidFeature implements Feature {
 
   /**
    * Callback function that is invoked when a depthEvent occurs. Compares the
-   * new bid value with the current value and updates the value if they are not
-   * equal.
+   * new fixed point bid with the current one and updates the value if they are
+   * not equal.
    *
    * @param depthData the depthData used to get the latest best bid
    */
   @Override
   public boolean onDepthEvent(final DepthData depthData) {
-    if (Double.compare(depthData.getBid(), value) != 0) {
-      value = depthData.getBid();
+    if (depthData.getBid() != bid) {
+      Precision precision = depthData.getPrecision();
+      bid = depthData.getBid();
+      value = precision.priceToDouble(bid);
       return true;
     }
 
     return false;
   }
 
+  /**
+   * Writes the fixed point best bid and the value of the feature.
+   *
+   * @param out the output to write the state to
+   */
+  @Override
+  public void saveState(final DataOutput out) throws IOException {
+    out.writeLong(bid);
+    out.writeDouble(value);
+  }
+
+  /**
+   * Reads back the fixed point best bid and the value of the feature.
+   *
+   * @param in the input to read the state from
+   */
+  @Override
+  public void restoreState(final DataInput in) throws IOException {
+    bid = in.readLong();
+    value = in.readDouble();
+  }
+
   /**
    * Returns the value of the feature.
    */
@@ -1,5 +1,9 @@
 package gt.trading.openbook.featuregraph.features;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import gt.trading.openbook.featuregraph.Feature;
 import gt.trading.openbook.featuregraph.FeatureGraph;
 
@@ -72,6 +76,30 @@ public final class MidPriceFeature implements Feature {
     value = (bestAsk + bestBid) / 2;
   }
 
+  /**
+   * Writes the best ask and bid last seen and the value of the feature.
+   *
+   * @param out the output to write the state to
+   */
+  @Override
+  public void saveState(final DataOutput out) throws IOException {
+    out.writeDouble(bestAsk);
+    out.writeDouble(bestBid);
+    out.writeDouble(value);
+  }
+
+  /**
+   * Reads back the best ask and bid last seen and the value of the feature.
+   *
+   * @param in the input to read the state from
+   */
+  @Override
+  public void restoreState(final DataInput in) throws IOException {
+    bestAsk = in.readDouble();
+    bestBid = in.readDouble();
+    value = in.readDouble();
+  }
+
   /**
    * Returns the value of the feature.
    */
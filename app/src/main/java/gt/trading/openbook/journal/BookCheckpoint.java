@@ -0,0 +1,69 @@
+package gt.trading.openbook.journal;
+
+import gt.trading.openbook.models.OrderBookData;
+
+/**
+ * The BookCheckpoint class holds the full state of one order book at a point
+ * in a journal: its levels and sequence number, and the position of the first
+ * record which was not yet applied to it. Restoring the book and replaying the
+ * journal from that position rebuilds every later state of the book.
+ */
+public final class BookCheckpoint {
+  private final String channel;
+  private final long recordedNanos;
+  private final long position;
+  private final OrderBookData book;
+
+  /**
+   * Constructs a BookCheckpoint.
+   *
+   * @param newChannel       the market by price channel of the book
+   * @param newRecordedNanos the receive time the book was checkpointed at
+   * @param newPosition      the journal position replay resumes from
+   * @param newBook          the levels and sequence number of the book
+   */
+  BookCheckpoint(final String newChannel, final long newRecordedNanos,
+      final long newPosition, final OrderBookData newBook) {
+    channel = newChannel;
+    recordedNanos = newRecordedNanos;
+    position = newPosition;
+    book = newBook;
+  }
+
+  /**
+   * Returns the market by price channel of the book.
+   *
+   * @return the channel name
+   */
+  public String getChannel() {
+    return channel;
+  }
+
+  /**
+   * Returns the receive time the book was checkpointed at.
+   *
+   * @return the time in epoch nanoseconds
+   */
+  public long getRecordedNanos() {
+    return recordedNanos;
+  }
+
+  /**
+   * Returns the journal position replay resumes from, for
+   * JournalReader.seek.
+   *
+   * @return the position
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Returns the levels and sequence number of the book, as a snapshot.
+   *
+   * @return the order book data
+   */
+  public OrderBookData getBook() {
+    return book;
+  }
+}
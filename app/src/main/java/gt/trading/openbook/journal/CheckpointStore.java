@@ -0,0 +1,225 @@
+package gt.trading.openbook.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.PriceLevel;
+
+/**
+ * The CheckpointStore class keeps the order book checkpoints of a journal in
+ * one append-only file beside its segments. Opening the store reads only the
+ * header of each checkpoint, so finding the latest checkpoint of a book before
+ * a time does not load any levels; the levels of the checkpoint found are read
+ * when it is returned.
+ *
+ * Each checkpoint is stored, in little endian order, as an int length, a long
+ * receive time, a long journal position, a short channel length, the channel
+ * in ASCII, a long sequence number, an int bid count, an int ask count, and
+ * the price and amount of every bid and then every ask.
+ */
+public final class CheckpointStore implements AutoCloseable {
+  private static final String FILE_NAME = "checkpoints";
+  private static final int HEADER_BYTES = Integer.BYTES + 2 * Long.BYTES
+      + Short.BYTES;
+  private static final int LEVEL_BYTES = 2 * Long.BYTES;
+  private final FileChannel file;
+  private final List<String> channels = new ArrayList<>();
+  private final List<long[]> entries = new ArrayList<>();
+
+  /**
+   * Opens the checkpoint store of a journal, creating it if needed.
+   *
+   * @param directory the directory of the journal
+   * @throws IOException if the store cannot be opened or is corrupt
+   */
+  public CheckpointStore(final Path directory) throws IOException {
+    file = FileChannel.open(directory.resolve(FILE_NAME),
+        StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    long offset = 0L;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+
+    while (offset + HEADER_BYTES <= file.size()) {
+      header.clear();
+      readFully(header, offset);
+      int length = header.getInt(0);
+
+      if (length < HEADER_BYTES || offset + length > file.size()) {
+        break;
+      }
+
+      ByteBuffer name = ByteBuffer.allocate(header.getShort(HEADER_BYTES
+          - Short.BYTES));
+      readFully(name, offset + HEADER_BYTES);
+      channels.add(new String(name.array(), StandardCharsets.US_ASCII));
+      entries.add(new long[] {header.getLong(Integer.BYTES),
+          header.getLong(Integer.BYTES + Long.BYTES), offset});
+      offset += length;
+    }
+
+    // A torn checkpoint at the end is dropped and overwritten
+    file.truncate(offset);
+    file.position(offset);
+  }
+
+  /**
+   * Appends a checkpoint of an order book.
+   *
+   * @param channel       the market by price channel of the book
+   * @param recordedNanos the receive time the book is checkpointed at
+   * @param position      the journal position replay resumes from
+   * @param book          the levels and sequence number of the book
+   * @throws IOException if the checkpoint cannot be written
+   */
+  public synchronized void append(final String channel,
+      final long recordedNanos, final long position, final OrderBookData book)
+      throws IOException {
+    byte[] name = channel.getBytes(StandardCharsets.US_ASCII);
+    int levels = book.getBidCount() + book.getAskCount();
+    int length = HEADER_BYTES + name.length + Long.BYTES
+        + 2 * Integer.BYTES + levels * LEVEL_BYTES;
+    ByteBuffer record = ByteBuffer.allocate(length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    record.putInt(length).putLong(recordedNanos).putLong(position)
+        .putShort((short) name.length).put(name).putLong(book.getSeqNum())
+        .putInt(book.getBidCount()).putInt(book.getAskCount());
+
+    for (int i = 0; i < book.getBidCount(); i++) {
+      record.putLong(book.getBidPrice(i)).putLong(book.getBidAmount(i));
+    }
+
+    for (int i = 0; i < book.getAskCount(); i++) {
+      record.putLong(book.getAskPrice(i)).putLong(book.getAskAmount(i));
+    }
+
+    long offset = file.position();
+    record.flip();
+
+    while (record.hasRemaining()) {
+      file.write(record);
+    }
+
+    channels.add(channel);
+    entries.add(new long[] {recordedNanos, position, offset});
+  }
+
+  /**
+   * Returns the latest checkpoint of a book taken at or before a time.
+   *
+   * @param channel    the market by price channel of the book
+   * @param epochNanos the receive time to look before
+   * @return the checkpoint, or null if the book has none that early
+   * @throws IOException if the checkpoint cannot be read
+   */
+  public synchronized BookCheckpoint findLatest(final String channel,
+      final long epochNanos) throws IOException {
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      long[] entry = entries.get(i);
+
+      if (entry[0] <= epochNanos && channels.get(i).equals(channel)) {
+        return new BookCheckpoint(channel, entry[0], entry[1],
+            readBook(entry[2]));
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the number of checkpoints in the store.
+   *
+   * @return the number of checkpoints
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Flushes and closes the store.
+   *
+   * @throws IOException if the file cannot be flushed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    file.force(false);
+    file.close();
+  }
+
+  /**
+   * Reads the levels and sequence number of a checkpoint.
+   *
+   * @param offset the offset of the checkpoint in the file
+   * @return the book as a snapshot
+   * @throws IOException if the checkpoint cannot be read
+   */
+  private OrderBookData readBook(final long offset) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    readFully(header, offset);
+    int length = header.getInt(0);
+    int bodyStart = HEADER_BYTES + header.getShort(HEADER_BYTES
+        - Short.BYTES);
+    ByteBuffer body = ByteBuffer.allocate(length - bodyStart)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    readFully(body, offset + bodyStart);
+    body.flip();
+
+    long seqNum = body.getLong();
+    int bidCount = body.getInt();
+    int askCount = body.getInt();
+    List<PriceLevel> bids = readLevels(body, bidCount);
+    List<PriceLevel> asks = readLevels(body, askCount);
+    return OrderBookData.builder().action(OrderBookData.Action.REFRESH)
+        .seqNum(seqNum).bids(bids).asks(asks).build();
+  }
+
+  /**
+   * Reads one side of a checkpoint.
+   *
+   * @param body  the checkpoint body positioned at the side's first level
+   * @param count the number of levels on the side
+   * @return the levels of the side, best first
+   */
+  private static List<PriceLevel> readLevels(final ByteBuffer body,
+      final int count) {
+    List<PriceLevel> levels = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      levels.add(PriceLevel.builder().price(body.getLong())
+          .amount(body.getLong()).build());
+    }
+
+    return levels;
+  }
+
+  /**
+   * Reads bytes of the file until a buffer is full.
+   *
+   * @param target the buffer to fill
+   * @param offset the offset in the file to read from
+   * @throws IOException if the file ends first
+   */
+  private void readFully(final ByteBuffer target, final long offset)
+      throws IOException {
+    long position = offset;
+
+    while (target.hasRemaining()) {
+      int read = file.read(target, position);
+
+      if (read < 0) {
+        throw new IOException("Checkpoint store ends inside a checkpoint");
+      }
+
+      position += read;
+    }
+  }
+}
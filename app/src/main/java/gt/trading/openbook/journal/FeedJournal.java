@@ -0,0 +1,408 @@
+package gt.trading.openbook.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * The FeedJournal class records raw WebSocket frames, still compressed as
+ * they came off the socket, to append-only segment files. Each segment is a
+ * file of fixed size mapped into memory, so appending a frame is a copy into
+ * the mapping with no system call, and the frame's bytes are copied straight
+ * from the buffer they were received in.
+ *
+ * Every record holds the channel of the frame, its receive time in epoch
+ * nanoseconds and the exchange sequence of its tick, as described in
+ * JournalFormat. When a segment is full, writing continues in the next one,
+ * which a background thread has already created, mapped and paged in, and the
+ * full segment is flushed to disk by that thread. The writing thread therefore
+ * never waits on the file system; if the next segment is not ready in time,
+ * the frame is dropped and counted instead.
+ *
+ * While a segment is written, a sparse index of receive times to record
+ * offsets is kept in memory, and the roller writes it beside the segment once
+ * the segment is retired, so that a JournalReader can seek to a time.
+ *
+ * Appends are synchronized, so one journal can be shared by many listeners.
+ */
+public final class FeedJournal {
+  private static final Logger LOGGER = Logger
+      .getLogger(FeedJournal.class.getName());
+  private static final int PAGE_SIZE = 4096;
+  private static final int INITIAL_INDEX_ENTRIES = 1024;
+  private final Path directory;
+  private final long segmentBytes;
+  private final long epochBaseNanos;
+  private final long nanoTimeBase;
+  private final ExecutorService roller = Executors
+      .newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-roller");
+        thread.setDaemon(true);
+        return thread;
+      });
+  private Segment current;
+  private Future<Segment> next;
+  private int nextIndex;
+  private boolean closed = false;
+  private long frameCount = 0L;
+  private long droppedCount = 0L;
+  private long bytesWritten = 0L;
+  private long[] indexTimes = new long[INITIAL_INDEX_ENTRIES];
+  private int[] indexOffsets = new int[INITIAL_INDEX_ENTRIES];
+  private int indexCount = 0;
+
+  /**
+   * The Segment class holds one mapped segment file.
+   */
+  private static final class Segment {
+    private final int index;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Constructs a Segment.
+     *
+     * @param newIndex   the index of the segment in the journal
+     * @param newChannel the open channel of the segment file
+     * @param newBuffer  the mapping of the whole file
+     */
+    Segment(final int newIndex, final FileChannel newChannel,
+        final MappedByteBuffer newBuffer) {
+      index = newIndex;
+      channel = newChannel;
+      buffer = newBuffer;
+    }
+  }
+
+  /**
+   * Constructs a FeedJournal writing to a directory, after any segments
+   * already there.
+   *
+   * @param newDirectory    the directory the segments are written to, which
+   *                        is created if it does not exist
+   * @param newSegmentBytes the size of each segment file
+   * @throws IllegalArgumentException if the segment size cannot hold a
+   *                                  record or is 2 GiB or more
+   * @throws IOException              if the first segment cannot be created
+   */
+  public FeedJournal(final Path newDirectory, final long newSegmentBytes)
+      throws IllegalArgumentException, IOException {
+    if (newSegmentBytes <= JournalFormat.SEGMENT_HEADER_BYTES
+        + JournalFormat.RECORD_HEADER_BYTES
+        || newSegmentBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "Segment size must fit a record and be less than 2 GiB");
+    }
+
+    directory = newDirectory;
+    segmentBytes = newSegmentBytes;
+    Files.createDirectories(directory);
+    nextIndex = JournalFormat.nextSegmentIndex(directory);
+
+    Instant now = Instant.now();
+    nanoTimeBase = System.nanoTime();
+    epochBaseNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond())
+        + now.getNano();
+
+    current = createSegment(nextIndex++);
+    next = roller.submit(prepare(nextIndex++));
+    LOGGER.info("Journaling to " + directory + " from segment "
+        + current.index);
+  }
+
+  /**
+   * Appends a frame to the journal.
+   *
+   * @param channel    the channel of the frame as ASCII bytes
+   * @param sequence   the exchange sequence of the frame's tick
+   * @param receivedAt the System.nanoTime at which the frame was received
+   * @param frame      the buffer holding the raw frame
+   * @param offset     the index of the frame in the buffer
+   * @param length     the length of the frame
+   * @return true if the frame was written, false if it was dropped
+   */
+  public synchronized boolean append(final byte[] channel,
+      final long sequence, final long receivedAt, final ByteBuffer frame,
+      final int offset, final int length) {
+    if (closed) {
+      return false;
+    }
+
+    int recordLength = JournalFormat.RECORD_HEADER_BYTES + channel.length
+        + length;
+
+    // One int is kept free after each record for the end marker
+    if (JournalFormat.SEGMENT_HEADER_BYTES + recordLength
+        + Integer.BYTES > segmentBytes) {
+      droppedCount++;
+      LOGGER.warning("Dropped frame of " + length
+          + " bytes, larger than a segment");
+      return false;
+    }
+
+    if (current.buffer.remaining() < recordLength + Integer.BYTES
+        && !roll()) {
+      droppedCount++;
+      return false;
+    }
+
+    MappedByteBuffer buffer = current.buffer;
+    int start = buffer.position();
+    int body = start + Integer.BYTES;
+    long receivedNanos = epochBaseNanos + (receivedAt - nanoTimeBase);
+    buffer.putLong(body, receivedNanos);
+    buffer.putLong(body + Long.BYTES, sequence);
+    buffer.putShort(body + 2 * Long.BYTES, (short) channel.length);
+    buffer.put(body + JournalFormat.RECORD_HEADER_BYTES - Integer.BYTES,
+        channel);
+    buffer.put(start + JournalFormat.RECORD_HEADER_BYTES + channel.length,
+        frame, offset, length);
+    // The length is written last, so a torn record reads as the end
+    buffer.putInt(start, recordLength);
+    buffer.position(start + recordLength);
+    index(receivedNanos, start);
+    frameCount++;
+    bytesWritten += recordLength;
+    return true;
+  }
+
+  /**
+   * Flushes and closes the journal. The last segment is truncated to the
+   * records it holds, and the unused prepared segment is deleted.
+   */
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    Segment last = current;
+    current = null;
+    writeIndex(last);
+    roller.execute(() -> retire(last, true));
+
+    try {
+      Segment spare = next.get();
+      spare.channel.close();
+      Files.deleteIfExists(
+          JournalFormat.segmentPath(directory, spare.index));
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | IOException error) {
+      LOGGER.warning("Unable to remove spare segment: "
+          + error.getMessage());
+    }
+
+    roller.shutdown();
+
+    try {
+      roller.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+    }
+
+    LOGGER.info("Closed journal after " + frameCount + " frames, "
+        + droppedCount + " dropped");
+  }
+
+  /**
+   * Returns the number of frames written.
+   *
+   * @return the number of frames
+   */
+  public synchronized long getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Returns the number of frames dropped because no segment was ready or the
+   * frame did not fit in a segment.
+   *
+   * @return the number of dropped frames
+   */
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Returns the number of bytes written, including record headers.
+   *
+   * @return the number of bytes
+   */
+  public synchronized long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Returns the index of the segment being written.
+   *
+   * @return the segment index, or -1 once closed
+   */
+  public synchronized int getSegmentIndex() {
+    return current == null ? -1 : current.index;
+  }
+
+  /**
+   * Switches to the prepared segment if it is ready, hands the full segment
+   * to the roller and starts preparing the one after.
+   *
+   * @return true if writing moved to a new segment
+   */
+  private boolean roll() {
+    if (!next.isDone()) {
+      LOGGER.warning("Next journal segment is not ready");
+      return false;
+    }
+
+    Segment prepared;
+
+    try {
+      prepared = next.get();
+    } catch (InterruptedException | ExecutionException error) {
+      LOGGER.severe("Unable to prepare journal segment: "
+          + error.getMessage());
+      next = roller.submit(prepare(nextIndex++));
+      return false;
+    }
+
+    Segment full = current;
+    writeIndex(full);
+    current = prepared;
+    next = roller.submit(prepare(nextIndex++));
+    roller.execute(() -> retire(full, false));
+    return true;
+  }
+
+  /**
+   * Adds an index entry for a record if it is the first of its segment or was
+   * received at least an index interval after the last entry.
+   *
+   * @param receivedNanos the receive time of the record in epoch nanoseconds
+   * @param offset        the offset of the record in the segment
+   */
+  private void index(final long receivedNanos, final int offset) {
+    if (indexCount > 0 && receivedNanos - indexTimes[indexCount - 1]
+        < JournalFormat.INDEX_INTERVAL_NANOS) {
+      return;
+    }
+
+    if (indexCount == indexTimes.length) {
+      indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+      indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+    }
+
+    indexTimes[indexCount] = receivedNanos;
+    indexOffsets[indexCount] = offset;
+    indexCount++;
+  }
+
+  /**
+   * Hands the index entries of a segment to the roller to be written beside
+   * it, and starts the index of the next segment.
+   *
+   * @param segment the segment the entries belong to
+   */
+  private void writeIndex(final Segment segment) {
+    long[] times = Arrays.copyOf(indexTimes, indexCount);
+    int[] offsets = Arrays.copyOf(indexOffsets, indexCount);
+    indexCount = 0;
+    roller.execute(() -> {
+      ByteBuffer index = ByteBuffer.allocate(JournalFormat.SEGMENT_HEADER_BYTES
+          + times.length * JournalFormat.INDEX_ENTRY_BYTES)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      index.putInt(JournalFormat.INDEX_MAGIC).putInt(JournalFormat.VERSION);
+
+      for (int i = 0; i < times.length; i++) {
+        index.putLong(times[i]).putInt(offsets[i]);
+      }
+
+      index.flip();
+
+      try (FileChannel channel = FileChannel.open(
+          JournalFormat.indexPath(directory, segment.index),
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE)) {
+        while (index.hasRemaining()) {
+          channel.write(index);
+        }
+      } catch (IOException error) {
+        LOGGER.severe("Unable to write index of journal segment "
+            + segment.index + ": " + error.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Returns a task creating, mapping and paging in a segment, so that writing
+   * to it later does not fault.
+   *
+   * @param index the index of the segment
+   * @return the task
+   */
+  private Callable<Segment> prepare(final int index) {
+    return () -> {
+      Segment segment = createSegment(index);
+
+      for (int page = 0; page < segmentBytes; page += PAGE_SIZE) {
+        segment.buffer.put(page, segment.buffer.get(page));
+      }
+
+      return segment;
+    };
+  }
+
+  /**
+   * Creates a segment file and writes its header.
+   *
+   * @param index the index of the segment
+   * @return the mapped segment
+   * @throws IOException if the file cannot be created or mapped
+   */
+  private Segment createSegment(final int index) throws IOException {
+    FileChannel channel = FileChannel.open(
+        JournalFormat.segmentPath(directory, index),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+        segmentBytes);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(JournalFormat.MAGIC);
+    buffer.putInt(JournalFormat.VERSION);
+    return new Segment(index, channel, buffer);
+  }
+
+  /**
+   * Flushes a segment which is no longer written and closes its file.
+   *
+   * @param segment  the segment to retire
+   * @param truncate true to cut the file down to the records it holds
+   */
+  private void retire(final Segment segment, final boolean truncate) {
+    try {
+      segment.buffer.force();
+
+      if (truncate) {
+        segment.channel.truncate(segment.buffer.position() + Integer.BYTES);
+      }
+
+      segment.channel.close();
+    } catch (IOException error) {
+      LOGGER.severe("Unable to flush journal segment " + segment.index + ": "
+          + error.getMessage());
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package gt.trading.openbook.journal;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The JournalFormat class describes the layout of journal segment files.
+ *
+ * A segment is named by its index, zero padded to eight digits, with the
+ * extension ".journal", and starts with an int magic number and an int format
+ * version. Records follow back to back, each laid out in little endian order
+ * as:
+ *
+ * int record length, long receive time in epoch nanoseconds, long exchange
+ * sequence, short channel length, the channel in ASCII, and the raw frame.
+ *
+ * A record length of zero marks the end of the records in a segment.
+ *
+ * Each segment has a sparse time index beside it, with the same name and the
+ * extension ".index", written once the segment is full. It starts with an int
+ * magic number and an int version, followed by entries of a long receive time
+ * and an int offset, pointing at the first record received at least
+ * INDEX_INTERVAL_NANOS after the previous entry. The first record of a
+ * segment always has an entry.
+ */
+final class JournalFormat {
+  /**
+   * The magic number at the start of every segment.
+   */
+  static final int MAGIC = 0x4F424A4C;
+
+  /**
+   * The version of the record layout.
+   */
+  static final int VERSION = 1;
+
+  /**
+   * The size of the segment header.
+   */
+  static final int SEGMENT_HEADER_BYTES = 2 * Integer.BYTES;
+
+  /**
+   * The size of a record before its channel and frame.
+   */
+  static final int RECORD_HEADER_BYTES = Integer.BYTES + 2 * Long.BYTES
+      + Short.BYTES;
+
+  /**
+   * The magic number at the start of every index.
+   */
+  static final int INDEX_MAGIC = 0x4F424958;
+
+  /**
+   * The size of an index entry.
+   */
+  static final int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+  /**
+   * The least receive time between two index entries.
+   */
+  static final long INDEX_INTERVAL_NANOS = 1_000_000_000L;
+
+  private static final String EXTENSION = ".journal";
+  private static final String INDEX_EXTENSION = ".index";
+
+  private JournalFormat() {
+    return;
+  }
+
+  /**
+   * Returns the path of a segment.
+   *
+   * @param directory the directory of the journal
+   * @param index     the index of the segment
+   * @return the path of the segment file
+   */
+  static Path segmentPath(final Path directory, final int index) {
+    return directory.resolve(String.format("%08d", index) + EXTENSION);
+  }
+
+  /**
+   * Returns the path of the time index of a segment.
+   *
+   * @param directory the directory of the journal
+   * @param index     the index of the segment
+   * @return the path of the index file
+   */
+  static Path indexPath(final Path directory, final int index) {
+    return directory.resolve(String.format("%08d", index) + INDEX_EXTENSION);
+  }
+
+  /**
+   * Packs a segment index and an offset into a journal position.
+   *
+   * @param segment the index of the segment
+   * @param offset  the offset of a record in the segment
+   * @return the position
+   */
+  static long position(final int segment, final int offset) {
+    return ((long) segment << Integer.SIZE) | offset;
+  }
+
+  /**
+   * Returns the segment index of a journal position.
+   *
+   * @param position the position
+   * @return the index of the segment
+   */
+  static int segmentOf(final long position) {
+    return (int) (position >>> Integer.SIZE);
+  }
+
+  /**
+   * Returns the offset within its segment of a journal position.
+   *
+   * @param position the position
+   * @return the offset of the record
+   */
+  static int offsetOf(final long position) {
+    return (int) position;
+  }
+
+  /**
+   * Returns the index of a segment file.
+   *
+   * @param file the path of a file in a journal directory
+   * @return the segment index, or -1 if the file is not a segment
+   */
+  static int segmentIndex(final Path file) {
+    String name = file.getFileName().toString();
+
+    if (!name.endsWith(EXTENSION)) {
+      return -1;
+    }
+
+    try {
+      return Integer.parseInt(name.substring(0,
+          name.length() - EXTENSION.length()));
+    } catch (NumberFormatException error) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the index after the last segment in a directory.
+   *
+   * @param directory the directory of the journal
+   * @return the next free segment index
+   * @throws IOException if the directory cannot be listed
+   */
+  static int nextSegmentIndex(final Path directory) throws IOException {
+    int last = -1;
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        last = Math.max(last, segmentIndex(file));
+      }
+    }
+
+    return last + 1;
+  }
+}
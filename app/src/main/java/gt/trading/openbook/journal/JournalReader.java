@@ -0,0 +1,397 @@
+package gt.trading.openbook.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The JournalReader class reads the records of a journal written by a
+ * FeedJournal, segment by segment in index order. Each segment is mapped
+ * read-only, and a record's fields and frame are read straight from the
+ * mapping, so moving to the next record allocates nothing.
+ *
+ * The reader is a cursor: next moves it to the following record, whose fields
+ * are then available until next is called again. The cursor can be moved to a
+ * position taken from getPosition, or to a receive time, which is found with
+ * the sparse time index beside each segment and a short scan from the nearest
+ * entry before it.
+ */
+public final class JournalReader implements AutoCloseable {
+  private final Path directory;
+  private final List<Integer> segments = new ArrayList<>();
+  private int segmentCursor = 0;
+  private int segment = -1;
+  private MappedByteBuffer buffer = null;
+  private ByteBuffer frame = null;
+  private int recordStart = -1;
+  private int channelLength = 0;
+  private long receivedNanos = 0L;
+  private long sequence = 0L;
+  private long recordCount = 0L;
+
+  /**
+   * Constructs a JournalReader over every segment in a directory.
+   *
+   * @param newDirectory the directory of the journal
+   * @throws IOException if the directory cannot be listed
+   */
+  public JournalReader(final Path newDirectory) throws IOException {
+    directory = newDirectory;
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        int index = JournalFormat.segmentIndex(file);
+
+        if (index >= 0) {
+          segments.add(index);
+        }
+      }
+    }
+
+    Collections.sort(segments);
+  }
+
+  /**
+   * Moves to the next record, opening the next segment when one runs out.
+   *
+   * @return true if there is a record, false at the end of the journal
+   * @throws IOException if a segment cannot be mapped or is not a journal
+   */
+  public boolean next() throws IOException {
+    while (true) {
+      if (buffer != null && readRecord()) {
+        recordCount++;
+        return true;
+      }
+
+      if (segmentCursor == segments.size()) {
+        buffer = null;
+        return false;
+      }
+
+      openSegment(segments.get(segmentCursor++));
+    }
+  }
+
+  /**
+   * Moves the cursor so that next returns the record at a position.
+   *
+   * @param position a position returned by getPosition
+   * @throws IOException if the position's segment is not in the journal or
+   *                     cannot be mapped
+   */
+  public void seek(final long position) throws IOException {
+    int cursor = Collections.binarySearch(segments,
+        JournalFormat.segmentOf(position));
+
+    if (cursor < 0) {
+      throw new IOException("No journal segment at position " + position);
+    }
+
+    openSegment(segments.get(cursor));
+    segmentCursor = cursor + 1;
+    buffer.position(JournalFormat.offsetOf(position));
+  }
+
+  /**
+   * Moves the cursor back so that next returns the first record of the
+   * journal.
+   */
+  public void rewind() {
+    buffer = null;
+    frame = null;
+    segmentCursor = 0;
+  }
+
+  /**
+   * Moves the cursor so that next returns the first record received at or
+   * after a time, or the first record if the journal starts later.
+   *
+   * @param epochNanos the receive time to seek to in epoch nanoseconds
+   * @throws IOException if a segment or its index cannot be read
+   */
+  public void seekTime(final long epochNanos) throws IOException {
+    if (segments.isEmpty()) {
+      return;
+    }
+
+    int cursor = 0;
+
+    for (int i = 1; i < segments.size(); i++) {
+      if (firstTime(segments.get(i)) > epochNanos) {
+        break;
+      }
+
+      cursor = i;
+    }
+
+    openSegment(segments.get(cursor));
+    segmentCursor = cursor + 1;
+    buffer.position(indexedOffset(segments.get(cursor), epochNanos));
+
+    while (true) {
+      int start = buffer.position();
+
+      if (!readRecord()) {
+        return;
+      }
+
+      if (receivedNanos >= epochNanos) {
+        buffer.position(start);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the position of the current record, which seek returns to.
+   *
+   * @return the position of the record
+   */
+  public long getPosition() {
+    return JournalFormat.position(segment, recordStart);
+  }
+
+  /**
+   * Returns the receive time of the current record.
+   *
+   * @return the receive time in epoch nanoseconds
+   */
+  public long getReceivedNanos() {
+    return receivedNanos;
+  }
+
+  /**
+   * Returns the exchange sequence of the current record's tick.
+   *
+   * @return the sequence, or -1 if the tick had none
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Returns the channel of the current record. This builds a String, so hot
+   * loops should use copyChannel instead.
+   *
+   * @return the channel name
+   */
+  public String getChannel() {
+    byte[] name = new byte[channelLength];
+    buffer.get(recordStart + JournalFormat.RECORD_HEADER_BYTES, name);
+    return new String(name, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Returns the length of the current record's channel name.
+   *
+   * @return the number of characters in the channel name
+   */
+  public int getChannelLength() {
+    return channelLength;
+  }
+
+  /**
+   * Copies the channel of the current record into a character buffer,
+   * without building a String.
+   *
+   * @param target the buffer, at least getChannelLength long
+   * @return the number of characters copied
+   */
+  public int copyChannel(final char[] target) {
+    int offset = recordStart + JournalFormat.RECORD_HEADER_BYTES;
+
+    for (int i = 0; i < channelLength; i++) {
+      target[i] = (char) buffer.get(offset + i);
+    }
+
+    return channelLength;
+  }
+
+  /**
+   * Returns the raw frame of the current record, as a view of the mapping
+   * which is reused for the next record.
+   *
+   * @return the frame, positioned at its first byte
+   */
+  public ByteBuffer getFrame() {
+    return frame;
+  }
+
+  /**
+   * Returns the number of records read so far.
+   *
+   * @return the number of records
+   */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Releases the current segment.
+   */
+  @Override
+  public void close() {
+    buffer = null;
+    frame = null;
+    segmentCursor = segments.size();
+  }
+
+  /**
+   * Reads the record at the current position of the segment.
+   *
+   * @return true if a record was read, false at the end of the segment
+   */
+  private boolean readRecord() {
+    int start = buffer.position();
+
+    if (buffer.remaining() < JournalFormat.RECORD_HEADER_BYTES) {
+      return false;
+    }
+
+    int length = buffer.getInt(start);
+
+    if (length < JournalFormat.RECORD_HEADER_BYTES
+        || length > buffer.remaining()) {
+      return false;
+    }
+
+    int body = start + Integer.BYTES;
+    receivedNanos = buffer.getLong(body);
+    sequence = buffer.getLong(body + Long.BYTES);
+    channelLength = buffer.getShort(body + 2 * Long.BYTES);
+    recordStart = start;
+
+    int frameStart = start + JournalFormat.RECORD_HEADER_BYTES
+        + channelLength;
+    frame.limit(start + length).position(frameStart);
+    buffer.position(start + length);
+    return true;
+  }
+
+  /**
+   * Returns the receive time of the first record of a segment, from its
+   * index if it has one.
+   *
+   * @param index the index of the segment
+   * @return the receive time in epoch nanoseconds, or Long.MAX_VALUE if the
+   *         segment is empty
+   * @throws IOException if the segment cannot be read
+   */
+  private long firstTime(final int index) throws IOException {
+    ByteBuffer entries = readIndex(index);
+
+    if (entries != null && entries.hasRemaining()) {
+      return entries.getLong(entries.position());
+    }
+
+    MappedByteBuffer previous = buffer;
+    ByteBuffer previousFrame = frame;
+    int previousSegment = segment;
+    openSegment(index);
+    long first = readRecord() ? receivedNanos : Long.MAX_VALUE;
+    buffer = previous;
+    frame = previousFrame;
+    segment = previousSegment;
+    return first;
+  }
+
+  /**
+   * Returns the offset of the last indexed record of a segment received at
+   * or before a time, so that a scan from there finds the time.
+   *
+   * @param index      the index of the segment
+   * @param epochNanos the receive time to seek to
+   * @return the offset to scan from
+   * @throws IOException if the index cannot be read
+   */
+  private int indexedOffset(final int index, final long epochNanos)
+      throws IOException {
+    int offset = JournalFormat.SEGMENT_HEADER_BYTES;
+    ByteBuffer entries = readIndex(index);
+
+    if (entries == null) {
+      return offset;
+    }
+
+    int low = 0;
+    int high = entries.remaining() / JournalFormat.INDEX_ENTRY_BYTES - 1;
+    int base = entries.position();
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int entry = base + middle * JournalFormat.INDEX_ENTRY_BYTES;
+
+      if (entries.getLong(entry) <= epochNanos) {
+        offset = entries.getInt(entry + Long.BYTES);
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+
+    return offset;
+  }
+
+  /**
+   * Reads the time index of a segment.
+   *
+   * @param index the index of the segment
+   * @return the entries, or null if the segment has no valid index
+   * @throws IOException if the index exists but cannot be read
+   */
+  private ByteBuffer readIndex(final int index) throws IOException {
+    Path path = JournalFormat.indexPath(directory, index);
+
+    if (!Files.exists(path)) {
+      return null;
+    }
+
+    ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(path))
+        .order(ByteOrder.LITTLE_ENDIAN);
+
+    if (entries.remaining() < JournalFormat.SEGMENT_HEADER_BYTES
+        || entries.getInt() != JournalFormat.INDEX_MAGIC
+        || entries.getInt() != JournalFormat.VERSION) {
+      return null;
+    }
+
+    return entries;
+  }
+
+  /**
+   * Maps a segment and checks its header.
+   *
+   * @param index the index of the segment
+   * @throws IOException if the segment cannot be mapped or is not a journal
+   */
+  private void openSegment(final int index) throws IOException {
+    Path path = JournalFormat.segmentPath(directory, index);
+
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    segment = index;
+
+    if (buffer.remaining() < JournalFormat.SEGMENT_HEADER_BYTES
+        || buffer.getInt() != JournalFormat.MAGIC
+        || buffer.getInt() != JournalFormat.VERSION) {
+      throw new IOException("Not a journal segment: " + path);
+    }
+
+    frame = buffer.duplicate();
+  }
+}
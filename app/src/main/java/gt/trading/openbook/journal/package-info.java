@@ -0,0 +1,23 @@
+/**
+ * This package contains classes for recording the raw Huobi websocket feed to
+ * disk, so that it can be used as backtesting data.
+ *
+ * The FeedJournal class is responsible for appending raw frames, with their
+ * channel, receive time and exchange sequence, to memory-mapped segment files
+ * which are rotated by size.
+ *
+ * The JournalReader class is responsible for reading the records of a journal
+ * back through read-only mappings, without allocating per record, and for
+ * seeking to a receive time through the sparse time index of each segment.
+ *
+ * The JournalFormat class is responsible for describing the layout and names
+ * of the segment and index files.
+ *
+ * The CheckpointStore class is responsible for keeping full order book
+ * checkpoints beside a journal, and the BookCheckpoint class holds one of
+ * them with the journal position replay resumes from.
+ *
+ * @author Georiga Tech Trading Club Team #2
+ * @since 1.0
+ */
+package gt.trading.openbook.journal;
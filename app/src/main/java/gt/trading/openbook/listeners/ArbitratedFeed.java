@@ -0,0 +1,152 @@
+package gt.trading.openbook.listeners;
+
+import java.util.function.Function;
+
+import gt.trading.openbook.models.DepthData;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.models.TradeData;
+
+/**
+ * The ArbitratedFeed class subscribes to the same channels over two or more
+ * redundant connections, which may point at different endpoints, and merges
+ * them with a FeedArbiter per channel. Market by price updates are
+ * arbitrated by sequence number, best bid and offer by sequence ID and trades
+ * by trade ID, so subscribers see one gap-free stream whose latency is that of
+ * the fastest leg for each message.
+ *
+ * Snapshot replies are passed straight through, since they answer a request
+ * sent on one leg. An OrderBook fed by this feed should therefore be given the
+ * primary book leg, which is the one its snapshot requests go out on.
+ */
+public final class ArbitratedFeed {
+  private final OrderBookListener[] bookLegs;
+  private final MarketListener[] marketLegs;
+
+  /**
+   * Constructs an ArbitratedFeed over listeners which are connected by the
+   * caller.
+   *
+   * @param newBookLegs   the legs carrying market by price channels, or an
+   *                      empty array if none are needed
+   * @param newMarketLegs the legs carrying best bid and offer and trade
+   *                      channels, or an empty array if none are needed
+   */
+  public ArbitratedFeed(final OrderBookListener[] newBookLegs,
+      final MarketListener[] newMarketLegs) {
+    bookLegs = newBookLegs.clone();
+    marketLegs = newMarketLegs.clone();
+  }
+
+  /**
+   * Returns the book leg that order books should send snapshot requests on.
+   *
+   * @return the first book leg
+   * @throws IllegalStateException if there are no book legs
+   */
+  public OrderBookListener getPrimaryBookLeg() throws IllegalStateException {
+    if (bookLegs.length == 0) {
+      throw new IllegalStateException("The feed has no book legs");
+    }
+
+    return bookLegs[0];
+  }
+
+  /**
+   * Subscribes every book leg to the market by price channel of a symbol and
+   * delivers each update once.
+   *
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param depth     the number of levels per side, one of 5, 20, 150 or 400
+   * @param precision the precision of the symbol's prices and amounts
+   * @param callback  the callback to handle the merged order book data
+   * @return the arbiter of the channel, which holds per-leg statistics and is
+   *         closed to unsubscribe
+   * @throws IllegalArgumentException if there are no book legs or the depth
+   *                                  is not offered by Huobi
+   */
+  public FeedArbiter<OrderBookData> subscribeMbp(final String symbol,
+      final int depth, final Precision precision,
+      final Callback<OrderBookData> callback) throws IllegalArgumentException {
+    FeedArbiter<OrderBookData> arbiter = new FeedArbiter<>(bookLegs.length,
+        OrderBookData::getSeqNum,
+        data -> data.getAction() == OrderBookData.Action.REFRESH, callback);
+    bindLegs(arbiter, leg -> bookLegs[leg].subscribeMbp(symbol, depth,
+        precision, arbiter.leg(leg)));
+    return arbiter;
+  }
+
+  /**
+   * Subscribes every market leg to the best bid and offer channel of a symbol
+   * and delivers each quote once.
+   *
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
+   * @param callback  the callback to handle the merged depth data
+   * @return the arbiter of the channel, which holds per-leg statistics and is
+   *         closed to unsubscribe
+   * @throws IllegalArgumentException if there are no market legs
+   */
+  public FeedArbiter<DepthData> subscribeDepth(final String symbol,
+      final Precision precision, final Callback<DepthData> callback)
+      throws IllegalArgumentException {
+    FeedArbiter<DepthData> arbiter = new FeedArbiter<>(marketLegs.length,
+        DepthData::getSeqId, null, callback);
+    bindLegs(arbiter, leg -> marketLegs[leg].subscribeDepth(symbol,
+        precision, arbiter.leg(leg)));
+    return arbiter;
+  }
+
+  /**
+   * Subscribes every market leg to the trade detail channel of a symbol and
+   * delivers each trade once.
+   *
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
+   * @param callback  the callback to handle the merged trade data
+   * @return the arbiter of the channel, which holds per-leg statistics and is
+   *         closed to unsubscribe
+   * @throws IllegalArgumentException if there are no market legs
+   */
+  public FeedArbiter<TradeData> subscribeTradeDetail(final String symbol,
+      final Precision precision, final Callback<TradeData> callback)
+      throws IllegalArgumentException {
+    FeedArbiter<TradeData> arbiter = new FeedArbiter<>(marketLegs.length,
+        TradeData::getTradeId, null, callback);
+    bindLegs(arbiter, leg -> marketLegs[leg].subscribeTradeDetail(symbol,
+        precision, arbiter.leg(leg)));
+    return arbiter;
+  }
+
+  /**
+   * Closes every leg.
+   */
+  public void close() {
+    for (OrderBookListener leg : bookLegs) {
+      leg.close();
+    }
+
+    for (MarketListener leg : marketLegs) {
+      leg.close();
+    }
+  }
+
+  /**
+   * Subscribes each leg of an arbiter and records its subscription. If a leg
+   * fails to subscribe, the legs already subscribed are removed again.
+   *
+   * @param arbiter   the arbiter of the channel
+   * @param subscribe subscribes the leg with the given index
+   */
+  private static void bindLegs(final FeedArbiter<?> arbiter,
+      final Function<Integer, Subscription> subscribe) {
+    try {
+      for (int leg = 0; leg < arbiter.getLegCount(); leg++) {
+        arbiter.bind(leg, subscribe.apply(leg));
+      }
+    } catch (IllegalArgumentException error) {
+      arbiter.close();
+      throw error;
+    }
+  }
+}
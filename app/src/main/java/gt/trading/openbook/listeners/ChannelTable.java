@@ -0,0 +1,199 @@
+package gt.trading.openbook.listeners;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The ChannelTable class maps channel names to values with lookups straight
+ * from the characters of a JSON token, so the channel of a message can be
+ * resolved without building a String. It is an open addressing hash table
+ * using the same hash as String, probed linearly and compared character by
+ * character.
+ *
+ * Tables are immutable. Subscribing or unsubscribing builds a new table with
+ * with or without, which suits channels that change rarely but are looked up
+ * on every message, and lets readers use a table without locking.
+ *
+ * @param <V> the type of the values
+ */
+final class ChannelTable<V> {
+  private static final int MIN_CAPACITY = 8;
+  private static final ChannelTable<?> EMPTY = new ChannelTable<>(
+      new String[0], new Object[0]);
+  private final String[] names;
+  private final char[][] keys;
+  private final int[] hashes;
+  private final Object[] values;
+  private final String[] entryNames;
+  private final Object[] entryValues;
+  private final int mask;
+
+  /**
+   * Constructs a ChannelTable holding the given entries.
+   *
+   * @param newEntryNames  the channel names, without duplicates
+   * @param newEntryValues the value of each channel
+   */
+  private ChannelTable(final String[] newEntryNames,
+      final Object[] newEntryValues) {
+    entryNames = newEntryNames;
+    entryValues = newEntryValues;
+
+    int capacity = MIN_CAPACITY;
+
+    while (capacity < entryNames.length * 2) {
+      capacity <<= 1;
+    }
+
+    names = new String[capacity];
+    keys = new char[capacity][];
+    hashes = new int[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+
+    for (int i = 0; i < entryNames.length; i++) {
+      int hash = entryNames[i].hashCode();
+      int slot = spread(hash) & mask;
+
+      while (names[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+
+      names[slot] = entryNames[i];
+      keys[slot] = entryNames[i].toCharArray();
+      hashes[slot] = hash;
+      values[slot] = entryValues[i];
+    }
+  }
+
+  /**
+   * Returns the empty table.
+   *
+   * @param <V> the type of the values
+   * @return a table with no channels
+   */
+  @SuppressWarnings("unchecked")
+  static <V> ChannelTable<V> empty() {
+    return (ChannelTable<V>) EMPTY;
+  }
+
+  /**
+   * Looks up a channel from the characters of a token, such as those returned
+   * by JsonParser.getTextCharacters. Does not allocate.
+   *
+   * @param chars  the buffer holding the channel name
+   * @param offset the offset of the name in the buffer
+   * @param length the length of the name
+   * @return the value of the channel, or null if it is not in the table
+   */
+  @SuppressWarnings("unchecked")
+  V get(final char[] chars, final int offset, final int length) {
+    int hash = 0;
+
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + chars[offset + i];
+    }
+
+    int slot = spread(hash) & mask;
+
+    while (names[slot] != null) {
+      if (hashes[slot] == hash && keys[slot].length == length
+          && Arrays.equals(keys[slot], 0, length, chars, offset,
+              offset + length)) {
+        return (V) values[slot];
+      }
+
+      slot = (slot + 1) & mask;
+    }
+
+    return null;
+  }
+
+  /**
+   * Looks up a channel by name.
+   *
+   * @param name the channel name
+   * @return the value of the channel, or null if it is not in the table
+   */
+  V get(final String name) {
+    char[] chars = name.toCharArray();
+    return get(chars, 0, chars.length);
+  }
+
+  /**
+   * Returns a table with a channel added or its value replaced.
+   *
+   * @param name  the channel name
+   * @param value the value of the channel
+   * @return the new table
+   */
+  ChannelTable<V> with(final String name, final V value) {
+    for (int i = 0; i < entryNames.length; i++) {
+      if (entryNames[i].equals(name)) {
+        Object[] nextValues = entryValues.clone();
+        nextValues[i] = value;
+        return new ChannelTable<>(entryNames, nextValues);
+      }
+    }
+
+    String[] nextNames = Arrays.copyOf(entryNames, entryNames.length + 1);
+    Object[] nextValues = Arrays.copyOf(entryValues, entryValues.length + 1);
+    nextNames[entryNames.length] = name;
+    nextValues[entryValues.length] = value;
+    return new ChannelTable<>(nextNames, nextValues);
+  }
+
+  /**
+   * Returns a table without a channel.
+   *
+   * @param name the channel name
+   * @return the new table, or this table if the channel is not in it
+   */
+  ChannelTable<V> without(final String name) {
+    for (int i = 0; i < entryNames.length; i++) {
+      if (entryNames[i].equals(name)) {
+        String[] nextNames = new String[entryNames.length - 1];
+        Object[] nextValues = new Object[entryValues.length - 1];
+        System.arraycopy(entryNames, 0, nextNames, 0, i);
+        System.arraycopy(entryNames, i + 1, nextNames, i,
+            nextNames.length - i);
+        System.arraycopy(entryValues, 0, nextValues, 0, i);
+        System.arraycopy(entryValues, i + 1, nextValues, i,
+            nextValues.length - i);
+        return new ChannelTable<>(nextNames, nextValues);
+      }
+    }
+
+    return this;
+  }
+
+  /**
+   * Passes the name of every channel in the table to an action.
+   *
+   * @param action the action to run for each name
+   */
+  void forEachName(final Consumer<String> action) {
+    for (String name : entryNames) {
+      action.accept(name);
+    }
+  }
+
+  /**
+   * Returns the number of channels in the table.
+   *
+   * @return the number of channels
+   */
+  int size() {
+    return entryNames.length;
+  }
+
+  /**
+   * Spreads the high bits of a hash into the low bits used to pick a slot.
+   *
+   * @param hash the String hash of a channel name
+   * @return the spread hash
+   */
+  private static int spread(final int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
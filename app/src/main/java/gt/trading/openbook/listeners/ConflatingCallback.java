@@ -0,0 +1,151 @@
+package gt.trading.openbook.listeners;
+
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * The ConflatingCallback class delivers only the latest value of a channel to
+ * a slow consumer. Each value decoded by the listener is copied into a single
+ * latest-value slot, overwriting one which has not been delivered yet, and
+ * the listener delivers the slot to the delegate once it has handled every
+ * frame waiting for it. A consumer which falls behind therefore skips stale
+ * values instead of working through a growing backlog, which suits channels
+ * like best bid and offer where only the latest quote matters.
+ *
+ * The slot is filled and delivered on the thread processing the listener's
+ * frames, the pipeline's consumer thread if one is running, so conflation
+ * adds no thread of its own. While the delegate runs, frames queue up in the
+ * listener's FrameRing, and the next batch of them is conflated into one
+ * delivery. Without a pipeline every value is delivered. The value passed to
+ * the delegate stays valid until the delegate returns.
+ *
+ * @param <T> the type of the values, which must be copyable in place
+ */
+public final class ConflatingCallback<T> implements Callback<T> {
+  private static final Logger LOGGER = Logger
+      .getLogger(ConflatingCallback.class.getName());
+  private final T latest;
+  private final BiConsumer<T, T> copier;
+  private final Callback<T> delegate;
+  private Listener listener = null;
+  private Subscription subscription = null;
+  private boolean fresh = false;
+  private volatile boolean closed = false;
+  private volatile long receivedCount = 0L;
+  private volatile long conflatedCount = 0L;
+  private volatile long deliveredCount = 0L;
+
+  /**
+   * Constructs a ConflatingCallback, which delivers nothing until it is bound
+   * to a listener.
+   *
+   * @param factory     creates the reusable latest value
+   * @param newCopier   copies a value into a target, e.g.,
+   *                    DepthData::copyFrom
+   * @param newDelegate the slow consumer receiving the latest values
+   */
+  ConflatingCallback(final Supplier<T> factory,
+      final BiConsumer<T, T> newCopier, final Callback<T> newDelegate) {
+    latest = factory.get();
+    copier = newCopier;
+    delegate = newDelegate;
+  }
+
+  /**
+   * Copies a value into the latest-value slot, replacing one which has not
+   * been delivered yet. Called on the thread processing the listener's
+   * frames.
+   *
+   * @param response the latest value, which is not kept after this returns
+   */
+  @Override
+  public void onResponse(final T response) {
+    copier.accept(latest, response);
+    receivedCount++;
+
+    if (fresh) {
+      conflatedCount++;
+    }
+
+    fresh = true;
+  }
+
+  /**
+   * Unsubscribes from the channel and stops delivering. A value still in the
+   * slot is not delivered.
+   */
+  public void close() {
+    closed = true;
+
+    if (subscription != null) {
+      subscription.unsubscribe();
+    }
+
+    if (listener != null) {
+      listener.removeConflated(this);
+    }
+  }
+
+  /**
+   * Binds the callback to the listener which delivers it and to its
+   * subscription, so that closing the callback also unsubscribes it.
+   *
+   * @param newListener     the listener the callback is subscribed to
+   * @param newSubscription the subscription of this callback
+   */
+  void bind(final Listener newListener, final Subscription newSubscription) {
+    listener = newListener;
+    subscription = newSubscription;
+    listener.addConflated(this);
+  }
+
+  /**
+   * Passes the latest value to the delegate if one arrived since the last
+   * delivery. Called by the listener on the thread processing its frames,
+   * after the frames waiting for it have been handled.
+   */
+  void deliver() {
+    if (!fresh || closed) {
+      return;
+    }
+
+    fresh = false;
+
+    try {
+      delegate.onResponse(latest);
+    } catch (RuntimeException error) {
+      LOGGER.severe("Error delivering conflated value: "
+          + error.getMessage());
+    }
+
+    deliveredCount++;
+  }
+
+  /**
+   * Returns the number of values received from the listener.
+   *
+   * @return the number of received values
+   */
+  public long getReceivedCount() {
+    return receivedCount;
+  }
+
+  /**
+   * Returns the number of values overwritten before they were delivered.
+   *
+   * @return the number of conflated values
+   */
+  public long getConflatedCount() {
+    return conflatedCount;
+  }
+
+  /**
+   * Returns the number of values passed to the delegate.
+   *
+   * @return the number of delivered values
+   */
+  public long getDeliveredCount() {
+    return deliveredCount;
+  }
+}
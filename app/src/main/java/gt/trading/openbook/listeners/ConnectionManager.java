@@ -0,0 +1,132 @@
+package gt.trading.openbook.listeners;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import javax.websocket.WebSocketContainer;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.client.ClientProperties;
+
+/**
+ * The ConnectionManager class owns the resources shared by every WebSocket
+ * connection of the application: one client container, whose transport and
+ * I/O threads are shared by all of its connections, and one supervisor thread
+ * which schedules their reconnection attempts. Connections are grouped into a
+ * ConnectionPool per server URI, which places subscriptions on them up to a
+ * per-connection channel limit.
+ *
+ * Without a manager, each listener creates a container of its own, and Tyrus
+ * starts a separate transport with its own selector and worker threads for
+ * every container, so thread and socket counts grow with every listener.
+ */
+public final class ConnectionManager {
+  private static final Logger LOGGER = Logger
+      .getLogger(ConnectionManager.class.getName());
+  private static final int IDLE_TIMEOUT_SECONDS = 1;
+  private final ClientManager container = ClientManager.createClient();
+  private final ScheduledExecutorService supervisor = Executors
+      .newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "openbook-supervisor");
+        thread.setDaemon(true);
+        return thread;
+      });
+  private final List<ConnectionPool<?>> pools = new ArrayList<>();
+  private final int channelsPerConnection;
+
+  /**
+   * Constructs a ConnectionManager.
+   *
+   * @param newChannelsPerConnection the most channels placed on one
+   *                                 connection before another is opened
+   * @throws IllegalArgumentException if the limit is not positive
+   */
+  public ConnectionManager(final int newChannelsPerConnection)
+      throws IllegalArgumentException {
+    if (newChannelsPerConnection <= 0) {
+      throw new IllegalArgumentException(
+          "Channels per connection must be greater than 0");
+    }
+
+    channelsPerConnection = newChannelsPerConnection;
+    container.getProperties().put(ClientProperties.SHARED_CONTAINER, true);
+    container.getProperties().put(
+        ClientProperties.SHARED_CONTAINER_IDLE_TIMEOUT, IDLE_TIMEOUT_SECONDS);
+  }
+
+  /**
+   * Creates a pool of connections to a server. Connections are opened with
+   * the factory as subscriptions need them.
+   *
+   * @param <L>     the type of listener the pool holds
+   * @param uri     the url every connection of the pool is made to
+   * @param factory creates an unconnected listener
+   * @return the new pool
+   */
+  public synchronized <L extends Listener> ConnectionPool<L> newPool(
+      final String uri, final Supplier<L> factory) {
+    ConnectionPool<L> pool = new ConnectionPool<>(this, uri, factory);
+    pools.add(pool);
+    return pool;
+  }
+
+  /**
+   * Returns the most channels placed on one connection.
+   *
+   * @return the channel limit per connection
+   */
+  public int getChannelsPerConnection() {
+    return channelsPerConnection;
+  }
+
+  /**
+   * Returns the number of open connections across every pool.
+   *
+   * @return the number of connections
+   */
+  public synchronized int getConnectionCount() {
+    int count = 0;
+
+    for (ConnectionPool<?> pool : pools) {
+      count += pool.getConnectionCount();
+    }
+
+    return count;
+  }
+
+  /**
+   * Closes every connection of every pool, stops the supervisor thread and
+   * shuts down the container. Tyrus keeps a shared transport until it has had
+   * no connection for its idle timeout, which the manager sets to a second,
+   * so the I/O threads exit shortly after the last connection closes.
+   */
+  public synchronized void close() {
+    pools.forEach(ConnectionPool::close);
+    pools.clear();
+    supervisor.shutdownNow();
+    container.shutdown();
+    LOGGER.info("Closed connection manager");
+  }
+
+  /**
+   * Returns the container shared by every connection.
+   *
+   * @return the WebSocket container
+   */
+  WebSocketContainer getContainer() {
+    return container;
+  }
+
+  /**
+   * Returns the executor shared by every connection for reconnection.
+   *
+   * @return the supervisor executor
+   */
+  ScheduledExecutorService getSupervisor() {
+    return supervisor;
+  }
+}
@@ -0,0 +1,207 @@
+package gt.trading.openbook.listeners;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import gt.trading.openbook.journal.FeedJournal;
+
+/**
+ * The ConnectionPool class holds the connections of a ConnectionManager to one
+ * server and places subscriptions on them. Each placement goes to the
+ * connection with the fewest channels which is still below the manager's
+ * channel limit, and a new connection is opened only once every connection is
+ * full, so the number of sockets grows with the number of channels rather than
+ * with the number of consumers.
+ *
+ * Rebalancing retires connections left without channels. Channels are not
+ * moved between live connections, since snapshot requests and their replies
+ * must travel on the connection carrying the channel, and the order books
+ * holding that connection would lose them.
+ *
+ * @param <L> the type of listener the pool holds
+ */
+public final class ConnectionPool<L extends Listener> {
+  private static final Logger LOGGER = Logger
+      .getLogger(ConnectionPool.class.getName());
+  private final ConnectionManager manager;
+  private final String uri;
+  private final Supplier<L> factory;
+  private final List<L> connections = new ArrayList<>();
+  private int pipelineFrames = 0;
+  private WaitStrategy pipelineStrategy = null;
+  private FeedJournal journal = null;
+  private Object processLock = null;
+  private boolean closed = false;
+
+  /**
+   * Constructs a ConnectionPool. Pools are created by
+   * ConnectionManager.newPool.
+   *
+   * @param newManager the manager owning the shared container
+   * @param newUri     the url every connection is made to
+   * @param newFactory creates an unconnected listener
+   */
+  ConnectionPool(final ConnectionManager newManager, final String newUri,
+      final Supplier<L> newFactory) {
+    manager = newManager;
+    uri = newUri;
+    factory = newFactory;
+  }
+
+  /**
+   * Runs an action on the connection a new channel should be placed on,
+   * opening one if every connection is full. The action runs under the
+   * pool's lock so that concurrent placements see each other's channels, and
+   * should subscribe one channel, e.g., by creating an order book on the
+   * connection and subscribing it.
+   *
+   * @param <R>    the type of the action's result
+   * @param action subscribes on the chosen connection
+   * @return the result of the action
+   * @throws IllegalStateException if the pool is closed
+   */
+  public synchronized <R> R place(final Function<L, R> action)
+      throws IllegalStateException {
+    if (closed) {
+      throw new IllegalStateException("Connection pool is closed");
+    }
+
+    rebalance();
+    L target = null;
+
+    for (L connection : connections) {
+      int count = connection.getChannelCount();
+
+      if (count < manager.getChannelsPerConnection() && (target == null
+          || count < target.getChannelCount())) {
+        target = connection;
+      }
+    }
+
+    if (target == null) {
+      target = open();
+    }
+
+    return action.apply(target);
+  }
+
+  /**
+   * Makes connections opened from now on process frames on a pipeline of
+   * their own, as started by Listener.startPipeline.
+   *
+   * @param capacity     the number of frames each ring holds, a power of 2
+   * @param waitStrategy how the I/O and consumer threads wait on the rings
+   * @throws IllegalArgumentException if the capacity is not a positive power
+   *                                  of 2
+   */
+  public synchronized void setPipeline(final int capacity,
+      final WaitStrategy waitStrategy) throws IllegalArgumentException {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          "Capacity must be a positive power of 2");
+    }
+
+    pipelineFrames = capacity;
+    pipelineStrategy = waitStrategy;
+  }
+
+  /**
+   * Sets the journal every connection of the pool records its market data
+   * frames to, including connections opened later.
+   *
+   * @param newJournal the journal to record to, or null to stop recording
+   */
+  public synchronized void setJournal(final FeedJournal newJournal) {
+    journal = newJournal;
+    connections.forEach(connection -> connection.setJournal(newJournal));
+  }
+
+  /**
+   * Sets the lock every connection of the pool holds while processing a
+   * frame, including connections opened later.
+   *
+   * @param lock the lock to hold, or null to process frames without one
+   */
+  public synchronized void setProcessLock(final Object lock) {
+    processLock = lock;
+    connections.forEach(connection -> connection.setProcessLock(lock));
+  }
+
+  /**
+   * Closes the connections which no longer carry any channel.
+   *
+   * @return the number of connections closed
+   */
+  public synchronized int rebalance() {
+    int retired = 0;
+    Iterator<L> iterator = connections.iterator();
+
+    while (iterator.hasNext()) {
+      L connection = iterator.next();
+
+      if (connection.getChannelCount() == 0) {
+        iterator.remove();
+        connection.close();
+        retired++;
+      }
+    }
+
+    if (retired > 0) {
+      LOGGER.info("Retired " + retired + " idle connections to " + uri);
+    }
+
+    return retired;
+  }
+
+  /**
+   * Returns the number of open connections.
+   *
+   * @return the number of connections
+   */
+  public synchronized int getConnectionCount() {
+    return connections.size();
+  }
+
+  /**
+   * Returns the open connections.
+   *
+   * @return a copy of the list of connections
+   */
+  public synchronized List<L> getConnections() {
+    return new ArrayList<>(connections);
+  }
+
+  /**
+   * Closes every connection of the pool.
+   */
+  public synchronized void close() {
+    closed = true;
+    connections.forEach(Listener::close);
+    connections.clear();
+  }
+
+  /**
+   * Opens a new connection sharing the manager's container.
+   *
+   * @return the new connection
+   */
+  private L open() {
+    L connection = factory.get();
+    connection.attach(manager);
+    connection.setJournal(journal);
+    connection.setProcessLock(processLock);
+
+    if (pipelineStrategy != null) {
+      connection.startPipeline(pipelineFrames, pipelineStrategy);
+    }
+
+    connection.connect(uri);
+    connections.add(connection);
+    LOGGER.info("Opened connection " + connections.size() + " to " + uri);
+    return connection;
+  }
+}
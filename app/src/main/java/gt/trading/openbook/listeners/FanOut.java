@@ -0,0 +1,91 @@
+package gt.trading.openbook.listeners;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * The FanOut class passes each decoded value of a channel to every callback
+ * subscribed to it, so a message is parsed once however many consumers share
+ * the connection. Callbacks are kept in a copy-on-write array: subscribing
+ * and unsubscribing copy it, while dispatch reads the current array without
+ * locking or allocating. A callback which throws does not stop the others.
+ *
+ * @param <T> the type of the values
+ */
+final class FanOut<T> implements Callback<T> {
+  private static final Logger LOGGER = Logger
+      .getLogger(FanOut.class.getName());
+  private static final Callback<?>[] EMPTY = new Callback<?>[0];
+  private volatile Callback<?>[] callbacks = EMPTY;
+
+  /**
+   * Adds a callback. Callers must serialize changes to the same FanOut.
+   *
+   * @param callback the callback to add
+   */
+  void add(final Callback<T> callback) {
+    Callback<?>[] current = callbacks;
+    Callback<?>[] next = Arrays.copyOf(current, current.length + 1);
+    next[current.length] = callback;
+    callbacks = next;
+  }
+
+  /**
+   * Removes a callback. Callers must serialize changes to the same FanOut.
+   *
+   * @param callback the callback to remove
+   * @return true if the callback was subscribed
+   */
+  boolean remove(final Callback<?> callback) {
+    Callback<?>[] current = callbacks;
+
+    for (int i = 0; i < current.length; i++) {
+      if (current[i] == callback) {
+        Callback<?>[] next = new Callback<?>[current.length - 1];
+        System.arraycopy(current, 0, next, 0, i);
+        System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+        callbacks = next;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns whether no callbacks are subscribed.
+   *
+   * @return true if the array is empty
+   */
+  boolean isEmpty() {
+    return callbacks.length == 0;
+  }
+
+  /**
+   * Returns the number of subscribed callbacks.
+   *
+   * @return the number of callbacks
+   */
+  int size() {
+    return callbacks.length;
+  }
+
+  /**
+   * Passes a value to every subscribed callback in subscription order.
+   *
+   * @param response the decoded value
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public void onResponse(final T response) {
+    Callback<?>[] current = callbacks;
+
+    for (Callback<?> callback : current) {
+      try {
+        ((Callback<T>) callback).onResponse(response);
+      } catch (RuntimeException error) {
+        LOGGER.severe("Error in subscriber callback: " + error.getMessage());
+      }
+    }
+  }
+}
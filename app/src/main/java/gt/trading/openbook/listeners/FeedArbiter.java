@@ -0,0 +1,310 @@
+package gt.trading.openbook.listeners;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * The FeedArbiter class merges the same channel received over several
+ * redundant connections, called legs, into one stream. Each value is
+ * identified by an increasing key, such as the sequence number of a market by
+ * price update or the ID of a trade, and is delivered exactly once from
+ * whichever leg delivers it first. Copies arriving later on other legs are
+ * dropped.
+ *
+ * Keys need not be consecutive, as Huobi's sequence numbers and trade IDs are
+ * not, so the arbiter remembers the keys of the last 1024 values it delivered
+ * in a small open addressing set, evicting them in delivery order. A leg
+ * which skipped a value and overtook the others can therefore still have the
+ * gap filled late by another leg, however far apart the keys are, as long as
+ * fewer than 1024 values were delivered in between. A key which is not
+ * remembered but is no greater than the greatest evicted key may be a copy of
+ * an evicted value, so it is dropped and counted as stale rather than as a
+ * duplicate.
+ *
+ * Legs call in from their own threads, so arbitration and delivery run under
+ * one lock, and the downstream callback sees a single ordered stream from one
+ * thread at a time. Per leg, the arbiter counts wins and duplicates and
+ * measures how far each duplicate lagged behind the winning copy.
+ *
+ * @param <T> the type of the values
+ */
+public final class FeedArbiter<T> {
+  private static final int RECENT_KEYS = 1024;
+  private static final int TABLE_SLOTS = RECENT_KEYS * 2;
+  private static final long NO_KEY = Long.MIN_VALUE;
+  private static final double NANOS_PER_MILLI = 1e6;
+  private final ToLongFunction<T> keyOf;
+  private final Predicate<T> passThrough;
+  private final Callback<T> downstream;
+  private final Callback<T>[] legs;
+  private final long[] wins;
+  private final long[] duplicates;
+  private final long[] lagNanos;
+  private final long[] maxLagNanos;
+  private final long[] lagSamples;
+  private final long[] recentKeys = new long[RECENT_KEYS];
+  private final long[] recentTimes = new long[RECENT_KEYS];
+  private final long[] tableKeys = new long[TABLE_SLOTS];
+  private final int[] tablePositions = new int[TABLE_SLOTS];
+  private final Subscription[] subscriptions;
+  private int recentCount = 0;
+  private int nextPosition = 0;
+  private long evictedKey = NO_KEY;
+  private long staleCount = 0L;
+
+  /**
+   * Constructs a FeedArbiter.
+   *
+   * @param legCount       the number of redundant legs
+   * @param newKeyOf       returns the increasing key of a value
+   * @param newPassThrough selects values which are always delivered without
+   *                       arbitration, such as snapshot replies to a request
+   *                       sent on one leg, or null for none
+   * @param newDownstream  the callback receiving the merged stream
+   * @throws IllegalArgumentException if there are no legs
+   */
+  @SuppressWarnings("unchecked")
+  public FeedArbiter(final int legCount, final ToLongFunction<T> newKeyOf,
+      final Predicate<T> newPassThrough, final Callback<T> newDownstream)
+      throws IllegalArgumentException {
+    if (legCount <= 0) {
+      throw new IllegalArgumentException("An arbiter needs at least one leg");
+    }
+
+    keyOf = newKeyOf;
+    passThrough = newPassThrough;
+    downstream = newDownstream;
+    legs = (Callback<T>[]) new Callback<?>[legCount];
+    wins = new long[legCount];
+    duplicates = new long[legCount];
+    lagNanos = new long[legCount];
+    maxLagNanos = new long[legCount];
+    lagSamples = new long[legCount];
+    subscriptions = new Subscription[legCount];
+    Arrays.fill(tableKeys, NO_KEY);
+
+    for (int i = 0; i < legCount; i++) {
+      final int leg = i;
+      legs[i] = value -> arbitrate(leg, value);
+    }
+  }
+
+  /**
+   * Returns the callback a leg should deliver the channel to.
+   *
+   * @param leg the index of the leg
+   * @return the callback of the leg
+   */
+  public Callback<T> leg(final int leg) {
+    return legs[leg];
+  }
+
+  /**
+   * Returns the number of legs.
+   *
+   * @return the number of legs
+   */
+  public int getLegCount() {
+    return legs.length;
+  }
+
+  /**
+   * Records the subscription of a leg, so that close can remove it.
+   *
+   * @param leg          the index of the leg
+   * @param subscription the subscription of the leg's callback
+   */
+  void bind(final int leg, final Subscription subscription) {
+    subscriptions[leg] = subscription;
+  }
+
+  /**
+   * Unsubscribes every leg from the channel.
+   */
+  public void close() {
+    for (Subscription subscription : subscriptions) {
+      if (subscription != null) {
+        subscription.unsubscribe();
+      }
+    }
+  }
+
+  /**
+   * Returns how many values a leg delivered first.
+   *
+   * @param leg the index of the leg
+   * @return the number of wins
+   */
+  public synchronized long getWins(final int leg) {
+    return wins[leg];
+  }
+
+  /**
+   * Returns how many values a leg delivered after another leg had.
+   *
+   * @param leg the index of the leg
+   * @return the number of dropped duplicates
+   */
+  public synchronized long getDuplicates(final int leg) {
+    return duplicates[leg];
+  }
+
+  /**
+   * Returns the share of a leg's values which it delivered first.
+   *
+   * @param leg the index of the leg
+   * @return the win rate between 0 and 1, or NaN if it delivered nothing
+   */
+  public synchronized double getWinRate(final int leg) {
+    long total = wins[leg] + duplicates[leg];
+    return total == 0 ? Double.NaN : (double) wins[leg] / total;
+  }
+
+  /**
+   * Returns how far, on average, a leg's duplicates arrived behind the
+   * winning copy.
+   *
+   * @param leg the index of the leg
+   * @return the mean lag in milliseconds, or NaN if none was measured
+   */
+  public synchronized double getMeanLagMillis(final int leg) {
+    return lagSamples[leg] == 0 ? Double.NaN
+        : lagNanos[leg] / NANOS_PER_MILLI / lagSamples[leg];
+  }
+
+  /**
+   * Returns the furthest a leg's duplicate arrived behind the winning copy.
+   *
+   * @param leg the index of the leg
+   * @return the maximum lag in milliseconds
+   */
+  public synchronized double getMaxLagMillis(final int leg) {
+    return maxLagNanos[leg] / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Returns how many values were dropped because their key was no longer
+   * remembered and could not be told apart from a duplicate. Stale values
+   * are not counted as duplicates of any leg.
+   *
+   * @return the number of stale values
+   */
+  public synchronized long getStaleCount() {
+    return staleCount;
+  }
+
+  /**
+   * Delivers a value if its key has not been delivered yet.
+   *
+   * @param leg   the index of the leg the value arrived on
+   * @param value the value, which is only valid during the call
+   */
+  private synchronized void arbitrate(final int leg, final T value) {
+    if (passThrough != null && passThrough.test(value)) {
+      downstream.onResponse(value);
+      return;
+    }
+
+    long key = keyOf.applyAsLong(value);
+    long now = System.nanoTime();
+    int slot = find(key);
+
+    if (tableKeys[slot] == key) {
+      duplicates[leg]++;
+      long lag = now - recentTimes[tablePositions[slot]];
+      lagNanos[leg] += lag;
+      lagSamples[leg]++;
+      maxLagNanos[leg] = Math.max(maxLagNanos[leg], lag);
+      return;
+    }
+
+    if (evictedKey != NO_KEY && key <= evictedKey) {
+      staleCount++;
+      return;
+    }
+
+    remember(key, now);
+    wins[leg]++;
+    downstream.onResponse(value);
+  }
+
+  /**
+   * Adds a delivered key to the set, evicting the key delivered longest ago
+   * once the set is full.
+   *
+   * @param key the key of the delivered value
+   * @param now the time the value was delivered
+   */
+  private void remember(final long key, final long now) {
+    if (recentCount == RECENT_KEYS) {
+      long oldest = recentKeys[nextPosition];
+      evictedKey = evictedKey == NO_KEY ? oldest : Math.max(evictedKey, oldest);
+      remove(find(oldest));
+    } else {
+      recentCount++;
+    }
+
+    int slot = find(key);
+    tableKeys[slot] = key;
+    tablePositions[slot] = nextPosition;
+    recentKeys[nextPosition] = key;
+    recentTimes[nextPosition] = now;
+    nextPosition = (nextPosition + 1) % RECENT_KEYS;
+  }
+
+  /**
+   * Returns the slot of the table which holds a key, or the empty slot where
+   * it would be inserted.
+   *
+   * @param key the key to look up
+   * @return the slot of the key
+   */
+  private int find(final long key) {
+    int slot = hash(key);
+
+    while (tableKeys[slot] != NO_KEY && tableKeys[slot] != key) {
+      slot = (slot + 1) & (TABLE_SLOTS - 1);
+    }
+
+    return slot;
+  }
+
+  /**
+   * Empties a slot of the table, moving later keys of the same probe run back
+   * so that every remaining key can still be found.
+   *
+   * @param slot the slot holding the key to remove
+   */
+  private void remove(final int slot) {
+    int hole = slot;
+    int next = (hole + 1) & (TABLE_SLOTS - 1);
+
+    while (tableKeys[next] != NO_KEY) {
+      int home = hash(tableKeys[next]);
+
+      if (((next - home) & (TABLE_SLOTS - 1))
+          >= ((next - hole) & (TABLE_SLOTS - 1))) {
+        tableKeys[hole] = tableKeys[next];
+        tablePositions[hole] = tablePositions[next];
+        hole = next;
+      }
+
+      next = (next + 1) & (TABLE_SLOTS - 1);
+    }
+
+    tableKeys[hole] = NO_KEY;
+  }
+
+  /**
+   * Returns the home slot of a key in the table.
+   *
+   * @param key the key
+   * @return the slot the key's probe starts at
+   */
+  private static int hash(final long key) {
+    long mixed = key * 0x9E3779B97F4A7C15L;
+    return (int) (mixed >>> (Long.SIZE - Integer.numberOfTrailingZeros(
+        TABLE_SLOTS)));
+  }
+}
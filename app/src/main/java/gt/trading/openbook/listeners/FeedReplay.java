@@ -0,0 +1,272 @@
+package gt.trading.openbook.listeners;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import gt.trading.openbook.journal.JournalReader;
+
+/**
+ * The FeedReplay class drives listeners from a recorded journal instead of a
+ * connection. Each recorded frame is handed, on the calling thread, to the
+ * listener subscribed to its channel, which decodes it and runs its callbacks
+ * exactly as it would for a live frame, so order books and feature graphs
+ * subscribed to the listeners rebuild the state they had live.
+ *
+ * Frames are replayed either as fast as possible or paced by their recorded
+ * receive times at a multiple of real time. Order books should take their
+ * time from getCurrentNanos, so that time-based decisions such as gap timeouts
+ * follow the recording rather than the speed of the replay.
+ *
+ * A replay can be stopped at a receive time with runUntil and continued
+ * later, and moved to a journal position with seek, so that a BookReplay can
+ * start it from a checkpoint instead of the start of the journal.
+ *
+ * Frames are routed by the channel recorded with them, looked up in a
+ * ChannelTable from a reused character buffer. Frames of channels no listener
+ * is subscribed to are skipped without being decoded.
+ */
+public final class FeedReplay {
+  /**
+   * The speed which replays as fast as possible.
+   */
+  public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+  private static final Logger LOGGER = Logger
+      .getLogger(FeedReplay.class.getName());
+  private static final int MAX_CHANNEL_LENGTH = Short.MAX_VALUE;
+  private final JournalReader reader;
+  private final double speed;
+  private final List<Listener> listeners = new ArrayList<>();
+  private final char[] channelBuffer = new char[MAX_CHANNEL_LENGTH];
+  private ChannelTable<Route> routes = ChannelTable.empty();
+  private long currentNanos = 0L;
+  private long replayedCount = 0L;
+  private long skippedCount = 0L;
+  private boolean pending = false;
+
+  /**
+   * The Route class holds the listener frames of one channel go to.
+   */
+  private static final class Route {
+    private final Listener listener;
+
+    /**
+     * Constructs a Route.
+     *
+     * @param newListener the listener subscribed to the channel, or null if
+     *                    none is
+     */
+    Route(final Listener newListener) {
+      listener = newListener;
+    }
+  }
+
+  /**
+   * Constructs a FeedReplay.
+   *
+   * @param newReader the reader over the recorded journal
+   * @param newSpeed  the multiple of real time to replay at, or MAX_SPEED
+   * @throws IllegalArgumentException if the speed is not positive
+   */
+  public FeedReplay(final JournalReader newReader, final double newSpeed)
+      throws IllegalArgumentException {
+    if (!(newSpeed > 0)) {
+      throw new IllegalArgumentException("Replay speed must be positive");
+    }
+
+    reader = newReader;
+    speed = newSpeed;
+  }
+
+  /**
+   * Adds a listener to replay frames to. Its channels must be subscribed
+   * before run is called.
+   *
+   * @param listener the listener, which should not be connected
+   */
+  public void addListener(final Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Returns the recorded receive time of the frame being replayed, for use
+   * as the clock of order books fed by the replay.
+   *
+   * @return the receive time in epoch nanoseconds
+   */
+  public long getCurrentNanos() {
+    return currentNanos;
+  }
+
+  /**
+   * Returns the number of frames replayed to a listener.
+   *
+   * @return the number of replayed frames
+   */
+  public long getReplayedCount() {
+    return replayedCount;
+  }
+
+  /**
+   * Returns the number of frames skipped because no listener was subscribed
+   * to their channel.
+   *
+   * @return the number of skipped frames
+   */
+  public long getSkippedCount() {
+    return skippedCount;
+  }
+
+  /**
+   * Replays every remaining frame of the journal.
+   *
+   * @return the number of frames replayed to a listener
+   * @throws IOException if the journal cannot be read
+   */
+  public long run() throws IOException {
+    long startNanos = System.nanoTime();
+    long replayed = runUntil(Long.MAX_VALUE);
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    LOGGER.info("Replayed " + replayed + " frames in " + seconds
+        + " s, skipped " + skippedCount);
+    return replayed;
+  }
+
+  /**
+   * Replays the remaining frames received before a time. The first frame
+   * received at or after it is read ahead and replayed by the next call.
+   *
+   * @param epochNanos the receive time to stop at in epoch nanoseconds
+   * @return the number of frames replayed to a listener
+   * @throws IOException if the journal cannot be read
+   */
+  public long runUntil(final long epochNanos) throws IOException {
+    long startNanos = System.nanoTime();
+    long firstRecorded = Long.MIN_VALUE;
+    long replayed = 0L;
+
+    while (hasNext() && reader.getReceivedNanos() < epochNanos) {
+      pending = false;
+      currentNanos = reader.getReceivedNanos();
+      Route route = route();
+
+      if (route.listener == null) {
+        skippedCount++;
+        continue;
+      }
+
+      if (speed != MAX_SPEED) {
+        if (firstRecorded == Long.MIN_VALUE) {
+          firstRecorded = currentNanos;
+        }
+
+        pace(startNanos + (long) ((currentNanos - firstRecorded) / speed));
+      }
+
+      route.listener.replay(reader.getFrame(), currentNanos);
+      replayedCount++;
+      replayed++;
+    }
+
+    return replayed;
+  }
+
+  /**
+   * Reads ahead to the next frame to replay, without replaying it.
+   *
+   * @return true if there is a frame left, false at the end of the journal
+   * @throws IOException if the journal cannot be read
+   */
+  public boolean hasNext() throws IOException {
+    if (!pending) {
+      pending = reader.next();
+    }
+
+    return pending;
+  }
+
+  /**
+   * Returns the receive time of the next frame to replay. hasNext must have
+   * returned true.
+   *
+   * @return the receive time in epoch nanoseconds
+   */
+  public long getNextNanos() {
+    return reader.getReceivedNanos();
+  }
+
+  /**
+   * Returns the journal position of the next frame to replay, which seek
+   * returns to. hasNext must have returned true.
+   *
+   * @return the position of the frame
+   */
+  public long getNextPosition() {
+    return reader.getPosition();
+  }
+
+  /**
+   * Continues the replay from a journal position, such as one kept in a
+   * BookCheckpoint.
+   *
+   * @param position the position of the next frame to replay
+   * @throws IOException if the position is not in the journal
+   */
+  public void seek(final long position) throws IOException {
+    reader.seek(position);
+    pending = false;
+  }
+
+  /**
+   * Continues the replay from the first frame of the journal.
+   */
+  public void rewind() {
+    reader.rewind();
+    pending = false;
+  }
+
+  /**
+   * Returns the route of the current record's channel, resolving it from the
+   * listeners' subscriptions the first time the channel is seen.
+   *
+   * @return the route of the channel
+   */
+  private Route route() {
+    int length = reader.copyChannel(channelBuffer);
+    Route route = routes.get(channelBuffer, 0, length);
+
+    if (route != null) {
+      return route;
+    }
+
+    String channel = new String(channelBuffer, 0, length);
+    Listener target = null;
+
+    for (Listener listener : listeners) {
+      if (listener.getSubscriberCount(channel) > 0) {
+        target = listener;
+        break;
+      }
+    }
+
+    route = new Route(target);
+    routes = routes.with(channel, route);
+    return route;
+  }
+
+  /**
+   * Waits until the given time.
+   *
+   * @param deadline the System.nanoTime to wait for
+   */
+  private static void pace(final long deadline) {
+    long remaining = deadline - System.nanoTime();
+
+    while (remaining > 0) {
+      LockSupport.parkNanos(remaining);
+      remaining = deadline - System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,334 @@
+package gt.trading.openbook.listeners;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The FrameRing class is a single producer, single consumer ring of raw
+ * WebSocket frames. The producer, which is the WebSocket I/O thread, only
+ * copies each frame into a preallocated slot, and the consumer thread decodes
+ * and applies it later, so slow processing never runs on the I/O thread.
+ *
+ * Slots are heap buffers which grow to the largest frame they have held and
+ * are then reused, so the ring allocates nothing once warm. When the ring is
+ * full the producer waits for a slot rather than dropping a frame, since every
+ * market by price update is needed, and the wait is counted as a stall. How
+ * both sides wait is set by a WaitStrategy.
+ *
+ * Each slot also keeps the time its frame was received, so that consumers
+ * which record frames see when they left the socket rather than when they
+ * were dequeued.
+ *
+ * Occupancy can be read from any thread through size, getHighWaterMark and
+ * getStallCount.
+ *
+ * Closing the ring is a handoff rather than a cut: the consumer still handles
+ * every frame queued before the close, and a producer whose frame is refused
+ * only gets the answer once the consumer has returned for good, so it can
+ * handle the frame itself without running alongside the consumer or out of
+ * order.
+ */
+public final class FrameRing {
+  private static final int INITIAL_SLOT_SIZE = 8192;
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private final ByteBuffer[] slots;
+  private final long[] receiveTimes;
+  private final int mask;
+  private final WaitStrategy waitStrategy;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private volatile Thread producer = null;
+  private volatile Thread consumer = null;
+  private volatile boolean producerWaiting = false;
+  private volatile boolean consumerWaiting = false;
+  private volatile boolean closed = false;
+  private volatile boolean terminated = false;
+  private volatile long highWaterMark = 0L;
+  private volatile long stallCount = 0L;
+
+  /**
+   * Functional interface for handling the frames taken from a ring.
+   */
+  @FunctionalInterface
+  public interface FrameHandler {
+    /**
+     * Handles a frame.
+     *
+     * @param frame      the frame, which is only valid until this returns
+     * @param receivedAt the System.nanoTime at which the frame was received
+     */
+    void handle(ByteBuffer frame, long receivedAt);
+  }
+
+  /**
+   * Constructs a FrameRing with a number of slots and a wait strategy.
+   *
+   * @param capacity        the number of frames the ring holds, a power of 2
+   * @param newWaitStrategy how the producer and consumer wait
+   * @throws IllegalArgumentException if the capacity is not a positive power
+   *                                  of 2
+   */
+  public FrameRing(final int capacity, final WaitStrategy newWaitStrategy)
+      throws IllegalArgumentException {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          "Capacity must be a positive power of 2");
+    }
+
+    slots = new ByteBuffer[capacity];
+    receiveTimes = new long[capacity];
+
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = ByteBuffer.allocate(INITIAL_SLOT_SIZE);
+    }
+
+    mask = capacity - 1;
+    waitStrategy = newWaitStrategy;
+  }
+
+  /**
+   * Copies a frame into the next slot, waiting for one to free up if the ring
+   * is full. Must only be called from one thread at a time. If the ring is
+   * closed, this waits for the consumer to handle the frames queued before
+   * the close and return, and then refuses the frame, which the caller must
+   * handle itself.
+   *
+   * @param frame      the frame to copy, whose remaining bytes are consumed
+   *                   only if it is queued
+   * @param receivedAt the System.nanoTime at which the frame was received
+   * @return true if the frame was queued and will be handled, false if the
+   *         ring is closed and its consumer has returned
+   */
+  public boolean offer(final ByteBuffer frame, final long receivedAt) {
+    producer = Thread.currentThread();
+    long sequence = head.get();
+
+    if (sequence - tail.get() == slots.length) {
+      stallCount++;
+
+      while (sequence - tail.get() == slots.length) {
+        if (closed) {
+          awaitTermination();
+          return false;
+        }
+
+        producerWaiting = true;
+
+        if (sequence - tail.get() == slots.length) {
+          idle();
+        }
+
+        producerWaiting = false;
+      }
+    }
+
+    if (closed) {
+      awaitTermination();
+      return false;
+    }
+
+    int index = (int) sequence & mask;
+    ByteBuffer slot = slots[index];
+
+    if (slot.capacity() < frame.remaining()) {
+      slot = ByteBuffer.allocate(Math.max(frame.remaining(),
+          slot.capacity() * 2));
+      slots[index] = slot;
+    }
+
+    int start = frame.position();
+    slot.clear();
+    slot.put(frame);
+    slot.flip();
+    receiveTimes[index] = receivedAt;
+    head.set(sequence + 1);
+
+    if (closed) {
+      // The consumer may have taken its last look at head before the frame
+      // was published, so only its final tail tells whether it was handled
+      awaitTermination();
+
+      if (tail.get() <= sequence) {
+        head.set(sequence);
+        frame.position(start);
+        return false;
+      }
+    }
+
+    long size = sequence + 1 - tail.get();
+
+    if (size > highWaterMark) {
+      highWaterMark = size;
+    }
+
+    if (consumerWaiting) {
+      LockSupport.unpark(consumer);
+    }
+
+    return true;
+  }
+
+  /**
+   * Waits for at least one frame and passes every queued frame to the
+   * handler in order. Each frame is only valid until the handler returns.
+   * Must only be called from one thread at a time.
+   *
+   * @param handler the handler of each frame
+   * @return the number of frames handled, or -1 if the ring is closed and
+   *         empty
+   */
+  public int consume(final FrameHandler handler) {
+    consumer = Thread.currentThread();
+    long sequence = tail.get();
+    long available = head.get();
+
+    while (sequence == available) {
+      if (closed) {
+        available = head.get();
+
+        if (sequence == available) {
+          terminated = true;
+          LockSupport.unpark(producer);
+          return -1;
+        }
+
+        break;
+      }
+
+      consumerWaiting = true;
+
+      if (sequence == head.get() && !closed) {
+        idle();
+      }
+
+      consumerWaiting = false;
+      available = head.get();
+    }
+
+    int count = 0;
+
+    while (sequence < available) {
+      int index = (int) sequence & mask;
+      handler.handle(slots[index], receiveTimes[index]);
+      sequence++;
+      count++;
+      tail.set(sequence);
+
+      if (producerWaiting) {
+        LockSupport.unpark(producer);
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Closes the ring. The producer stops accepting frames, and the consumer
+   * returns -1 once the queued frames are handled, which releases a producer
+   * waiting on the refusal of a frame.
+   */
+  public void close() {
+    closed = true;
+    LockSupport.unpark(producer);
+    LockSupport.unpark(consumer);
+  }
+
+  /**
+   * Returns whether the ring has been closed.
+   *
+   * @return true if the ring is closed
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Returns whether the consumer has handled every queued frame of the
+   * closed ring and returned for good.
+   *
+   * @return true if the ring is closed and drained
+   */
+  public boolean isTerminated() {
+    return terminated;
+  }
+
+  /**
+   * Returns the number of frames the ring holds.
+   *
+   * @return the capacity
+   */
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  /**
+   * Returns the number of frames queued but not yet handled.
+   *
+   * @return the current occupancy
+   */
+  public int size() {
+    return (int) (head.get() - tail.get());
+  }
+
+  /**
+   * Returns the most frames that have been queued at once.
+   *
+   * @return the peak occupancy
+   */
+  public long getHighWaterMark() {
+    return highWaterMark;
+  }
+
+  /**
+   * Returns how many times the producer found the ring full and had to wait.
+   *
+   * @return the number of stalls
+   */
+  public long getStallCount() {
+    return stallCount;
+  }
+
+  /**
+   * Returns the total number of frames queued since the ring was created.
+   *
+   * @return the number of frames offered and accepted
+   */
+  public long getFrameCount() {
+    return head.get();
+  }
+
+  /**
+   * Waits, on the producer, until the consumer of the closed ring has
+   * returned for good.
+   */
+  private void awaitTermination() {
+    while (!terminated) {
+      producerWaiting = true;
+
+      if (!terminated) {
+        idle();
+      }
+
+      producerWaiting = false;
+    }
+  }
+
+  /**
+   * Waits once according to the wait strategy. Blocking waits are bounded,
+   * so a missed signal only delays the waiting side briefly.
+   */
+  private void idle() {
+    switch (waitStrategy) {
+      case BUSY_SPIN:
+        Thread.onSpinWait();
+        break;
+      case YIELDING:
+        Thread.yield();
+        break;
+      default:
+        LockSupport.parkNanos(this, PARK_NANOS);
+    }
+  }
+}
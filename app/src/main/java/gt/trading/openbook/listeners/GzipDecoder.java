@@ -0,0 +1,169 @@
+package gt.trading.openbook.listeners;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The GzipDecoder class decompresses gzip frames from a WebSocket connection
+ * into a reusable output buffer. It keeps a single raw Inflater for the life of
+ * the connection, parses the gzip header itself, and reads straight from heap
+ * or direct ByteBuffers, so decoding a frame allocates nothing once the output
+ * buffer has grown to the largest frame.
+ *
+ * The gzip trailer is not verified, since frames already arrive intact over
+ * the WebSocket's transport. Instances are not thread safe; each connection
+ * should own its own decoder.
+ */
+public final class GzipDecoder {
+  private static final int INITIAL_CAPACITY = 8192;
+  private static final int GZIP_MAGIC_1 = 0x1f;
+  private static final int GZIP_MAGIC_2 = 0x8b;
+  private static final int DEFLATE = 8;
+  private static final int FLAG_HCRC = 2;
+  private static final int FLAG_EXTRA = 4;
+  private static final int FLAG_NAME = 8;
+  private static final int FLAG_COMMENT = 16;
+  private static final int FIXED_HEADER_REST = 6;
+  private static final int HCRC_SIZE = 2;
+  private final Inflater inflater = new Inflater(true);
+  private byte[] output = new byte[INITIAL_CAPACITY];
+  private int length = 0;
+
+  /**
+   * Decompresses a gzip frame. The remaining bytes of the buffer are consumed,
+   * and the decompressed bytes can be read from getBuffer up to the returned
+   * length until the next call.
+   *
+   * @param input the buffer holding a complete gzip frame
+   * @return the number of decompressed bytes
+   * @throws ZipException if the frame is not valid gzip data
+   */
+  public int decode(final ByteBuffer input) throws ZipException {
+    skipHeader(input);
+    inflater.reset();
+    inflater.setInput(input);
+    length = 0;
+
+    try {
+      while (!inflater.finished()) {
+        if (length == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+
+        int count = inflater.inflate(output, length, output.length - length);
+
+        if (count == 0 && (inflater.needsInput()
+            || inflater.needsDictionary())) {
+          throw new ZipException("Truncated gzip frame");
+        }
+
+        length += count;
+      }
+    } catch (DataFormatException error) {
+      throw new ZipException("Invalid deflate data: " + error.getMessage());
+    }
+
+    return length;
+  }
+
+  /**
+   * Returns the buffer holding the last decompressed frame. The buffer is
+   * reused and may be replaced by the next call to decode.
+   *
+   * @return the output buffer
+   */
+  public byte[] getBuffer() {
+    return output;
+  }
+
+  /**
+   * Returns the length of the last decompressed frame.
+   *
+   * @return the number of valid bytes in the output buffer
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Reads past the gzip header, leaving the buffer at the deflate data.
+   *
+   * @param input the buffer holding a gzip frame
+   * @throws ZipException if the header is invalid or truncated
+   */
+  private static void skipHeader(final ByteBuffer input) throws ZipException {
+    if (input.remaining() < FIXED_HEADER_REST + 4
+        || (input.get() & 0xff) != GZIP_MAGIC_1
+        || (input.get() & 0xff) != GZIP_MAGIC_2
+        || input.get() != DEFLATE) {
+      throw new ZipException("Not a gzip frame");
+    }
+
+    int flags = input.get() & 0xff;
+    skip(input, FIXED_HEADER_REST);
+
+    if ((flags & FLAG_EXTRA) != 0) {
+      require(input, 2);
+      int extraLength = (input.get() & 0xff) | (input.get() & 0xff) << 8;
+      skip(input, extraLength);
+    }
+
+    if ((flags & FLAG_NAME) != 0) {
+      skipString(input);
+    }
+
+    if ((flags & FLAG_COMMENT) != 0) {
+      skipString(input);
+    }
+
+    if ((flags & FLAG_HCRC) != 0) {
+      skip(input, HCRC_SIZE);
+    }
+  }
+
+  /**
+   * Reads past a zero terminated header field.
+   *
+   * @param input the buffer positioned at the field
+   * @throws ZipException if the field is not terminated
+   */
+  private static void skipString(final ByteBuffer input) throws ZipException {
+    while (input.hasRemaining()) {
+      if (input.get() == 0) {
+        return;
+      }
+    }
+
+    throw new ZipException("Truncated gzip header");
+  }
+
+  /**
+   * Moves the buffer forward by a number of bytes.
+   *
+   * @param input the buffer to move
+   * @param count the number of bytes to skip
+   * @throws ZipException if fewer bytes remain
+   */
+  private static void skip(final ByteBuffer input, final int count)
+      throws ZipException {
+    require(input, count);
+    input.position(input.position() + count);
+  }
+
+  /**
+   * Checks that the buffer has enough bytes left.
+   *
+   * @param input the buffer to check
+   * @param count the number of bytes needed
+   * @throws ZipException if fewer bytes remain
+   */
+  private static void require(final ByteBuffer input, final int count)
+      throws ZipException {
+    if (input.remaining() < count) {
+      throw new ZipException("Truncated gzip header");
+    }
+  }
+}
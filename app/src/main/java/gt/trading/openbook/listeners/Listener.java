@@ -1,51 +1,184 @@
 package gt.trading.openbook.listeners;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
 
 import javax.websocket.ClientEndpoint;
 import javax.websocket.CloseReason;
+import javax.websocket.ContainerProvider;
+import javax.websocket.DeploymentException;
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
+import javax.websocket.WebSocketContainer;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import gt.trading.openbook.MapperSingleton;
+import gt.trading.openbook.journal.FeedJournal;
+import gt.trading.openbook.models.Precision;
 
 /**
  * The Listener class represents a WebSocket listener that provides methods to
  * establish a WebSocket connection with a server, send messages to the server,
  * and receive messages from the server. It is an abstract class, so it must be
- * subclassed to provide the implementation for handleEvent() method. The
- * listener is registered as a WebSocket endpoint.
+ * subclassed to provide subscribe methods for its channels. The listener is
+ * registered as a WebSocket endpoint.
+ *
+ * Incoming frames are decompressed by a GzipDecoder owned by the listener and
+ * fed to a non-blocking JsonParser straight from its output buffer. The
+ * parser is kept across frames, each of which is one more root value, so no
+ * copy, String, JsonNode tree or parser is made per frame; it is only
+ * replaced after a frame it did not read to the end. Pings are answered here,
+ * and the tick of each message is decoded once by the handler of its channel
+ * and fanned out to every callback subscribed to the channel. Channels are
+ * found in a ChannelTable straight from the characters of the "ch" or "rep"
+ * field, so no String is built to route a message.
+ *
+ * By default frames are processed on the WebSocket I/O thread. After
+ * startPipeline, the I/O thread only copies each frame into a FrameRing and a
+ * dedicated consumer thread decodes it and runs the callbacks, so slow
+ * callbacks no longer hold up socket reads. Conflating callbacks are
+ * delivered by the same thread once it has handled every queued frame.
+ *
+ * Once connect is called, a dropped or failed connection is retried with a
+ * jittered exponential ReconnectBackoff until close is called. On reconnect
+ * every active channel is subscribed again, stale queued requests are dropped,
+ * and reconnect listeners are told so that order books can resynchronize.
+ *
+ * Recorded frames can be fed back through replay instead of a connection,
+ * which runs them through the same decoding and callbacks as live frames.
+ *
+ * With a FeedJournal set, every market data frame is also appended to the
+ * journal as it came off the socket, together with its channel, receive time
+ * and the exchange sequence its handler decoded. Listeners sharing a journal
+ * and a process lock run each frame's callbacks and its append as one step,
+ * so the journal holds their frames in the order the callbacks saw them.
+ *
+ * A standalone listener creates its own WebSocket container and reconnection
+ * thread. Listeners opened by a ConnectionPool share the container and
+ * supervisor thread of their ConnectionManager instead.
  */
 @ClientEndpoint
 public abstract class Listener {
   private static final Logger LOGGER = Logger
       .getLogger(Listener.class.getName());
+  private static final long RECONNECT_INITIAL_MILLIS = 250L;
+  private static final long RECONNECT_MAX_MILLIS = 30000L;
+  private static final double NANOS_PER_MILLI = 1e6;
   private final ObjectMapper mapper = MapperSingleton.getInstance();
+  private final JsonFactory factory = mapper.getFactory();
+  private final GzipDecoder decoder = new GzipDecoder();
+  private final FrameRing.FrameHandler frameHandler = this::process;
+  private JsonParser frameParser = null;
+  private ByteArrayFeeder frameFeeder = null;
   private Session session = null;
   private List<String> messages = new ArrayList<String>();
+  private final Object pipelineLock = new Object();
+  private volatile FrameRing ring = null;
+  private Thread pipelineThread = null;
+  private final Object registryLock = new Object();
+  private volatile ChannelTable<Channel<?>> channels = ChannelTable.empty();
+  private volatile ConflatingCallback<?>[] conflated =
+      new ConflatingCallback<?>[0];
+  private volatile FeedJournal journal = null;
+  private volatile Object processLock = null;
+  private long tickSequence = -1L;
+  private final ReconnectBackoff backoff = new ReconnectBackoff(
+      RECONNECT_INITIAL_MILLIS, RECONNECT_MAX_MILLIS);
+  private WebSocketContainer container = null;
+  private ScheduledExecutorService supervisor = null;
+  private boolean ownsSupervisor = false;
+  private final AtomicBoolean reconnectPending = new AtomicBoolean(false);
+  private final List<Runnable> reconnectListeners =
+      new CopyOnWriteArrayList<>();
+  private volatile String uri = null;
+  private volatile boolean closing = false;
+  private volatile boolean replaying = false;
+  private volatile long disconnectedAt = 0L;
+  private volatile long lastRecoveryNanos = -1L;
+  private volatile long reconnectCount = 0L;
+
+  /**
+   * Functional interface for decoding the tick of a channel and passing it to
+   * the channel's callbacks.
+   */
+  @FunctionalInterface
+  interface TickHandler {
+    /**
+     * Decodes and delivers the tick of a message. The parser must be left on
+     * the last token of the tick.
+     *
+     * @param parser   the parser positioned on the tick of the message
+     * @param snapshot true if the message replies to a request
+     * @return the exchange sequence of the tick, or -1 if it has none
+     * @throws IOException if the tick cannot be decoded
+     */
+    long handle(JsonParser parser, boolean snapshot) throws IOException;
+  }
+
+  /**
+   * The Channel class holds the handler and subscribed callbacks of one
+   * channel.
+   *
+   * @param <T> the type of the values decoded from the channel
+   */
+  private static final class Channel<T> {
+    private final byte[] name;
+    private final Precision precision;
+    private final FanOut<T> fanOut;
+    private final TickHandler handler;
+
+    /**
+     * Constructs a Channel.
+     *
+     * @param newName      the channel name
+     * @param newPrecision the precision the channel is decoded with
+     * @param newFanOut    the callbacks subscribed to the channel
+     * @param newHandler   the handler decoding the channel's ticks
+     */
+    Channel(final String newName, final Precision newPrecision,
+        final FanOut<T> newFanOut, final TickHandler newHandler) {
+      name = newName.getBytes(StandardCharsets.US_ASCII);
+      precision = newPrecision;
+      fanOut = newFanOut;
+      handler = newHandler;
+    }
+  }
 
   /**
    * Closes the WebSocket connection if it's open. The connection is closed with
-   * a normal closure code and a message indicating the reason for closing.
+   * a normal closure code and a message indicating the reason for closing. A
+   * running pipeline is stopped once its queued frames are processed, and no
+   * reconnection is attempted until connect is called again. The listener's
+   * own reconnection thread is stopped, while a ConnectionManager's is left
+   * to the manager.
    */
   public final void close() {
+    closing = true;
+    stopPipeline();
+
     if (session != null && session.isOpen()) {
       try {
         CloseReason closeReason = new CloseReason(
@@ -55,16 +188,114 @@ public abstract class Listener {
         LOGGER.severe("Unable to close connection");
       }
     }
+
+    stopSupervisor();
+  }
+
+  /**
+   * Connects to a WebSocket server. If the connection cannot be made, or
+   * drops later, it is retried with a jittered exponential backoff until
+   * close is called.
+   *
+   * @param newUri the url to establish a websocket connection with
+   */
+  public final void connect(final String newUri) {
+    uri = newUri;
+    closing = false;
+
+    if (!tryConnect()) {
+      scheduleReconnect();
+    }
+  }
+
+  /**
+   * Makes the listener use the shared container and supervisor thread of a
+   * ConnectionManager. Must be called before connect.
+   *
+   * @param manager the manager owning the shared resources
+   */
+  final synchronized void attach(final ConnectionManager manager) {
+    container = manager.getContainer();
+    supervisor = manager.getSupervisor();
+  }
+
+  /**
+   * Sets the journal market data frames are recorded to. Frames are appended
+   * on the thread processing them, which is the pipeline's consumer thread
+   * when a pipeline runs.
+   *
+   * @param newJournal the journal to record to, or null to stop recording
+   */
+  public final void setJournal(final FeedJournal newJournal) {
+    journal = newJournal;
+  }
+
+  /**
+   * Sets a lock held while each frame is decoded, its callbacks run and it is
+   * recorded. Listeners feeding the same consumer share one, so that their
+   * callbacks never interleave and, with a shared journal, are recorded in
+   * the order they ran.
+   *
+   * @param lock the lock to hold, or null to process frames without one
+   */
+  public final void setProcessLock(final Object lock) {
+    processLock = lock;
   }
 
   /**
-   * Sends a text message to the connected WebSocket session.
+   * Adds a listener which runs after every reconnection, once the active
+   * channels have been subscribed again. It runs on the thread opening the
+   * connection, so it should only flag work for the threads owning the
+   * subscribers' state.
+   *
+   * @param listener the action to run after a reconnection
+   */
+  public final void addReconnectListener(final Runnable listener) {
+    reconnectListeners.add(listener);
+  }
+
+  /**
+   * Returns whether the WebSocket session is open.
+   *
+   * @return true if connected
+   */
+  public final synchronized boolean isConnected() {
+    return session != null && session.isOpen();
+  }
+
+  /**
+   * Returns how many times the connection has been reestablished.
+   *
+   * @return the number of reconnections
+   */
+  public final long getReconnectCount() {
+    return reconnectCount;
+  }
+
+  /**
+   * Returns how long the last outage lasted, from the connection dropping or
+   * failing until it was reestablished.
+   *
+   * @return the recovery time in milliseconds, or -1 if it never reconnected
+   */
+  public final double getLastRecoveryMillis() {
+    return lastRecoveryNanos < 0 ? -1.0 : lastRecoveryNanos / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Sends a text message to the connected WebSocket session. Sends are
+   * synchronized so that order books on different threads can share a
+   * connection.
    *
    * @param message the text message to send to the server
    * @return true if the message was sent and false if it was added to the
-   *         message queue
+   *         message queue or discarded during a replay
    */
-  public final boolean send(final String message) {
+  public final synchronized boolean send(final String message) {
+    if (replaying) {
+      return false;
+    }
+
     if (session != null && session.isOpen()) {
       try {
         session.getBasicRemote().sendText(message);
@@ -85,9 +316,13 @@ public abstract class Listener {
    *
    * @param json the JSON message to send to the server
    * @return true if the message was sent and false if it was added to the
-   *         message queue
+   *         message queue or discarded during a replay
    */
-  public final boolean send(final JsonNode json) {
+  public final synchronized boolean send(final JsonNode json) {
+    if (replaying) {
+      return false;
+    }
+
     try {
       String response = mapper.writeValueAsString(json);
 
@@ -110,12 +345,303 @@ public abstract class Listener {
   }
 
   /**
-   * Provides custom logic for each event that is implemented inside the
-   * onMessage method.
+   * Moves frame processing off the WebSocket I/O thread. Frames are queued in
+   * a FrameRing and decoded, in order, by a new daemon consumer thread, so
+   * callbacks run on that thread from then on.
+   *
+   * @param capacity     the number of frames the ring holds, a power of 2
+   * @param waitStrategy how the I/O and consumer threads wait on the ring
+   * @throws IllegalArgumentException if the capacity is not a power of 2
+   * @throws IllegalStateException    if a pipeline is already running or
+   *                                  still stopping
+   */
+  public final void startPipeline(final int capacity,
+      final WaitStrategy waitStrategy)
+      throws IllegalArgumentException, IllegalStateException {
+    synchronized (pipelineLock) {
+      if (ring != null) {
+        throw new IllegalStateException("Pipeline is already running");
+      }
+
+      FrameRing frames = new FrameRing(capacity, waitStrategy);
+      pipelineThread = new Thread(() -> runPipeline(frames),
+          getClass().getSimpleName() + "-pipeline");
+      pipelineThread.setDaemon(true);
+      ring = frames;
+      pipelineThread.start();
+    }
+  }
+
+  /**
+   * Stops the pipeline, if one is running, so that later frames are processed
+   * on the WebSocket I/O thread again. Frames already queued are processed by
+   * the consumer thread first, and unless it is the caller, this waits for it
+   * to exit. Until it has, frames arriving on the I/O thread are held back
+   * rather than processed or dropped, so two threads never decode at once and
+   * frames stay in order.
+   */
+  public final void stopPipeline() {
+    Thread consumer;
+
+    synchronized (pipelineLock) {
+      if (ring == null || ring.isClosed()) {
+        return;
+      }
+
+      ring.close();
+      consumer = pipelineThread;
+    }
+
+    if (consumer == Thread.currentThread()) {
+      return;
+    }
+
+    try {
+      consumer.join();
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Adds a conflating callback to deliver after each batch of frames.
+   *
+   * @param callback the conflating callback
+   */
+  final void addConflated(final ConflatingCallback<?> callback) {
+    synchronized (registryLock) {
+      ConflatingCallback<?>[] current = conflated;
+      ConflatingCallback<?>[] updated = Arrays.copyOf(current,
+          current.length + 1);
+      updated[current.length] = callback;
+      conflated = updated;
+    }
+  }
+
+  /**
+   * Removes a conflating callback so it is no longer delivered.
+   *
+   * @param callback the conflating callback
+   */
+  final void removeConflated(final ConflatingCallback<?> callback) {
+    synchronized (registryLock) {
+      List<ConflatingCallback<?>> remaining = new ArrayList<>(
+          Arrays.asList(conflated));
+      remaining.remove(callback);
+      conflated = remaining.toArray(new ConflatingCallback<?>[0]);
+    }
+  }
+
+  /**
+   * Returns the ring of the running pipeline, which exposes its occupancy.
+   *
+   * @return the frame ring, or null if frames are processed on the I/O thread
+   */
+  public final FrameRing getFrameRing() {
+    return ring;
+  }
+
+  /**
+   * Adds a callback to a channel. The first callback of a channel creates its
+   * handler and sends the subscription to the server; later callbacks share
+   * the handler, so each message is still decoded once.
+   *
+   * @param <T>            the type of the values decoded from the channel
+   * @param channel        the channel to subscribe to
+   * @param precision      the precision of the channel's prices and amounts
+   * @param callback       the callback to add
+   * @param handlerFactory creates the channel's handler from the callbacks it
+   *                       should deliver to
+   * @return the handle for removing the callback
+   * @throws IllegalArgumentException if the channel is already subscribed
+   *                                  with a different precision
+   */
+  final <T> Subscription subscribe(final String channel,
+      final Precision precision, final Callback<T> callback,
+      final Function<FanOut<T>, TickHandler> handlerFactory)
+      throws IllegalArgumentException {
+    synchronized (registryLock) {
+      @SuppressWarnings("unchecked")
+      Channel<T> entry = (Channel<T>) channels.get(channel);
+
+      if (entry == null) {
+        FanOut<T> fanOut = new FanOut<>();
+        entry = new Channel<>(channel, precision, fanOut,
+            handlerFactory.apply(fanOut));
+        channels = channels.with(channel, entry);
+        sendSubscribe(channel);
+      } else if (entry.precision.getPriceScale() != precision.getPriceScale()
+          || entry.precision.getAmountScale() != precision
+              .getAmountScale()) {
+        throw new IllegalArgumentException("Channel " + channel
+            + " is already subscribed with a different precision");
+      }
+
+      entry.fanOut.add(callback);
+    }
+
+    return new Subscription(channel, () -> unsubscribe(channel, callback));
+  }
+
+  /**
+   * Returns the number of channels the listener is subscribed to.
+   *
+   * @return the number of channels
+   */
+  public final int getChannelCount() {
+    return channels.size();
+  }
+
+  /**
+   * Returns the number of callbacks subscribed to a channel.
    *
-   * @param data the json object containing the event data
+   * @param channel the channel to look up
+   * @return the number of callbacks, or 0 if it is not subscribed
    */
-  protected abstract void handleEvent(JsonNode data);
+  public final int getSubscriberCount(final String channel) {
+    Channel<?> entry = channels.get(channel);
+    return entry == null ? 0 : entry.fanOut.size();
+  }
+
+  /**
+   * Removes a callback from a channel, and unsubscribes from the channel on
+   * the server once its last callback is removed.
+   *
+   * @param channel  the channel the callback is subscribed to
+   * @param callback the callback to remove
+   */
+  private void unsubscribe(final String channel, final Callback<?> callback) {
+    synchronized (registryLock) {
+      Channel<?> entry = channels.get(channel);
+
+      if (entry == null || !entry.fanOut.remove(callback)
+          || !entry.fanOut.isEmpty()) {
+        return;
+      }
+
+      channels = channels.without(channel);
+      send(mapper.createObjectNode().put("unsub", channel).put("id",
+          channel));
+    }
+  }
+
+  /**
+   * Sends the subscription request of a channel.
+   *
+   * @param channel the channel to subscribe to
+   */
+  private void sendSubscribe(final String channel) {
+    send(mapper.createObjectNode().put("sub", channel).put("id", channel));
+  }
+
+  /**
+   * Makes one attempt to connect to the server.
+   *
+   * @return true if the connection was made
+   */
+  private boolean tryConnect() {
+    try {
+      container().connectToServer(this, URI.create(uri));
+      return true;
+    } catch (DeploymentException | IOException error) {
+      LOGGER.severe(
+          "Unable to establish a websocket connection: " + error.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Schedules a reconnection attempt after the next backoff delay, unless the
+   * listener is closing or an attempt is already scheduled.
+   */
+  private void scheduleReconnect() {
+    if (closing || uri == null
+        || !reconnectPending.compareAndSet(false, true)) {
+      return;
+    }
+
+    if (disconnectedAt == 0L) {
+      disconnectedAt = System.nanoTime();
+    }
+
+    long delay = backoff.nextDelayMillis();
+    LOGGER.warning("Reconnecting to " + uri + " in " + delay
+        + " ms, attempt " + backoff.getAttempts());
+    try {
+      supervisor().schedule(() -> {
+        reconnectPending.set(false);
+
+        if (!closing && !isConnected() && !tryConnect()) {
+          scheduleReconnect();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException error) {
+      reconnectPending.set(false);
+      LOGGER.warning("Not reconnecting to " + uri + ", the listener closed");
+    }
+  }
+
+  /**
+   * Returns the container connections are made with, creating one the first
+   * time if the listener was not attached to a ConnectionManager. The same
+   * container is reused for every reconnection attempt.
+   *
+   * @return the WebSocket container
+   */
+  private synchronized WebSocketContainer container() {
+    if (container == null) {
+      container = ContainerProvider.getWebSocketContainer();
+    }
+
+    return container;
+  }
+
+  /**
+   * Returns the executor reconnection attempts are scheduled on, creating a
+   * daemon thread of the listener's own the first time if the listener was
+   * not attached to a ConnectionManager.
+   *
+   * @return the supervisor executor
+   */
+  private synchronized ScheduledExecutorService supervisor() {
+    if (supervisor == null) {
+      supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable,
+            getClass().getSimpleName() + "-reconnect");
+        thread.setDaemon(true);
+        return thread;
+      });
+      ownsSupervisor = true;
+    }
+
+    return supervisor;
+  }
+
+  /**
+   * Shuts down the executor reconnection attempts are scheduled on if the
+   * listener created it, so that a closed listener leaves no thread behind.
+   * A later connect creates a new one.
+   */
+  private synchronized void stopSupervisor() {
+    if (ownsSupervisor) {
+      supervisor.shutdownNow();
+      supervisor = null;
+      ownsSupervisor = false;
+    }
+  }
+
+  /**
+   * Looks up the channel named by the current string token without building
+   * a String.
+   *
+   * @param parser the parser positioned on the channel name
+   * @return the channel, or null if it is not subscribed
+   * @throws IOException if the token has no text
+   */
+  private Channel<?> findChannel(final JsonParser parser) throws IOException {
+    return channels.get(parser.getTextCharacters(), parser.getTextOffset(),
+        parser.getTextLength());
+  }
 
   /**
    * Called when the WebSocket connection is established.
@@ -124,103 +650,346 @@ public abstract class Listener {
    */
   @OnOpen
   public final void onOpen(final Session newSession) {
-    session = newSession;
-    LOGGER
-        .info("Connected to WebSocket server at " + newSession.getRequestURI());
+    boolean reconnected;
+
+    synchronized (this) {
+      session = newSession;
+      LOGGER.info(
+          "Connected to WebSocket server at " + newSession.getRequestURI());
+      reconnected = disconnectedAt != 0L;
+
+      if (reconnected) {
+        // Subscriptions are replayed and snapshots are requested again
+        messages.clear();
+        channels.forEachName(this::sendSubscribe);
+        lastRecoveryNanos = System.nanoTime() - disconnectedAt;
+        disconnectedAt = 0L;
+        reconnectCount++;
+        LOGGER.info("Reconnected after " + getLastRecoveryMillis()
+            + " ms and " + backoff.getAttempts() + " attempts, resubscribed "
+            + channels.size() + " channels");
+      } else {
+        messages.forEach(message -> send(message));
+        messages.clear();
+      }
 
-    messages.forEach(message -> send(message));
-    messages.clear();
+      backoff.reset();
+    }
+
+    if (reconnected) {
+      reconnectListeners.forEach(Runnable::run);
+    }
   }
 
   /**
-   * Handles incoming binary messages by deserializing the received ByteBuffer
-   * into a JsonNode object. Logs any errors that occur during deserialization
-   * using the Java Util Logging (JUL) library.
+   * Handles incoming binary messages. With a pipeline running the frame is
+   * only copied into its ring; otherwise it is processed right away. A frame
+   * refused by a stopping pipeline is processed here once its consumer has
+   * processed the frames before it and exited.
    *
    * @param byteBuffer The received ByteBuffer containing the binary message.
    */
   @OnMessage
   public final void onMessage(final ByteBuffer byteBuffer) {
+    long receivedAt = System.nanoTime();
+    FrameRing frames = ring;
+
+    if (frames == null || !frames.offer(byteBuffer, receivedAt)) {
+      process(byteBuffer, receivedAt);
+      deliverConflated();
+    }
+  }
+
+  /**
+   * Processes a recorded frame on the calling thread, exactly as a frame
+   * received from the server is processed. The first call puts the listener
+   * in replay mode, in which queued and later messages to the server, such
+   * as snapshot requests, are discarded, since their replies are already in
+   * the recording. A replaying listener should not also be connected.
+   *
+   * @param frame      the raw frame, whose remaining bytes are consumed
+   * @param receivedAt the recorded receive time of the frame
+   */
+  public final void replay(final ByteBuffer frame, final long receivedAt) {
+    if (!replaying) {
+      synchronized (this) {
+        replaying = true;
+        messages.clear();
+      }
+    }
+
+    process(frame, receivedAt);
+    deliverConflated();
+  }
+
+  /**
+   * Consumes the frames of a ring until it is closed and drained, on the
+   * pipeline's consumer thread, and then hands frame processing back to the
+   * WebSocket I/O thread.
+   *
+   * @param frames the ring to consume
+   */
+  private void runPipeline(final FrameRing frames) {
+    LOGGER.info("Started pipeline with " + frames.getCapacity() + " slots");
+
+    while (true) {
+      try {
+        if (frames.consume(frameHandler) < 0) {
+          break;
+        }
+      } catch (RuntimeException error) {
+        LOGGER.severe("Error processing frame: " + error.getMessage());
+      }
+
+      deliverConflated();
+    }
+
+    synchronized (pipelineLock) {
+      if (ring == frames) {
+        ring = null;
+        pipelineThread = null;
+      }
+    }
+
+    LOGGER.info("Stopped pipeline after " + frames.getFrameCount()
+        + " frames, high water mark " + frames.getHighWaterMark()
+        + ", stalls " + frames.getStallCount());
+  }
+
+  /**
+   * Delivers the latest value of every conflating callback which received
+   * one since its last delivery.
+   */
+  private void deliverConflated() {
+    ConflatingCallback<?>[] current = conflated;
+
+    for (int i = 0; i < current.length; i++) {
+      current[i].deliver();
+    }
+  }
+
+  /**
+   * Processes a frame, holding the process lock if one is set.
+   *
+   * @param byteBuffer the buffer containing the binary message
+   * @param receivedAt the System.nanoTime at which the frame was received
+   */
+  private void process(final ByteBuffer byteBuffer, final long receivedAt) {
+    Object lock = processLock;
+
+    if (lock == null) {
+      decode(byteBuffer, receivedAt);
+      return;
+    }
+
+    synchronized (lock) {
+      decode(byteBuffer, receivedAt);
+    }
+  }
+
+  /**
+   * Decompresses a frame, which may be a heap or direct buffer, and feeds it
+   * to the listener's parser, which streams its fields to dispatch. If the
+   * frame was market data and a journal is set, the raw frame is then
+   * recorded. Logs any errors that occur during deserialization using the
+   * Java Util Logging (JUL) library.
+   *
+   * @param byteBuffer the buffer containing the binary message
+   * @param receivedAt the System.nanoTime at which the frame was received
+   */
+  private void decode(final ByteBuffer byteBuffer, final long receivedAt) {
+    int frameStart = byteBuffer.position();
+    int frameLength = byteBuffer.remaining();
+    boolean finished = false;
+
     try {
-      // Deserialize the binary data into a JSON object
-      byte[] byteArray = new byte[byteBuffer.remaining()];
-      byteBuffer.get(byteArray);
-      String incomingMessage = new String(decode(byteBuffer));
-      JsonNode json = mapper.readTree(incomingMessage);
-
-      if (!json.has("ping")) {
-        handleEvent(json);
-      } else {
-        // Send a heartbeat if the message is a ping
-        JsonNode pingCode = json.get("ping");
-        ObjectNode heartbeat = mapper.createObjectNode();
-        heartbeat.set("pong", pingCode);
-        send(heartbeat);
+      int length = decoder.decode(byteBuffer);
+      JsonParser parser = frameParser();
+      frameFeeder.feedInput(decoder.getBuffer(), 0, length);
+      Channel<?> handled = dispatch(parser);
+      finished = parser.getParsingContext().inRoot()
+          && frameFeeder.needMoreInput();
+
+      FeedJournal recorder = journal;
+
+      if (recorder != null && handled != null) {
+        recorder.append(handled.name, tickSequence, receivedAt, byteBuffer,
+            frameStart, frameLength);
       }
     } catch (IOException error) {
       LOGGER.severe("Error deserializing JSON" + error.getMessage());
+    } finally {
+      if (!finished) {
+        // A frame left unread would run into the next one
+        closeFrameParser();
+      }
     }
   }
 
   /**
-   * Called when the WebSocket connection is closed.
+   * Returns the parser frames are fed to, creating it if the last one was
+   * closed.
    *
-   * @param closeReason the reason for closing the connection
+   * @return the non-blocking parser
+   * @throws IOException if the parser cannot be created
    */
-  @OnClose
-  public final void onClose(final CloseReason closeReason) {
-    LOGGER.info("Connection closed: " + closeReason.getReasonPhrase());
+  private JsonParser frameParser() throws IOException {
+    if (frameParser == null) {
+      frameParser = factory.createNonBlockingByteArrayParser();
+      frameFeeder = (ByteArrayFeeder) frameParser.getNonBlockingInputFeeder();
+    }
+
+    return frameParser;
   }
 
   /**
-   * Called when an error occurs in the WebSocket connection.
-   *
-   * @param throwable the exception that caused the error
+   * Closes the parser frames are fed to, so that the next frame starts on a
+   * new one.
    */
-  @OnError
-  public final void onError(final Throwable throwable) {
-    LOGGER.severe("Error occurred: " + throwable.getMessage());
+  private void closeFrameParser() {
+    if (frameParser == null) {
+      return;
+    }
+
+    try {
+      frameParser.close();
+    } catch (IOException error) {
+      LOGGER.warning("Unable to close parser: " + error.getMessage());
+    }
+
+    frameParser = null;
+    frameFeeder = null;
   }
 
   /**
-   * Decodes byte buffer to byte array through decompression.
+   * Streams the fields of a message, answering pings and passing the tick to
+   * the handler of its channel once the channel is known. A tick which
+   * arrives before its channel is buffered as a tree, which Huobi does not
+   * normally require. The exchange sequence of a handled tick is left in
+   * tickSequence.
    *
-   * @param data byte buffer from websocket
-   * @return byte array representation of byte buffer
-   * @throws IOException if there is an error decompressing the streams
+   * @param parser the parser over the decompressed message
+   * @return the channel whose handler took the tick, or null if none did
+   * @throws IOException if the message is not valid JSON
    */
-  private static byte[] decode(final ByteBuffer data) throws IOException {
-    ByteArrayInputStream bais = new ByteArrayInputStream(data.array());
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+  private Channel<?> dispatch(final JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      LOGGER.warning("JSON data is not an object: " + frameText());
+      return null;
+    }
+
+    Channel<?> channel = null;
+    boolean hasChannel = false;
+    boolean snapshot = false;
+    boolean hasTick = false;
+    boolean handled = false;
+    boolean status = false;
+    JsonNode earlyTick = null;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      switch (field) {
+        case "ping":
+          // Send a heartbeat if the message is a ping
+          send("{\"pong\":" + parser.getText() + "}");
+
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+          }
+
+          return null;
+        case "ch":
+          channel = findChannel(parser);
+          hasChannel = true;
+          break;
+        case "rep":
+          channel = findChannel(parser);
+          hasChannel = true;
+          snapshot = true;
+          break;
+        case "tick":
+        case "data":
+          hasTick = true;
+
+          if (!hasChannel) {
+            earlyTick = mapper.readTree(parser);
+          } else if (channel != null) {
+            tickSequence = channel.handler.handle(parser, snapshot);
+            handled = true;
+          } else {
+            parser.skipChildren();
+          }
+          break;
+        case "status":
+          status = true;
+          parser.skipChildren();
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+
+    if (earlyTick != null && channel != null) {
+      try (JsonParser tickParser = earlyTick.traverse(mapper)) {
+        tickParser.nextToken();
+        tickSequence = channel.handler.handle(tickParser, snapshot);
+        handled = true;
+      }
+    }
+
+    if (handled) {
+      return channel;
+    }
+
+    if (hasTick && hasChannel) {
+      LOGGER.warning("JSON data does not fit in any channel: " + frameText());
+    } else if (status) {
+      LOGGER.info("Status: " + frameText());
+    } else {
+      LOGGER.warning("JSON data does not fit in any category: " + frameText());
+    }
 
-    decompress(bais, baos);
-    baos.flush();
-    baos.close();
-    bais.close();
+    return null;
+  }
 
-    return baos.toByteArray();
+  /**
+   * Returns the last decompressed frame as text, for logging messages which
+   * are not market data.
+   *
+   * @return the text of the frame
+   */
+  private String frameText() {
+    return new String(decoder.getBuffer(), 0, decoder.getLength(),
+        StandardCharsets.UTF_8);
   }
 
   /**
-   * Takes an input stream is and an output stream os and decompresses the gzip
-   * compressed.
+   * Called when the WebSocket connection is closed. Unless close was called,
+   * a reconnection is scheduled.
    *
-   * @param is input stream containing compressed data
-   * @param os output stream to write decompressed data to
-   * @throws IOException if there is an error reading or writing to the streams
+   * @param closeReason the reason for closing the connection
    */
-  private static void decompress(final InputStream is, final OutputStream os)
-      throws IOException {
-    GZIPInputStream gis = new GZIPInputStream(is);
-    final int kilobyteSize = 1024;
-    int count;
+  @OnClose
+  public final void onClose(final CloseReason closeReason) {
+    LOGGER.info("Connection closed: " + closeReason.getReasonPhrase());
+    scheduleReconnect();
+  }
 
-    byte[] data = new byte[kilobyteSize];
+  /**
+   * Called when an error occurs in the WebSocket connection. A reconnection
+   * is scheduled if the error left the connection closed.
+   *
+   * @param throwable the exception that caused the error
+   */
+  @OnError
+  public final void onError(final Throwable throwable) {
+    LOGGER.severe("Error occurred: " + throwable.getMessage());
 
-    while ((count = gis.read(data, 0, kilobyteSize)) != -1) {
-      os.write(data, 0, count);
+    if (!isConnected()) {
+      scheduleReconnect();
     }
-
-    gis.close();
   }
 }
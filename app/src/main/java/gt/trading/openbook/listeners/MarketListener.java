@@ -1,111 +1,97 @@
 package gt.trading.openbook.listeners;
 
-import java.io.IOException;
-import java.net.URI;
-import java.util.logging.Logger;
+import java.util.function.Consumer;
 
 import javax.websocket.ClientEndpoint;
-import javax.websocket.ContainerProvider;
-import javax.websocket.DeploymentException;
-import javax.websocket.WebSocketContainer;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import gt.trading.openbook.MapperSingleton;
 import gt.trading.openbook.models.DepthData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.models.TickParser;
 import gt.trading.openbook.models.TradeData;
 
 /**
  * The MarketListener class extends the Listener class to provide specific
- * implementations for handling market-related data events.
+ * implementations for handling market-related data events. A single listener
+ * can subscribe to the trade detail and depth feeds of many symbols, and any
+ * number of callbacks can share each feed.
  */
 @ClientEndpoint
 public final class MarketListener extends Listener {
-  private final String tradeDetailParams = "market.btcusdt.trade.detail";
-  private final String depthParams = "market.btcusdt.bbo";
-  private Callback<TradeData> tradeDetailCallback;
-  private Callback<DepthData> depthCallback;
-  private final ObjectMapper mapper = MapperSingleton.getInstance();
-  private final Logger logger = Logger
-      .getLogger(MarketListener.class.getName());
-
-  /**
-   * Creates a websocket connection to the market by price feed.
-   *
-   * @param uri the url to establish a websocket connection with
-   */
-  public void connect(final String uri) {
-    WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-
-    try {
-      container.connectToServer(this, URI.create(uri));
-    } catch (DeploymentException | IOException error) {
-      logger.severe(
-          "Unable to establish a websocket connection: " + error.getMessage());
-    }
-  }
+  private final String tradeDetailParams = "market.%s.trade.detail";
+  private final String depthParams = "market.%s.bbo";
 
   /**
-   * Subscribes to trade detail event and sets a callback to handle incoming
-   * trade data.
+   * Subscribes to the trade detail event of a symbol and sets a callback to
+   * handle its incoming trade data. The callback is called once for every
+   * trade in a message, with a TradeData which is reused for the next trade
+   * once it returns.
    *
-   * @param callback the callback to handle trade detail data
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
+   * @param callback  the callback to handle trade detail data
+   * @return the handle for unsubscribing the callback
+   * @throws IllegalArgumentException if the symbol is already subscribed with
+   *                                  a different precision
    */
-  public void subscribeTradeDetail(final Callback<TradeData> callback) {
-    tradeDetailCallback = callback;
-    JsonNode subscribe = mapper.createObjectNode().put("sub", tradeDetailParams)
-        .put("id", "trade_detail");
-    send(subscribe);
+  public Subscription subscribeTradeDetail(final String symbol,
+      final Precision precision, final Callback<TradeData> callback)
+      throws IllegalArgumentException {
+    return subscribe(String.format(tradeDetailParams, symbol), precision,
+        callback, fanOut -> {
+          TradeData trade = new TradeData();
+          Consumer<TradeData> consumer = fanOut::onResponse;
+          return (parser, snapshot) -> TickParser.parseTrades(parser,
+              precision, trade, consumer) == 0 ? -1L : trade.getTradeId();
+        });
   }
 
   /**
-   * Subscribes to market depth event and sets a callback to handle incoming
-   * depth data.
+   * Subscribes to the market depth event of a symbol and sets a callback to
+   * handle its incoming depth data. The DepthData passed to the callback is
+   * reused for the next message once it returns.
    *
-   * @param callback the callback to handle depth data
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
+   * @param callback  the callback to handle depth data
+   * @return the handle for unsubscribing the callback
+   * @throws IllegalArgumentException if the symbol is already subscribed with
+   *                                  a different precision
    */
-  public void subscribeDepth(final Callback<DepthData> callback) {
-    depthCallback = callback;
-    JsonNode subscribe = mapper.createObjectNode().put("sub", depthParams)
-        .put("id", "bbo");
-    send(subscribe);
+  public Subscription subscribeDepth(final String symbol,
+      final Precision precision, final Callback<DepthData> callback)
+      throws IllegalArgumentException {
+    return subscribe(String.format(depthParams, symbol), precision, callback,
+        fanOut -> {
+          DepthData depth = new DepthData();
+          return (parser, snapshot) -> {
+            TickParser.parseBbo(parser, precision, depth);
+            fanOut.onResponse(depth);
+            return depth.getSeqId();
+          };
+        });
   }
 
   /**
-   * Handles incoming event data by processing the received JsonNode object and
-   * invoking the appropriate callback based on the event type.
+   * Subscribes to the market depth event of a symbol in conflating mode. The
+   * callback runs on the thread processing the listener's frames, after each
+   * batch of them, and only receives the latest depth data of the batch, so
+   * if it falls behind, stale quotes are skipped rather than queued. Quotes
+   * are only conflated while a pipeline is running.
    *
-   * @param json the JsonNode containing the event data
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
+   * @param callback  the callback to handle the latest depth data
+   * @return the conflating callback, which counts conflated updates and is
+   *         closed to unsubscribe
+   * @throws IllegalArgumentException if the symbol is already subscribed with
+   *                                  a different precision
    */
-  @Override
-  protected void handleEvent(final JsonNode json) {
-    try {
-      if (json.has("ch") && json.has("tick")) {
-        String channel = json.get("ch").asText();
-        JsonNode tickNode = json.get("tick");
-
-        if (tradeDetailParams.equals(channel)) {
-          TradeData[] data = mapper.treeToValue(tickNode.get("data"),
-              TradeData[].class);
-          tradeDetailCallback.onResponse(data[0]);
-        } else if (depthParams.equals(channel)) {
-          DepthData data = mapper.treeToValue(tickNode, DepthData.class);
-          depthCallback.onResponse(data);
-        } else {
-          logger.warning("JSON data does not fit in any channel: " + json);
-        }
-      } else if (json.has("status")) {
-        logger.info("Status: " + json);
-      } else {
-        logger.warning("JSON data does not fit in any category: " + json);
-      }
-    } catch (JsonMappingException error) {
-      logger.severe("Error in mapping JSON data: " + error.getMessage());
-    } catch (JsonProcessingException error) {
-      logger.severe("Error processing JSON data: " + error.getMessage());
-    }
+  public ConflatingCallback<DepthData> subscribeDepthConflated(
+      final String symbol, final Precision precision,
+      final Callback<DepthData> callback) throws IllegalArgumentException {
+    ConflatingCallback<DepthData> conflating = new ConflatingCallback<>(
+        DepthData::new, DepthData::copyFrom, callback);
+    conflating.bind(this, subscribeDepth(symbol, precision, conflating));
+    return conflating;
   }
 }
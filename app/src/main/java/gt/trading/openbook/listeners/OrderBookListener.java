@@ -1,103 +1,134 @@
 package gt.trading.openbook.listeners;
 
-import java.io.IOException;
-import java.net.URI;
-import java.util.logging.Logger;
-
 import javax.websocket.ClientEndpoint;
-import javax.websocket.ContainerProvider;
-import javax.websocket.DeploymentException;
-import javax.websocket.WebSocketContainer;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import gt.trading.openbook.MapperSingleton;
 import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.models.TickParser;
 
 /**
  * The OrderBookListener class extends the Listener class to provide specific
- * implementations for handling order book snapshat data events.
+ * implementations for handling order book snapshat data events. A single
+ * listener can subscribe to the market by price feed of many symbols, each at
+ * one of the depths Huobi offers, and any number of callbacks can share each
+ * feed.
  */
 @ClientEndpoint
 public final class OrderBookListener extends Listener {
-  private final String mbpParams = "market.btcusdt.mbp.400";
-  private Callback<OrderBookData> mbpCallback;
+  /**
+   * The depth used when none is given, which is the deepest feed offered.
+   */
+  public static final int DEFAULT_DEPTH = 400;
+  private static final int[] SUPPORTED_DEPTHS = {5, 20, 150, 400};
+  private static final String MBP_PARAMS = "market.%s.mbp.%d";
   private final ObjectMapper mapper = MapperSingleton.getInstance();
-  private final Logger logger = Logger
-      .getLogger(OrderBookListener.class.getName());
 
   /**
-   * Creates a websocket connection to the market by price feed.
+   * Subscribes to the market by price event of a symbol at the default depth
+   * and sets a callback to handle its incoming order book data.
    *
-   * @param uri the url to establish a websocket connection with
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param precision the precision of the symbol's prices and amounts
+   * @param callback  the callback to handle order book data
+   * @return the handle for unsubscribing the callback
    */
-  public void connect(final String uri) {
-    WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+  public Subscription subscribeMbp(final String symbol,
+      final Precision precision, final Callback<OrderBookData> callback) {
+    return subscribeMbp(symbol, DEFAULT_DEPTH, precision, callback);
+  }
 
-    try {
-      container.connectToServer(this, URI.create(uri));
-    } catch (DeploymentException | IOException error) {
-      logger.severe(
-          "Unable to establish a websocket connection: " + error.getMessage());
-    }
+  /**
+   * Subscribes to the market by price event of a symbol at the given depth and
+   * adds a callback to handle its incoming order book data. Updates and
+   * snapshot replies are decoded once into an OrderBookData which is passed to
+   * every callback of the channel and reused once they return.
+   *
+   * @param symbol    the symbol to subscribe to, e.g., "btcusdt"
+   * @param depth     the number of levels per side, one of 5, 20, 150 or 400
+   * @param precision the precision of the symbol's prices and amounts
+   * @param callback  the callback to handle order book data
+   * @return the handle for unsubscribing the callback
+   * @throws IllegalArgumentException if the depth is not offered by Huobi, or
+   *                                  the channel is already subscribed with a
+   *                                  different precision
+   */
+  public Subscription subscribeMbp(final String symbol, final int depth,
+      final Precision precision, final Callback<OrderBookData> callback)
+      throws IllegalArgumentException {
+    return subscribe(getMbpChannel(symbol, depth), precision, callback,
+        fanOut -> {
+          OrderBookData data = new OrderBookData();
+          return (parser, snapshot) -> {
+            TickParser.parseMbp(parser, precision, snapshot
+                ? OrderBookData.Action.REFRESH
+                : OrderBookData.Action.INCREMENT, data);
+            fanOut.onResponse(data);
+            return data.getSeqNum();
+          };
+        });
   }
 
   /**
-   * Subscribes to market by price event and sets a callback to handle incoming
-   * order book data.
+   * Requests a full order book snapshot of a symbol at the default depth from
+   * the Huobi websocket.
    *
-   * @param callback the callback to handle trade detail data
+   * @param symbol the symbol to request a snapshot for
    */
-  public void subscribeMbp(final Callback<OrderBookData> callback) {
-    mbpCallback = callback;
-    JsonNode subscribe = mapper.createObjectNode().put("sub", mbpParams)
-        .put("id", "id1");
-    send(subscribe);
+  public void refresh(final String symbol) {
+    refresh(symbol, DEFAULT_DEPTH);
   }
 
   /**
-   * Requests a full order book snapshot from the Huobi websocket. The server
-   * will respond with a complete snapshot of the current order book state,
-   * which will be processed by the handleEvent method in this listener.
+   * Requests a full order book snapshot of a symbol from the Huobi websocket.
+   * The server will respond with a complete snapshot of the current order book
+   * state, which will be processed by the handleTick method in this listener.
+   *
+   * @param symbol the symbol to request a snapshot for
+   * @param depth  the depth the symbol was subscribed at
+   * @throws IllegalArgumentException if the depth is not offered by Huobi
    */
-  public void refresh() {
-    JsonNode request = mapper.createObjectNode().put("req", mbpParams).put("id",
-        "id2");
+  public void refresh(final String symbol, final int depth)
+      throws IllegalArgumentException {
+    JsonNode request = mapper.createObjectNode()
+        .put("req", getMbpChannel(symbol, depth)).put("id", "id2");
     send(request);
   }
 
   /**
-   * Handles incoming event data by processing the received JsonNode object and
-   * invoking the order book callback.
+   * Returns whether Huobi offers a market by price feed at the given depth.
    *
-   * @param json the JsonNode containing the event data
+   * @param depth the number of levels per side
+   * @return true if the depth is 5, 20, 150 or 400
    */
-  @Override
-  protected void handleEvent(final JsonNode json) {
-    try {
-      if (json.has("ch") && mbpParams.equals(json.get("ch").asText())
-          && json.has("tick")) {
-        OrderBookData data = mapper.treeToValue(json.get("tick"),
-            OrderBookData.class);
-        data.setAction(OrderBookData.Action.INCREMENT);
-        mbpCallback.onResponse(data);
-      } else if (json.has("id") && "id2".equals(json.get("id").asText())) {
-        OrderBookData data = mapper.treeToValue(json.get("data"),
-            OrderBookData.class);
-        data.setAction(OrderBookData.Action.REFRESH);
-        mbpCallback.onResponse(data);
-      } else if (json.has("status")) {
-        logger.info("Status: " + json);
-      } else {
-        logger.warning("JSON data does not fit in any category: " + json);
+  public static boolean isSupportedDepth(final int depth) {
+    for (int supported : SUPPORTED_DEPTHS) {
+      if (supported == depth) {
+        return true;
       }
-    } catch (JsonMappingException error) {
-      logger.severe("Error in mapping JSON data: " + error.getMessage());
-    } catch (JsonProcessingException error) {
-      logger.severe("Error processing JSON data: " + error.getMessage());
     }
+
+    return false;
+  }
+
+  /**
+   * Returns the market by price channel of a symbol at a depth.
+   *
+   * @param symbol the symbol of the channel
+   * @param depth  the number of levels per side
+   * @return the channel name
+   * @throws IllegalArgumentException if the depth is not offered by Huobi
+   */
+  public static String getMbpChannel(final String symbol, final int depth)
+      throws IllegalArgumentException {
+    if (!isSupportedDepth(depth)) {
+      throw new IllegalArgumentException(
+          "Market by price depth must be 5, 20, 150 or 400");
+    }
+
+    return String.format(MBP_PARAMS, symbol, depth);
   }
 }
@@ -0,0 +1,67 @@
+package gt.trading.openbook.listeners;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The ReconnectBackoff class spaces reconnection attempts with a jittered
+ * exponential backoff. The ceiling doubles after each attempt up to a
+ * maximum, and each delay is drawn between half the ceiling and the ceiling,
+ * so that many clients dropped at the same time do not reconnect in lockstep.
+ */
+public final class ReconnectBackoff {
+  private final long initialMillis;
+  private final long maxMillis;
+  private long ceilingMillis;
+  private int attempts = 0;
+
+  /**
+   * Constructs a ReconnectBackoff.
+   *
+   * @param newInitialMillis the ceiling of the first delay
+   * @param newMaxMillis     the largest ceiling of any delay
+   * @throws IllegalArgumentException if a delay is not positive or the maximum
+   *                                  is less than the initial delay
+   */
+  public ReconnectBackoff(final long newInitialMillis, final long newMaxMillis)
+      throws IllegalArgumentException {
+    if (newInitialMillis <= 0 || newMaxMillis < newInitialMillis) {
+      throw new IllegalArgumentException(
+          "Delays must be positive and the maximum at least the initial delay");
+    }
+
+    initialMillis = newInitialMillis;
+    maxMillis = newMaxMillis;
+    ceilingMillis = newInitialMillis;
+  }
+
+  /**
+   * Returns the delay before the next attempt and raises the ceiling.
+   *
+   * @return the delay in milliseconds
+   */
+  public synchronized long nextDelayMillis() {
+    long half = ceilingMillis / 2;
+    long delay = half + ThreadLocalRandom.current().nextLong(
+        ceilingMillis - half + 1);
+    ceilingMillis = Math.min(ceilingMillis * 2, maxMillis);
+    attempts++;
+    return delay;
+  }
+
+  /**
+   * Resets the ceiling once a connection succeeds.
+   */
+  public synchronized void reset() {
+    ceilingMillis = initialMillis;
+    attempts = 0;
+  }
+
+  /**
+   * Returns the number of attempts since the last reset.
+   *
+   * @return the number of delays handed out
+   */
+  public synchronized int getAttempts() {
+    return attempts;
+  }
+}
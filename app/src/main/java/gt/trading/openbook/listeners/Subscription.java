@@ -0,0 +1,53 @@
+package gt.trading.openbook.listeners;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The Subscription class is the handle returned when a callback subscribes to
+ * a channel of a listener. Unsubscribing removes only that callback; the
+ * listener unsubscribes from the channel on the server once its last callback
+ * is gone.
+ */
+public final class Subscription {
+  private final String channel;
+  private final Runnable cancel;
+  private final AtomicBoolean active = new AtomicBoolean(true);
+
+  /**
+   * Constructs a Subscription to a channel.
+   *
+   * @param newChannel the channel the callback is subscribed to
+   * @param newCancel  removes the callback from the channel
+   */
+  Subscription(final String newChannel, final Runnable newCancel) {
+    channel = newChannel;
+    cancel = newCancel;
+  }
+
+  /**
+   * Returns the channel the callback is subscribed to.
+   *
+   * @return the channel name
+   */
+  public String getChannel() {
+    return channel;
+  }
+
+  /**
+   * Returns whether the callback is still subscribed.
+   *
+   * @return true until unsubscribe is called
+   */
+  public boolean isActive() {
+    return active.get();
+  }
+
+  /**
+   * Removes the callback from the channel. Later calls do nothing.
+   */
+  public void unsubscribe() {
+    if (active.compareAndSet(true, false)) {
+      cancel.run();
+    }
+  }
+}
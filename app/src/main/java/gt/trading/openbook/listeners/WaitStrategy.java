@@ -0,0 +1,26 @@
+package gt.trading.openbook.listeners;
+
+/**
+ * The WaitStrategy enum selects how a thread waits on a FrameRing, either for
+ * a frame to arrive or for a slot to free up. The strategies trade CPU use for
+ * the latency of waking up once the ring changes.
+ */
+public enum WaitStrategy {
+  /**
+   * Parks the waiting thread until the other side signals it. Uses almost no
+   * CPU while idle but adds the cost of a wake up to every quiet period.
+   */
+  BLOCKING,
+
+  /**
+   * Yields to other threads between checks. Reacts quickly while leaving the
+   * core usable by other runnable threads.
+   */
+  YIELDING,
+
+  /**
+   * Spins on the ring without giving up the core. Has the lowest latency but
+   * keeps a core fully busy, so it should only be used with a spare core.
+   */
+  BUSY_SPIN
+}
@@ -1,18 +1,34 @@
 package gt.trading.openbook.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 /**
  * The DepthData class represents depth data information for a particular
  * instrument on the Huobi exchange. Depth data provides information about the
  * best ask and bid prices and sizes, as well as the quote time and sequence ID.
+ * Prices and sizes are fixed point values scaled by the precision of the
+ * instrument.
+ *
+ * Listeners decode every best bid and offer message of a subscription into the
+ * same DepthData, so an instance passed to a callback is only valid until the
+ * callback returns. Consumers which keep it longer must take a copy with copy
+ * or copyFrom.
  */
 public final class DepthData {
   private long seqId;
-  private double ask;
-  private double askSize;
-  private double bid;
-  private double bidSize;
+  @JsonDeserialize(using = FixedPointDeserializer.Price.class)
+  private long ask;
+  @JsonDeserialize(using = FixedPointDeserializer.Amount.class)
+  private long askSize;
+  @JsonDeserialize(using = FixedPointDeserializer.Price.class)
+  private long bid;
+  @JsonDeserialize(using = FixedPointDeserializer.Amount.class)
+  private long bidSize;
   private long quoteTime;
   private String symbol;
+  @JsonIgnore
+  private Precision precision;
 
   /**
    * Retrieves the sequence number uniquely identifying this depth data update.
@@ -24,38 +40,38 @@ public final class DepthData {
   }
 
   /**
-   * Retrieves the best ask price.
+   * Retrieves the scaled best ask price.
    *
    * @return the ask price
    */
-  public double getAsk() {
+  public long getAsk() {
     return ask;
   }
 
   /**
-   * Retrieves the size of the best ask price.
+   * Retrieves the scaled size of the best ask price.
    *
    * @return the ask size
    */
-  public double getAskSize() {
+  public long getAskSize() {
     return askSize;
   }
 
   /**
-   * Retrieves the best bid price.
+   * Retrieves the scaled best bid price.
    *
    * @return the bid price
    */
-  public double getBid() {
+  public long getBid() {
     return bid;
   }
 
   /**
-   * Retrieves the size of the best bid price.
+   * Retrieves the scaled size of the best bid price.
    *
    * @return the bid size
    */
-  public double getBidSize() {
+  public long getBidSize() {
     return bidSize;
   }
 
@@ -76,4 +92,70 @@ public final class DepthData {
   public String getSymbol() {
     return symbol;
   }
+
+  /**
+   * Retrieves the precision used to scale the prices and amounts.
+   *
+   * @return the precision of the instrument
+   */
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Sets the precision of the prices and amounts when handling the event in the
+   * listener.
+   *
+   * @param newPrecision the precision of the instrument
+   */
+  public void setPrecision(final Precision newPrecision) {
+    precision = newPrecision;
+  }
+
+  /**
+   * Returns a copy of this depth data which is safe to keep after the callback
+   * it was passed to returns.
+   *
+   * @return a new DepthData with the same contents
+   */
+  public DepthData copy() {
+    DepthData copy = new DepthData();
+    copy.copyFrom(this);
+    return copy;
+  }
+
+  /**
+   * Overwrites this depth data with the contents of another.
+   *
+   * @param other the depth data to copy
+   */
+  public void copyFrom(final DepthData other) {
+    fill(other.seqId, other.ask, other.askSize, other.bid, other.bidSize,
+        other.quoteTime, other.symbol);
+    precision = other.precision;
+  }
+
+  /**
+   * Sets every field of the depth data, used by TickParser when decoding a
+   * message without data binding.
+   *
+   * @param newSeqId     the sequence ID
+   * @param newAsk       the scaled ask price
+   * @param newAskSize   the scaled ask size
+   * @param newBid       the scaled bid price
+   * @param newBidSize   the scaled bid size
+   * @param newQuoteTime the quote time in milliseconds
+   * @param newSymbol    the trading symbol
+   */
+  void fill(final long newSeqId, final long newAsk, final long newAskSize,
+      final long newBid, final long newBidSize, final long newQuoteTime,
+      final String newSymbol) {
+    seqId = newSeqId;
+    ask = newAsk;
+    askSize = newAskSize;
+    bid = newBid;
+    bidSize = newBidSize;
+    quoteTime = newQuoteTime;
+    symbol = newSymbol;
+  }
 }
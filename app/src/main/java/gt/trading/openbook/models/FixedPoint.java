@@ -0,0 +1,250 @@
+package gt.trading.openbook.models;
+
+/**
+ * The FixedPoint class provides helpers for working with decimal values stored
+ * as scaled longs. A value v with scale s is stored as the long v * 10^s, so
+ * 30000.12 with a scale of 2 is stored as 3000012. Values are parsed straight
+ * from their decimal text, which keeps them exact, and are only converted to
+ * double when they leave the application.
+ */
+public final class FixedPoint {
+  /**
+   * The largest scale supported, limited by the digits that fit in a long.
+   */
+  public static final int MAX_SCALE = 18;
+  private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+  private static final int RADIX = 10;
+
+  static {
+    POWERS_OF_TEN[0] = 1L;
+
+    for (int i = 1; i <= MAX_SCALE; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * RADIX;
+    }
+  }
+
+  private FixedPoint() {
+    return;
+  }
+
+  /**
+   * Returns ten raised to the given scale.
+   *
+   * @param scale the number of decimal places
+   * @return 10^scale as a long
+   */
+  public static long pow10(final int scale) {
+    return POWERS_OF_TEN[scale];
+  }
+
+  /**
+   * Parses decimal text into a scaled long. Digits beyond the scale are rounded
+   * half up, and exponents such as 1.5E-3 are supported.
+   *
+   * @param text  the decimal text
+   * @param scale the number of decimal places to keep
+   * @return the scaled long value
+   * @throws NumberFormatException if the text is not a decimal number
+   */
+  public static long parse(final CharSequence text, final int scale)
+      throws NumberFormatException {
+    char[] chars = new char[text.length()];
+
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = text.charAt(i);
+    }
+
+    return parse(chars, 0, chars.length, scale);
+  }
+
+  /**
+   * Parses a range of decimal characters into a scaled long without creating
+   * intermediate objects. Digits beyond the scale are rounded half up, and
+   * exponents such as 1.5E-3 are supported.
+   *
+   * @param chars  the buffer holding the decimal text
+   * @param offset the index of the first character
+   * @param length the number of characters to parse
+   * @param scale  the number of decimal places to keep
+   * @return the scaled long value
+   * @throws NumberFormatException if the text is not a decimal number
+   */
+  public static long parse(final char[] chars, final int offset,
+      final int length, final int scale) throws NumberFormatException {
+    int end = offset + length;
+    int index = offset;
+    boolean negative = false;
+
+    if (index < end && (chars[index] == '-' || chars[index] == '+')) {
+      negative = chars[index] == '-';
+      index++;
+    }
+
+    long mantissa = 0L;
+    int exponent = 0;
+    int digits = 0;
+    boolean seenDot = false;
+
+    for (; index < end; index++) {
+      char c = chars[index];
+
+      if (c >= '0' && c <= '9') {
+        if (mantissa <= (Long.MAX_VALUE - (RADIX - 1)) / RADIX) {
+          mantissa = mantissa * RADIX + (c - '0');
+          exponent -= seenDot ? 1 : 0;
+        } else if (!seenDot) {
+          exponent++;
+        }
+
+        digits++;
+      } else if (c == '.' && !seenDot) {
+        seenDot = true;
+      } else if ((c == 'e' || c == 'E') && digits > 0) {
+        exponent += parseExponent(chars, index + 1, end);
+        index = end;
+      } else {
+        throw new NumberFormatException(
+            "Invalid decimal: " + new String(chars, offset, length));
+      }
+    }
+
+    if (digits == 0) {
+      throw new NumberFormatException(
+          "Invalid decimal: " + new String(chars, offset, length));
+    }
+
+    long value = rescale(mantissa, exponent + scale);
+    return negative ? -value : value;
+  }
+
+  /**
+   * Converts a scaled long into a double. This should only be used at the
+   * output boundary, such as when a feature value is reported.
+   *
+   * @param value the scaled long value
+   * @param scale the number of decimal places of the value
+   * @return the value as a double
+   */
+  public static double toDouble(final long value, final int scale) {
+    return (double) value / POWERS_OF_TEN[scale];
+  }
+
+  /**
+   * Converts a double into a scaled long, rounding to the nearest unit.
+   *
+   * @param value the value as a double
+   * @param scale the number of decimal places to keep
+   * @return the scaled long value
+   */
+  public static long fromDouble(final double value, final int scale) {
+    return Math.round(value * POWERS_OF_TEN[scale]);
+  }
+
+  /**
+   * Formats a scaled long as plain decimal text with exactly scale decimal
+   * places.
+   *
+   * @param value the scaled long value
+   * @param scale the number of decimal places of the value
+   * @return the decimal text
+   */
+  public static String toString(final long value, final int scale) {
+    if (scale == 0) {
+      return Long.toString(value);
+    }
+
+    long unit = POWERS_OF_TEN[scale];
+    long whole = Math.abs(value / unit);
+    long fraction = Math.abs(value % unit);
+    StringBuilder builder = new StringBuilder();
+
+    if (value < 0) {
+      builder.append('-');
+    }
+
+    builder.append(whole).append('.');
+    String fractionText = Long.toString(fraction);
+
+    for (int i = fractionText.length(); i < scale; i++) {
+      builder.append('0');
+    }
+
+    return builder.append(fractionText).toString();
+  }
+
+  /**
+   * Multiplies or divides a mantissa by a power of ten, rounding half up when
+   * digits are dropped.
+   *
+   * @param mantissa the digits of the value
+   * @param shift    the power of ten to apply
+   * @return the rescaled value
+   * @throws NumberFormatException if the value does not fit in a long
+   */
+  private static long rescale(final long mantissa, final int shift)
+      throws NumberFormatException {
+    if (shift >= 0) {
+      if (shift > MAX_SCALE) {
+        if (mantissa == 0) {
+          return 0L;
+        }
+
+        throw new NumberFormatException("Decimal does not fit in a long");
+      }
+
+      try {
+        return Math.multiplyExact(mantissa, POWERS_OF_TEN[shift]);
+      } catch (ArithmeticException error) {
+        throw new NumberFormatException("Decimal does not fit in a long");
+      }
+    }
+
+    if (-shift > MAX_SCALE) {
+      return 0L;
+    }
+
+    long divisor = POWERS_OF_TEN[-shift];
+    long quotient = mantissa / divisor;
+    long remainder = mantissa % divisor;
+
+    return remainder >= divisor - remainder ? quotient + 1 : quotient;
+  }
+
+  /**
+   * Parses the signed integer exponent following an 'e' or 'E'.
+   *
+   * @param chars the buffer holding the decimal text
+   * @param start the index of the first exponent character
+   * @param end   the index after the last exponent character
+   * @return the exponent
+   * @throws NumberFormatException if the exponent is malformed
+   */
+  private static int parseExponent(final char[] chars, final int start,
+      final int end) throws NumberFormatException {
+    int index = start;
+    boolean negative = false;
+
+    if (index < end && (chars[index] == '-' || chars[index] == '+')) {
+      negative = chars[index] == '-';
+      index++;
+    }
+
+    if (index == end) {
+      throw new NumberFormatException("Missing exponent digits");
+    }
+
+    int exponent = 0;
+
+    for (; index < end; index++) {
+      char c = chars[index];
+
+      if (c < '0' || c > '9' || exponent > Short.MAX_VALUE) {
+        throw new NumberFormatException("Invalid exponent");
+      }
+
+      exponent = exponent * RADIX + (c - '0');
+    }
+
+    return negative ? -exponent : exponent;
+  }
+}
@@ -0,0 +1,131 @@
+package gt.trading.openbook.models;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+/**
+ * The FixedPointDeserializer class deserializes JSON numbers into scaled longs
+ * by reading the characters of the number directly, so values never pass
+ * through a double. The precision of the instrument is read from the
+ * deserialization context attribute keyed by the Precision class.
+ */
+public abstract class FixedPointDeserializer extends StdDeserializer<Long> {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs a FixedPointDeserializer for long values.
+   */
+  protected FixedPointDeserializer() {
+    super(Long.class);
+  }
+
+  /**
+   * Returns the scale to use from the precision of the instrument.
+   *
+   * @param precision the precision of the instrument
+   * @return the number of decimal places to keep
+   */
+  protected abstract int getScale(Precision precision);
+
+  /**
+   * Parses the current number token into a scaled long.
+   *
+   * @param parser  the parser positioned on a number or string token
+   * @param context the deserialization context holding the precision
+   * @return the scaled long value
+   * @throws IOException if the token is not a decimal number
+   */
+  @Override
+  public final Long deserialize(final JsonParser parser,
+      final DeserializationContext context) throws IOException {
+    return parseValue(parser, context, getScale(getPrecision(parser, context)));
+  }
+
+  /**
+   * Parses the current number or string token into a scaled long.
+   *
+   * @param parser  the parser positioned on a number or string token
+   * @param context the deserialization context
+   * @param scale   the number of decimal places to keep
+   * @return the scaled long value
+   * @throws IOException if the token is not a decimal number
+   */
+  static long parseValue(final JsonParser parser,
+      final DeserializationContext context, final int scale)
+      throws IOException {
+    JsonToken token = parser.currentToken();
+
+    if (token != JsonToken.VALUE_NUMBER_FLOAT
+        && token != JsonToken.VALUE_NUMBER_INT
+        && token != JsonToken.VALUE_STRING) {
+      return (Long) context.handleUnexpectedToken(Long.class, parser);
+    }
+
+    try {
+      return FixedPoint.parse(parser.getTextCharacters(),
+          parser.getTextOffset(), parser.getTextLength(), scale);
+    } catch (NumberFormatException error) {
+      return context.reportInputMismatch(Long.class, error.getMessage());
+    }
+  }
+
+  /**
+   * Retrieves the precision of the instrument from the context.
+   *
+   * @param parser  the active parser
+   * @param context the deserialization context
+   * @return the precision set by the listener
+   * @throws IOException if no precision has been set
+   */
+  static Precision getPrecision(final JsonParser parser,
+      final DeserializationContext context) throws IOException {
+    Object precision = context.getAttribute(Precision.class);
+
+    if (precision instanceof Precision) {
+      return (Precision) precision;
+    }
+
+    return context.reportInputMismatch(Precision.class,
+        "No precision attribute set for fixed point value");
+  }
+
+  /**
+   * Deserializes prices using the price scale of the instrument.
+   */
+  public static final class Price extends FixedPointDeserializer {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Returns the price scale of the instrument.
+     *
+     * @param precision the precision of the instrument
+     * @return the price scale
+     */
+    @Override
+    protected int getScale(final Precision precision) {
+      return precision.getPriceScale();
+    }
+  }
+
+  /**
+   * Deserializes amounts using the amount scale of the instrument.
+   */
+  public static final class Amount extends FixedPointDeserializer {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Returns the amount scale of the instrument.
+     *
+     * @param precision the precision of the instrument
+     * @return the amount scale
+     */
+    @Override
+    protected int getScale(final Precision precision) {
+      return precision.getAmountScale();
+    }
+  }
+}
@@ -1,21 +1,43 @@
 package gt.trading.openbook.models;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * The OrderBookData class represents an incremetal update of the order book for
  * an instrument. It includes information such as the action, sequence numbers,
- * and lists of bids and asks.
+ * and the bid and ask levels, which are held in primitive arrays and read by
+ * index.
+ *
+ * Listeners decode every message of a channel into the same OrderBookData, so
+ * an instance passed to a callback is only valid until the callback returns.
+ * Consumers which keep it longer, such as by handing it to another thread,
+ * must take a copy with copy or copyFrom. The level arrays grow to the largest
+ * update seen and are then reused, so decoding allocates nothing once warm.
  */
 public final class OrderBookData {
+  private static final int INITIAL_CAPACITY = 64;
   @JsonIgnore
   private Action action;
   private long seqNum;
   private long prevSeqNum;
-  private List<PriceLevel> bids;
-  private List<PriceLevel> asks;
+  @JsonIgnore
+  private long[] bidPrices = new long[INITIAL_CAPACITY];
+  @JsonIgnore
+  private long[] bidAmounts = new long[INITIAL_CAPACITY];
+  @JsonIgnore
+  private long[] askPrices = new long[INITIAL_CAPACITY];
+  @JsonIgnore
+  private long[] askAmounts = new long[INITIAL_CAPACITY];
+  @JsonIgnore
+  private int bidCount = 0;
+  @JsonIgnore
+  private int askCount = 0;
+  @JsonIgnore
+  private Precision precision;
 
   /**
    * The Action enum represents the type of event that occurred in the order
@@ -26,7 +48,8 @@ public final class OrderBookData {
   }
 
   /**
-   * Constructs an empty OrderBookData for use in serialization.
+   * Constructs an empty OrderBookData, for use in serialization or as a
+   * reusable instance to decode into.
    */
   public OrderBookData() {
     return;
@@ -41,8 +64,9 @@ public final class OrderBookData {
     action = builder.action;
     seqNum = builder.seqNum;
     prevSeqNum = builder.prevSeqNum;
-    bids = builder.bids;
-    asks = builder.asks;
+    setBids(builder.bids);
+    setAsks(builder.asks);
+    precision = builder.precision;
   }
 
   /**
@@ -82,21 +106,214 @@ public final class OrderBookData {
   }
 
   /**
-   * Returns the list of bids in the order book update.
+   * Returns the number of bid levels in the order book update.
+   *
+   * @return the number of bids
+   */
+  public int getBidCount() {
+    return bidCount;
+  }
+
+  /**
+   * Returns the scaled price of a bid level.
+   *
+   * @param index the index of the level, in the order it was sent
+   * @return the bid price
+   */
+  public long getBidPrice(final int index) {
+    return bidPrices[index];
+  }
+
+  /**
+   * Returns the scaled amount of a bid level.
+   *
+   * @param index the index of the level, in the order it was sent
+   * @return the bid amount, where 0 removes the level
+   */
+  public long getBidAmount(final int index) {
+    return bidAmounts[index];
+  }
+
+  /**
+   * Returns the number of ask levels in the order book update.
+   *
+   * @return the number of asks
+   */
+  public int getAskCount() {
+    return askCount;
+  }
+
+  /**
+   * Returns the scaled price of an ask level.
+   *
+   * @param index the index of the level, in the order it was sent
+   * @return the ask price
+   */
+  public long getAskPrice(final int index) {
+    return askPrices[index];
+  }
+
+  /**
+   * Returns the scaled amount of an ask level.
+   *
+   * @param index the index of the level, in the order it was sent
+   * @return the ask amount, where 0 removes the level
+   */
+  public long getAskAmount(final int index) {
+    return askAmounts[index];
+  }
+
+  /**
+   * Retrieves the precision used to scale the prices and amounts.
+   *
+   * @return the precision of the instrument
+   */
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Sets the precision of the prices and amounts when handling the event in the
+   * listener.
+   *
+   * @param newPrecision the precision of the instrument
+   */
+  public void setPrecision(final Precision newPrecision) {
+    precision = newPrecision;
+  }
+
+  /**
+   * Returns a deep copy of this order book update which is safe to keep after
+   * the callback it was passed to returns.
+   *
+   * @return a new OrderBookData with the same contents
+   */
+  public OrderBookData copy() {
+    OrderBookData copy = new OrderBookData();
+    copy.copyFrom(this);
+    return copy;
+  }
+
+  /**
+   * Overwrites this order book update with the contents of another, reusing
+   * this instance's arrays when they are large enough.
+   *
+   * @param other the order book update to copy
+   */
+  public void copyFrom(final OrderBookData other) {
+    action = other.action;
+    seqNum = other.seqNum;
+    prevSeqNum = other.prevSeqNum;
+    precision = other.precision;
+    bidCount = 0;
+    askCount = 0;
+
+    for (int i = 0; i < other.bidCount; i++) {
+      addBid(other.bidPrices[i], other.bidAmounts[i]);
+    }
+
+    for (int i = 0; i < other.askCount; i++) {
+      addAsk(other.askPrices[i], other.askAmounts[i]);
+    }
+  }
+
+  /**
+   * Empties the update so that it can be decoded into again.
+   *
+   * @param newAction    the action of the next update
+   * @param newPrecision the precision of the next update
+   */
+  void reset(final Action newAction, final Precision newPrecision) {
+    action = newAction;
+    precision = newPrecision;
+    seqNum = 0L;
+    prevSeqNum = 0L;
+    bidCount = 0;
+    askCount = 0;
+  }
+
+  /**
+   * Sets the sequence number while decoding.
    *
-   * @return the list of bids
+   * @param newSeqNum the sequence number
    */
-  public List<PriceLevel> getBids() {
-    return bids;
+  void setSeqNum(final long newSeqNum) {
+    seqNum = newSeqNum;
   }
 
   /**
-   * Returns the list of asks in the order book update.
+   * Sets the previous sequence number while decoding.
    *
-   * @return list of asks
+   * @param newPrevSeqNum the previous sequence number
    */
-  public List<PriceLevel> getAsks() {
-    return asks;
+  void setPrevSeqNum(final long newPrevSeqNum) {
+    prevSeqNum = newPrevSeqNum;
+  }
+
+  /**
+   * Appends a bid level, growing the bid arrays if they are full.
+   *
+   * @param price  the scaled price
+   * @param amount the scaled amount
+   */
+  void addBid(final long price, final long amount) {
+    if (bidCount == bidPrices.length) {
+      bidPrices = Arrays.copyOf(bidPrices, bidCount * 2);
+      bidAmounts = Arrays.copyOf(bidAmounts, bidCount * 2);
+    }
+
+    bidPrices[bidCount] = price;
+    bidAmounts[bidCount] = amount;
+    bidCount++;
+  }
+
+  /**
+   * Appends an ask level, growing the ask arrays if they are full.
+   *
+   * @param price  the scaled price
+   * @param amount the scaled amount
+   */
+  void addAsk(final long price, final long amount) {
+    if (askCount == askPrices.length) {
+      askPrices = Arrays.copyOf(askPrices, askCount * 2);
+      askAmounts = Arrays.copyOf(askAmounts, askCount * 2);
+    }
+
+    askPrices[askCount] = price;
+    askAmounts[askCount] = amount;
+    askCount++;
+  }
+
+  /**
+   * Replaces the bid levels, used by data binding and the builder.
+   *
+   * @param levels the bid levels, or null for none
+   */
+  @JsonProperty("bids")
+  private void setBids(final List<PriceLevel> levels) {
+    bidCount = 0;
+
+    if (levels != null) {
+      for (PriceLevel level : levels) {
+        addBid(level.getPrice(), level.getAmount());
+      }
+    }
+  }
+
+  /**
+   * Replaces the ask levels, used by data binding and the builder.
+   *
+   * @param levels the ask levels, or null for none
+   */
+  @JsonProperty("asks")
+  private void setAsks(final List<PriceLevel> levels) {
+    askCount = 0;
+
+    if (levels != null) {
+      for (PriceLevel level : levels) {
+        addAsk(level.getPrice(), level.getAmount());
+      }
+    }
   }
 
   /**
@@ -119,6 +336,7 @@ public final class OrderBookData {
     private long prevSeqNum;
     private List<PriceLevel> bids;
     private List<PriceLevel> asks;
+    private Precision precision;
 
     /**
      * Constructs an empty Builder for use in serialization.
@@ -183,6 +401,17 @@ public final class OrderBookData {
       return this;
     }
 
+    /**
+     * Sets the precision of the prices and amounts for this builder.
+     *
+     * @param newPrecision precision of the instrument
+     * @return the current Builder instance
+     */
+    public Builder precision(final Precision newPrecision) {
+      precision = newPrecision;
+      return this;
+    }
+
     /**
      * Constructs an OrderBookData instance using the values set in this
      * builder.
@@ -0,0 +1,176 @@
+package gt.trading.openbook.models;
+
+/**
+ * The Precision class represents the number of decimal places used for the
+ * prices and amounts of an instrument. Prices and amounts of that instrument
+ * are stored as longs scaled by these precisions using FixedPoint.
+ *
+ * The price tick is the smallest price increment the instrument trades at, in
+ * scaled units. It is 1 unless the price scale is finer than the real tick,
+ * and lets price ladders hold one slot per real tick.
+ */
+public final class Precision {
+  private final int priceScale;
+  private final int amountScale;
+  private final long priceTick;
+
+  /**
+   * Constructs a Precision using the builder.
+   *
+   * @param builder the builder object
+   */
+  private Precision(final Builder builder) {
+    priceScale = builder.priceScale;
+    amountScale = builder.amountScale;
+    priceTick = builder.priceTick;
+  }
+
+  /**
+   * Returns the number of decimal places of prices.
+   *
+   * @return the price scale
+   */
+  public int getPriceScale() {
+    return priceScale;
+  }
+
+  /**
+   * Returns the number of decimal places of amounts.
+   *
+   * @return the amount scale
+   */
+  public int getAmountScale() {
+    return amountScale;
+  }
+
+  /**
+   * Returns the smallest price increment of the instrument.
+   *
+   * @return the price tick in scaled units
+   */
+  public long getPriceTick() {
+    return priceTick;
+  }
+
+  /**
+   * Returns whether another precision scales prices and amounts the same way
+   * and has the same price tick, so that scaled values can be exchanged.
+   *
+   * @param other the precision to compare with
+   * @return true if the precisions match
+   */
+  public boolean matches(final Precision other) {
+    return priceScale == other.priceScale && amountScale == other.amountScale
+        && priceTick == other.priceTick;
+  }
+
+  /**
+   * Converts a scaled price into a double for output.
+   *
+   * @param price the scaled price
+   * @return the price as a double
+   */
+  public double priceToDouble(final long price) {
+    return FixedPoint.toDouble(price, priceScale);
+  }
+
+  /**
+   * Converts a scaled amount into a double for output.
+   *
+   * @param amount the scaled amount
+   * @return the amount as a double
+   */
+  public double amountToDouble(final long amount) {
+    return FixedPoint.toDouble(amount, amountScale);
+  }
+
+  /**
+   * Creates a new builder for Precision.
+   *
+   * @return Builder object
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Builder class for Precision.
+   *
+   * Provides a way to create a Precision object using the builder pattern.
+   */
+  public static final class Builder {
+    private int priceScale;
+    private int amountScale;
+    private long priceTick = 1L;
+
+    /**
+     * Constructs an empty Builder for Precision objects.
+     */
+    private Builder() {
+      return;
+    }
+
+    /**
+     * Sets the number of decimal places of prices.
+     *
+     * @param newPriceScale the price scale
+     * @return the current Builder instance
+     * @throws IllegalArgumentException if the scale is out of range
+     */
+    public Builder priceScale(final int newPriceScale)
+        throws IllegalArgumentException {
+      if (newPriceScale < 0 || newPriceScale > FixedPoint.MAX_SCALE) {
+        throw new IllegalArgumentException(
+            "Price scale must be between 0 and " + FixedPoint.MAX_SCALE);
+      }
+
+      priceScale = newPriceScale;
+      return this;
+    }
+
+    /**
+     * Sets the number of decimal places of amounts.
+     *
+     * @param newAmountScale the amount scale
+     * @return the current Builder instance
+     * @throws IllegalArgumentException if the scale is out of range
+     */
+    public Builder amountScale(final int newAmountScale)
+        throws IllegalArgumentException {
+      if (newAmountScale < 0 || newAmountScale > FixedPoint.MAX_SCALE) {
+        throw new IllegalArgumentException(
+            "Amount scale must be between 0 and " + FixedPoint.MAX_SCALE);
+      }
+
+      amountScale = newAmountScale;
+      return this;
+    }
+
+    /**
+     * Sets the smallest price increment of the instrument.
+     *
+     * @param newPriceTick the price tick in scaled units
+     * @return the current Builder instance
+     * @throws IllegalArgumentException if the tick is not positive
+     */
+    public Builder priceTick(final long newPriceTick)
+        throws IllegalArgumentException {
+      if (newPriceTick <= 0) {
+        throw new IllegalArgumentException(
+            "Price tick must be greater than 0");
+      }
+
+      priceTick = newPriceTick;
+      return this;
+    }
+
+    /**
+     * Constructs a Precision instance using the values set in this builder.
+     *
+     * @return a new Precision instance
+     */
+    public Precision build() {
+      return new Precision(this);
+    }
+  }
+}
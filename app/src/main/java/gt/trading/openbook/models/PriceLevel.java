@@ -1,47 +1,43 @@
 package gt.trading.openbook.models;
 
-import java.util.Arrays;
-import java.util.List;
-
-import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 /**
  * The PriceLevel class represents a price level and its corresponding amount in
- * an order book.
+ * an order book. The price and amount are fixed point values scaled by the
+ * precision of the instrument.
  */
+@JsonDeserialize(using = PriceLevelDeserializer.class)
 public final class PriceLevel {
-  private double price;
-  private double amount;
+  private final long price;
+  private final long amount;
 
   /**
-   * Constructor for PriceLevel. Parses a list of doubles representing the price
-   * level and its corresponding amount.
+   * Constructor for PriceLevel from a scaled price and amount.
    *
-   * @param values the price and amount
-   * @throws IllegalArgumentException if the list does not contain two elements
+   * @param newPrice  the scaled price
+   * @param newAmount the scaled amount
    */
-  @JsonCreator
-  private PriceLevel(final List<Double> values)
-      throws IllegalArgumentException {
-    price = values.get(0);
-    amount = values.get(1);
+  PriceLevel(final long newPrice, final long newAmount) {
+    price = newPrice;
+    amount = newAmount;
   }
 
   /**
-   * Gets the price of the price level.
+   * Gets the scaled price of the price level.
    *
    * @return the price
    */
-  public double getPrice() {
+  public long getPrice() {
     return price;
   }
 
   /**
-   * Gets the amount corresponding to the price level.
+   * Gets the scaled amount corresponding to the price level.
    *
    * @return the amount
    */
-  public double getAmount() {
+  public long getAmount() {
     return amount;
   }
 
@@ -59,8 +55,8 @@ public final class PriceLevel {
    * pattern.
    */
   public static final class Builder {
-    private double price;
-    private double amount;
+    private long price;
+    private long amount;
 
     /**
      * Constructs an empty Builder for PriceLevel objects.
@@ -70,12 +66,12 @@ public final class PriceLevel {
     }
 
     /**
-     * Sets the price of the price level.
+     * Sets the scaled price of the price level.
      *
      * @param newPrice the price
      * @return the current instance of the Builder class
      */
-    public Builder price(final double newPrice) {
+    public Builder price(final long newPrice) {
       if (newPrice < 0) {
         throw new IllegalArgumentException(
             "Price of the price level cannot be less than 0");
@@ -86,13 +82,13 @@ public final class PriceLevel {
     }
 
     /**
-     * Sets the amount corresponding to the price level.
+     * Sets the scaled amount corresponding to the price level.
      *
      * @param newAmount the amount
      * @return the current instance of the Builder class
      */
-    public Builder amount(final double newAmount) {
-      if (amount < 0) {
+    public Builder amount(final long newAmount) {
+      if (newAmount < 0) {
         throw new IllegalArgumentException(
             "Amount of the price level cannot be less than 0");
       }
@@ -108,7 +104,7 @@ public final class PriceLevel {
      * @return a new instance of the PriceLevel class
      */
     public PriceLevel build() {
-      return new PriceLevel(Arrays.asList(price, amount));
+      return new PriceLevel(price, amount);
     }
   }
 }
@@ -0,0 +1,58 @@
+package gt.trading.openbook.models;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+/**
+ * The PriceLevelDeserializer class deserializes a [price, amount] JSON array
+ * into a PriceLevel, parsing both numbers straight from their text into fixed
+ * point values using the precision set on the deserialization context.
+ */
+public final class PriceLevelDeserializer extends StdDeserializer<PriceLevel> {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs a PriceLevelDeserializer.
+   */
+  public PriceLevelDeserializer() {
+    super(PriceLevel.class);
+  }
+
+  /**
+   * Reads a two element array of price and amount.
+   *
+   * @param parser  the parser positioned on the start of the array
+   * @param context the deserialization context holding the precision
+   * @return the parsed price level
+   * @throws IOException if the array is not a price and amount pair
+   */
+  @Override
+  public PriceLevel deserialize(final JsonParser parser,
+      final DeserializationContext context) throws IOException {
+    if (!parser.isExpectedStartArrayToken()) {
+      return (PriceLevel) context.handleUnexpectedToken(PriceLevel.class,
+          parser);
+    }
+
+    Precision precision = FixedPointDeserializer.getPrecision(parser,
+        context);
+
+    parser.nextToken();
+    long price = FixedPointDeserializer.parseValue(parser, context,
+        precision.getPriceScale());
+    parser.nextToken();
+    long amount = FixedPointDeserializer.parseValue(parser, context,
+        precision.getAmountScale());
+
+    if (parser.nextToken() != JsonToken.END_ARRAY) {
+      return context.reportInputMismatch(PriceLevel.class,
+          "Price level must contain a price and an amount");
+    }
+
+    return new PriceLevel(price, amount);
+  }
+}
@@ -0,0 +1,312 @@
+package gt.trading.openbook.models;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * The TickParser class decodes the tick of Huobi market by price, best bid and
+ * offer, and trade detail messages straight from JsonParser tokens. Unlike
+ * data binding through a JsonNode tree, no intermediate tree is built and
+ * prices and amounts are parsed from the characters of each number into fixed
+ * point values. Unknown fields are skipped.
+ *
+ * Each method expects the parser to be positioned on the START_OBJECT token of
+ * the tick and leaves it on the matching END_OBJECT token. Ticks are decoded
+ * into a target owned by the caller, which is overwritten on every call, and
+ * strings such as the symbol are only replaced when their characters change.
+ */
+public final class TickParser {
+  private TickParser() {
+    return;
+  }
+
+  /**
+   * Decodes the tick of a market by price message into a reusable target.
+   *
+   * @param parser    the parser positioned on the start of the tick
+   * @param precision the precision of the symbol's prices and amounts
+   * @param action    whether the tick is a snapshot or an increment
+   * @param target    the order book data to overwrite
+   * @throws IOException if the tick is not valid market by price data
+   */
+  public static void parseMbp(final JsonParser parser,
+      final Precision precision, final OrderBookData.Action action,
+      final OrderBookData target) throws IOException {
+    expect(parser, JsonToken.START_OBJECT);
+    target.reset(action, precision);
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      switch (field) {
+        case "seqNum":
+          target.setSeqNum(parser.getLongValue());
+          break;
+        case "prevSeqNum":
+          target.setPrevSeqNum(parser.getLongValue());
+          break;
+        case "bids":
+          readLevels(parser, precision, target, true);
+          break;
+        case "asks":
+          readLevels(parser, precision, target, false);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * Decodes the tick of a best bid and offer message into a reusable target.
+   *
+   * @param parser    the parser positioned on the start of the tick
+   * @param precision the precision of the symbol's prices and amounts
+   * @param target    the depth data to overwrite
+   * @throws IOException if the tick is not valid best bid and offer data
+   */
+  public static void parseBbo(final JsonParser parser,
+      final Precision precision, final DepthData target) throws IOException {
+    expect(parser, JsonToken.START_OBJECT);
+    long seqId = 0L;
+    long ask = 0L;
+    long askSize = 0L;
+    long bid = 0L;
+    long bidSize = 0L;
+    long quoteTime = 0L;
+    String symbol = target.getSymbol();
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      switch (field) {
+        case "seqId":
+          seqId = parser.getLongValue();
+          break;
+        case "ask":
+          ask = readScaled(parser, precision.getPriceScale());
+          break;
+        case "askSize":
+          askSize = readScaled(parser, precision.getAmountScale());
+          break;
+        case "bid":
+          bid = readScaled(parser, precision.getPriceScale());
+          break;
+        case "bidSize":
+          bidSize = readScaled(parser, precision.getAmountScale());
+          break;
+        case "quoteTime":
+          quoteTime = parser.getLongValue();
+          break;
+        case "symbol":
+          symbol = readText(parser, symbol);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+
+    target.fill(seqId, ask, askSize, bid, bidSize, quoteTime, symbol);
+    target.setPrecision(precision);
+  }
+
+  /**
+   * Decodes the tick of a trade detail message, decoding every trade it holds
+   * into the same target and passing it to the consumer in order.
+   *
+   * @param parser    the parser positioned on the start of the tick
+   * @param precision the precision of the symbol's prices and amounts
+   * @param target    the trade data to overwrite for each trade
+   * @param consumer  the consumer receiving each trade
+   * @return the number of trades decoded
+   * @throws IOException if the tick is not valid trade detail data
+   */
+  public static int parseTrades(final JsonParser parser,
+      final Precision precision, final TradeData target,
+      final Consumer<TradeData> consumer) throws IOException {
+    expect(parser, JsonToken.START_OBJECT);
+    int count = 0;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      if (!"data".equals(field)) {
+        parser.skipChildren();
+        continue;
+      }
+
+      expect(parser, JsonToken.START_ARRAY);
+
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        readTrade(parser, precision, target);
+        consumer.accept(target);
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Parses the current number or string token into a scaled long.
+   *
+   * @param parser the parser positioned on a number or string token
+   * @param scale  the number of decimal places to keep
+   * @return the scaled long value
+   * @throws IOException if the token is not a decimal number
+   */
+  public static long readScaled(final JsonParser parser, final int scale)
+      throws IOException {
+    JsonToken token = parser.currentToken();
+
+    if (token != JsonToken.VALUE_NUMBER_FLOAT
+        && token != JsonToken.VALUE_NUMBER_INT
+        && token != JsonToken.VALUE_STRING) {
+      throw new JsonParseException(parser,
+          "Expected a decimal number but found " + token);
+    }
+
+    try {
+      return FixedPoint.parse(parser.getTextCharacters(),
+          parser.getTextOffset(), parser.getTextLength(), scale);
+    } catch (NumberFormatException error) {
+      throw new JsonParseException(parser, error.getMessage(), error);
+    }
+  }
+
+  /**
+   * Reads an array of [price, amount] pairs into one side of the target.
+   *
+   * @param parser    the parser positioned on the start of the array
+   * @param precision the precision of the symbol's prices and amounts
+   * @param target    the order book data to append the levels to
+   * @param isBid     true to append bids and false to append asks
+   * @throws IOException if the array is not a list of price levels
+   */
+  private static void readLevels(final JsonParser parser,
+      final Precision precision, final OrderBookData target,
+      final boolean isBid) throws IOException {
+    expect(parser, JsonToken.START_ARRAY);
+
+    while (parser.nextToken() == JsonToken.START_ARRAY) {
+      parser.nextToken();
+      long price = readScaled(parser, precision.getPriceScale());
+      parser.nextToken();
+      long amount = readScaled(parser, precision.getAmountScale());
+
+      if (parser.nextToken() != JsonToken.END_ARRAY) {
+        throw new JsonParseException(parser,
+            "Price level must contain a price and an amount");
+      }
+
+      if (isBid) {
+        target.addBid(price, amount);
+      } else {
+        target.addAsk(price, amount);
+      }
+    }
+  }
+
+  /**
+   * Reads a single trade object into the target.
+   *
+   * @param parser    the parser positioned on the start of the trade
+   * @param precision the precision of the symbol's prices and amounts
+   * @param target    the trade data to overwrite
+   * @throws IOException if the object is not a valid trade
+   */
+  private static void readTrade(final JsonParser parser,
+      final Precision precision, final TradeData target) throws IOException {
+    StringBuilder id = target.idBuffer();
+    id.setLength(0);
+    long ts = 0L;
+    long tradeId = 0L;
+    long amount = 0L;
+    long price = 0L;
+    String direction = target.getDirection();
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+
+      switch (field) {
+        case "id":
+          id.append(parser.getTextCharacters(), parser.getTextOffset(),
+              parser.getTextLength());
+          break;
+        case "ts":
+          ts = parser.getLongValue();
+          break;
+        case "tradeId":
+          tradeId = parser.getLongValue();
+          break;
+        case "amount":
+          amount = readScaled(parser, precision.getAmountScale());
+          break;
+        case "price":
+          price = readScaled(parser, precision.getPriceScale());
+          break;
+        case "direction":
+          direction = readText(parser, direction);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+
+    target.fill(ts, tradeId, amount, price, direction);
+    target.setPrecision(precision);
+  }
+
+  /**
+   * Returns the text of the current token, reusing the previous value when its
+   * characters are the same so that repeated strings are not allocated again.
+   *
+   * @param parser   the parser positioned on a scalar token
+   * @param previous the value last read for the same field, or null
+   * @return the previous value if it matches, or a new string otherwise
+   * @throws IOException if the token has no text
+   */
+  private static String readText(final JsonParser parser,
+      final String previous) throws IOException {
+    char[] chars = parser.getTextCharacters();
+    int offset = parser.getTextOffset();
+    int length = parser.getTextLength();
+
+    if (previous != null && previous.length() == length) {
+      int i = 0;
+
+      while (i < length && previous.charAt(i) == chars[offset + i]) {
+        i++;
+      }
+
+      if (i == length) {
+        return previous;
+      }
+    }
+
+    return new String(chars, offset, length);
+  }
+
+  /**
+   * Checks that the parser is on the expected token.
+   *
+   * @param parser   the active parser
+   * @param expected the token the parser should be on
+   * @throws JsonParseException if it is on another token
+   */
+  private static void expect(final JsonParser parser,
+      final JsonToken expected) throws JsonParseException {
+    if (parser.currentToken() != expected) {
+      throw new JsonParseException(parser,
+          "Expected " + expected + " but found " + parser.currentToken());
+    }
+  }
+}
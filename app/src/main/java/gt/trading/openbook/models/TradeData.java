@@ -1,24 +1,39 @@
 package gt.trading.openbook.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 /**
  * The TradeData class represents trade detail information for a particular
  * instrument on the Huobi exchange. Trade detail data provides information
- * about the trade ID, amount, price, and order book direction.
+ * about the trade ID, amount, price, and order book direction. The amount and
+ * price are fixed point values scaled by the precision of the instrument.
+ *
+ * Listeners decode every trade of a subscription into the same TradeData, so
+ * an instance passed to a callback is only valid until the callback returns.
+ * The ID is kept in a reused buffer for the same reason. Consumers which keep
+ * a trade longer must take a copy with copy or copyFrom.
  */
 public final class TradeData {
-  private String id;
+  @JsonIgnore
+  private final StringBuilder id = new StringBuilder();
   private long ts;
   private long tradeId;
-  private double amount;
-  private double price;
+  @JsonDeserialize(using = FixedPointDeserializer.Amount.class)
+  private long amount;
+  @JsonDeserialize(using = FixedPointDeserializer.Price.class)
+  private long price;
   private String direction;
+  @JsonIgnore
+  private Precision precision;
 
   /**
    * Gets the ID of the trade data event.
    *
-   * @return the ID of the event
+   * @return the ID of the event, which changes when the trade is reused
    */
-  public String getId() {
+  public CharSequence getId() {
     return id;
   }
 
@@ -41,20 +56,20 @@ public final class TradeData {
   }
 
   /**
-   * Gets the amount of the trade.
+   * Gets the scaled amount of the trade.
    *
    * @return the amount of the trade
    */
-  public double getAmount() {
+  public long getAmount() {
     return amount;
   }
 
   /**
-   * Gets the price of the trade.
+   * Gets the scaled price of the trade.
    *
    * @return the price of the trade
    */
-  public double getPrice() {
+  public long getPrice() {
     return price;
   }
 
@@ -66,4 +81,86 @@ public final class TradeData {
   public String getDirection() {
     return direction;
   }
+
+  /**
+   * Retrieves the precision used to scale the prices and amounts.
+   *
+   * @return the precision of the instrument
+   */
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Sets the precision of the prices and amounts when handling the event in the
+   * listener.
+   *
+   * @param newPrecision the precision of the instrument
+   */
+  public void setPrecision(final Precision newPrecision) {
+    precision = newPrecision;
+  }
+
+  /**
+   * Returns a copy of this trade which is safe to keep after the callback it
+   * was passed to returns.
+   *
+   * @return a new TradeData with the same contents
+   */
+  public TradeData copy() {
+    TradeData copy = new TradeData();
+    copy.copyFrom(this);
+    return copy;
+  }
+
+  /**
+   * Overwrites this trade with the contents of another.
+   *
+   * @param other the trade to copy
+   */
+  public void copyFrom(final TradeData other) {
+    id.setLength(0);
+    id.append(other.id);
+    fill(other.ts, other.tradeId, other.amount, other.price, other.direction);
+    precision = other.precision;
+  }
+
+  /**
+   * Sets the ID of the event, used by data binding.
+   *
+   * @param newId the ID of the event
+   */
+  @JsonProperty("id")
+  private void setId(final String newId) {
+    id.setLength(0);
+    id.append(newId);
+  }
+
+  /**
+   * Returns the buffer holding the ID, which TickParser writes into directly.
+   *
+   * @return the ID buffer
+   */
+  StringBuilder idBuffer() {
+    return id;
+  }
+
+  /**
+   * Sets every field of the trade data except the ID, used by TickParser when
+   * decoding a message without data binding.
+   *
+   * @param newTs        the timestamp of the event
+   * @param newTradeId   the unique trade ID
+   * @param newAmount    the scaled amount
+   * @param newPrice     the scaled price
+   * @param newDirection the direction of the trade
+   */
+  void fill(final long newTs, final long newTradeId, final long newAmount,
+      final long newPrice, final String newDirection) {
+    ts = newTs;
+    tradeId = newTradeId;
+    amount = newAmount;
+    price = newPrice;
+    direction = newDirection;
+  }
 }
@@ -6,6 +6,19 @@
  * from event listeners and to process this data for maintaining an accurate
  * representation of the order book.
  *
+ * Prices and amounts are stored as fixed point longs. The FixedPoint class
+ * parses and formats these values, the Precision class holds the number of
+ * decimal places of an instrument, and the FixedPointDeserializer and
+ * PriceLevelDeserializer classes parse them straight from the JSON text.
+ *
+ * The TickParser class decodes the ticks of live messages from JsonParser
+ * tokens without building a JsonNode tree or binding through Jackson.
+ *
+ * OrderBookData, DepthData and TradeData are mutable flyweights. Listeners
+ * decode every message of a subscription into the same instance and reuse it
+ * once the callback returns, so a consumer which keeps one, for example by
+ * queueing it for another thread, must keep the result of copy instead.
+ *
  * @author Georiga Tech Trading Club Team #2
  * @since 1.0
  */
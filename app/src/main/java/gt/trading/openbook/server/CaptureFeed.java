@@ -0,0 +1,270 @@
+package gt.trading.openbook.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.zip.ZipException;
+
+import gt.trading.openbook.core.OrderBook;
+import gt.trading.openbook.journal.JournalReader;
+import gt.trading.openbook.listeners.FeedReplay;
+import gt.trading.openbook.listeners.GzipDecoder;
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.Precision;
+
+/**
+ * The CaptureFeed class publishes the frames of a journal recorded by a
+ * FeedJournal to a FeedServer, so that clients receive a real capture as the
+ * exchange sent it. Frames are published as recorded, on the channel they
+ * were recorded on, either as fast as the clients accept them or paced by
+ * their receive times at a multiple of real time.
+ *
+ * Snapshot replies in the capture were sent to the recording client only,
+ * so they are not published. Instead, every market by price channel keeps a
+ * shadow OrderBook fed from the capture, including those replies, and
+ * snapshot requests are answered from it. Like the stream of a SyntheticFeed,
+ * a shadow book lags its channel by one frame, so the update following a
+ * snapshot has always been queued before the snapshot is taken.
+ */
+public final class CaptureFeed implements SnapshotProvider {
+  private static final Logger LOGGER = Logger
+      .getLogger(CaptureFeed.class.getName());
+  private static final int REPLY_SCAN_BYTES = 64;
+  private static final byte[] REPLY_FIELD = {'"', 'r', 'e', 'p', '"'};
+  private static final double NANOS_PER_SECOND = 1e9;
+  private final FeedServer server;
+  private final JournalReader reader;
+  private final Precision precision;
+  private final double speed;
+  private final Map<String, Shadow> shadows = new ConcurrentHashMap<>();
+  private final GzipDecoder decoder = new GzipDecoder();
+  private long currentNanos = 0L;
+  private long publishedCount = 0L;
+
+  /**
+   * The Shadow class holds the order book kept for a market by price channel
+   * and the frame it has not applied yet.
+   */
+  private static final class Shadow {
+    private final OrderBookListener listener = new OrderBookListener();
+    private final OrderBook book;
+    private ByteBuffer pending = null;
+    private long pendingNanos = 0L;
+
+    /**
+     * Constructs a Shadow and subscribes its book to its listener.
+     *
+     * @param symbol    the symbol of the channel
+     * @param depth     the depth of the channel
+     * @param precision the precision of the symbol's prices and amounts
+     */
+    Shadow(final String symbol, final int depth, final Precision precision) {
+      book = new OrderBook(symbol, precision, listener, depth, depth);
+      book.setClock(() -> pendingNanos);
+      listener.subscribeMbp(symbol, depth, precision, book::onUpdate);
+    }
+
+    /**
+     * Applies the frame before the given one to the book, and holds the
+     * given one back.
+     *
+     * @param frame         the frame just published or withheld
+     * @param receivedNanos the recorded receive time of the frame
+     */
+    void advance(final ByteBuffer frame, final long receivedNanos) {
+      if (pending != null) {
+        listener.replay(pending, pendingNanos);
+      }
+
+      pending = frame;
+      pendingNanos = receivedNanos;
+    }
+  }
+
+  /**
+   * Constructs a CaptureFeed and sets it as the server's snapshot provider.
+   *
+   * @param newServer    the server to publish to
+   * @param newReader    the reader over the recorded journal
+   * @param newPrecision the precision of the captured symbols' prices and
+   *                     amounts, used to rebuild snapshots
+   * @param newSpeed     the multiple of real time to publish at, or
+   *                     FeedReplay.MAX_SPEED
+   * @throws IllegalArgumentException if the speed is not positive
+   */
+  public CaptureFeed(final FeedServer newServer, final JournalReader newReader,
+      final Precision newPrecision, final double newSpeed)
+      throws IllegalArgumentException {
+    if (!(newSpeed > 0)) {
+      throw new IllegalArgumentException("Replay speed must be positive");
+    }
+
+    server = newServer;
+    reader = newReader;
+    precision = newPrecision;
+    speed = newSpeed;
+    server.setSnapshotProvider(this);
+  }
+
+  /**
+   * Publishes every remaining frame of the journal.
+   *
+   * @return the number of frames published
+   * @throws IOException if the journal cannot be read
+   */
+  public long run() throws IOException {
+    long startNanos = System.nanoTime();
+    long firstRecorded = Long.MIN_VALUE;
+
+    while (reader.next()) {
+      currentNanos = reader.getReceivedNanos();
+
+      if (speed != FeedReplay.MAX_SPEED) {
+        if (firstRecorded == Long.MIN_VALUE) {
+          firstRecorded = currentNanos;
+        }
+
+        pace(startNanos + (long) ((currentNanos - firstRecorded) / speed));
+      }
+
+      String channel = reader.getChannel();
+      ByteBuffer view = reader.getFrame();
+      byte[] frame = new byte[view.remaining()];
+      view.get(view.position(), frame);
+      Shadow shadow = shadow(channel);
+      boolean reply = shadow != null && isReply(frame);
+
+      if (!reply) {
+        server.publish(channel, frame);
+        publishedCount++;
+      }
+
+      if (shadow != null) {
+        synchronized (shadow) {
+          shadow.advance(ByteBuffer.wrap(frame), currentNanos);
+        }
+      }
+    }
+
+    double seconds = (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+    LOGGER.info("Published " + publishedCount + " captured frames in "
+        + seconds + " s");
+    return publishedCount;
+  }
+
+  /**
+   * Returns the recorded receive time of the frame being published.
+   *
+   * @return the receive time in epoch nanoseconds
+   */
+  public long getCurrentNanos() {
+    return currentNanos;
+  }
+
+  /**
+   * Returns the snapshot of a market by price channel from its shadow book.
+   *
+   * @param channel the requested channel
+   * @return the data of the reply, or null if the channel is not in the
+   *         capture or its shadow book has no snapshot yet
+   */
+  @Override
+  public String snapshot(final String channel) {
+    Shadow shadow = shadows.get(channel);
+
+    if (shadow == null) {
+      return null;
+    }
+
+    synchronized (shadow) {
+      if (shadow.book.getLastSeqNum() < 0) {
+        return null;
+      }
+
+      return FeedMessages.mbpSnapshot(shadow.book.exportDepth(), precision);
+    }
+  }
+
+  /**
+   * Returns the shadow of a channel, creating it the first time a market by
+   * price channel is seen.
+   *
+   * @param channel the channel of a frame
+   * @return the shadow, or null if the channel is not market by price
+   */
+  private Shadow shadow(final String channel) {
+    Shadow shadow = shadows.get(channel);
+
+    if (shadow != null) {
+      return shadow;
+    }
+
+    String[] parts = channel.split("\\.");
+
+    if (parts.length != 4 || !parts[2].equals("mbp")) {
+      return null;
+    }
+
+    try {
+      int depth = Integer.parseInt(parts[3]);
+      shadow = new Shadow(parts[1], depth, precision);
+    } catch (IllegalArgumentException error) {
+      LOGGER.warning("Not shadowing " + channel + ": " + error.getMessage());
+      return null;
+    }
+
+    shadows.put(channel, shadow);
+    return shadow;
+  }
+
+  /**
+   * Returns whether a captured frame is a snapshot reply.
+   *
+   * @param frame the gzip compressed frame
+   * @return true if the message has a rep field near its start
+   */
+  private boolean isReply(final byte[] frame) {
+    int length;
+
+    try {
+      length = Math.min(decoder.decode(ByteBuffer.wrap(frame)),
+          REPLY_SCAN_BYTES);
+    } catch (ZipException error) {
+      return false;
+    }
+
+    byte[] text = decoder.getBuffer();
+
+    for (int i = 0; i <= length - REPLY_FIELD.length; i++) {
+      int matched = 0;
+
+      while (matched < REPLY_FIELD.length
+          && text[i + matched] == REPLY_FIELD[matched]) {
+        matched++;
+      }
+
+      if (matched == REPLY_FIELD.length) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Waits until the given time.
+   *
+   * @param deadline the System.nanoTime to wait for
+   */
+  private static void pace(final long deadline) {
+    long remaining = deadline - System.nanoTime();
+
+    while (remaining > 0) {
+      LockSupport.parkNanos(remaining);
+      remaining = deadline - System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package gt.trading.openbook.server;
+
+import gt.trading.openbook.models.FixedPoint;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+
+/**
+ * The FeedMessages class writes the JSON of the Huobi messages the feeds
+ * publish, with prices and amounts formatted from their scaled longs.
+ */
+final class FeedMessages {
+  private FeedMessages() {
+    return;
+  }
+
+  /**
+   * Appends a price level as a [price,amount] pair.
+   *
+   * @param builder   the message being built
+   * @param price     the scaled price of the level
+   * @param amount    the scaled amount of the level
+   * @param precision the precision of the price and amount
+   */
+  static void appendLevel(final StringBuilder builder, final long price,
+      final long amount, final Precision precision) {
+    builder.append('[')
+        .append(FixedPoint.toString(price, precision.getPriceScale()))
+        .append(',')
+        .append(FixedPoint.toString(amount, precision.getAmountScale()))
+        .append(']');
+  }
+
+  /**
+   * Writes the data of a market by price snapshot reply.
+   *
+   * @param book      the levels and sequence number of the book
+   * @param precision the precision of the book's prices and amounts
+   * @return the JSON object of the reply's data
+   */
+  static String mbpSnapshot(final OrderBookData book,
+      final Precision precision) {
+    StringBuilder builder = new StringBuilder("{\"seqNum\":")
+        .append(book.getSeqNum()).append(",\"bids\":[");
+
+    for (int i = 0; i < book.getBidCount(); i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+
+      appendLevel(builder, book.getBidPrice(i), book.getBidAmount(i),
+          precision);
+    }
+
+    builder.append("],\"asks\":[");
+
+    for (int i = 0; i < book.getAskCount(); i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+
+      appendLevel(builder, book.getAskPrice(i), book.getAskAmount(i),
+          precision);
+    }
+
+    return builder.append("]}").toString();
+  }
+}
@@ -0,0 +1,766 @@
+package gt.trading.openbook.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gt.trading.openbook.MapperSingleton;
+
+/**
+ * The FeedServer class is a local stand-in for the Huobi WebSocket servers,
+ * so that listeners, order books and feature graphs can be tested and
+ * benchmarked end to end without the exchange. It speaks the subset of the
+ * protocol the listeners use: sub and unsub requests are acknowledged, req
+ * requests are answered with a snapshot from a SnapshotProvider, pings are
+ * sent periodically, and every message is sent as a gzip binary frame. The
+ * request path is ignored, so one server stands in for every endpoint.
+ *
+ * The server is a single NIO selector thread implementing the WebSocket
+ * handshake and framing itself, with no dependency beyond the JDK. Feeds
+ * such as a SyntheticFeed or a CaptureFeed publish compressed messages from
+ * their own thread. Each message is framed once and queued for every session
+ * subscribed to its channel, and the selector thread drains the queues as the
+ * sockets accept data. A publisher waits while a session's queue is full, so
+ * publishing as fast as possible runs the clients at saturation.
+ *
+ * Connections can be dropped on demand, to exercise the reconnection,
+ * resubscription and resynchronization of the listeners and order books.
+ */
+public final class FeedServer implements AutoCloseable {
+  /**
+   * The path listeners connect to; any other path works as well.
+   */
+  public static final String PATH = "/ws";
+  private static final Logger LOGGER = Logger
+      .getLogger(FeedServer.class.getName());
+  private static final String ACCEPT_GUID =
+      "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+  private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+  private static final int READ_BUFFER_BYTES = 1 << 16;
+  private static final int DEFAULT_QUEUE_FRAMES = 4096;
+  private static final long DEFAULT_PING_MILLIS = 5000L;
+  private static final long PUBLISH_WAIT_NANOS = 50000L;
+  private static final int OPCODE_TEXT = 1;
+  private static final int OPCODE_BINARY = 2;
+  private static final int OPCODE_CLOSE = 8;
+  private static final int OPCODE_PING = 9;
+  private static final int OPCODE_PONG = 10;
+  private static final int FIN = 0x80;
+  private static final int MASKED = 0x80;
+  private static final int LENGTH_16 = 126;
+  private static final int LENGTH_64 = 127;
+  private static final int MASK_BYTES = 4;
+  private final ServerSocketChannel server;
+  private final Selector selector;
+  private final Thread ioThread;
+  private final int queueFrames;
+  private final long pingMillis;
+  private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+  private final Queue<Session> writable = new ConcurrentLinkedQueue<>();
+  private final GzipEncoder encoder = new GzipEncoder();
+  private final ObjectMapper mapper = MapperSingleton.getInstance();
+  private volatile SnapshotProvider snapshots = channel -> null;
+  private volatile boolean running = true;
+  private volatile boolean dropRequested = false;
+  private volatile long sentFrames = 0L;
+  private volatile long pongCount = 0L;
+  private volatile long droppedCount = 0L;
+
+  /**
+   * The Session class holds one client connection: its socket, the bytes read
+   * but not yet parsed, its subscribed channels and its queue of frames.
+   */
+  private final class Session {
+    private final SocketChannel socket;
+    private final SelectionKey key;
+    private final ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_BYTES);
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+    private final ArrayBlockingQueue<ByteBuffer> output;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private ByteBuffer current = null;
+    private boolean upgraded = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs a Session and registers its socket for reading.
+     *
+     * @param newSocket the accepted socket
+     * @throws IOException if the socket cannot be configured
+     */
+    Session(final SocketChannel newSocket) throws IOException {
+      socket = newSocket;
+      socket.configureBlocking(false);
+      socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      output = new ArrayBlockingQueue<>(queueFrames);
+      key = socket.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Queues a frame to send, waiting while the queue is full if asked to.
+     *
+     * @param frame the framed message, positioned at its first byte
+     * @param wait  true to wait for room, false to fail at once
+     * @return true if the frame was queued, false if the session is closed or
+     *         its queue was full
+     */
+    boolean send(final ByteBuffer frame, final boolean wait) {
+      while (!output.offer(frame)) {
+        if (!wait || closed) {
+          return false;
+        }
+
+        LockSupport.parkNanos(PUBLISH_WAIT_NANOS);
+      }
+
+      if (scheduled.compareAndSet(false, true)) {
+        writable.add(this);
+        selector.wakeup();
+      }
+
+      return true;
+    }
+
+    /**
+     * Writes queued frames until the socket stops accepting data or the queue
+     * runs out. Runs on the selector thread.
+     *
+     * @throws IOException if the socket fails
+     */
+    void write() throws IOException {
+      while (true) {
+        if (current == null) {
+          current = output.poll();
+        }
+
+        if (current == null) {
+          scheduled.set(false);
+
+          if (output.isEmpty() || !scheduled.compareAndSet(false, true)) {
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+          }
+
+          continue;
+        }
+
+        socket.write(current);
+
+        if (current.hasRemaining()) {
+          key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+          return;
+        }
+
+        current = null;
+        sentFrames++;
+      }
+    }
+
+    /**
+     * Reads from the socket and handles the handshake or every complete
+     * frame received. Runs on the selector thread.
+     *
+     * @throws IOException if the socket fails or the client breaks the
+     *                     protocol
+     */
+    void read() throws IOException {
+      if (socket.read(input) < 0) {
+        close();
+        return;
+      }
+
+      input.flip();
+
+      if (!upgraded && !handshake()) {
+        input.compact();
+
+        if (!input.hasRemaining()) {
+          throw new IOException("Handshake request is too long");
+        }
+
+        return;
+      }
+
+      while (upgraded && !closed && readFrame()) {
+        continue;
+      }
+
+      if (!closed) {
+        input.compact();
+      }
+    }
+
+    /**
+     * Answers the WebSocket upgrade request once all of it has arrived.
+     *
+     * @return true if the request was answered
+     * @throws IOException if the request has no key or cannot be answered
+     */
+    private boolean handshake() throws IOException {
+      int end = indexOf(input, HEADER_END);
+
+      if (end < 0) {
+        return false;
+      }
+
+      byte[] header = new byte[end - input.position()];
+      input.get(header);
+      input.position(end + HEADER_END.length);
+      String key = null;
+
+      for (String line : new String(header, StandardCharsets.ISO_8859_1)
+          .split("\r\n")) {
+        int colon = line.indexOf(':');
+
+        if (colon > 0 && line.substring(0, colon).trim()
+            .equalsIgnoreCase("Sec-WebSocket-Key")) {
+          key = line.substring(colon + 1).trim();
+        }
+      }
+
+      if (key == null) {
+        throw new IOException("Upgrade request has no WebSocket key");
+      }
+
+      ByteBuffer response = ByteBuffer.wrap(("HTTP/1.1 101 Switching Protocols"
+          + "\r\nUpgrade: websocket\r\nConnection: Upgrade"
+          + "\r\nSec-WebSocket-Accept: " + accept(key) + "\r\n\r\n")
+          .getBytes(StandardCharsets.ISO_8859_1));
+      send(response, false);
+      upgraded = true;
+      sessions.add(this);
+      return true;
+    }
+
+    /**
+     * Reads and handles one frame from the client, if all of it has arrived.
+     * Client frames are masked, and are expected not to be fragmented.
+     *
+     * @return true if a frame was handled
+     * @throws IOException if the frame does not fit in the read buffer
+     */
+    private boolean readFrame() throws IOException {
+      int start = input.position();
+
+      if (input.remaining() < 2) {
+        return false;
+      }
+
+      int opcode = input.get(start) & 0x0f;
+      int lengthByte = input.get(start + 1) & 0x7f;
+      boolean masked = (input.get(start + 1) & MASKED) != 0;
+      int headerBytes = 2;
+      long length = lengthByte;
+
+      if (lengthByte == LENGTH_16) {
+        headerBytes += Short.BYTES;
+
+        if (input.remaining() < headerBytes) {
+          return false;
+        }
+
+        length = input.getShort(start + 2) & 0xffff;
+      } else if (lengthByte == LENGTH_64) {
+        headerBytes += Long.BYTES;
+
+        if (input.remaining() < headerBytes) {
+          return false;
+        }
+
+        length = input.getLong(start + 2);
+      }
+
+      int maskStart = start + headerBytes;
+      headerBytes += masked ? MASK_BYTES : 0;
+
+      if (length > input.capacity() - headerBytes) {
+        throw new IOException("Client frame is too long: " + length);
+      }
+
+      if (input.remaining() < headerBytes + length) {
+        return false;
+      }
+
+      byte[] payload = new byte[(int) length];
+
+      for (int i = 0; i < payload.length; i++) {
+        byte mask = masked ? input.get(maskStart + i % MASK_BYTES) : 0;
+        payload[i] = (byte) (input.get(start + headerBytes + i) ^ mask);
+      }
+
+      input.position(start + headerBytes + payload.length);
+
+      switch (opcode) {
+        case OPCODE_TEXT:
+          onText(this, new String(payload, StandardCharsets.UTF_8));
+          break;
+        case OPCODE_PING:
+          send(frame(OPCODE_PONG, payload), false);
+          break;
+        case OPCODE_CLOSE:
+          send(frame(OPCODE_CLOSE, payload), false);
+          write();
+          close();
+          break;
+        default:
+          break;
+      }
+
+      return true;
+    }
+
+    /**
+     * Closes the connection without a closing handshake.
+     */
+    void close() {
+      if (closed) {
+        return;
+      }
+
+      closed = true;
+      sessions.remove(this);
+      key.cancel();
+      output.clear();
+
+      try {
+        socket.close();
+      } catch (IOException error) {
+        LOGGER.warning("Error closing session: " + error.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Constructs a FeedServer listening on a port of the loopback address,
+   * pinging every 5 seconds and queuing up to 4096 frames per session.
+   *
+   * @param port the port to listen on, or 0 for any free port
+   * @throws IOException if the port cannot be bound
+   */
+  public FeedServer(final int port) throws IOException {
+    this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+        DEFAULT_QUEUE_FRAMES, DEFAULT_PING_MILLIS);
+  }
+
+  /**
+   * Constructs a FeedServer and starts its selector thread.
+   *
+   * @param address        the address to listen on
+   * @param newQueueFrames the most frames queued per session before
+   *                       publishers wait
+   * @param newPingMillis  the time between pings in milliseconds
+   * @throws IllegalArgumentException if the queue size or ping interval is
+   *                                  not positive
+   * @throws IOException              if the address cannot be bound
+   */
+  public FeedServer(final InetSocketAddress address, final int newQueueFrames,
+      final long newPingMillis) throws IllegalArgumentException, IOException {
+    if (newQueueFrames <= 0 || newPingMillis <= 0) {
+      throw new IllegalArgumentException(
+          "Queue size and ping interval must be positive");
+    }
+
+    queueFrames = newQueueFrames;
+    pingMillis = newPingMillis;
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    server.bind(address);
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
+    ioThread = new Thread(this::run, "openbook-feed-server");
+    ioThread.setDaemon(true);
+    ioThread.start();
+    LOGGER.info("Feed server listening on " + getUri());
+  }
+
+  /**
+   * Sets the provider answering snapshot requests.
+   *
+   * @param provider the provider, e.g., the feed publishing to the server
+   */
+  public void setSnapshotProvider(final SnapshotProvider provider) {
+    snapshots = provider;
+  }
+
+  /**
+   * Returns the URI listeners should connect to.
+   *
+   * @return the URI, e.g., "ws://127.0.0.1:40123/ws"
+   */
+  public String getUri() {
+    InetSocketAddress address;
+
+    try {
+      address = (InetSocketAddress) server.getLocalAddress();
+    } catch (IOException error) {
+      throw new IllegalStateException("Feed server is closed", error);
+    }
+
+    return "ws://" + address.getAddress().getHostAddress() + ":"
+        + address.getPort() + PATH;
+  }
+
+  /**
+   * Returns whether any session is subscribed to a channel, so feeds can skip
+   * encoding messages nobody receives.
+   *
+   * @param channel the channel name
+   * @return true if a session is subscribed
+   */
+  public boolean hasSubscribers(final String channel) {
+    for (Session session : sessions) {
+      if (session.channels.contains(channel)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Sends a gzip compressed message to every session subscribed to its
+   * channel, waiting while a session's queue is full.
+   *
+   * @param channel the channel of the message
+   * @param message the gzip compressed message, as Huobi sends it
+   * @return the number of sessions the message was queued for
+   */
+  public int publish(final String channel, final byte[] message) {
+    ByteBuffer frame = null;
+    int count = 0;
+
+    for (Session session : sessions) {
+      if (!session.channels.contains(channel)) {
+        continue;
+      }
+
+      if (frame == null) {
+        frame = frame(OPCODE_BINARY, message);
+      }
+
+      if (session.send(frame.duplicate(), true)) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Drops every connection without a closing handshake, as a network failure
+   * would. The listeners reconnect and resubscribe by themselves.
+   */
+  public void dropConnections() {
+    dropRequested = true;
+    selector.wakeup();
+  }
+
+  /**
+   * Returns the number of connected sessions.
+   *
+   * @return the number of sessions
+   */
+  public int getSessionCount() {
+    return sessions.size();
+  }
+
+  /**
+   * Returns the number of frames written to sockets.
+   *
+   * @return the number of frames sent
+   */
+  public long getSentFrames() {
+    return sentFrames;
+  }
+
+  /**
+   * Returns the number of pongs received for the server's pings.
+   *
+   * @return the number of pongs
+   */
+  public long getPongCount() {
+    return pongCount;
+  }
+
+  /**
+   * Returns the number of sessions dropped because they failed or fell too
+   * far behind to queue a reply.
+   *
+   * @return the number of dropped sessions
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Stops the selector thread and closes every connection.
+   */
+  @Override
+  public void close() {
+    running = false;
+    selector.wakeup();
+
+    try {
+      ioThread.join();
+      server.close();
+      selector.close();
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+    } catch (IOException error) {
+      LOGGER.warning("Error closing feed server: " + error.getMessage());
+    }
+  }
+
+  /**
+   * Runs the selector loop: accepts connections, reads requests, writes
+   * queued frames and sends pings.
+   */
+  private void run() {
+    long nextPing = System.currentTimeMillis() + pingMillis;
+
+    while (running) {
+      try {
+        selector.select(Math.max(1L,
+            nextPing - System.currentTimeMillis()));
+      } catch (IOException error) {
+        LOGGER.severe("Feed server selector failed: " + error.getMessage());
+        break;
+      }
+
+      Session ready = writable.poll();
+
+      while (ready != null) {
+        if (ready.key.isValid()) {
+          ready.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        ready = writable.poll();
+      }
+
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        handle(key);
+      }
+
+      if (dropRequested) {
+        dropRequested = false;
+        LOGGER.info("Dropping " + sessions.size() + " sessions");
+        new ArrayList<>(sessions).forEach(Session::close);
+      }
+
+      long now = System.currentTimeMillis();
+
+      if (now >= nextPing) {
+        nextPing = now + pingMillis;
+        ping(now);
+      }
+    }
+
+    new ArrayList<>(sessions).forEach(Session::close);
+  }
+
+  /**
+   * Handles a ready key of the selector.
+   *
+   * @param key the ready key
+   */
+  private void handle(final SelectionKey key) {
+    if (!key.isValid()) {
+      return;
+    }
+
+    if (key.isAcceptable()) {
+      try {
+        SocketChannel socket = server.accept();
+
+        if (socket != null) {
+          new Session(socket);
+        }
+      } catch (IOException error) {
+        LOGGER.warning("Error accepting connection: " + error.getMessage());
+      }
+
+      return;
+    }
+
+    Session session = (Session) key.attachment();
+
+    try {
+      if (key.isReadable()) {
+        session.read();
+      }
+
+      if (key.isValid() && key.isWritable()) {
+        session.write();
+      }
+    } catch (IOException error) {
+      LOGGER.info("Closing session: " + error.getMessage());
+      droppedCount++;
+      session.close();
+    }
+  }
+
+  /**
+   * Handles a text request from a client.
+   *
+   * @param session the session the request came on
+   * @param text    the request
+   * @throws IOException if the request is not valid JSON
+   */
+  private void onText(final Session session, final String text)
+      throws IOException {
+    JsonNode request = mapper.readTree(text);
+    String id = mapper.writeValueAsString(request.path("id").asText(""));
+    long now = System.currentTimeMillis();
+
+    if (request.has("pong")) {
+      pongCount++;
+    } else if (request.has("sub")) {
+      String channel = request.get("sub").asText();
+      session.channels.add(channel);
+      reply(session, "{\"id\":" + id + ",\"status\":\"ok\",\"subbed\":"
+          + mapper.writeValueAsString(channel) + ",\"ts\":" + now + "}");
+    } else if (request.has("unsub")) {
+      String channel = request.get("unsub").asText();
+      session.channels.remove(channel);
+      reply(session, "{\"id\":" + id + ",\"status\":\"ok\",\"unsubbed\":"
+          + mapper.writeValueAsString(channel) + ",\"ts\":" + now + "}");
+    } else if (request.has("req")) {
+      String channel = request.get("req").asText();
+      String data = snapshots.snapshot(channel);
+
+      if (data == null) {
+        reply(session, "{\"id\":" + id + ",\"status\":\"error\","
+            + "\"err-code\":\"bad-request\",\"err-msg\":\"no snapshot of "
+            + channel + "\",\"ts\":" + now + "}");
+      } else {
+        reply(session, "{\"rep\":" + mapper.writeValueAsString(channel)
+            + ",\"status\":\"ok\",\"id\":" + id + ",\"ts\":" + now
+            + ",\"data\":" + data + "}");
+      }
+    } else {
+      LOGGER.warning("Unknown request: " + text);
+    }
+  }
+
+  /**
+   * Sends every session a ping, which the listeners answer with a pong.
+   *
+   * @param now the current time in milliseconds
+   */
+  private void ping(final long now) {
+    for (Session session : sessions) {
+      reply(session, "{\"ping\":" + now + "}");
+    }
+  }
+
+  /**
+   * Compresses and queues a message for one session from the selector
+   * thread, which must not wait. A session too far behind to take it is
+   * dropped, as Huobi drops slow clients.
+   *
+   * @param session the session to send to
+   * @param message the message
+   */
+  private void reply(final Session session, final String message) {
+    byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer frame = frame(OPCODE_BINARY,
+        encoder.encode(bytes, 0, bytes.length));
+
+    if (!session.send(frame, false) && !session.closed) {
+      LOGGER.warning("Dropping session whose queue is full");
+      droppedCount++;
+      session.close();
+    }
+  }
+
+  /**
+   * Frames a payload as an unmasked, unfragmented server frame.
+   *
+   * @param opcode  the opcode of the frame
+   * @param payload the payload
+   * @return the frame, positioned at its first byte
+   */
+  private static ByteBuffer frame(final int opcode, final byte[] payload) {
+    int headerBytes = payload.length < LENGTH_16 ? 2
+        : payload.length <= 0xffff ? 2 + Short.BYTES : 2 + Long.BYTES;
+    ByteBuffer frame = ByteBuffer.allocate(headerBytes + payload.length);
+    frame.put((byte) (FIN | opcode));
+
+    if (payload.length < LENGTH_16) {
+      frame.put((byte) payload.length);
+    } else if (payload.length <= 0xffff) {
+      frame.put((byte) LENGTH_16).putShort((short) payload.length);
+    } else {
+      frame.put((byte) LENGTH_64).putLong(payload.length);
+    }
+
+    return frame.put(payload).flip();
+  }
+
+  /**
+   * Computes the Sec-WebSocket-Accept value for a client's key.
+   *
+   * @param key the client's Sec-WebSocket-Key
+   * @return the accept value
+   */
+  private static String accept(final String key) {
+    try {
+      MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+      return Base64.getEncoder().encodeToString(sha1.digest(
+          (key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+    } catch (NoSuchAlgorithmException error) {
+      throw new IllegalStateException("SHA-1 is not available", error);
+    }
+  }
+
+  /**
+   * Returns the offset of a byte sequence in the remaining bytes of a buffer.
+   *
+   * @param buffer the buffer to search
+   * @param target the bytes to find
+   * @return the absolute offset, or -1 if the bytes are not found
+   */
+  private static int indexOf(final ByteBuffer buffer, final byte[] target) {
+    for (int i = buffer.position(); i <= buffer.limit() - target.length;
+        i++) {
+      int matched = 0;
+
+      while (matched < target.length
+          && buffer.get(i + matched) == target[matched]) {
+        matched++;
+      }
+
+      if (matched == target.length) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+}
@@ -0,0 +1,69 @@
+package gt.trading.openbook.server;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The GzipEncoder class compresses messages into gzip frames, as Huobi sends
+ * them. It keeps a single raw Deflater and writes the gzip header and trailer
+ * itself, so encoding a message only allocates the returned frame.
+ *
+ * Instances are not thread safe; each thread encoding messages should own its
+ * own encoder.
+ */
+public final class GzipEncoder {
+  private static final int INITIAL_CAPACITY = 8192;
+  private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0,
+      0, (byte) 0xff};
+  private static final int TRAILER_BYTES = 8;
+  private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+  private final CRC32 crc = new CRC32();
+  private byte[] output = new byte[INITIAL_CAPACITY];
+
+  /**
+   * Compresses a message into a gzip frame.
+   *
+   * @param input  the bytes of the message
+   * @param offset the offset of the message in the bytes
+   * @param length the length of the message
+   * @return the gzip frame
+   */
+  public byte[] encode(final byte[] input, final int offset,
+      final int length) {
+    deflater.reset();
+    deflater.setInput(input, offset, length);
+    deflater.finish();
+    System.arraycopy(HEADER, 0, output, 0, HEADER.length);
+    int size = HEADER.length;
+
+    while (!deflater.finished()) {
+      if (size == output.length) {
+        output = Arrays.copyOf(output, output.length * 2);
+      }
+
+      size += deflater.deflate(output, size, output.length - size);
+    }
+
+    crc.reset();
+    crc.update(input, offset, length);
+    byte[] frame = Arrays.copyOf(output, size + TRAILER_BYTES);
+    writeInt(frame, size, (int) crc.getValue());
+    writeInt(frame, size + Integer.BYTES, length);
+    return frame;
+  }
+
+  /**
+   * Writes an int in little endian order, as the gzip trailer stores it.
+   *
+   * @param target the bytes to write to
+   * @param offset the offset to write at
+   * @param value  the value to write
+   */
+  private static void writeInt(final byte[] target, final int offset,
+      final int value) {
+    for (int i = 0; i < Integer.BYTES; i++) {
+      target[offset + i] = (byte) (value >>> (Byte.SIZE * i));
+    }
+  }
+}
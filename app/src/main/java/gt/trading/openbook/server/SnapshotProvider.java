@@ -0,0 +1,17 @@
+package gt.trading.openbook.server;
+
+/**
+ * Functional interface for answering the snapshot requests a FeedServer
+ * receives with the current state of a channel.
+ */
+@FunctionalInterface
+public interface SnapshotProvider {
+  /**
+   * Returns the data of a snapshot reply for a channel.
+   *
+   * @param channel the requested channel, e.g., "market.btcusdt.mbp.400"
+   * @return the JSON object sent as the reply's data, or null if the channel
+   *         has no snapshot yet
+   */
+  String snapshot(String channel);
+}
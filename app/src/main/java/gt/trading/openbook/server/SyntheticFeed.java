@@ -0,0 +1,382 @@
+package gt.trading.openbook.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.FixedPoint;
+import gt.trading.openbook.models.Precision;
+
+/**
+ * The SyntheticFeed class publishes a random but consistent market by price
+ * stream for a set of symbols to a FeedServer, and answers its snapshot
+ * requests. Each symbol has a book of 150 price levels per side around a
+ * fixed mid price, and each message changes a few levels near the top, so the
+ * best prices move as levels empty and refill. A best bid and offer message
+ * is published with each update to clients subscribed to it.
+ *
+ * Snapshots lag the stream by one update: the update following a snapshot
+ * has always been queued before the snapshot is taken, so a client which
+ * buffers updates while waiting for the snapshot can apply it at once.
+ *
+ * Messages are published at a given rate, or with MAX_RATE as fast as the
+ * slowest subscribed client accepts them.
+ */
+public final class SyntheticFeed implements SnapshotProvider {
+  /**
+   * The rate which publishes as fast as the clients accept messages.
+   */
+  public static final double MAX_RATE = Double.POSITIVE_INFINITY;
+  private static final Logger LOGGER = Logger
+      .getLogger(SyntheticFeed.class.getName());
+  private static final int BAND_LEVELS = 150;
+  private static final int MAX_CHANGES = 3;
+  private static final int EMPTY_ODDS = 4;
+  private static final long MID_PRICE = 30000L;
+  private static final long MAX_AMOUNT = 5L;
+  private static final long FIRST_SEQ_NUM = 1000L;
+  private static final double NANOS_PER_SECOND = 1e9;
+  private final FeedServer server;
+  private final Precision precision;
+  private final Random random;
+  private final List<SymbolBook> books = new ArrayList<>();
+  private final Map<String, SymbolBook> byChannel = new ConcurrentHashMap<>();
+  private final GzipEncoder encoder = new GzipEncoder();
+  private final StringBuilder message = new StringBuilder();
+  private final boolean[] sides = new boolean[MAX_CHANGES];
+  private final int[] levels = new int[MAX_CHANGES];
+  private final long[] amounts = new long[MAX_CHANGES];
+  private final long midTicks;
+  private final long maxAmount;
+
+  /**
+   * The SymbolBook class holds the book of one symbol as it stands at its
+   * snapshot sequence number, and the update published after it.
+   */
+  private static final class SymbolBook {
+    private final String symbol;
+    private final String mbpChannel;
+    private final String bboChannel;
+    private final long[] bidAmounts = new long[BAND_LEVELS];
+    private final long[] askAmounts = new long[BAND_LEVELS];
+    private final boolean[] pendingBid = new boolean[MAX_CHANGES];
+    private final int[] pendingLevel = new int[MAX_CHANGES];
+    private final long[] pendingAmount = new long[MAX_CHANGES];
+    private int pendingCount = 0;
+    private long seqNum = FIRST_SEQ_NUM;
+    private long publishedSeqNum = FIRST_SEQ_NUM;
+
+    /**
+     * Constructs a SymbolBook.
+     *
+     * @param newSymbol the symbol of the book
+     */
+    SymbolBook(final String newSymbol) {
+      symbol = newSymbol;
+      mbpChannel = OrderBookListener.getMbpChannel(newSymbol,
+          OrderBookListener.DEFAULT_DEPTH);
+      bboChannel = "market." + newSymbol + ".bbo";
+    }
+
+    /**
+     * Applies the pending update, moving the book to the sequence number of
+     * the update.
+     */
+    void applyPending() {
+      for (int i = 0; i < pendingCount; i++) {
+        long[] amounts = pendingBid[i] ? bidAmounts : askAmounts;
+        amounts[pendingLevel[i]] = pendingAmount[i];
+      }
+
+      if (pendingCount > 0) {
+        seqNum++;
+      }
+
+      pendingCount = 0;
+    }
+  }
+
+  /**
+   * Constructs a SyntheticFeed with full books for each symbol, and sets it as
+   * the server's snapshot provider.
+   *
+   * @param newServer    the server to publish to
+   * @param symbols      the symbols to publish, e.g., "btcusdt"
+   * @param newPrecision the precision of every symbol's prices and amounts
+   * @param seed         the seed of the random stream
+   */
+  public SyntheticFeed(final FeedServer newServer, final List<String> symbols,
+      final Precision newPrecision, final long seed) {
+    server = newServer;
+    precision = newPrecision;
+    random = new Random(seed);
+    midTicks = MID_PRICE * FixedPoint.pow10(precision.getPriceScale());
+    maxAmount = MAX_AMOUNT * FixedPoint.pow10(precision.getAmountScale());
+
+    for (String symbol : symbols) {
+      SymbolBook book = new SymbolBook(symbol);
+
+      for (int i = 0; i < BAND_LEVELS; i++) {
+        book.bidAmounts[i] = 1 + random.nextLong(maxAmount);
+        book.askAmounts[i] = 1 + random.nextLong(maxAmount);
+      }
+
+      books.add(book);
+      byChannel.put(book.mbpChannel, book);
+    }
+
+    server.setSnapshotProvider(this);
+  }
+
+  /**
+   * Publishes updates round robin over the symbols.
+   *
+   * @param count the number of updates to publish
+   * @param rate  the updates per second to publish, or MAX_RATE
+   * @return the number of updates queued for at least one client
+   * @throws IllegalArgumentException if the rate is not positive
+   */
+  public long run(final long count, final double rate)
+      throws IllegalArgumentException {
+    if (!(rate > 0)) {
+      throw new IllegalArgumentException("Rate must be positive");
+    }
+
+    long startNanos = System.nanoTime();
+    long delivered = 0L;
+
+    for (long i = 0; i < count; i++) {
+      if (rate != MAX_RATE) {
+        pace(startNanos + (long) (i * NANOS_PER_SECOND / rate));
+      }
+
+      if (step(books.get((int) (i % books.size())))) {
+        delivered++;
+      }
+    }
+
+    double seconds = (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+    LOGGER.info("Published " + count + " updates in " + seconds + " s, "
+        + delivered + " delivered");
+    return delivered;
+  }
+
+  /**
+   * Returns the snapshot of a symbol's book, one update behind the stream.
+   *
+   * @param channel the requested market by price channel
+   * @return the data of the reply, or null if the channel is not published
+   */
+  @Override
+  public String snapshot(final String channel) {
+    SymbolBook book = byChannel.get(channel);
+
+    if (book == null) {
+      return null;
+    }
+
+    synchronized (book) {
+      StringBuilder builder = new StringBuilder("{\"seqNum\":")
+          .append(book.seqNum).append(",\"bids\":[");
+      appendSide(builder, book.bidAmounts, -1);
+      builder.append("],\"asks\":[");
+      appendSide(builder, book.askAmounts, 1);
+      return builder.append("]}").toString();
+    }
+  }
+
+  /**
+   * Publishes the next update of a book, then applies the update before it
+   * so that snapshots stay one update behind.
+   *
+   * @param book the book to update
+   * @return true if the update was queued for a client
+   */
+  private boolean step(final SymbolBook book) {
+    long seqNum = ++book.publishedSeqNum;
+    int changes = 1 + random.nextInt(MAX_CHANGES);
+
+    for (int i = 0; i < changes; i++) {
+      sides[i] = random.nextBoolean();
+      levels[i] = random.nextInt(1 + random.nextInt(BAND_LEVELS));
+      amounts[i] = random.nextInt(EMPTY_ODDS) == 0 ? 0L
+          : 1 + random.nextLong(maxAmount);
+    }
+
+    boolean delivered = false;
+
+    if (server.hasSubscribers(book.mbpChannel)) {
+      message.setLength(0);
+      message.append("{\"ch\":\"").append(book.mbpChannel)
+          .append("\",\"ts\":").append(System.currentTimeMillis())
+          .append(",\"tick\":{\"seqNum\":").append(seqNum)
+          .append(",\"prevSeqNum\":").append(seqNum - 1).append(",\"bids\":[");
+      appendChanges(changes, true);
+      message.append("],\"asks\":[");
+      appendChanges(changes, false);
+      message.append("]}}");
+      delivered = publish(book.mbpChannel) > 0;
+    }
+
+    synchronized (book) {
+      book.applyPending();
+      System.arraycopy(sides, 0, book.pendingBid, 0, changes);
+      System.arraycopy(levels, 0, book.pendingLevel, 0, changes);
+      System.arraycopy(amounts, 0, book.pendingAmount, 0, changes);
+      book.pendingCount = changes;
+
+      if (server.hasSubscribers(book.bboChannel)) {
+        appendBbo(book, seqNum);
+      } else {
+        message.setLength(0);
+      }
+    }
+
+    if (message.length() > 0) {
+      publish(book.bboChannel);
+    }
+
+    return delivered;
+  }
+
+  /**
+   * Appends the changes of one side of the update being built.
+   *
+   * @param changes the number of changes in the update
+   * @param bid     true to append the bid changes, false for the asks
+   */
+  private void appendChanges(final int changes, final boolean bid) {
+    boolean first = true;
+
+    for (int i = 0; i < changes; i++) {
+      if (sides[i] != bid) {
+        continue;
+      }
+
+      if (!first) {
+        message.append(',');
+      }
+
+      first = false;
+      FeedMessages.appendLevel(message, price(levels[i], bid), amounts[i],
+          precision);
+    }
+  }
+
+  /**
+   * Writes a best bid and offer message from the book.
+   *
+   * @param book   the book to quote
+   * @param seqNum the sequence number to quote it at
+   */
+  private void appendBbo(final SymbolBook book, final long seqNum) {
+    int bid = firstLevel(book.bidAmounts);
+    int ask = firstLevel(book.askAmounts);
+    message.setLength(0);
+
+    if (bid < 0 || ask < 0) {
+      return;
+    }
+
+    int priceScale = precision.getPriceScale();
+    int amountScale = precision.getAmountScale();
+    long now = System.currentTimeMillis();
+    message.append("{\"ch\":\"").append(book.bboChannel).append("\",\"ts\":")
+        .append(now).append(",\"tick\":{\"seqId\":").append(seqNum)
+        .append(",\"ask\":")
+        .append(FixedPoint.toString(price(ask, false), priceScale))
+        .append(",\"askSize\":")
+        .append(FixedPoint.toString(book.askAmounts[ask], amountScale))
+        .append(",\"bid\":")
+        .append(FixedPoint.toString(price(bid, true), priceScale))
+        .append(",\"bidSize\":")
+        .append(FixedPoint.toString(book.bidAmounts[bid], amountScale))
+        .append(",\"quoteTime\":").append(now).append(",\"symbol\":\"")
+        .append(book.symbol).append("\"}}");
+  }
+
+  /**
+   * Appends the non-empty levels of one side of a book, best first.
+   *
+   * @param builder   the reply being built
+   * @param amounts   the amounts of the side by band level
+   * @param direction -1 for bids, whose prices fall away from the mid, or 1
+   *                  for asks
+   */
+  private void appendSide(final StringBuilder builder, final long[] amounts,
+      final int direction) {
+    boolean first = true;
+
+    for (int i = 0; i < BAND_LEVELS; i++) {
+      if (amounts[i] == 0) {
+        continue;
+      }
+
+      if (!first) {
+        builder.append(',');
+      }
+
+      first = false;
+      FeedMessages.appendLevel(builder, price(i, direction < 0), amounts[i],
+          precision);
+    }
+  }
+
+  /**
+   * Compresses and publishes the message being built.
+   *
+   * @param channel the channel of the message
+   * @return the number of clients the message was queued for
+   */
+  private int publish(final String channel) {
+    byte[] bytes = message.toString().getBytes(StandardCharsets.UTF_8);
+    return server.publish(channel, encoder.encode(bytes, 0, bytes.length));
+  }
+
+  /**
+   * Returns the scaled price of a band level.
+   *
+   * @param level the band level, 0 being nearest the mid price
+   * @param bid   true for the bid side, false for the ask side
+   * @return the scaled price
+   */
+  private long price(final int level, final boolean bid) {
+    return bid ? midTicks - 1 - level : midTicks + 1 + level;
+  }
+
+  /**
+   * Returns the best non-empty band level of a side.
+   *
+   * @param amounts the amounts of the side by band level
+   * @return the level, or -1 if the side is empty
+   */
+  private static int firstLevel(final long[] amounts) {
+    for (int i = 0; i < amounts.length; i++) {
+      if (amounts[i] != 0) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Waits until the given time.
+   *
+   * @param deadline the System.nanoTime to wait for
+   */
+  private static void pace(final long deadline) {
+    long remaining = deadline - System.nanoTime();
+
+    while (remaining > 0) {
+      LockSupport.parkNanos(remaining);
+      remaining = deadline - System.nanoTime();
+    }
+  }
+}
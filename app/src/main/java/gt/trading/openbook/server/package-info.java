@@ -0,0 +1,26 @@
+/**
+ * This package contains a local WebSocket server which speaks the subset of
+ * the Huobi protocol the listeners use, so that the client can be tested and
+ * benchmarked offline against a deterministic feed.
+ *
+ * The FeedServer class is responsible for accepting connections, answering
+ * sub, unsub and req requests and pongs, pinging clients, and sending gzip
+ * frames to the subscribers of a channel.
+ *
+ * The SyntheticFeed class is responsible for generating seeded market by
+ * price and best bid and offer updates for a set of symbols at a given rate,
+ * and for answering snapshot requests consistently with them.
+ *
+ * The CaptureFeed class is responsible for replaying the frames of a journal
+ * recorded by a FeedJournal to the server's clients, paced by their receive
+ * times, and for answering snapshot requests from order books kept beside
+ * the replay.
+ *
+ * The GzipEncoder class is responsible for compressing frames the way the
+ * exchange does, and the SnapshotProvider interface is the source of the
+ * snapshots the server replies to requests with.
+ *
+ * @author Georiga Tech Trading Club Team #2
+ * @since 1.0
+ */
+package gt.trading.openbook.server;
@@ -0,0 +1,153 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gt.trading.openbook.journal.CheckpointStore;
+import gt.trading.openbook.journal.FeedJournal;
+import gt.trading.openbook.journal.JournalReader;
+import gt.trading.openbook.listeners.FeedReplay;
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+
+/**
+ * Tests that seeking a BookReplay from its checkpoints leaves a book in the
+ * same state as replaying the journal from the start.
+ */
+class BookReplayTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final String SYMBOL = "btcusdt";
+  private static final String CHANNEL = "market.btcusdt.mbp.400";
+  private static final long FRAME_NANOS = 1_000_000L;
+  private static final long INTERVAL_NANOS = 10 * FRAME_NANOS;
+  private static final int UPDATES = 100;
+
+  @TempDir
+  private Path folder;
+
+  /**
+   * A seek restores the book from its latest checkpoint before the time and
+   * replays only the frames recorded since.
+   */
+  @Test
+  void seeksToTheSameStateAsAFullReplay() throws IOException {
+    record();
+    OrderBookData expected;
+    long target;
+
+    try (JournalReader reader = new JournalReader(folder)) {
+      reader.next();
+      target = reader.getReceivedNanos() + 70 * FRAME_NANOS
+          + FRAME_NANOS / 2;
+      reader.rewind();
+      FeedReplay replay = new FeedReplay(reader, FeedReplay.MAX_SPEED);
+      OrderBook book = newBook(replay);
+      replay.runUntil(target);
+      expected = book.exportDepth();
+    }
+
+    try (JournalReader reader = new JournalReader(folder);
+        CheckpointStore store = new CheckpointStore(folder)) {
+      FeedReplay replay = new FeedReplay(reader, FeedReplay.MAX_SPEED);
+      OrderBook book = newBook(replay);
+      BookReplay bookReplay = new BookReplay(replay, store);
+      bookReplay.addBook(book);
+
+      assertTrue(bookReplay.writeCheckpoints(INTERVAL_NANOS) > 0);
+      long replayed = bookReplay.seek(target);
+      OrderBookData actual = book.exportDepth();
+
+      assertTrue(replayed < INTERVAL_NANOS / FRAME_NANOS);
+      assertEquals(expected.getSeqNum(), actual.getSeqNum());
+      assertEquals(expected.getBidCount(), actual.getBidCount());
+
+      for (int i = 0; i < expected.getBidCount(); i++) {
+        assertEquals(expected.getBidPrice(i), actual.getBidPrice(i));
+        assertEquals(expected.getBidAmount(i), actual.getBidAmount(i));
+      }
+    }
+  }
+
+  /**
+   * Creates a book fed by a replay.
+   *
+   * @param replay the replay feeding the book
+   * @return the subscribed book
+   */
+  private static OrderBook newBook(final FeedReplay replay) {
+    OrderBookListener listener = new OrderBookListener();
+    OrderBook book = new OrderBook(SYMBOL, PRECISION, listener);
+    book.setClock(replay::getCurrentNanos);
+    listener.subscribeMbp(SYMBOL, PRECISION, book::onUpdate);
+    replay.addListener(listener);
+    return book;
+  }
+
+  /**
+   * Records an update buffered before its snapshot, the snapshot reply, and
+   * a run of updates moving the bids, one every millisecond.
+   *
+   * @throws IOException if the journal cannot be written
+   */
+  private void record() throws IOException {
+    FeedJournal journal = new FeedJournal(folder, 1L << 20);
+    long start = System.nanoTime();
+    append(journal, 0, start, update(0L, 1L));
+    append(journal, 1, start + 1, "{\"id\":\"1\",\"rep\":\"" + CHANNEL
+        + "\",\"status\":\"ok\",\"data\":{\"seqNum\":0,\"bids\":[],"
+        + "\"asks\":[]}}");
+
+    for (int i = 1; i <= UPDATES; i++) {
+      append(journal, i + 1, start + i * FRAME_NANOS, update(i, i + 1));
+    }
+
+    journal.close();
+  }
+
+  /**
+   * Builds an update moving one of seven bids.
+   *
+   * @param prevSeqNum the sequence number of the previous update
+   * @param seqNum     the sequence number of the update
+   * @return the message text
+   */
+  private static String update(final long prevSeqNum, final long seqNum) {
+    return "{\"ch\":\"" + CHANNEL + "\",\"ts\":1,\"tick\":{\"seqNum\":"
+        + seqNum + ",\"prevSeqNum\":" + prevSeqNum + ",\"bids\":[[100.0"
+        + seqNum % 7 + "," + seqNum % 5 + "]],\"asks\":[]}}";
+  }
+
+  /**
+   * Appends a message to the journal as the gzip frame Huobi would send.
+   *
+   * @param journal       the journal to append to
+   * @param sequence      the sequence of the frame
+   * @param receivedAt    the System.nanoTime the frame was received at
+   * @param message       the message text
+   * @throws IOException if the frame cannot be compressed
+   */
+  private static void append(final FeedJournal journal, final long sequence,
+      final long receivedAt, final String message) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+    assertTrue(journal.append(CHANNEL.getBytes(StandardCharsets.US_ASCII),
+        sequence, receivedAt, frame, 0, frame.limit()));
+  }
+}
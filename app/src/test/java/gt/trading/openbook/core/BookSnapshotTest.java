@@ -0,0 +1,88 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.models.PriceLevel;
+
+/**
+ * Tests that readers of a BookSnapshot only ever see levels published
+ * together, while the writer keeps publishing.
+ */
+class BookSnapshotTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final long BID = 10000L;
+  private static final long ASK = 10100L;
+  private static final int UPDATES = 200000;
+
+  /**
+   * Every update sets the best bid and ask amounts to its sequence number,
+   * so a torn read would show amounts from different updates.
+   */
+  @Test
+  void readersNeverSeeATornSnapshot() throws InterruptedException {
+    OrderBook book = new OrderBook("btcusdt", PRECISION,
+        new OrderBookListener());
+    book.onUpdate(update(0L, 1L));
+    book.onUpdate(OrderBookData.builder()
+        .action(OrderBookData.Action.REFRESH).seqNum(0L)
+        .bids(List.of()).asks(List.of()).build());
+
+    BookSnapshot snapshot = book.getSnapshot();
+    AtomicReference<String> torn = new AtomicReference<>();
+    AtomicLong reads = new AtomicLong();
+    Thread reader = new Thread(() -> {
+      TopOfBook top = new TopOfBook(snapshot.getDepth());
+      long seqNum = 0L;
+
+      while (seqNum < UPDATES && torn.get() == null) {
+        seqNum = snapshot.read(top);
+        reads.incrementAndGet();
+
+        if (top.getBidAmount(0) != seqNum || top.getAskAmount(0) != seqNum) {
+          torn.set(seqNum + ": " + top.getBidAmount(0) + "/"
+              + top.getAskAmount(0));
+        }
+      }
+    });
+    reader.start();
+
+    for (long seqNum = 1L; seqNum < UPDATES; seqNum++) {
+      book.onUpdate(update(seqNum, seqNum + 1));
+    }
+
+    reader.join();
+    assertEquals(null, torn.get());
+    assertTrue(reads.get() > 0);
+    assertEquals(UPDATES, snapshot.getPublishCount());
+  }
+
+  /**
+   * Builds an update setting the best bid and ask amounts to its sequence
+   * number.
+   *
+   * @param prevSeqNum the sequence number of the previous update
+   * @param seqNum     the sequence number of the update
+   * @return the update
+   */
+  private static OrderBookData update(final long prevSeqNum,
+      final long seqNum) {
+    return OrderBookData.builder().action(OrderBookData.Action.INCREMENT)
+        .prevSeqNum(prevSeqNum).seqNum(seqNum)
+        .bids(List.of(PriceLevel.builder().price(BID).amount(seqNum)
+            .build()))
+        .asks(List.of(PriceLevel.builder().price(ASK).amount(seqNum)
+            .build()))
+        .build();
+  }
+}
@@ -0,0 +1,92 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.models.Precision;
+
+/**
+ * Tests that the DepthView of a PriceLadder always holds its best levels,
+ * including after the best levels are removed and the view is refilled.
+ */
+class DepthViewTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).priceTick(5L).build();
+  private static final int VIEW_DEPTH = 3;
+
+  /**
+   * After every update the view matches the best levels of a sorted map
+   * given the same updates.
+   */
+  @Test
+  void holdsTheBestLevelsAfterEveryUpdate() {
+    for (PriceLadder.Side side : PriceLadder.Side.values()) {
+      PriceLadder ladder = new PriceLadder(side, PRECISION, 64, VIEW_DEPTH);
+      TreeMap<Long, Long> levels = new TreeMap<>();
+      ladder.setRemovalListener((price, amount) -> levels.remove(price));
+      Random random = new Random(7L);
+
+      for (int i = 0; i < 2000; i++) {
+        long price = 100000L + (random.nextInt(30) - 15) * 5L;
+        long amount = random.nextInt(2) == 0 ? 0L : 1L + random.nextInt(9);
+
+        if (amount > 0) {
+          levels.put(price, amount);
+        } else {
+          levels.remove(price);
+        }
+
+        ladder.update(price, amount);
+        assertBest(side == PriceLadder.Side.BID ? levels.descendingMap()
+            : levels, ladder.getView());
+      }
+    }
+  }
+
+  /**
+   * Clearing the ladder empties the view, and copying the view out returns
+   * the number of levels copied.
+   */
+  @Test
+  void copiesAndClearsWithItsLadder() {
+    PriceLadder asks = new PriceLadder(PriceLadder.Side.ASK, PRECISION, 64,
+        VIEW_DEPTH);
+    asks.update(1010L, 1L);
+    asks.update(1000L, 2L);
+    long[] prices = new long[VIEW_DEPTH];
+    long[] amounts = new long[VIEW_DEPTH];
+
+    assertEquals(2, asks.getView().copyTo(prices, amounts, VIEW_DEPTH));
+    assertEquals(1000L, prices[0]);
+    assertEquals(2L, amounts[0]);
+    assertEquals(1010L, prices[1]);
+
+    asks.clear();
+    assertEquals(0, asks.getView().size());
+  }
+
+  /**
+   * Asserts that a view holds the first levels of a map, in order.
+   *
+   * @param expected the levels ordered from the best price
+   * @param view     the view to check
+   */
+  private static void assertBest(final NavigableMap<Long, Long> expected,
+      final DepthView view) {
+    assertEquals(Math.min(VIEW_DEPTH, expected.size()), view.size());
+    Iterator<Map.Entry<Long, Long>> levels = expected.entrySet().iterator();
+
+    for (int i = 0; i < view.size(); i++) {
+      Map.Entry<Long, Long> level = levels.next();
+      assertEquals(level.getKey(), view.getPrice(i));
+      assertEquals(level.getValue(), view.getAmount(i));
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.models.Precision;
+
+/**
+ * Tests the cumulative depth queries of LadderIndex against a walk over the
+ * levels.
+ */
+class LadderIndexTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).priceTick(5L).build();
+  private static final double TOLERANCE = 1e-9;
+
+  /**
+   * The impact price is the level where the cumulative size reaches the
+   * quantity, and the average fill price weights each level by what it
+   * fills.
+   */
+  @Test
+  void fillsFromTheBestAsk() {
+    PriceLadder asks = new PriceLadder(PriceLadder.Side.ASK, PRECISION, 64,
+        4);
+    asks.enableIndex();
+    asks.update(1000L, 2L);
+    asks.update(1005L, 3L);
+    asks.update(1010L, 5L);
+    LadderIndex index = asks.getIndex();
+
+    assertEquals(10L, index.getTotalSize());
+    assertEquals(5L, index.sizeThrough(1005L));
+    assertEquals(1005L, index.impactPrice(4L));
+    assertEquals(1010L, index.impactPrice(10L));
+    assertEquals(PriceLadder.NO_PRICE, index.impactPrice(11L));
+    assertEquals(10.025, index.vwapToFill(4L), TOLERANCE);
+    assertTrue(Double.isNaN(index.vwapToFill(11L)));
+    assertTrue(Double.isNaN(index.vwapToFill(0L)));
+  }
+
+  /**
+   * The answers match a walk over a sorted map after every update, while
+   * the window recenters and the index is rebuilt.
+   */
+  @Test
+  void matchesAWalkOverTheLevels() {
+    for (PriceLadder.Side side : PriceLadder.Side.values()) {
+      PriceLadder ladder = new PriceLadder(side, PRECISION, 64, 4);
+      ladder.enableIndex();
+      TreeMap<Long, Long> levels = new TreeMap<>();
+      ladder.setRemovalListener((price, amount) -> levels.remove(price));
+      ladder.setDropListener((price, amount) -> levels.remove(price));
+      Random random = new Random(11L);
+
+      for (int i = 0; i < 3000; i++) {
+        long price = 100000L + (random.nextInt(60) - 30) * 5L;
+        long amount = random.nextInt(3) == 0 ? 0L : 1L + random.nextInt(9);
+
+        if (amount > 0) {
+          levels.put(price, amount);
+        } else {
+          levels.remove(price);
+        }
+
+        ladder.update(price, amount);
+        NavigableMap<Long, Long> ordered = side == PriceLadder.Side.BID
+            ? levels.descendingMap() : levels;
+        long quantity = 1L + random.nextInt(40);
+        assertFill(ordered, ladder.getIndex(), quantity);
+      }
+    }
+  }
+
+  /**
+   * Asserts that the index fills a quantity as a walk over the levels does.
+   *
+   * @param levels   the levels ordered from the best price
+   * @param index    the index to check
+   * @param quantity the scaled quantity to fill
+   */
+  private static void assertFill(final NavigableMap<Long, Long> levels,
+      final LadderIndex index, final long quantity) {
+    long filled = 0L;
+    double notional = 0.0;
+    long impact = PriceLadder.NO_PRICE;
+
+    for (Map.Entry<Long, Long> level : levels.entrySet()) {
+      long take = Math.min(level.getValue(), quantity - filled);
+      filled += take;
+      notional += take * (double) level.getKey();
+
+      if (filled == quantity) {
+        impact = level.getKey();
+        break;
+      }
+    }
+
+    long total = levels.values().stream().mapToLong(Long::longValue).sum();
+    assertEquals(total, index.getTotalSize());
+    assertEquals(impact, index.impactPrice(quantity));
+
+    if (impact != PriceLadder.NO_PRICE) {
+      assertEquals(notional / quantity / 100, index.vwapToFill(quantity),
+          TOLERANCE);
+    }
+  }
+}
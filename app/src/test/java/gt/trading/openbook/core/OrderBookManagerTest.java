@@ -0,0 +1,105 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.listeners.ConnectionManager;
+import gt.trading.openbook.listeners.FeedArbiter;
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.server.FeedServer;
+import gt.trading.openbook.server.SyntheticFeed;
+
+/**
+ * Tests that an OrderBookManager with redundant legs keeps its books up to
+ * date from either leg, and rides out the loss of one.
+ */
+class OrderBookManagerTest {
+  private static final String SYMBOL = "btcusdt";
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final long SEED = 13L;
+  private static final long TIMEOUT_MILLIS = 15000L;
+  private static final int BURST = 20;
+  private static final double RATE = 2000;
+
+  /**
+   * Two servers publishing the same stream both win updates for the book,
+   * and after one drops its connections the other keeps the book publishing
+   * without a resynchronization.
+   */
+  @Test
+  void keepsTheBookFromTheSurvivingLeg() throws Exception {
+    String channel = OrderBookListener.getMbpChannel(SYMBOL,
+        OrderBookListener.DEFAULT_DEPTH);
+    ConnectionManager connections = new ConnectionManager(10);
+
+    try (FeedServer first = new FeedServer(0);
+        FeedServer second = new FeedServer(0)) {
+      SyntheticFeed[] feeds = {
+          new SyntheticFeed(first, List.of(SYMBOL), PRECISION, SEED),
+          new SyntheticFeed(second, List.of(SYMBOL), PRECISION, SEED)};
+      OrderBookManager manager = new OrderBookManager(connections, 1,
+          List.of(first.getUri(), second.getUri()));
+
+      try {
+        OrderBook book = manager.subscribe(SYMBOL, PRECISION);
+        FeedArbiter<OrderBookData> arbiter = manager.getArbiter(SYMBOL);
+        await(() -> first.hasSubscribers(channel)
+            && second.hasSubscribers(channel), null);
+        await(() -> arbiter.getWins(0) > 0 && arbiter.getWins(1) > 0,
+            feeds);
+
+        second.dropConnections();
+        long published = book.getSnapshot().getPublishCount();
+        await(() -> book.getSnapshot().getPublishCount() > published + BURST,
+            feeds);
+
+        assertEquals(2, arbiter.getLegCount());
+        assertEquals(0L, book.getResyncCount());
+        assertTrue(book.getLastSeqNum() > 0);
+      } finally {
+        manager.stop();
+      }
+    } finally {
+      connections.close();
+    }
+  }
+
+  /**
+   * Waits for a condition, publishing the same burst of updates from every
+   * feed between checks, starting with a different feed each time, if feeds
+   * are given.
+   *
+   * @param condition the condition to wait for
+   * @param feeds     the feeds to publish from in lockstep, or null to only
+   *                  wait
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private static void await(final BooleanSupplier condition,
+      final SyntheticFeed[] feeds) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    int leader = 0;
+
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline);
+
+      if (feeds == null) {
+        Thread.sleep(10);
+        continue;
+      }
+
+      for (int i = 0; i < feeds.length; i++) {
+        feeds[(leader + i) % feeds.length].run(BURST, RATE);
+      }
+
+      leader++;
+    }
+  }
+}
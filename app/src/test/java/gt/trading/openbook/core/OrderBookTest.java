@@ -0,0 +1,157 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.models.PriceLevel;
+
+/**
+ * Tests how an OrderBook synchronizes from a snapshot and the updates
+ * buffered before it.
+ */
+class OrderBookTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+
+  /**
+   * A snapshot arriving after the book has synchronized is ignored rather
+   * than answered with another snapshot request.
+   */
+  @Test
+  void ignoresASnapshotOnceSynchronized() {
+    OrderBook book = new OrderBook("btcusdt", PRECISION,
+        new OrderBookListener());
+    book.onUpdate(UpdateBufferTest.update(10L, 11L, 10000L, 5L));
+    book.onUpdate(snapshot(10L, 10000L, 3L));
+
+    assertEquals(11L, lastSeqNum(book));
+    assertEquals(5L, book.getBids().getAmount(10000L));
+    long sent = book.getRefreshThrottle().getSentCount();
+
+    book.onUpdate(snapshot(10L, 10000L, 3L));
+    book.onUpdate(UpdateBufferTest.update(11L, 12L, 10000L, 7L));
+
+    assertEquals(sent, book.getRefreshThrottle().getSentCount());
+    assertEquals(12L, lastSeqNum(book));
+    assertEquals(7L, book.getBids().getAmount(10000L));
+  }
+
+  /**
+   * Each published update hands the change callback the levels it changed,
+   * with the snapshot flagged as a reset.
+   */
+  @Test
+  void reportsChangedLevelsToTheChangeCallback() {
+    OrderBook book = new OrderBook("btcusdt", PRECISION,
+        new OrderBookListener());
+    List<String> changes = new ArrayList<>();
+    List<Boolean> resets = new ArrayList<>();
+    book.setChangeCallback(change -> {
+      resets.add(change.isReset());
+
+      for (int i = 0; i < change.size(); i++) {
+        changes.add(change.getPrice(i) + ":" + change.getOldAmount(i) + ">"
+            + change.getNewAmount(i));
+      }
+    });
+
+    book.onUpdate(UpdateBufferTest.update(10L, 11L, 10000L, 5L));
+    book.onUpdate(snapshot(10L, 10000L, 3L));
+    changes.clear();
+    book.onUpdate(UpdateBufferTest.update(11L, 12L, 10000L, 7L));
+
+    assertEquals(List.of(true, false), resets);
+    assertEquals(List.of("10000:5>7"), changes);
+    assertTrue(book.getSnapshot().getPublishCount() > 0);
+    assertFalse(book.getBids().isEmpty());
+  }
+
+  /**
+   * A reconnection drops a snapshot request sent on the old connection, so
+   * the book asks again on its next update instead of waiting out the
+   * backoff for a reply which will never come.
+   */
+  @Test
+  void requestsASnapshotAgainAfterAReconnection() {
+    OrderBook book = new OrderBook("btcusdt", PRECISION,
+        new OrderBookListener());
+    book.onUpdate(UpdateBufferTest.update(10L, 11L, 10000L, 5L));
+    long sent = book.getRefreshThrottle().getSentCount();
+
+    book.invalidate();
+    book.onUpdate(UpdateBufferTest.update(20L, 21L, 10000L, 8L));
+
+    assertEquals(sent + 1, book.getRefreshThrottle().getSentCount());
+
+    book.onUpdate(snapshot(20L, 10000L, 6L));
+
+    assertEquals(21L, lastSeqNum(book));
+    assertEquals(8L, book.getBids().getAmount(10000L));
+  }
+
+  /**
+   * A book keeps no more levels per side than its subscribed depth, pruning
+   * the worst levels of a deeper snapshot, and rejects depths Huobi does not
+   * offer.
+   */
+  @Test
+  void capsTheLevelsAtTheSubscribedDepth() {
+    OrderBook book = new OrderBook("btcusdt", PRECISION,
+        new OrderBookListener(), 5, 5);
+    List<PriceLevel> bids = new ArrayList<>();
+
+    for (long price = 10000L; price > 9992L; price--) {
+      bids.add(PriceLevel.builder().price(price).amount(1L).build());
+    }
+
+    book.onUpdate(UpdateBufferTest.update(10L, 11L, 10000L, 5L));
+    book.onUpdate(OrderBookData.builder()
+        .action(OrderBookData.Action.REFRESH).seqNum(10L).bids(bids)
+        .asks(List.of()).build());
+
+    assertEquals(5, book.getBids().size());
+    assertEquals(1L, book.getBids().getAmount(9996L));
+    assertEquals(0L, book.getBids().getAmount(9995L));
+    assertThrows(IllegalArgumentException.class,
+        () -> new OrderBook("btcusdt", PRECISION, new OrderBookListener(), 5,
+            7));
+  }
+
+  /**
+   * Reads the sequence number a book last published.
+   *
+   * @param book the order book
+   * @return the sequence number of its snapshot
+   */
+  private static long lastSeqNum(final OrderBook book) {
+    BookSnapshot snapshot = book.getSnapshot();
+    return snapshot.read(new TopOfBook(snapshot.getDepth()));
+  }
+
+  /**
+   * Builds a snapshot with one bid.
+   *
+   * @param seqNum the sequence number of the snapshot
+   * @param price  the scaled price of the bid
+   * @param amount the scaled amount of the bid
+   * @return the snapshot
+   */
+  private static OrderBookData snapshot(final long seqNum, final long price,
+      final long amount) {
+    return OrderBookData.builder().action(OrderBookData.Action.REFRESH)
+        .seqNum(seqNum)
+        .bids(List.of(PriceLevel.builder().price(price).amount(amount)
+            .build()))
+        .asks(List.of()).build();
+  }
+}
@@ -0,0 +1,175 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.models.Precision;
+
+/**
+ * Tests the ordering, window and drop accounting of PriceLadder.
+ */
+class PriceLadderTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).priceTick(5L).build();
+  private static final int CAPACITY = 16;
+
+  /**
+   * Levels are walked from the best price and removed by a zero amount.
+   */
+  @Test
+  void walksLevelsFromTheBestPrice() {
+    PriceLadder bids = newLadder(PriceLadder.Side.BID);
+    bids.update(1000L, 3L);
+    bids.update(995L, 2L);
+    bids.update(1005L, 1L);
+
+    List<Long> prices = new ArrayList<>();
+    bids.forEachLevel(bids.size(), (price, amount) -> prices.add(price));
+    assertEquals(List.of(1005L, 1000L, 995L), prices);
+    assertEquals(3L, bids.getAmount(1000L));
+
+    bids.update(1005L, 0L);
+    assertEquals(1000L, bids.getBestPrice());
+    assertEquals(2, bids.size());
+  }
+
+  /**
+   * Asks are ordered from the lowest price.
+   */
+  @Test
+  void ordersAsksFromTheLowestPrice() {
+    PriceLadder asks = newLadder(PriceLadder.Side.ASK);
+    asks.update(1010L, 1L);
+    asks.update(1005L, 2L);
+
+    assertEquals(1005L, asks.getBestPrice());
+    assertEquals(2L, asks.getBestAmount());
+  }
+
+  /**
+   * A price off the tick grid is dropped and reported rather than stored.
+   */
+  @Test
+  void dropsPricesOffTheTickGrid() {
+    PriceLadder bids = newLadder(PriceLadder.Side.BID);
+    List<Long> dropped = new ArrayList<>();
+    bids.setDropListener((price, amount) -> dropped.add(price));
+    bids.update(1000L, 1L);
+    bids.update(1002L, 1L);
+
+    assertEquals(1, bids.size());
+    assertEquals(1L, bids.getDroppedCount());
+    assertEquals(List.of(1002L), dropped);
+  }
+
+  /**
+   * The window spans its capacity in real ticks, so a level further from the
+   * best price than half of it on the worse side is dropped.
+   */
+  @Test
+  void sizesTheWindowInRealTicks() {
+    PriceLadder bids = newLadder(PriceLadder.Side.BID);
+    bids.update(1000L, 1L);
+    bids.update(1000L - (CAPACITY / 2) * 5L, 2L);
+    bids.update(1000L - (CAPACITY / 2 + 1) * 5L, 3L);
+
+    assertEquals(2, bids.size());
+    assertEquals(2L, bids.getAmount(960L));
+    assertEquals(1L, bids.getDroppedCount());
+  }
+
+  /**
+   * Recentering on a new best price evicts and reports the levels which
+   * leave the window.
+   */
+  @Test
+  void reportsLevelsEvictedByRecentering() {
+    PriceLadder bids = newLadder(PriceLadder.Side.BID);
+    List<Long> removed = new ArrayList<>();
+    bids.setRemovalListener((price, amount) -> removed.add(price));
+    bids.update(1000L, 1L);
+    bids.update(965L, 2L);
+    bids.update(1040L, 3L);
+
+    assertEquals(1040L, bids.getBestPrice());
+    assertEquals(2, bids.size());
+    assertEquals(1L, bids.getEvictedCount());
+    assertEquals(List.of(965L), removed);
+    assertEquals(0L, bids.getDroppedCount());
+  }
+
+  /**
+   * A depth cap prunes the worst level and reports it.
+   */
+  @Test
+  void prunesBeyondTheDepthCap() {
+    PriceLadder asks = newLadder(PriceLadder.Side.ASK);
+    List<Long> removed = new ArrayList<>();
+    asks.setRemovalListener((price, amount) -> removed.add(price));
+    asks.setMaxDepth(2);
+    asks.update(1000L, 1L);
+    asks.update(1005L, 1L);
+    asks.update(995L, 1L);
+
+    assertEquals(2, asks.size());
+    assertEquals(1L, asks.getPrunedCount());
+    assertEquals(List.of(1005L), removed);
+  }
+
+  /**
+   * A thin ladder spanning several words of the occupancy bitset, recentered
+   * both ways and with its best levels removed, walks the same levels as a
+   * sorted map given the same updates, evictions and drops.
+   */
+  @Test
+  void walksTheSameLevelsAsASortedMap() {
+    for (PriceLadder.Side side : PriceLadder.Side.values()) {
+      PriceLadder ladder = new PriceLadder(side, PRECISION, 200, 4);
+      TreeMap<Long, Long> expected = new TreeMap<>();
+      ladder.setRemovalListener((price, amount) -> expected.remove(price));
+      ladder.setDropListener((price, amount) -> expected.remove(price));
+      Random random = new Random(3L);
+
+      for (int i = 0; i < 5000; i++) {
+        long price = 100000L + (random.nextInt(600) - 300) * 5L;
+        long amount = random.nextInt(3) == 0 ? 0L : 1L + random.nextInt(9);
+
+        if (amount > 0) {
+          expected.put(price, amount);
+        } else {
+          expected.remove(price);
+        }
+
+        ladder.update(price, amount);
+      }
+
+      Map<Long, Long> ordered = side == PriceLadder.Side.BID
+          ? expected.descendingMap() : expected;
+      List<Long> walked = new ArrayList<>();
+      ladder.forEachLevel(ladder.size(), (price, amount) -> {
+        walked.add(price);
+        assertEquals(expected.get(price), amount);
+      });
+
+      assertEquals(new ArrayList<>(ordered.keySet()), walked);
+      assertEquals(expected.size(), ladder.size());
+    }
+  }
+
+  /**
+   * Creates a small ladder for a side.
+   *
+   * @param side the side of the ladder
+   * @return the ladder
+   */
+  private static PriceLadder newLadder(final PriceLadder.Side side) {
+    return new PriceLadder(side, PRECISION, CAPACITY, 4);
+  }
+}
@@ -0,0 +1,75 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.models.OrderBookData;
+
+/**
+ * Tests holding, recovery and the budgets of ReorderWindow.
+ */
+class ReorderWindowTest {
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+
+  /**
+   * Early updates are taken back in sequence order once the gap fills.
+   */
+  @Test
+  void returnsHeldUpdatesInOrder() {
+    ReorderWindow window = new ReorderWindow(4, 100L);
+
+    assertTrue(window.hold(UpdateBufferTest.update(12L, 13L, 100L, 1L), 0L));
+    assertTrue(window.hold(UpdateBufferTest.update(11L, 12L, 100L, 2L), 0L));
+    assertNull(window.take(10L));
+
+    OrderBookData next = window.take(11L);
+    assertEquals(12L, next.getSeqNum());
+    next = window.take(12L);
+    assertEquals(13L, next.getSeqNum());
+    assertEquals(0, window.size());
+    assertEquals(2L, window.getRecoveredCount());
+  }
+
+  /**
+   * A copy is held, so the caller may reuse its update.
+   */
+  @Test
+  void copiesHeldUpdates() {
+    ReorderWindow window = new ReorderWindow(4, 100L);
+    OrderBookData data = UpdateBufferTest.update(12L, 13L, 100L, 1L);
+    window.hold(data, 0L);
+    data.copyFrom(UpdateBufferTest.update(20L, 21L, 100L, 1L));
+
+    assertEquals(13L, window.take(12L).getSeqNum());
+  }
+
+  /**
+   * Holding more updates than the count budget expires the gap.
+   */
+  @Test
+  void expiresOverTheCountBudget() {
+    ReorderWindow window = new ReorderWindow(1, 100L);
+
+    assertTrue(window.hold(UpdateBufferTest.update(12L, 13L, 100L, 1L), 0L));
+    assertFalse(window.hold(UpdateBufferTest.update(13L, 14L, 100L, 1L), 0L));
+    assertEquals(1L, window.getExpiredCount());
+    assertEquals(0, window.size());
+  }
+
+  /**
+   * A gap open longer than the time budget expires.
+   */
+  @Test
+  void expiresOverTheTimeBudget() {
+    ReorderWindow window = new ReorderWindow(4, 10L);
+
+    assertTrue(window.hold(UpdateBufferTest.update(12L, 13L, 100L, 1L), 0L));
+    assertFalse(window.hold(UpdateBufferTest.update(13L, 14L, 100L, 1L),
+        20L * NANOS_PER_MILLI));
+    assertEquals(1L, window.getExpiredCount());
+  }
+}
@@ -0,0 +1,123 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.models.PriceLevel;
+
+/**
+ * Tests that a ShardRing applies the updates of several producers to their
+ * books in the order each producer offered them.
+ */
+class ShardRingTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final int PRODUCERS = 4;
+  private static final int UPDATES = 5000;
+  private static final long PRICE = 10000L;
+
+  /**
+   * Producers racing on a ring much smaller than their updates stall rather
+   * than drop, and every book ends on its producer's last update.
+   */
+  @Test
+  void appliesEveryUpdateInOfferOrder() throws InterruptedException {
+    ShardRing ring = new ShardRing("shard-ring-test", 4);
+    ring.start();
+    OrderBookListener listener = new OrderBookListener();
+    List<OrderBook> books = new ArrayList<>();
+    List<Thread> producers = new ArrayList<>();
+
+    for (int p = 0; p < PRODUCERS; p++) {
+      OrderBook book = new OrderBook("sym" + p, PRECISION, listener);
+      books.add(book);
+      Thread producer = new Thread(() -> {
+        ring.offer(book, update(0L, 1L, 1L));
+        ring.offer(book, snapshot(0L));
+
+        for (long seq = 1L; seq <= UPDATES; seq++) {
+          ring.offer(book, update(seq, seq + 1, seq + 1));
+        }
+      });
+      producers.add(producer);
+      producer.start();
+    }
+
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    ring.close();
+    awaitExit("shard-ring-test");
+
+    for (OrderBook book : books) {
+      assertEquals(UPDATES + 1L, book.getBids().getAmount(PRICE));
+    }
+
+    assertEquals(0, ring.size());
+    assertFalse(ring.offer(books.get(0), update(0L, 1L, 1L)));
+  }
+
+  /**
+   * A capacity which is not a power of 2 is rejected.
+   */
+  @Test
+  void rejectsCapacitiesWhichAreNotPowersOfTwo() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new ShardRing("shard-ring-test", 3));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ShardRing("shard-ring-test", 0));
+  }
+
+  /**
+   * Waits for the thread of a closed ring to apply what is left and exit.
+   *
+   * @param name the name of the ring's thread
+   * @throws InterruptedException if the wait is interrupted
+   */
+  private static void awaitExit(final String name)
+      throws InterruptedException {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (name.equals(thread.getName())) {
+        thread.join();
+      }
+    }
+  }
+
+  /**
+   * Builds an incremental update setting the amount of one bid.
+   *
+   * @param prevSeqNum the sequence number of the previous update
+   * @param seqNum     the sequence number of the update
+   * @param amount     the scaled amount of the bid
+   * @return the update
+   */
+  private static OrderBookData update(final long prevSeqNum,
+      final long seqNum, final long amount) {
+    return OrderBookData.builder().action(OrderBookData.Action.INCREMENT)
+        .prevSeqNum(prevSeqNum).seqNum(seqNum)
+        .bids(List.of(PriceLevel.builder().price(PRICE).amount(amount)
+            .build()))
+        .asks(List.of()).build();
+  }
+
+  /**
+   * Builds an empty snapshot.
+   *
+   * @param seqNum the sequence number of the snapshot
+   * @return the snapshot
+   */
+  private static OrderBookData snapshot(final long seqNum) {
+    return OrderBookData.builder().action(OrderBookData.Action.REFRESH)
+        .seqNum(seqNum).bids(List.of()).asks(List.of()).build();
+  }
+}
@@ -0,0 +1,142 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gt.trading.openbook.listeners.OrderBookListener;
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.models.PriceLevel;
+
+/**
+ * Tests that a StateCheckpointer restores books and state saved by a
+ * previous run, unless the checkpoint is stale or a book's precision has
+ * changed.
+ */
+class StateCheckpointerTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final long INTERVAL_MILLIS = 60000L;
+  private static final long MAX_AGE_MILLIS = 60000L;
+
+  @TempDir
+  private Path folder;
+
+  /**
+   * A book and a piece of state come back as they were saved.
+   */
+  @Test
+  void restoresWhatThePreviousRunSaved() throws IOException {
+    Path file = save();
+    StateCheckpointer checkpointer = new StateCheckpointer(file,
+        INTERVAL_MILLIS, MAX_AGE_MILLIS);
+    OrderBook book = newBook(PRECISION);
+    Counter counter = new Counter();
+
+    assertTrue(checkpointer.addBook(book));
+    assertTrue(checkpointer.addState("counter", counter));
+    assertTrue(book.isRestored());
+    assertEquals(12L, book.getLastSeqNum());
+    assertEquals(7L, book.getBids().getAmount(10000L));
+    assertEquals(3L, book.getBids().getAmount(9999L));
+    assertEquals(42L, counter.value);
+  }
+
+  /**
+   * A book whose precision changed since the checkpoint starts empty.
+   */
+  @Test
+  void skipsBooksSavedWithAnotherPrecision() throws IOException {
+    Path file = save();
+    StateCheckpointer checkpointer = new StateCheckpointer(file,
+        INTERVAL_MILLIS, MAX_AGE_MILLIS);
+    OrderBook book = newBook(Precision.builder().priceScale(3)
+        .amountScale(4).build());
+
+    assertFalse(checkpointer.addBook(book));
+    assertFalse(book.isRestored());
+    assertTrue(book.getBids().isEmpty());
+  }
+
+  /**
+   * A checkpoint older than the maximum age is ignored as a whole.
+   */
+  @Test
+  void ignoresStaleCheckpoints() throws Exception {
+    Path file = save();
+    Thread.sleep(20L);
+    StateCheckpointer checkpointer = new StateCheckpointer(file,
+        INTERVAL_MILLIS, 10L);
+    Counter counter = new Counter();
+
+    assertFalse(checkpointer.addBook(newBook(PRECISION)));
+    assertFalse(checkpointer.addState("counter", counter));
+    assertEquals(0L, counter.value);
+  }
+
+  /**
+   * Runs a synchronized book and a counter through a checkpointer and closes
+   * it, as a previous run would.
+   *
+   * @return the checkpoint file
+   * @throws IOException if the checkpoint cannot be written
+   */
+  private Path save() throws IOException {
+    Path file = folder.resolve("state");
+    StateCheckpointer checkpointer = new StateCheckpointer(file,
+        INTERVAL_MILLIS, MAX_AGE_MILLIS);
+    OrderBook book = newBook(PRECISION);
+    Counter counter = new Counter();
+    counter.value = 42L;
+    checkpointer.addBook(book);
+    checkpointer.addState("counter", counter);
+
+    book.onUpdate(UpdateBufferTest.update(10L, 11L, 10000L, 5L));
+    book.onUpdate(OrderBookData.builder()
+        .action(OrderBookData.Action.REFRESH).seqNum(10L)
+        .bids(List.of(PriceLevel.builder().price(9999L).amount(3L).build()))
+        .asks(List.of()).build());
+    // The export is taken once the book applies its next update
+    checkpointer.checkpoint();
+    book.onUpdate(UpdateBufferTest.update(11L, 12L, 10000L, 7L));
+    checkpointer.close();
+    return file;
+  }
+
+  /**
+   * Creates an unsubscribed book.
+   *
+   * @param precision the precision of the book
+   * @return the book
+   */
+  private static OrderBook newBook(final Precision precision) {
+    return new OrderBook("btcusdt", precision, new OrderBookListener());
+  }
+
+  /**
+   * The Counter class is a piece of state saved as a single long.
+   */
+  private static final class Counter implements Checkpointable {
+    private long value = 0L;
+
+    @Override
+    public void saveState(final DataOutput out) throws IOException {
+      out.writeLong(value);
+    }
+
+    @Override
+    public void restoreState(final DataInput in) throws IOException {
+      value = in.readLong();
+    }
+  }
+}
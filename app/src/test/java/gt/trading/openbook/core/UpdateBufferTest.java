@@ -0,0 +1,98 @@
+package gt.trading.openbook.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.models.OrderBookData;
+import gt.trading.openbook.models.PriceLevel;
+
+/**
+ * Tests buffering, coalescing and gap detection of UpdateBuffer.
+ */
+class UpdateBufferTest {
+  /**
+   * Contiguous updates after the snapshot merge into the last amount of each
+   * level, and updates before it are skipped.
+   */
+  @Test
+  void coalescesUpdatesFollowingTheSnapshot() {
+    UpdateBuffer buffer = new UpdateBuffer(8, 64);
+    buffer.add(update(9L, 10L, 100L, 9L));
+    buffer.add(update(10L, 11L, 100L, 1L));
+    buffer.add(update(11L, 12L, 100L, 2L));
+    buffer.add(update(12L, 13L, 105L, 3L));
+
+    assertTrue(buffer.reaches(10L));
+    assertEquals(13L, buffer.coalesce(10L));
+    assertFalse(buffer.hasGap());
+    assertEquals(2, buffer.getMergedCount());
+    assertEquals(100L, buffer.getMergedPrice(0));
+    assertEquals(2L, buffer.getMergedAmount(0));
+    assertTrue(buffer.isMergedBid(0));
+    assertEquals(105L, buffer.getMergedPrice(1));
+  }
+
+  /**
+   * Merging stops at a missing update and reports the gap.
+   */
+  @Test
+  void stopsAtAGap() {
+    UpdateBuffer buffer = new UpdateBuffer(8, 64);
+    buffer.add(update(10L, 11L, 100L, 1L));
+    buffer.add(update(12L, 13L, 100L, 2L));
+
+    assertEquals(11L, buffer.coalesce(10L));
+    assertTrue(buffer.hasGap());
+  }
+
+  /**
+   * A snapshot newer than every buffered update is not reached.
+   */
+  @Test
+  void reportsSnapshotsAheadOfTheBuffer() {
+    UpdateBuffer buffer = new UpdateBuffer(8, 64);
+    buffer.add(update(10L, 11L, 100L, 1L));
+
+    assertTrue(buffer.reaches(10L));
+    assertFalse(buffer.reaches(11L));
+  }
+
+  /**
+   * A full buffer refuses updates and counts the overflow.
+   */
+  @Test
+  void refusesUpdatesWhenFull() {
+    UpdateBuffer buffer = new UpdateBuffer(1, 64);
+
+    assertTrue(buffer.add(update(10L, 11L, 100L, 1L)));
+    assertFalse(buffer.add(update(11L, 12L, 100L, 2L)));
+    assertEquals(1L, buffer.getOverflowCount());
+
+    buffer.clear();
+    assertEquals(0, buffer.size());
+    assertTrue(buffer.add(update(11L, 12L, 100L, 2L)));
+  }
+
+  /**
+   * Builds an incremental update changing one bid.
+   *
+   * @param prevSeqNum the previous sequence number
+   * @param seqNum     the sequence number
+   * @param price      the scaled price of the bid
+   * @param amount     the scaled amount of the bid
+   * @return the update
+   */
+  static OrderBookData update(final long prevSeqNum, final long seqNum,
+      final long price, final long amount) {
+    return OrderBookData.builder().action(OrderBookData.Action.INCREMENT)
+        .prevSeqNum(prevSeqNum).seqNum(seqNum)
+        .bids(List.of(PriceLevel.builder().price(price).amount(amount)
+            .build()))
+        .asks(List.of()).build();
+  }
+}
@@ -0,0 +1,147 @@
+package gt.trading.openbook.featuregraph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gt.trading.openbook.journal.FeedJournal;
+import gt.trading.openbook.listeners.ConnectionManager;
+import gt.trading.openbook.listeners.FeedReplay;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.server.FeedServer;
+import gt.trading.openbook.server.SyntheticFeed;
+
+/**
+ * Tests that a graph replayed from a journal recorded by a live GraphRunner
+ * writes the same CSV rows as the live run.
+ */
+class GraphRunnerTest {
+  private static final String SYMBOL = "btcusdt";
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final long SEGMENT_BYTES = 1L << 22;
+  private static final long TIMEOUT_MILLIS = 10000L;
+  private static final long QUIET_MILLIS = 300L;
+
+  @TempDir
+  private Path folder;
+
+  /**
+   * Records a live run against a synthetic feed, replays its journal and
+   * compares the CSV files of both runs.
+   */
+  @Test
+  void replayWritesTheSameCsvAsTheLiveRun() throws Exception {
+    Path liveReports = Files.createDirectory(folder.resolve("live"));
+    Path replayReports = Files.createDirectory(folder.resolve("replay"));
+    Path journalFolder = folder.resolve("journal");
+
+    try (FeedServer server = new FeedServer(0)) {
+      SyntheticFeed feed = new SyntheticFeed(server, List.of(SYMBOL),
+          PRECISION, 7L);
+      ConnectionManager connections = new ConnectionManager(50);
+      FeedJournal journal = new FeedJournal(journalFolder, SEGMENT_BYTES);
+      new GraphRunner(writeConfig("live.json", server.getUri(), liveReports),
+          connections, SYMBOL, PRECISION, null, journal);
+
+      awaitSubscribers(server);
+      feed.run(3000, 10000);
+      awaitQuiet(journal);
+      connections.close();
+      journal.close();
+      assertEquals(0L, journal.getDroppedCount());
+    }
+
+    GraphRunner.replay(writeConfig("replay.json", "ws://unused",
+        replayReports), journalFolder, SYMBOL, PRECISION,
+        FeedReplay.MAX_SPEED);
+
+    List<String> live = readCsv(liveReports);
+    assertFalse(live.isEmpty());
+    assertEquals(live, readCsv(replayReports));
+  }
+
+  /**
+   * Writes a graph configuration using the example graph.
+   *
+   * @param name    the name of the configuration file
+   * @param uri     the endpoint of both feeds
+   * @param reports the folder CSV files are saved to
+   * @return the path of the configuration file
+   * @throws IOException if the file cannot be written
+   */
+  private String writeConfig(final String name, final String uri,
+      final Path reports) throws IOException {
+    Path config = folder.resolve(name);
+    Files.writeString(config, "{\"builderPath\":\""
+        + ExampleGraphBuilder.class.getName() + "\",\"marketUri\":\"" + uri
+        + "\",\"mbpUri\":\"" + uri + "\",\"reportFolder\":\""
+        + reports.toString().replace("\\", "\\\\") + "\"}");
+    return config.toString();
+  }
+
+  /**
+   * Waits until the graph's listener has subscribed to the depth channel. The
+   * example graph takes no order book events, so no book is subscribed.
+   *
+   * @param server the server it connects to
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private static void awaitSubscribers(final FeedServer server)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+    while (!server.hasSubscribers("market." + SYMBOL + ".bbo")) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Waits until no frame has been recorded for a while, so every frame sent
+   * has been processed.
+   *
+   * @param journal the journal the frames are recorded to
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private static void awaitQuiet(final FeedJournal journal)
+      throws InterruptedException {
+    long count = -1L;
+
+    while (count != journal.getFrameCount()) {
+      count = journal.getFrameCount();
+      Thread.sleep(QUIET_MILLIS);
+    }
+  }
+
+  /**
+   * Reads every CSV file in a folder, oldest first.
+   *
+   * @param reports the folder the CSV files were saved to
+   * @return the lines of every file
+   * @throws IOException if a file cannot be read
+   */
+  private static List<String> readCsv(final Path reports) throws IOException {
+    try (Stream<Path> files = Files.list(reports)) {
+      List<Path> sorted = files.sorted().collect(Collectors.toList());
+      List<String> lines = new ArrayList<>();
+
+      for (Path file : sorted) {
+        lines.addAll(Files.readAllLines(file));
+      }
+
+      return lines;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package gt.trading.openbook.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that frames written by a FeedJournal read back unchanged through a
+ * JournalReader.
+ */
+class FeedJournalTest {
+  private static final byte[] CHANNEL = "market.btcusdt.bbo"
+      .getBytes(StandardCharsets.US_ASCII);
+  private static final long SEGMENT_BYTES = 256L;
+  private static final int FRAMES = 20;
+  private static final long ROLL_WAIT_MILLIS = 5L;
+
+  @TempDir
+  private Path folder;
+
+  /**
+   * Frames, channels, sequences and receive times survive the round trip
+   * across several segments, in the order they were written.
+   */
+  @Test
+  void readsBackWhatWasWritten() throws Exception {
+    FeedJournal journal = new FeedJournal(folder, SEGMENT_BYTES);
+
+    for (int i = 0; i < FRAMES; i++) {
+      ByteBuffer frame = ByteBuffer.allocate(16);
+      frame.putLong(i).putLong(-i).flip();
+      assertTrue(journal.append(CHANNEL, 1000L + i, 5000L + i * 10L, frame,
+          0, frame.limit()));
+      // Gives the roller time to prepare the next segment
+      Thread.sleep(ROLL_WAIT_MILLIS);
+    }
+
+    assertTrue(journal.getSegmentIndex() > 0);
+    journal.close();
+
+    try (JournalReader reader = new JournalReader(folder)) {
+      long firstNanos = 0L;
+
+      for (int i = 0; i < FRAMES; i++) {
+        assertTrue(reader.next());
+
+        if (i == 0) {
+          firstNanos = reader.getReceivedNanos();
+        }
+
+        ByteBuffer frame = reader.getFrame();
+        assertEquals("market.btcusdt.bbo", reader.getChannel());
+        assertEquals(1000L + i, reader.getSequence());
+        assertEquals(i * 10L, reader.getReceivedNanos() - firstNanos);
+        assertEquals(16, frame.remaining());
+        assertEquals(i, frame.getLong(frame.position()));
+        assertEquals(-i, frame.getLong(frame.position() + Long.BYTES));
+      }
+
+      assertFalse(reader.next());
+      assertEquals(FRAMES, reader.getRecordCount());
+    }
+  }
+
+  /**
+   * A frame which cannot fit in a segment is dropped and counted.
+   */
+  @Test
+  void dropsFramesLargerThanASegment() throws Exception {
+    FeedJournal journal = new FeedJournal(folder, SEGMENT_BYTES);
+    ByteBuffer frame = ByteBuffer.allocate((int) SEGMENT_BYTES);
+
+    assertFalse(journal.append(CHANNEL, 1L, 0L, frame, 0, frame.limit()));
+    assertEquals(1L, journal.getDroppedCount());
+    journal.close();
+  }
+}
@@ -0,0 +1,71 @@
+package gt.trading.openbook.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that ChannelTable finds channels from the characters of a token and
+ * that adding or removing channels leaves earlier tables unchanged.
+ */
+class ChannelTableTest {
+  /**
+   * A channel is found from a range of a larger buffer, and a prefix or
+   * extension of its name is not.
+   */
+  @Test
+  void findsChannelsFromCharacterRanges() {
+    ChannelTable<Integer> table = ChannelTable.<Integer>empty()
+        .with("market.btcusdt.bbo", 1).with("market.ethusdt.bbo", 2);
+    char[] token = "xx\"market.ethusdt.bbo\"xx".toCharArray();
+
+    assertEquals(2, table.get(token, 3, 18));
+    assertNull(table.get(token, 3, 17));
+    assertNull(table.get(token, 3, 19));
+    assertEquals(1, table.get("market.btcusdt.bbo"));
+    assertNull(table.get("market.btcusdt.mbp.400"));
+  }
+
+  /**
+   * Names with the same String hash are told apart.
+   */
+  @Test
+  void separatesCollidingNames() {
+    ChannelTable<String> table = ChannelTable.<String>empty()
+        .with("Aa", "first").with("BB", "second");
+
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertEquals("first", table.get("Aa"));
+    assertEquals("second", table.get("BB"));
+    assertEquals("second", table.without("Aa").get("BB"));
+    assertNull(table.without("Aa").get("Aa"));
+  }
+
+  /**
+   * Each change returns a new table, growing past its initial capacity,
+   * while the tables it was built from keep their channels.
+   */
+  @Test
+  void buildsNewTablesOnChange() {
+    ChannelTable<Integer> table = ChannelTable.empty();
+
+    for (int i = 0; i < 100; i++) {
+      table = table.with("market.sym" + i + ".bbo", i);
+    }
+
+    ChannelTable<Integer> replaced = table.with("market.sym7.bbo", -7);
+    ChannelTable<Integer> removed = table.without("market.sym7.bbo");
+
+    assertEquals(100, table.size());
+    assertEquals(7, table.get("market.sym7.bbo"));
+    assertEquals(-7, replaced.get("market.sym7.bbo"));
+    assertEquals(100, replaced.size());
+    assertNull(removed.get("market.sym7.bbo"));
+    assertEquals(99, removed.size());
+    assertEquals(99, removed.get("market.sym99.bbo"));
+    assertSame(removed, removed.without("market.sym7.bbo"));
+    assertEquals(0, ChannelTable.empty().size());
+  }
+}
@@ -0,0 +1,108 @@
+package gt.trading.openbook.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.models.DepthData;
+import gt.trading.openbook.models.Precision;
+
+/**
+ * Tests that conflated depth subscriptions skip stale quotes only while a
+ * pipeline is behind, and always end on the latest quote.
+ */
+class ConflatingCallbackTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final int QUOTES = 200;
+
+  /**
+   * Without a pipeline every quote is delivered.
+   */
+  @Test
+  void deliversEveryQuoteInline() throws IOException {
+    MarketListener listener = new MarketListener();
+    List<Long> delivered = new ArrayList<>();
+    ConflatingCallback<DepthData> callback = listener
+        .subscribeDepthConflated("btcusdt", PRECISION,
+            depth -> delivered.add(depth.getSeqId()));
+
+    for (int i = 1; i <= QUOTES; i++) {
+      listener.onMessage(quote(i));
+    }
+
+    assertEquals(QUOTES, delivered.size());
+    assertEquals(0L, callback.getConflatedCount());
+  }
+
+  /**
+   * A slow callback behind a pipeline skips quotes, and the last quote is
+   * always delivered.
+   */
+  @Test
+  void skipsStaleQuotesBehindAPipeline() throws IOException {
+    MarketListener listener = new MarketListener();
+    List<Long> delivered = new ArrayList<>();
+    ConflatingCallback<DepthData> callback = listener
+        .subscribeDepthConflated("btcusdt", PRECISION, depth -> {
+          delivered.add(depth.getSeqId());
+          sleep();
+        });
+    listener.startPipeline(1024, WaitStrategy.BLOCKING);
+
+    for (int i = 1; i <= QUOTES; i++) {
+      listener.onMessage(quote(i));
+    }
+
+    listener.stopPipeline();
+    assertEquals(QUOTES, callback.getReceivedCount());
+    assertTrue(delivered.size() < QUOTES);
+    assertEquals(QUOTES, delivered.get(delivered.size() - 1));
+    assertEquals(QUOTES, callback.getConflatedCount()
+        + callback.getDeliveredCount());
+
+    for (int i = 1; i < delivered.size(); i++) {
+      assertTrue(delivered.get(i) > delivered.get(i - 1));
+    }
+  }
+
+  /**
+   * Encodes a best bid and offer frame.
+   *
+   * @param seqId the sequence of the quote
+   * @return the gzip frame
+   * @throws IOException if compression fails
+   */
+  private static ByteBuffer quote(final long seqId) throws IOException {
+    String message = "{\"ch\":\"market.btcusdt.bbo\",\"ts\":1,\"tick\":"
+        + "{\"seqId\":" + seqId + ",\"ask\":101.5,\"askSize\":1,\"bid\":101,"
+        + "\"bidSize\":1,\"quoteTime\":1,\"symbol\":\"btcusdt\"}}";
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  /**
+   * Stands in for a slow consumer.
+   */
+  private static void sleep() {
+    try {
+      Thread.sleep(2);
+    } catch (InterruptedException error) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
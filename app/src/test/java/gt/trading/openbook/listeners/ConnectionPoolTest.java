@@ -0,0 +1,70 @@
+package gt.trading.openbook.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.models.Precision;
+
+/**
+ * Tests how a ConnectionPool places channels on its connections and retires
+ * the connections left without any. The pool connects to a closed port, as
+ * placement does not depend on the connections being open.
+ */
+class ConnectionPoolTest {
+  private static final String URI = "ws://127.0.0.1:1/ws";
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+
+  /**
+   * A new connection is opened only once every connection holds the
+   * manager's limit of channels, and connections emptied by unsubscribing
+   * are closed by the next rebalance.
+   */
+  @Test
+  void fillsConnectionsBeforeOpeningAnother() {
+    ConnectionManager manager = new ConnectionManager(2);
+
+    try {
+      ConnectionPool<MarketListener> pool = manager.newPool(URI,
+          MarketListener::new);
+      List<Subscription> subscriptions = new ArrayList<>();
+
+      for (int i = 0; i < 5; i++) {
+        String symbol = "sym" + i;
+        subscriptions.add(pool.place(listener -> listener
+            .subscribeDepth(symbol, PRECISION, depth -> { })));
+      }
+
+      assertEquals(3, pool.getConnectionCount());
+      assertEquals(3, manager.getConnectionCount());
+
+      for (MarketListener connection : pool.getConnections()) {
+        assertEquals(connection == pool.getConnections().get(2) ? 1 : 2,
+            connection.getChannelCount());
+      }
+
+      subscriptions.get(4).unsubscribe();
+      subscriptions.get(0).unsubscribe();
+
+      assertEquals(1, pool.rebalance());
+      assertEquals(2, pool.getConnectionCount());
+
+      pool.place(listener -> listener.subscribeDepth("sym5", PRECISION,
+          depth -> { }));
+      assertEquals(2, pool.getConnectionCount());
+      assertEquals(2, pool.getConnections().get(0).getChannelCount());
+
+      pool.close();
+      assertEquals(0, pool.getConnectionCount());
+      assertThrows(IllegalStateException.class,
+          () -> pool.place(listener -> null));
+    } finally {
+      manager.close();
+    }
+  }
+}
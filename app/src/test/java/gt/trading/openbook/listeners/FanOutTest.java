@@ -0,0 +1,96 @@
+package gt.trading.openbook.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.models.Precision;
+
+/**
+ * Tests that a FanOut delivers each value to every subscriber, and that a
+ * listener shares one channel between subscribers.
+ */
+class FanOutTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+
+  /**
+   * Values reach every callback in subscription order, a throwing callback
+   * does not stop the others, and removed callbacks receive nothing.
+   */
+  @Test
+  void deliversToEveryCallback() {
+    FanOut<String> fanOut = new FanOut<>();
+    List<String> received = new ArrayList<>();
+    Callback<String> first = value -> received.add("first " + value);
+    Callback<String> second = value -> received.add("second " + value);
+    fanOut.add(first);
+    fanOut.add(value -> {
+      throw new IllegalStateException("failing subscriber");
+    });
+    fanOut.add(second);
+    fanOut.onResponse("a");
+
+    assertTrue(fanOut.remove(first));
+    assertFalse(fanOut.remove(first));
+    fanOut.onResponse("b");
+
+    assertEquals(List.of("first a", "second a", "second b"), received);
+    assertEquals(2, fanOut.size());
+    assertFalse(fanOut.isEmpty());
+  }
+
+  /**
+   * Two subscriptions to the same channel share it, each receiving every
+   * quote, and the channel remains until the last one unsubscribes.
+   */
+  @Test
+  void sharesAChannelBetweenSubscribers() throws IOException {
+    MarketListener listener = new MarketListener();
+    List<String> received = new ArrayList<>();
+    Subscription first = listener.subscribeDepth("btcusdt", PRECISION,
+        depth -> received.add("first " + depth.getSeqId()));
+    Subscription second = listener.subscribeDepth("btcusdt", PRECISION,
+        depth -> received.add("second " + depth.getSeqId()));
+    listener.onMessage(quote(1L));
+
+    assertEquals(2, listener.getSubscriberCount("market.btcusdt.bbo"));
+    first.unsubscribe();
+    listener.onMessage(quote(2L));
+
+    assertEquals(List.of("first 1", "second 1", "second 2"), received);
+    assertEquals(1, listener.getSubscriberCount("market.btcusdt.bbo"));
+    second.unsubscribe();
+    assertEquals(0, listener.getSubscriberCount("market.btcusdt.bbo"));
+  }
+
+  /**
+   * Encodes a best bid and offer frame.
+   *
+   * @param seqId the sequence of the quote
+   * @return the gzip frame
+   * @throws IOException if compression fails
+   */
+  private static ByteBuffer quote(final long seqId) throws IOException {
+    String message = "{\"ch\":\"market.btcusdt.bbo\",\"ts\":1,\"tick\":"
+        + "{\"seqId\":" + seqId + ",\"ask\":101.5,\"askSize\":1,\"bid\":101,"
+        + "\"bidSize\":1,\"quoteTime\":1,\"symbol\":\"btcusdt\"}}";
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+}
@@ -0,0 +1,150 @@
+package gt.trading.openbook.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that FeedArbiter merges redundant legs into one stream.
+ */
+class FeedArbiterTest {
+  /**
+   * Each key is delivered once, from the leg which delivered it first.
+   */
+  @Test
+  void deliversEachKeyOnce() {
+    List<Long> delivered = new ArrayList<>();
+    FeedArbiter<Long> arbiter = new FeedArbiter<>(2, Long::longValue, null,
+        delivered::add);
+    arbiter.leg(0).onResponse(1L);
+    arbiter.leg(1).onResponse(1L);
+    arbiter.leg(1).onResponse(2L);
+    arbiter.leg(0).onResponse(2L);
+    arbiter.leg(0).onResponse(3L);
+
+    assertEquals(List.of(1L, 2L, 3L), delivered);
+    assertEquals(2L, arbiter.getWins(0));
+    assertEquals(1L, arbiter.getWins(1));
+    assertEquals(1L, arbiter.getDuplicates(0));
+    assertEquals(1L, arbiter.getDuplicates(1));
+  }
+
+  /**
+   * A key skipped by the leader is still delivered late by another leg.
+   */
+  @Test
+  void fillsGapsFromAnotherLeg() {
+    List<Long> delivered = new ArrayList<>();
+    FeedArbiter<Long> arbiter = new FeedArbiter<>(2, Long::longValue, null,
+        delivered::add);
+    arbiter.leg(0).onResponse(1L);
+    arbiter.leg(0).onResponse(3L);
+    arbiter.leg(1).onResponse(2L);
+    arbiter.leg(1).onResponse(3L);
+
+    assertEquals(List.of(1L, 3L, 2L), delivered);
+  }
+
+  /**
+   * A gap is filled late from another leg even when the keys are far apart,
+   * as Huobi's sequence numbers are, and the copies the leading leg sends
+   * afterwards still count as duplicates.
+   */
+  @Test
+  void fillsGapsBetweenNonContiguousKeys() {
+    List<Long> delivered = new ArrayList<>();
+    FeedArbiter<Long> arbiter = new FeedArbiter<>(2, Long::longValue, null,
+        delivered::add);
+    long[] keys = new long[200];
+
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = 1000L + i * 997L;
+    }
+
+    for (int i = 0; i < keys.length; i++) {
+      if (i != 10) {
+        arbiter.leg(0).onResponse(keys[i]);
+      }
+    }
+
+    for (long key : keys) {
+      arbiter.leg(1).onResponse(key);
+    }
+
+    assertEquals(keys.length, delivered.size());
+    assertEquals(keys[10], delivered.get(keys.length - 1));
+    assertEquals(1L, arbiter.getWins(1));
+    assertEquals(keys.length - 1, arbiter.getDuplicates(1));
+    assertEquals(0L, arbiter.getStaleCount());
+  }
+
+  /**
+   * A key older than every remembered key is dropped as stale once the set
+   * of recent keys has wrapped, without counting as a duplicate.
+   */
+  @Test
+  void countsStaleKeysApartFromDuplicates() {
+    List<Long> delivered = new ArrayList<>();
+    FeedArbiter<Long> arbiter = new FeedArbiter<>(2, Long::longValue, null,
+        delivered::add);
+
+    for (long key = 1L; key <= 2000L; key++) {
+      arbiter.leg(0).onResponse(key * 10L);
+    }
+
+    arbiter.leg(1).onResponse(5L);
+
+    assertEquals(2000, delivered.size());
+    assertEquals(1L, arbiter.getStaleCount());
+    assertEquals(0L, arbiter.getDuplicates(1));
+    assertTrue(Double.isNaN(arbiter.getWinRate(1)));
+  }
+
+  /**
+   * A lagging leg repeating every key a few hundred values late has every
+   * copy recognized, while the set of recent keys keeps wrapping.
+   */
+  @Test
+  void recognizesLateCopiesWhileEvicting() {
+    List<Long> delivered = new ArrayList<>();
+    FeedArbiter<Long> arbiter = new FeedArbiter<>(2, Long::longValue, null,
+        delivered::add);
+    Random random = new Random(5L);
+    long[] keys = new long[10000];
+    long key = 0L;
+
+    for (int i = 0; i < keys.length; i++) {
+      key += 1 + random.nextInt(5000);
+      keys[i] = key;
+      arbiter.leg(0).onResponse(key);
+
+      if (i >= 300) {
+        arbiter.leg(1).onResponse(keys[i - 300]);
+      }
+    }
+
+    assertEquals(keys.length, delivered.size());
+    assertEquals(keys.length - 300, arbiter.getDuplicates(1));
+    assertEquals(0L, arbiter.getWins(1));
+    assertEquals(0L, arbiter.getStaleCount());
+  }
+
+  /**
+   * Values selected for pass through skip arbitration.
+   */
+  @Test
+  void passesThroughSelectedValues() {
+    List<Long> delivered = new ArrayList<>();
+    FeedArbiter<Long> arbiter = new FeedArbiter<>(2, Long::longValue,
+        value -> value < 0, delivered::add);
+    arbiter.leg(0).onResponse(-1L);
+    arbiter.leg(1).onResponse(-1L);
+
+    assertEquals(List.of(-1L, -1L), delivered);
+  }
+}
@@ -0,0 +1,101 @@
+package gt.trading.openbook.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests ordering, backpressure and closing of FrameRing.
+ */
+class FrameRingTest {
+  /**
+   * Frames are handed over in order with their receive times.
+   */
+  @Test
+  void handsOverFramesInOrder() {
+    FrameRing ring = new FrameRing(4, WaitStrategy.BLOCKING);
+    List<Integer> values = new ArrayList<>();
+    List<Long> times = new ArrayList<>();
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(ring.offer(frame(i), 100L + i));
+    }
+
+    assertEquals(3, ring.consume((frame, receivedAt) -> {
+      values.add(frame.getInt());
+      times.add(receivedAt);
+    }));
+    assertEquals(List.of(0, 1, 2), values);
+    assertEquals(List.of(100L, 101L, 102L), times);
+    assertEquals(0, ring.size());
+  }
+
+  /**
+   * A producer waits on a full ring instead of dropping frames.
+   */
+  @Test
+  void waitsWhenFull() throws InterruptedException {
+    FrameRing ring = new FrameRing(4, WaitStrategy.BLOCKING);
+    int count = 1000;
+    Thread producer = new Thread(() -> {
+      for (int i = 0; i < count; i++) {
+        ring.offer(frame(i), i);
+      }
+
+      ring.close();
+    });
+    List<Integer> values = new ArrayList<>();
+    producer.start();
+
+    while (ring.consume(
+        (frame, receivedAt) -> values.add(frame.getInt())) >= 0) {
+      continue;
+    }
+
+    producer.join();
+
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, values.get(i));
+    }
+
+    assertEquals(count, values.size());
+    assertTrue(ring.getHighWaterMark() <= 4);
+  }
+
+  /**
+   * A closed ring drains what it holds and then refuses frames.
+   */
+  @Test
+  void refusesFramesOnceClosedAndDrained() {
+    FrameRing ring = new FrameRing(4, WaitStrategy.BLOCKING);
+    List<Integer> values = new ArrayList<>();
+    ring.offer(frame(7), 0L);
+    ring.close();
+
+    assertEquals(1, ring.consume(
+        (frame, receivedAt) -> values.add(frame.getInt())));
+    assertEquals(-1, ring.consume(
+        (frame, receivedAt) -> values.add(frame.getInt())));
+    assertTrue(ring.isTerminated());
+    assertFalse(ring.offer(frame(8), 0L));
+    assertEquals(List.of(7), values);
+  }
+
+  /**
+   * Creates a frame holding one int.
+   *
+   * @param value the value of the frame
+   * @return the frame
+   */
+  private static ByteBuffer frame(final int value) {
+    ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES);
+    frame.putInt(value).flip();
+    return frame;
+  }
+}
@@ -0,0 +1,89 @@
+package gt.trading.openbook.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that GzipDecoder inflates frames from heap and direct buffers with
+ * one reused decoder, and rejects frames which are not gzip.
+ */
+class GzipDecoderTest {
+  /**
+   * Frames of growing and shrinking size decode to their original text,
+   * whichever kind of buffer holds them.
+   */
+  @Test
+  void decodesFramesWithOneDecoder() throws IOException {
+    GzipDecoder decoder = new GzipDecoder();
+
+    for (int size : new int[] {10, 50000, 3, 20000}) {
+      String text = "{\"ch\":\"market.btcusdt.mbp.400\",\"n\":"
+          + "x".repeat(size) + "}";
+      byte[] frame = gzip(text);
+      ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+      direct.put(frame).flip();
+
+      assertEquals(text, decode(decoder, ByteBuffer.wrap(frame)));
+      assertEquals(text, decode(decoder, direct));
+    }
+  }
+
+  /**
+   * A frame without the gzip magic, or cut short, is rejected, and the
+   * decoder still decodes the next valid frame.
+   */
+  @Test
+  void rejectsInvalidFrames() throws IOException {
+    GzipDecoder decoder = new GzipDecoder();
+    byte[] frame = gzip("{\"ping\":1}");
+    byte[] truncated = Arrays.copyOf(frame, frame.length / 2);
+
+    assertThrows(ZipException.class, () -> decoder.decode(
+        ByteBuffer.wrap("{\"ping\":1}".getBytes(StandardCharsets.UTF_8))));
+    assertThrows(ZipException.class,
+        () -> decoder.decode(ByteBuffer.wrap(truncated)));
+    assertEquals("{\"ping\":1}", decode(decoder, ByteBuffer.wrap(frame)));
+  }
+
+  /**
+   * Decodes a frame into text.
+   *
+   * @param decoder the decoder to use
+   * @param frame   the buffer holding the frame
+   * @return the decompressed text
+   * @throws ZipException if the frame is not valid gzip data
+   */
+  private static String decode(final GzipDecoder decoder,
+      final ByteBuffer frame) throws ZipException {
+    int length = decoder.decode(frame);
+    return new String(decoder.getBuffer(), 0, length,
+        StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compresses text into a gzip frame.
+   *
+   * @param text the text to compress
+   * @return the gzip frame
+   * @throws IOException if compression fails
+   */
+  private static byte[] gzip(final String text) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,88 @@
+package gt.trading.openbook.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import gt.trading.openbook.core.OrderBook;
+import gt.trading.openbook.models.Precision;
+import gt.trading.openbook.server.FeedServer;
+import gt.trading.openbook.server.SyntheticFeed;
+
+/**
+ * Tests that a listener whose connections are killed by a local FeedServer
+ * reconnects, subscribes again and has its order book resynchronized.
+ */
+class ReconnectTest {
+  private static final String SYMBOL = "btcusdt";
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final long TIMEOUT_MILLIS = 15000L;
+  private static final int BURST = 20;
+  private static final double RATE = 2000;
+
+  /**
+   * Dropping the connection leads to a reconnection, a fresh subscription
+   * and a completed resynchronization of the order book.
+   */
+  @Test
+  void resubscribesAndResynchronizesAfterADrop() throws Exception {
+    String channel = OrderBookListener.getMbpChannel(SYMBOL,
+        OrderBookListener.DEFAULT_DEPTH);
+
+    try (FeedServer server = new FeedServer(0)) {
+      SyntheticFeed feed = new SyntheticFeed(server, List.of(SYMBOL),
+          PRECISION, 11L);
+      OrderBookListener listener = new OrderBookListener();
+      OrderBook book = new OrderBook(SYMBOL, PRECISION, listener);
+      listener.subscribeMbp(SYMBOL, PRECISION, book::onUpdate);
+      listener.connect(server.getUri());
+
+      try {
+        await(() -> server.hasSubscribers(channel), null);
+        await(() -> book.getSnapshot().getPublishCount() > 0, feed);
+        assertEquals(0L, listener.getReconnectCount());
+
+        server.dropConnections();
+        await(() -> listener.getReconnectCount() > 0, null);
+        assertTrue(listener.getLastRecoveryMillis() >= 0);
+        await(() -> server.hasSubscribers(channel), null);
+
+        long published = book.getSnapshot().getPublishCount();
+        await(() -> book.getResyncCount() > 0, feed);
+        assertTrue(book.getLastResyncMillis() >= 0);
+        await(() -> book.getSnapshot().getPublishCount() > published, feed);
+        assertTrue(book.getLastSeqNum() > 0);
+      } finally {
+        listener.close();
+      }
+    }
+  }
+
+  /**
+   * Waits for a condition, publishing a burst of updates between checks if
+   * a feed is given.
+   *
+   * @param condition the condition to wait for
+   * @param feed      the feed to publish from, or null to only wait
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private static void await(final BooleanSupplier condition,
+      final SyntheticFeed feed) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline);
+
+      if (feed != null) {
+        feed.run(BURST, RATE);
+      } else {
+        Thread.sleep(10);
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package gt.trading.openbook.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that FixedPoint parses decimal text exactly and rounds the digits
+ * beyond the scale half up.
+ */
+class FixedPointTest {
+  /**
+   * Text with no more digits than the scale is stored exactly.
+   */
+  @Test
+  void parsesExactDecimals() {
+    assertEquals(3000012L, FixedPoint.parse("30000.12", 2));
+    assertEquals(3000000L, FixedPoint.parse("30000", 2));
+    assertEquals(10L, FixedPoint.parse("0.1", 2));
+    assertEquals(-150L, FixedPoint.parse("-1.5", 2));
+    assertEquals(1L, FixedPoint.parse("0.000000000000000001", 18));
+  }
+
+  /**
+   * Digits beyond the scale are rounded half up, away from zero for
+   * negative values.
+   */
+  @Test
+  void roundsExtraDigitsHalfUp() {
+    assertEquals(123L, FixedPoint.parse("1.2345", 2));
+    assertEquals(124L, FixedPoint.parse("1.235", 2));
+    assertEquals(124L, FixedPoint.parse("1.2350000001", 2));
+    assertEquals(-124L, FixedPoint.parse("-1.235", 2));
+    assertEquals(0L, FixedPoint.parse("0.004", 2));
+  }
+
+  /**
+   * Exponents move the decimal point before the value is scaled.
+   */
+  @Test
+  void appliesExponents() {
+    assertEquals(15L, FixedPoint.parse("1.5E-3", 4));
+    assertEquals(2500L, FixedPoint.parse("2.5e1", 2));
+    assertEquals(0L, FixedPoint.parse("1e-30", 8));
+  }
+
+  /**
+   * Text which is not a decimal, or does not fit in a long, is rejected.
+   */
+  @Test
+  void rejectsInvalidText() {
+    assertThrows(NumberFormatException.class,
+        () -> FixedPoint.parse("", 2));
+    assertThrows(NumberFormatException.class,
+        () -> FixedPoint.parse("1.2.3", 2));
+    assertThrows(NumberFormatException.class,
+        () -> FixedPoint.parse("12a", 2));
+    assertThrows(NumberFormatException.class,
+        () -> FixedPoint.parse("1e", 2));
+    assertThrows(NumberFormatException.class,
+        () -> FixedPoint.parse("99999999999999999999", 2));
+  }
+
+  /**
+   * Formatting writes exactly scale decimal places and parses back to the
+   * same value.
+   */
+  @Test
+  void formatsWithTheScale() {
+    assertEquals("30000.12", FixedPoint.toString(3000012L, 2));
+    assertEquals("0.05", FixedPoint.toString(5L, 2));
+    assertEquals("-0.05", FixedPoint.toString(-5L, 2));
+    assertEquals("7", FixedPoint.toString(7L, 0));
+    assertEquals(-5L, FixedPoint.parse(FixedPoint.toString(-5L, 2), 2));
+    assertEquals(0.05, FixedPoint.toDouble(5L, 2));
+    assertEquals(5L, FixedPoint.fromDouble(0.05, 2));
+  }
+}
@@ -0,0 +1,72 @@
+package gt.trading.openbook.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that OrderBookData can be reused as a flyweight, with copies kept
+ * independent of the instance they were taken from.
+ */
+class OrderBookDataTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+
+  /**
+   * Copying into an instance which held more levels replaces them all, and
+   * later changes to the source do not reach the copy.
+   */
+  @Test
+  void copiesIntoAReusedInstance() {
+    OrderBookData target = data(1L, 40);
+    OrderBookData source = data(2L, 3);
+    target.copyFrom(source);
+    OrderBookData kept = source.copy();
+    source.copyFrom(data(3L, 1));
+
+    assertEquals(2L, target.getSeqNum());
+    assertEquals(3, target.getBidCount());
+    assertEquals(3, target.getAskCount());
+    assertEquals(102L, target.getBidPrice(2));
+    assertEquals(3, kept.getBidCount());
+    assertEquals(2L, kept.getSeqNum());
+    assertEquals(1, source.getBidCount());
+    assertEquals(PRECISION, kept.getPrecision());
+  }
+
+  /**
+   * Levels beyond the initial capacity of the arrays are kept.
+   */
+  @Test
+  void growsPastItsInitialCapacity() {
+    OrderBookData data = data(1L, 1000);
+
+    assertEquals(1000, data.getBidCount());
+    assertEquals(1099L, data.getBidPrice(999));
+    assertEquals(1000L, data.getAskAmount(999));
+  }
+
+  /**
+   * Builds an update with a number of levels on each side.
+   *
+   * @param seqNum the sequence number of the update
+   * @param levels the number of levels per side
+   * @return the update
+   */
+  private static OrderBookData data(final long seqNum, final int levels) {
+    List<PriceLevel> bids = new ArrayList<>();
+    List<PriceLevel> asks = new ArrayList<>();
+
+    for (int i = 0; i < levels; i++) {
+      bids.add(PriceLevel.builder().price(100L + i).amount(1L + i).build());
+      asks.add(PriceLevel.builder().price(200L + i).amount(1L + i).build());
+    }
+
+    return OrderBookData.builder().action(OrderBookData.Action.INCREMENT)
+        .seqNum(seqNum).prevSeqNum(seqNum - 1).bids(bids).asks(asks)
+        .precision(PRECISION).build();
+  }
+}
@@ -0,0 +1,141 @@
+package gt.trading.openbook.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Tests that TickParser decodes ticks exactly from the parser's tokens,
+ * skips unknown fields and overwrites reusable targets.
+ */
+class TickParserTest {
+  private static final Precision PRECISION = Precision.builder()
+      .priceScale(2).amountScale(4).build();
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  /**
+   * A market by price tick is decoded into scaled levels, and the parser is
+   * left on the tick's closing brace.
+   */
+  @Test
+  void parsesMarketByPrice() throws IOException {
+    JsonParser parser = parserOf("{\"seqNum\":12,\"prevSeqNum\":11,"
+        + "\"ignored\":{\"a\":[1,2]},\"bids\":[[30000.12,0.5]],"
+        + "\"asks\":[[30000.5,1.25],[30001,2E-4]]}");
+    OrderBookData data = new OrderBookData();
+    TickParser.parseMbp(parser, PRECISION, OrderBookData.Action.INCREMENT,
+        data);
+
+    assertEquals(JsonToken.END_OBJECT, parser.currentToken());
+    assertEquals(OrderBookData.Action.INCREMENT, data.getAction());
+    assertEquals(12L, data.getSeqNum());
+    assertEquals(11L, data.getPrevSeqNum());
+    assertEquals(1, data.getBidCount());
+    assertEquals(3000012L, data.getBidPrice(0));
+    assertEquals(5000L, data.getBidAmount(0));
+    assertEquals(2, data.getAskCount());
+    assertEquals(3000050L, data.getAskPrice(0));
+    assertEquals(3000100L, data.getAskPrice(1));
+    assertEquals(2L, data.getAskAmount(1));
+    assertSame(PRECISION, data.getPrecision());
+  }
+
+  /**
+   * Decoding into a target which held a larger tick leaves none of its old
+   * levels behind.
+   */
+  @Test
+  void overwritesTheLevelsOfAReusedTarget() throws IOException {
+    OrderBookData data = new OrderBookData();
+    TickParser.parseMbp(parserOf("{\"seqNum\":1,\"bids\":[[1,1],[2,2]],"
+        + "\"asks\":[[3,3]]}"), PRECISION, OrderBookData.Action.REFRESH,
+        data);
+    TickParser.parseMbp(parserOf("{\"seqNum\":2,\"prevSeqNum\":1,"
+        + "\"bids\":[[4,4]],\"asks\":[]}"), PRECISION,
+        OrderBookData.Action.INCREMENT, data);
+
+    assertEquals(OrderBookData.Action.INCREMENT, data.getAction());
+    assertEquals(1, data.getBidCount());
+    assertEquals(400L, data.getBidPrice(0));
+    assertEquals(0, data.getAskCount());
+  }
+
+  /**
+   * A best bid and offer tick is decoded, and an unchanged symbol keeps the
+   * same string instance.
+   */
+  @Test
+  void parsesBestBidAndOffer() throws IOException {
+    String tick = "{\"seqId\":7,\"ask\":30001.5,\"askSize\":1,\"bid\":30001,"
+        + "\"bidSize\":0.0001,\"quoteTime\":99,\"symbol\":\"btcusdt\"}";
+    DepthData depth = new DepthData();
+    TickParser.parseBbo(parserOf(tick), PRECISION, depth);
+    String symbol = depth.getSymbol();
+    TickParser.parseBbo(parserOf(tick), PRECISION, depth);
+
+    assertEquals(7L, depth.getSeqId());
+    assertEquals(3000150L, depth.getAsk());
+    assertEquals(10000L, depth.getAskSize());
+    assertEquals(3000100L, depth.getBid());
+    assertEquals(1L, depth.getBidSize());
+    assertEquals(99L, depth.getQuoteTime());
+    assertEquals("btcusdt", symbol);
+    assertSame(symbol, depth.getSymbol());
+  }
+
+  /**
+   * Every trade of a trade detail tick is passed to the consumer in order.
+   */
+  @Test
+  void parsesEveryTrade() throws IOException {
+    JsonParser parser = parserOf("{\"id\":5,\"ts\":1,\"data\":["
+        + "{\"id\":100,\"ts\":3,\"tradeId\":1,\"amount\":0.5,"
+        + "\"price\":30000,\"direction\":\"buy\"},"
+        + "{\"id\":101,\"ts\":4,\"tradeId\":2,\"amount\":1,"
+        + "\"price\":30000.01,\"direction\":\"sell\"}]}");
+    List<String> trades = new ArrayList<>();
+    int count = TickParser.parseTrades(parser, PRECISION, new TradeData(),
+        trade -> trades.add(trade.getTradeId() + " " + trade.getPrice()
+            + " " + trade.getAmount() + " " + trade.getDirection()));
+
+    assertEquals(2, count);
+    assertEquals(List.of("1 3000000 5000 buy", "2 3000001 10000 sell"),
+        trades);
+  }
+
+  /**
+   * A value which is not a decimal number is reported as a parse error.
+   */
+  @Test
+  void rejectsNonNumericLevels() throws IOException {
+    JsonParser parser = parserOf("{\"bids\":[[true,1]]}");
+
+    assertThrows(JsonParseException.class,
+        () -> TickParser.parseMbp(parser, PRECISION,
+            OrderBookData.Action.INCREMENT, new OrderBookData()));
+  }
+
+  /**
+   * Creates a parser positioned before a tick.
+   *
+   * @param json the text of the tick
+   * @return the parser
+   * @throws IOException if the parser cannot be created
+   */
+  private static JsonParser parserOf(final String json) throws IOException {
+    JsonParser parser = FACTORY.createParser(json);
+    parser.nextToken();
+    return parser;
+  }
+}
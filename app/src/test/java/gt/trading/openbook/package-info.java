@@ -1,6 +1,7 @@
 /**
  * This package contains the test classes for the openbook core feature.
  *
- * The tests have not been implemented yet.
+ * The tests follow the layout of the main source tree, with each test class
+ * in the package of the class it covers.
  */
 package gt.trading.openbook;